@@ -0,0 +1,237 @@
+package enterprises.iwakura.amber.benchmarks;
+
+import enterprises.iwakura.amber.Amber;
+import enterprises.iwakura.amber.AmberManifest;
+import enterprises.iwakura.amber.BootstrapOptions;
+import enterprises.iwakura.amber.ChecksumType;
+import enterprises.iwakura.amber.Dependency;
+import enterprises.iwakura.amber.DependencyDownloader;
+import enterprises.iwakura.amber.InstalledJarVerifier;
+import enterprises.iwakura.amber.LocalMavenRepository;
+import enterprises.iwakura.amber.Logger;
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks {@link Amber#bootstrap(BootstrapOptions)} against a {@link LocalMavenRepository} serving synthetic artifacts, covering the
+ * cold path (nothing installed), the warm path (matching bootstrap fingerprint) and the checksum-only path (everything installed, every
+ * jar verified by its checksum). The artifacts are generated from a fixed seed, so every run downloads the same bytes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 20, batchSize = 1)
+public class BootstrapBenchmark {
+
+    /**
+     * The seed of the synthetic artifacts.
+     */
+    public static final long SEED = 0xA4BE5L;
+
+    @Benchmark
+    public List<Path> cold(ColdState state) throws IOException {
+        return state.amber.bootstrap(state.options(false, false));
+    }
+
+    @Benchmark
+    public List<Path> warm(WarmState state) throws IOException {
+        return state.amber.bootstrap(state.options(true, false));
+    }
+
+    @Benchmark
+    public List<Path> checksumOnly(ChecksumOnlyState state) throws IOException {
+        return state.amber.bootstrap(state.options(false, true));
+    }
+
+    /**
+     * The repository, the manifest and the directories shared by all paths. Each path gets its own instance, so the paths don't see each
+     * other's installed jars.
+     */
+    public abstract static class BootstrapState {
+
+        /**
+         * The number of dependencies.
+         */
+        @Param({"100"})
+        public int artifacts;
+
+        /**
+         * The size of each dependency's content in bytes.
+         */
+        @Param({"65536"})
+        public int artifactSize;
+
+        /**
+         * The latency of every response in milliseconds.
+         */
+        @Param({"0", "20"})
+        public long latencyMillis;
+
+        /**
+         * Whether the dependencies have pinned checksums (see {@link Dependency#getPinnedChecksum()}), sparing the checksum requests.
+         */
+        @Param({"false", "true"})
+        public boolean pinnedChecksums;
+
+        protected LocalMavenRepository repository;
+        protected Path directory;
+        protected Path libraryDirectory;
+        protected Path tempDirectory;
+        protected Amber amber;
+
+        @Setup(Level.Trial)
+        public void setUpTrial() throws IOException {
+            repository = new LocalMavenRepository();
+            repository.setLatencyMillis(latencyMillis);
+            List<Dependency> dependencies = repository.publishSynthetic(artifacts, artifactSize, SEED);
+            if (pinnedChecksums) {
+                for (Dependency dependency : dependencies) {
+                    dependency.setPinnedChecksum(LocalMavenRepository.checksum(ChecksumType.SHA256,
+                            repository.getFile(repository.getJarPath(dependency))));
+                }
+            }
+
+            directory = Files.createTempDirectory("amber-benchmark");
+            libraryDirectory = directory.resolve("libraries");
+            tempDirectory = Files.createDirectories(directory.resolve("temp"));
+            AmberManifest manifest = new AmberManifest(libraryDirectory, dependencies,
+                    Collections.singletonList(repository.getRepository()));
+            amber = new Amber(() -> Collections.singletonList(manifest), DependencyDownloader.defaultDownloaders(),
+                    new ChecksumValidatorImpl(), new SilentLogger());
+            install();
+        }
+
+        /**
+         * Installs the dependencies before the trial, if the path needs them installed.
+         *
+         * @throws IOException if the bootstrap failed
+         */
+        protected void install() throws IOException {
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDownTrial() throws IOException {
+            repository.close();
+            delete(directory);
+        }
+
+        /**
+         * Creates the bootstrap options shared by all paths.
+         *
+         * @param warmStart      whether to enable warm start
+         * @param verifyExisting whether to verify installed jars
+         *
+         * @return the options
+         */
+        public BootstrapOptions options(boolean warmStart, boolean verifyExisting) {
+            return BootstrapOptions.builder()
+                    .tempDirectory(tempDirectory)
+                    .warmStart(warmStart)
+                    .verifyExisting(verifyExisting)
+                    .build();
+        }
+    }
+
+    /**
+     * Nothing is installed before each bootstrap.
+     */
+    @State(Scope.Benchmark)
+    public static class ColdState extends BootstrapState {
+
+        @Setup(Level.Invocation)
+        public void setUpInvocation() throws IOException {
+            delete(libraryDirectory);
+        }
+    }
+
+    /**
+     * Everything is installed by a previous bootstrap with a matching fingerprint.
+     */
+    @State(Scope.Benchmark)
+    public static class WarmState extends BootstrapState {
+
+        @Override
+        protected void install() throws IOException {
+            amber.bootstrap(options(true, false));
+        }
+    }
+
+    /**
+     * Everything is installed, but not yet verified, so every jar is hashed and, without pinned checksums, its checksum is downloaded.
+     */
+    @State(Scope.Benchmark)
+    public static class ChecksumOnlyState extends BootstrapState {
+
+        @Override
+        protected void install() throws IOException {
+            amber.bootstrap(options(false, false));
+        }
+
+        @Setup(Level.Invocation)
+        public void setUpInvocation() throws IOException {
+            Files.deleteIfExists(libraryDirectory.resolve(BootstrapOptions.STATE_DIRECTORY_NAME).resolve(InstalledJarVerifier.FILE_NAME));
+        }
+    }
+
+    /**
+     * Deletes the specified directory recursively, if it exists.
+     *
+     * @param directory the directory
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Logger discarding everything but errors, so logging doesn't skew the results.
+     */
+    static class SilentLogger implements Logger {
+
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void debug(String message) {
+        }
+
+        @Override
+        public void error(String message, Throwable throwable) {
+            System.err.println("[Amber-ERROR] " + message);
+            if (throwable != null) {
+                throwable.printStackTrace();
+            }
+        }
+    }
+}
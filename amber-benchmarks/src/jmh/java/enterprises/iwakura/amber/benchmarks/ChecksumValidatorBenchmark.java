@@ -0,0 +1,74 @@
+package enterprises.iwakura.amber.benchmarks;
+
+import enterprises.iwakura.amber.ChecksumResult;
+import enterprises.iwakura.amber.ChecksumType;
+import enterprises.iwakura.amber.LocalMavenRepository;
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the throughput of {@link ChecksumValidatorImpl} for each {@link ChecksumType}, validating a file that stays in the page cache.
+ * Multiply the score by {@link #fileSize} for bytes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class ChecksumValidatorBenchmark {
+
+    @Param({"MD5", "SHA1", "SHA256", "SHA512"})
+    public ChecksumType checksumType;
+
+    /**
+     * The size of the validated file in bytes.
+     */
+    @Param({"4194304"})
+    public int fileSize;
+
+    private final ChecksumValidatorImpl checksumValidator = new ChecksumValidatorImpl();
+    private Path file;
+    private String checksum;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(BootstrapBenchmark.SEED).nextBytes(content);
+        file = Files.createTempFile("amber-benchmark", ".jar");
+        Files.write(file, content);
+        checksum = LocalMavenRepository.checksum(checksumType, content).getValue();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ChecksumResult validate() throws IOException {
+        ChecksumResult result = checksumValidator.validate(checksumType, checksum, file);
+        if (result != ChecksumResult.MATCH) {
+            throw new IllegalStateException("Checksum mismatch: " + result);
+        }
+        return result;
+    }
+}
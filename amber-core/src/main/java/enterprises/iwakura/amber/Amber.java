@@ -1,22 +1,46 @@
 package enterprises.iwakura.amber;
 
+import enterprises.iwakura.amber.DownloadCoordinator.DownloadAttempt;
 import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
-import enterprises.iwakura.amber.impl.ClassLoaderManifestLoader;
 import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.FileMoveEvent;
+import enterprises.iwakura.amber.impl.IndexResourceManifestLoader;
 import enterprises.iwakura.amber.impl.JarFileManifestLoader;
+import enterprises.iwakura.amber.impl.ManifestLoadEvent;
+import enterprises.iwakura.amber.impl.PartialDownload;
+import enterprises.iwakura.amber.impl.VirtualThreadExecutors;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * The entrypoint for Amber's bootstrapping functionality.
@@ -29,6 +53,11 @@ import java.util.concurrent.atomic.AtomicReference;
 @RequiredArgsConstructor
 public class Amber {
 
+    /**
+     * The name of the directory within the temporary directory where dependencies are downloaded to.
+     */
+    public static final String TEMP_DIRECTORY_NAME = "amber-downloads";
+
     /**
      * The manifest loader to load Amber manifests.
      */
@@ -54,6 +83,46 @@ public class Amber {
      */
     protected boolean downloadedSomething = false;
 
+    /**
+     * The latency and success statistics of repositories. Loaded from the state directory at the start of each bootstrap if
+     * {@link BootstrapOptions#isAdaptiveRepositoryOrder()} or {@link BootstrapOptions#isHedgeRepositories()} is enabled.
+     */
+    protected RepositoryStatistics repositoryStatistics = new RepositoryStatistics();
+
+    /**
+     * The coordinator of the downloads of the current bootstrap, handling retries, hedging and host concurrency limits. Replaced on every
+     * bootstrap.
+     */
+    protected DownloadCoordinator downloadCoordinator;
+
+    /**
+     * The host-wide artifact cache, or null if {@link BootstrapOptions#getSharedCacheDirectory()} is not set.
+     */
+    protected ArtifactCache artifactCache;
+
+    /**
+     * The verifier of installed jars, or null if {@link BootstrapOptions#isVerifyExisting()} is disabled.
+     */
+    protected InstalledJarVerifier installedJarVerifier;
+
+    /**
+     * The AppCDS archive of the dependencies installed by the last bootstrap, or null if {@link BootstrapOptions#isAppCdsArchive()} is
+     * disabled. Use {@link AppCdsArchive#getJvmFlags()} to get the JVM flags for the next launch.
+     */
+    protected AppCdsArchive appCdsArchive;
+
+    /**
+     * The reports of the dependencies being bootstrapped, keyed by their notation, in the order they were scheduled. Replaced on every
+     * bootstrap.
+     */
+    protected Map<String, DependencyReport> dependencyReports = Collections.emptyMap();
+
+    /**
+     * The report of the last completed bootstrap, successful or not, or null if no bootstrap completed yet. See also
+     * {@link BootstrapOptions#getReportCallback()}.
+     */
+    protected BootstrapReport lastBootstrapReport;
+
     /**
      * Create an Amber instance that loads manifests from the current thread's context class loader. Uses {@link ConsoleLogger} with debug messages
      * disabled.
@@ -84,7 +153,7 @@ public class Amber {
      * @return An Amber instance.
      */
     public static Amber classLoader(ClassLoader classLoader, Logger logger) {
-        return new Amber(new ClassLoaderManifestLoader(classLoader), DependencyDownloader.defaultDownloaders(), new ChecksumValidatorImpl(), logger);
+        return new Amber(new IndexResourceManifestLoader(classLoader), DependencyDownloader.defaultDownloaders(), new ChecksumValidatorImpl(), logger);
     }
 
     /**
@@ -122,7 +191,36 @@ public class Amber {
      * @return An AmberClassLoader instance.
      */
     public static AmberClassLoader createClassLoader(List<Path> dependencies) {
-        AmberClassLoader classLoader = new AmberClassLoader(dependencies, Thread.currentThread().getContextClassLoader(), Amber.class);
+        return createClassLoader(dependencies, false);
+    }
+
+    /**
+     * Create an AmberClassLoader with the specified dependencies, see {@link #createClassLoader(List)}.
+     *
+     * @param dependencies The list of dependency paths to include in the class loader.
+     * @param mapJars      Whether the class loader should read jars using {@link MappedJarFile}.
+     *
+     * @return An AmberClassLoader instance.
+     */
+    public static AmberClassLoader createClassLoader(List<Path> dependencies, boolean mapJars) {
+        AmberClassLoader classLoader = new AmberClassLoader(dependencies, Thread.currentThread().getContextClassLoader(), Amber.class, mapJars);
+        Thread.currentThread().setContextClassLoader(classLoader);
+        return classLoader;
+    }
+
+    /**
+     * Create an AmberClassLoader serving dependencies of the specified background bootstrap as soon as they are installed. Uses
+     * current thread's class loader to specify parent class loader and <code>Amber.class</code> as caller. After creating, sets the
+     * created class loader as the current thread's context class loader.
+     *
+     * @param bootstrap The bootstrap running in the background, see {@link #bootstrapAsync(BootstrapOptions)}.
+     *
+     * @return An AmberClassLoader instance.
+     *
+     * @see AmberClassLoader#AmberClassLoader(AsyncBootstrap, ClassLoader, Class)
+     */
+    public static AmberClassLoader createClassLoader(AsyncBootstrap bootstrap) {
+        AmberClassLoader classLoader = new AmberClassLoader(bootstrap, Thread.currentThread().getContextClassLoader(), Amber.class);
         Thread.currentThread().setContextClassLoader(classLoader);
         return classLoader;
     }
@@ -150,51 +248,364 @@ public class Amber {
      * @throws IOException If an I/O error occurs during bootstrapping.
      */
     public List<Path> bootstrap(BootstrapOptions options) throws IOException {
+        List<Path> allDependencies = bootstrapDependencies(options);
+
+        // Check if something was downloaded; if so, handle exit conditions
+        if (downloadedSomething) {
+            Integer exitCode = getExitCode(allDependencies, options);
+            if (exitCode != null) {
+                System.exit(exitCode);
+                return null;
+            }
+        }
+
+        // Reset for potential re-use
+        downloadedSomething = false;
+
+        return allDependencies;
+    }
+
+    /**
+     * Bootstraps dependencies as per the loaded Amber manifests with the specified options, without handling exit conditions.
+     *
+     * @param options The bootstrap options to use.
+     *
+     * @return A list of jar files that were required by loaded manifests.
+     *
+     * @throws IOException If an I/O error occurs during bootstrapping.
+     */
+    protected List<Path> bootstrapDependencies(BootstrapOptions options) throws IOException {
         logger.info("Bootstrapping...");
         long startTime = System.nanoTime();
+        dependencyReports = Collections.emptyMap();
 
         logger.debug("Loading manifests...");
-        List<AmberManifest> manifests = manifestLoader.loadManifest();
+        List<AmberManifest> manifests = loadManifests();
         if (manifests.isEmpty()) {
             logger.info("No manifests found. Nothing to bootstrap.");
+            completeBootstrapReport(startTime, false, null, options);
             return Collections.emptyList();
         }
         logger.debug(String.format("Loaded %d manifests.", manifests.size()));
 
-        List<Path> allDependencies = new ArrayList<>();
+        String manifestsHash = null;
+        if (options.isWarmStart() && !options.isForceRedownload() && !options.isVerifyExisting()) {
+            manifestsHash = BootstrapFingerprint.hashManifests(manifests, options);
+            List<Path> warmDependencies = warmStart(manifests, manifestsHash, options);
+            if (warmDependencies != null) {
+                if (options.isAppCdsArchive()) {
+                    updateAppCdsArchive(manifests, warmDependencies, options);
+                }
+                completeBootstrapReport(startTime, true, null, options);
+                logger.info(String.format("Bootstrapping completed, all dependencies are up to date (took %d ms)", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+                return warmDependencies;
+            }
+        }
 
         logger.debug(String.format("Processing %d manifests...", manifests.size()));
-        for (AmberManifest manifest : manifests) {
-            allDependencies.addAll(processManifest(manifest, options));
+        List<Path> allDependencies;
+        try {
+            allDependencies = processManifests(manifests, options);
+        } catch (IOException | RuntimeException exception) {
+            completeBootstrapReport(startTime, false, exception, options);
+            throw exception;
+        }
+
+        if (manifestsHash != null) {
+            saveFingerprint(manifests, manifestsHash, allDependencies, options);
         }
 
+        if (options.isAppCdsArchive()) {
+            updateAppCdsArchive(manifests, allDependencies, options);
+        }
+
+        completeBootstrapReport(startTime, false, null, options);
         logger.info(String.format("Bootstrapping completed (took %d ms)", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
 
-        // Check if something was downloaded; if so, handle exit conditions
-        if (downloadedSomething) {
-            Integer exitCode = null;
-            if (options.getExitCallback() != null) {
-                exitCode = options.getExitCallback().apply(allDependencies);
-            } else if (options.getExitCodeAfterDownload() != null) {
-                logger.info(String.format("Exiting with code %d as per configuration.", options.getExitCodeAfterDownload()));
-
-                if (options.getExitMessageAfterDownload() != null) {
-                    logger.info(options.getExitMessageAfterDownload());
-                }
+        return allDependencies;
+    }
+
+    /**
+     * Loads the Amber manifests using the manifest loader, recorded as {@link ManifestLoadEvent}.
+     *
+     * @return The loaded manifests.
+     *
+     * @throws IOException If an I/O error occurs while loading the manifests.
+     */
+    protected List<AmberManifest> loadManifests() throws IOException {
+        ManifestLoadEvent event = new ManifestLoadEvent();
+        event.begin();
+        List<AmberManifest> manifests = manifestLoader.loadManifest();
+        if (event.shouldCommit()) {
+            event.setLoader(manifestLoader.getClass().getName());
+            event.setManifests(manifests.size());
+            event.setDependencies(manifests.stream().mapToInt(manifest -> manifest.getDependencies().size()).sum());
+            event.commit();
+        }
+        return manifests;
+    }
+
+    /**
+     * Determines the exit code after something was downloaded, as per {@link BootstrapOptions#getExitCallback()} and
+     * {@link BootstrapOptions#getExitCodeAfterDownload()}.
+     *
+     * @param allDependencies The list of jar files that were required by loaded manifests.
+     * @param options         The bootstrap options to use.
+     *
+     * @return The exit code, or null if the program should continue running.
+     */
+    protected Integer getExitCode(List<Path> allDependencies, BootstrapOptions options) {
+        if (options.getExitCallback() != null) {
+            return options.getExitCallback().apply(allDependencies);
+        } else if (options.getExitCodeAfterDownload() != null) {
+            logger.info(String.format("Exiting with code %d as per configuration.", options.getExitCodeAfterDownload()));
 
-                exitCode = options.getExitCodeAfterDownload();
+            if (options.getExitMessageAfterDownload() != null) {
+                logger.info(options.getExitMessageAfterDownload());
             }
 
-            if (exitCode != null) {
-                System.exit(exitCode);
-                return null;
+            return options.getExitCodeAfterDownload();
+        }
+        return null;
+    }
+
+    /**
+     * Creates the report of the completed bootstrap from the recorded dependency reports, remembers it as
+     * {@link #getLastBootstrapReport()} and passes it to {@link BootstrapOptions#getReportCallback()}.
+     *
+     * @param startTime The time the bootstrap started at, in nanoseconds.
+     * @param warmStart Whether the bootstrap was skipped by a warm start.
+     * @param failure   The failure of the bootstrap, or null if it succeeded.
+     * @param options   The bootstrap options to use.
+     *
+     * @return The report.
+     */
+    protected BootstrapReport completeBootstrapReport(long startTime, boolean warmStart, Throwable failure, BootstrapOptions options) {
+        long durationNanos = System.nanoTime() - startTime;
+        String errorMessage = null;
+        if (failure != null) {
+            errorMessage = failure.getMessage() != null ? failure.getMessage() : failure.toString();
+            if (failure.getCause() != null) {
+                errorMessage += " (" + failure.getCause().getMessage() + ")"; // The bootstrap's failure wraps the dependency's one
             }
         }
+        lastBootstrapReport = new BootstrapReport(
+                Instant.now().minusNanos(durationNanos),
+                durationNanos,
+                warmStart,
+                errorMessage,
+                new ArrayList<>(dependencyReports.values())
+        );
+        options.invokeReportCallback(lastBootstrapReport, logger);
+        return lastBootstrapReport;
+    }
+
+    /**
+     * Gets the report of the specified dependency within the current bootstrap.
+     *
+     * @param dependency the dependency
+     *
+     * @return the report, or a detached report if the dependency is not being bootstrapped
+     */
+    protected DependencyReport getDependencyReport(Dependency dependency) {
+        DependencyReport report = dependencyReports.get(dependency.getNotation());
+        return report != null ? report : new DependencyReport(dependency.getNotation());
+    }
+
+    /**
+     * Bootstraps dependencies as per the loaded Amber manifests with default options and launches the specified main class within an
+     * {@link AmberClassLoader}, so the application may use freshly downloaded dependencies without restarting the JVM. Loads manifests
+     * from the current thread's context class loader.
+     *
+     * @param mainClass The fully qualified name of the class with the application's <code>main</code> method.
+     * @param args      The arguments to pass to the <code>main</code> method.
+     *
+     * @throws Exception If bootstrapping fails, if the main class can't be loaded, or if the <code>main</code> method throws.
+     * @see #launch(String, String[], BootstrapOptions)
+     */
+    public static void launch(String mainClass, String[] args) throws Exception {
+        classLoader().launch(mainClass, args, BootstrapOptions.builder().build());
+    }
+
+    /**
+     * Bootstraps dependencies as per the loaded Amber manifests with the specified options and launches the specified main class within
+     * an {@link AmberClassLoader} created by {@link #createClassLoader(List, boolean)}, so the application may use freshly downloaded dependencies
+     * without restarting the JVM. Exit options ({@link BootstrapOptions#getExitCodeAfterDownload()} and
+     * {@link BootstrapOptions#getExitCallback()}) are ignored. The main class is loaded from the class loader's own jars first, so it
+     * should be packaged within the same jar as Amber.
+     *
+     * @param mainClass The fully qualified name of the class with the application's <code>main</code> method.
+     * @param args      The arguments to pass to the <code>main</code> method.
+     * @param options   The bootstrap options to use.
+     *
+     * @throws Exception If bootstrapping fails, if the main class can't be loaded, or if the <code>main</code> method throws.
+     */
+    public void launch(String mainClass, String[] args, BootstrapOptions options) throws Exception {
+        List<Path> allDependencies = bootstrapDependencies(options);
 
         // Reset for potential re-use
         downloadedSomething = false;
 
-        return allDependencies;
+        AmberClassLoader classLoader = createClassLoader(allDependencies, options.isMapJars());
+        Method mainMethod = Class.forName(mainClass, true, classLoader).getMethod("main", String[].class);
+        if (!Modifier.isStatic(mainMethod.getModifiers())) {
+            throw new NoSuchMethodException("Method main(String[]) of " + mainClass + " is not static");
+        }
+
+        logger.debug("Launching " + mainClass + "...");
+        try {
+            mainMethod.invoke(null, (Object) args);
+        } catch (InvocationTargetException exception) {
+            // Propagate whatever the application's main method threw
+            Throwable cause = exception.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Bootstraps dependencies as per the loaded Amber manifests in the background. Manifests are loaded (and the warm start is checked)
+     * in the current thread; dependencies are then downloaded as per the specified options and each of them completes its own future,
+     * so the application may start before all dependencies are downloaded, e.g. using
+     * {@link #createClassLoader(AsyncBootstrap)}. Exit options ({@link BootstrapOptions#getExitCodeAfterDownload()} and
+     * {@link BootstrapOptions#getExitCallback()}) are ignored. Only one bootstrap may run on an Amber instance at a time.
+     *
+     * @param options The bootstrap options to use.
+     *
+     * @return The bootstrap running in the background.
+     *
+     * @throws IOException If an I/O error occurs while loading manifests or preparing the bootstrap.
+     */
+    public AsyncBootstrap bootstrapAsync(BootstrapOptions options) throws IOException {
+        logger.info("Bootstrapping in background...");
+        long startTime = System.nanoTime();
+        dependencyReports = Collections.emptyMap();
+
+        logger.debug("Loading manifests...");
+        List<AmberManifest> manifests = loadManifests();
+        if (manifests.isEmpty()) {
+            logger.info("No manifests found. Nothing to bootstrap.");
+            completeBootstrapReport(startTime, false, null, options);
+            return AsyncBootstrap.completed(Collections.emptyMap(), Collections.emptyList());
+        }
+        logger.debug(String.format("Loaded %d manifests.", manifests.size()));
+
+        String manifestsHash = options.isWarmStart() && !options.isForceRedownload() && !options.isVerifyExisting() ? BootstrapFingerprint.hashManifests(manifests, options) : null;
+        if (manifestsHash != null) {
+            List<Path> warmDependencies = warmStart(manifests, manifestsHash, options);
+            if (warmDependencies != null) {
+                if (options.isAppCdsArchive()) {
+                    updateAppCdsArchive(manifests, warmDependencies, options);
+                }
+                completeBootstrapReport(startTime, true, null, options);
+                logger.info(String.format("Bootstrapping completed, all dependencies are up to date (took %d ms)", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+                Map<String, List<Path>> dependencyPaths = new LinkedHashMap<>();
+                for (AmberManifest manifest : manifests) {
+                    for (Dependency dependency : manifest.getDependencies()) {
+                        dependencyPaths.computeIfAbsent(dependency.getNotation(), notation -> new ArrayList<>())
+                                .add(options.getPrefferedLibraryDirectory(manifest).resolve(dependency.getFileName()));
+                    }
+                }
+                return AsyncBootstrap.completed(dependencyPaths, warmDependencies);
+            }
+        }
+
+        AsyncBootstrap bootstrap = processManifestsAsync(manifests, options);
+        CompletableFuture<List<Path>> completion = bootstrap.getCompletion().handle((allDependencies, throwable) -> {
+            if (throwable != null) {
+                Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                completeBootstrapReport(startTime, false, failure, options);
+                throw new CompletionException(failure);
+            }
+            if (manifestsHash != null) {
+                saveFingerprint(manifests, manifestsHash, allDependencies, options);
+            }
+            if (options.isAppCdsArchive()) {
+                updateAppCdsArchive(manifests, allDependencies, options);
+            }
+            completeBootstrapReport(startTime, false, null, options);
+            logger.info(String.format("Bootstrapping completed (took %d ms)", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+            downloadedSomething = false;
+            return allDependencies;
+        });
+        return new AsyncBootstrap(bootstrap.getDependencyFutures(), bootstrap.getDependencyJarPaths(), completion, bootstrap.tasks);
+    }
+
+    /**
+     * Updates the AppCDS archive of the installed dependencies and writes the JVM flags for the next launch into the state directory.
+     *
+     * @param manifests       the Amber manifests
+     * @param allDependencies the installed dependencies
+     * @param options         the bootstrap options to use
+     */
+    protected void updateAppCdsArchive(List<AmberManifest> manifests, List<Path> allDependencies, BootstrapOptions options) {
+        Path stateDirectory = options.getPreferredStateDirectory(manifests.get(0));
+        try {
+            appCdsArchive = AppCdsArchive.of(stateDirectory, allDependencies);
+            List<String> jvmFlags = appCdsArchive.update();
+            if (jvmFlags.isEmpty()) {
+                logger.debug("Dynamic AppCDS archives are not supported by this JVM.");
+            } else {
+                logger.debug(String.format("AppCDS flags for the next launch (%s): %s", appCdsArchive.getArgumentsFilePath(), String.join(" ", jvmFlags)));
+            }
+        } catch (IOException exception) {
+            logger.error("Failed to update AppCDS archive in " + stateDirectory, exception);
+        }
+    }
+
+    /**
+     * Checks the fingerprint of the last completed bootstrap against the specified manifests and installed jars.
+     *
+     * @param manifests     the loaded manifests
+     * @param manifestsHash the hash of the loaded manifests
+     * @param options       the bootstrap options to use
+     *
+     * @return the paths of all installed jars if nothing changed since the last completed bootstrap, null otherwise
+     */
+    protected List<Path> warmStart(List<AmberManifest> manifests, String manifestsHash, BootstrapOptions options) {
+        BootstrapFingerprint fingerprint = BootstrapFingerprint.load(options.getPreferredStateDirectory(manifests.get(0)));
+        if (fingerprint == null || !fingerprint.getManifestsHash().equals(manifestsHash)) {
+            logger.debug("Bootstrap fingerprint is missing or manifests have changed.");
+            return null;
+        }
+
+        List<Path> dependencyPaths = fingerprint.verify();
+        if (dependencyPaths == null) {
+            logger.debug("Installed dependencies have changed since the last bootstrap.");
+        }
+        return dependencyPaths;
+    }
+
+    /**
+     * Saves the fingerprint of a completed bootstrap, so the next bootstrap may skip checking each dependency. The fingerprint is saved only
+     * if all dependencies of all manifests are installed.
+     *
+     * @param manifests       the loaded manifests
+     * @param manifestsHash   the hash of the loaded manifests
+     * @param dependencyPaths the paths of all installed jars
+     * @param options         the bootstrap options to use
+     */
+    protected void saveFingerprint(List<AmberManifest> manifests, String manifestsHash, List<Path> dependencyPaths, BootstrapOptions options) {
+        Set<Path> installedPaths = new HashSet<>(dependencyPaths);
+        for (AmberManifest manifest : manifests) {
+            for (Dependency dependency : manifest.getDependencies()) {
+                if (!installedPaths.contains(options.getPrefferedLibraryDirectory(manifest).resolve(dependency.getFileName()))) {
+                    logger.debug("Not saving bootstrap fingerprint, dependency " + dependency + " is missing.");
+                    return;
+                }
+            }
+        }
+
+        Path stateDirectory = options.getPreferredStateDirectory(manifests.get(0));
+        try {
+            BootstrapFingerprint.capture(manifestsHash, dependencyPaths).save(stateDirectory);
+        } catch (IOException exception) {
+            logger.error("Failed to save bootstrap fingerprint into " + stateDirectory, exception);
+        }
     }
 
     /**
@@ -206,149 +617,1091 @@ public class Amber {
      * @return a list of paths to the downloaded (or already existing) dependencies
      *
      * @throws IOException if an I/O error occurs during processing
+     * @see #processManifests(List, BootstrapOptions)
      */
     protected List<Path> processManifest(AmberManifest manifest, BootstrapOptions options) throws IOException {
-        List<Path> dependencyPaths = Collections.synchronizedList(new ArrayList<>());
-        ExecutorService executorService = Executors.newFixedThreadPool(options.getDownloaderThreadCount());
-        AtomicReference<Exception> lastException = new AtomicReference<>();
-
-        logger.info(String.format("Bootstrapping %d dependencies from %d repositories into %s",
-                manifest.getDependencies().size(),
-                manifest.getRepositories().size(),
-                options.getPrefferedLibraryDirectory(manifest).toAbsolutePath()
-        ));
-
-        for (Dependency dependency : manifest.getDependencies()) {
-            executorService.execute(() -> {
-                if (lastException.get() != null) {
-                    logger.debug("Skipping download of " + dependency + " due to previous error.");
-                    return; // Skip further processing if an exception has already occurred
-                }
+        return processManifests(Collections.singletonList(manifest), options);
+    }
 
-                try {
-                    long startTime = System.nanoTime();
+    /**
+     * Processes all Amber manifests at once to download their dependencies as per the specified options. Dependencies from all
+     * manifests are scheduled onto a single executor service, and identical dependency coordinates are downloaded only once and
+     * then installed into every library directory that requires them.
+     *
+     * @param manifests the Amber manifests to process
+     * @param options   the bootstrap options to use
+     *
+     * @return a list of paths to the downloaded (or already existing) dependencies, ordered as the manifests and their
+     * dependencies were declared
+     *
+     * @throws IOException if an I/O error occurs during processing
+     * @see #processManifestsAsync(List, BootstrapOptions)
+     */
+    protected List<Path> processManifests(List<AmberManifest> manifests, BootstrapOptions options) throws IOException {
+        return processManifestsAsync(manifests, options).await();
+    }
 
-                    if (isDependencyDownloaded(dependency, manifest, options)) {
-                        logger.debug("Dependency exists: " + dependency);
-                        dependencyPaths.add(options.getPrefferedLibraryDirectory(manifest).resolve(dependency.getFileName()));
-                        options.invokeProgressHintCallback(new ProgressHintContext(dependency, manifest, ProgressHintContext.Type.EXISTING), logger);
-                        return;
-                    }
+    /**
+     * Starts processing all Amber manifests at once in the background, see {@link #processManifests(List, BootstrapOptions)}.
+     *
+     * @param manifests the Amber manifests to process
+     * @param options   the bootstrap options to use
+     *
+     * @return the bootstrap running in the background
+     *
+     * @throws IOException if an I/O error occurs while preparing the downloaders
+     */
+    protected AsyncBootstrap processManifestsAsync(List<AmberManifest> manifests, BootstrapOptions options) throws IOException {
+        if (manifests.isEmpty()) {
+            return AsyncBootstrap.completed(Collections.emptyMap(), Collections.emptyList());
+        }
 
-                    Path libraryDir = options.getPrefferedLibraryDirectory(manifest);
-                    Path tempJarPath = options.getTempDirectory().resolve(dependency.getFileName() + UUID.randomUUID() + ".part");
-                    Path jarPath = libraryDir.resolve(dependency.getFileName());
-                    Files.createDirectories(jarPath.getParent());
-                    Files.createDirectories(tempJarPath.getParent());
+        for (AmberManifest manifest : manifests) {
+            logger.info(String.format("Bootstrapping %d dependencies from %d repositories into %s",
+                    manifest.getDependencies().size(),
+                    manifest.getRepositories().size(),
+                    options.getPrefferedLibraryDirectory(manifest).toAbsolutePath()
+            ));
+        }
 
-                    Map<Repository, DownloadResult> dependencyDownloadResults = new HashMap<>();
-                    StringDownloadResult checksumDownloadResult = null;
-                    ChecksumResult checksumResult = ChecksumResult.NOT_FOUND;
+        Path stateDirectory = options.getPreferredStateDirectory(manifests.get(0));
+        for (DependencyDownloader downloader : downloaders.values()) {
+            downloader.prepare(options, stateDirectory);
+        }
 
-                    logger.debug(String.format("Downloading dependency %s from %d repositories...", dependency, manifest.getRepositories().size()));
-                    options.invokeProgressHintCallback(new ProgressHintContext(dependency, manifest, ProgressHintContext.Type.START_DOWNLOAD), logger);
+        boolean persistRepositoryStatistics = options.isAdaptiveRepositoryOrder() || options.isHedgeRepositories();
+        repositoryStatistics = persistRepositoryStatistics ? RepositoryStatistics.load(stateDirectory) : new RepositoryStatistics();
+        artifactCache = options.getSharedCacheDirectory() != null ? new ArtifactCache(options.getSharedCacheDirectory()) : null;
+        installedJarVerifier = options.isVerifyExisting() ? InstalledJarVerifier.load(stateDirectory) : null;
+        downloadCoordinator = createDownloadCoordinator(options);
 
-                    repository_loop:
-                    for (Repository repository : manifest.getRepositories()) {
-                        DependencyDownloader downloader = downloaders.get(repository.getType());
+        Collection<ScheduledDependency> scheduledDependencies = scheduleDependencies(manifests);
+        logger.debug(String.format("Scheduled %d unique dependencies from %d manifests.", scheduledDependencies.size(), manifests.size()));
 
-                        if (downloader == null) {
-                            logger.error("No downloader found for repository type: " + repository.getType(), null);
-                            continue;
-                        }
+        Set<Path> installedPaths = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        ExecutorService executorService = options.getExecutorService() != null ? options.getExecutorService() : createExecutorService(options);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Map<String, CompletableFuture<List<Path>>> dependencyFutures = new LinkedHashMap<>();
+        Map<String, List<Path>> dependencyJarPaths = new LinkedHashMap<>();
+        List<Future<?>> tasks = new CopyOnWriteArrayList<>();
+        CompletableFuture<List<Path>> completion = new CompletableFuture<>();
 
-                        logger.debug(String.format("Attempting to download %s from %s (may not specify the exact version)", dependency, repository.getJarDownloadPath(dependency, null)));
-                        DownloadResult result = downloader.downloadJar(dependency, repository, tempJarPath);
-                        dependencyDownloadResults.put(repository, result);
+        Map<String, DependencyReport> reports = new LinkedHashMap<>();
+        for (ScheduledDependency scheduledDependency : scheduledDependencies) {
+            String notation = scheduledDependency.getDependency().getNotation();
+            dependencyFutures.put(notation, new CompletableFuture<>());
+            reports.put(notation, new DependencyReport(notation));
 
-                        if (!result.isSuccess()) {
-                            logger.debug("Download failed: " + result.getErrorMessage());
-                            continue;
-                        }
+            List<Path> jarPaths = new ArrayList<>();
+            for (AmberManifest manifest : scheduledDependency.getManifests()) {
+                jarPaths.add(options.getPrefferedLibraryDirectory(manifest).resolve(scheduledDependency.getDependency().getFileName()));
+            }
+            dependencyJarPaths.put(notation, jarPaths);
+        }
+        dependencyReports = Collections.unmodifiableMap(reports);
 
-                        if (options.isValidateChecksums()) {
-                            logger.debug("Validating checksums for " + dependency);
-                            for (ChecksumType checksumType : ChecksumType.values()) {
-                                StringDownloadResult tempResult = downloader.downloadChecksum(dependency, repository, checksumType);
-
-                                if (tempResult.isSuccess()) {
-                                    checksumResult = checksumValidator.validate(checksumType, tempResult.getContent(), tempJarPath);
-                                    logger.debug("Checksum " + checksumType + " validation result: " + checksumResult);
-
-                                    if (checksumResult == ChecksumResult.UNSUPPORTED) {
-                                        logger.error("Unsupported algorithm for checksum type: " + checksumType, null);
-                                        // Continue on unsupported checksum type
-                                    } else {
-                                        checksumDownloadResult = tempResult;
-                                        break repository_loop; // Break on first (in)valid checksum that is supported
-                                    }
-                                } else {
-                                    logger.debug("Checksum download failed for type " + checksumType + ": " + tempResult.getErrorMessage());
-                                    // Assign the last error if no checksum was found yet
-                                    checksumDownloadResult = tempResult;
-                                }
-                            }
-                        } else {
-                            logger.debug("Skipping checksum validation for " + dependency + " as per configuration.");
-                            checksumResult = ChecksumResult.MATCH; // Skip checksum validation
-                        }
-                    }
+        ScheduledExecutorService deadlineExecutorService = options.getDependencyTimeoutMillis() > 0 || options.getBootstrapTimeoutMillis() > 0
+                ? createDeadlineExecutorService()
+                : null;
+        if (options.getBootstrapTimeoutMillis() > 0) {
+            deadlineExecutorService.schedule(() -> {
+                IOException exception = new IOException("Bootstrapping did not complete within " + options.getBootstrapTimeoutMillis() + " ms");
+                if (failure.compareAndSet(null, exception)) {
+                    logger.error("Bootstrap deadline exceeded, cancelling unfinished downloads", null);
+                    failFast(completion, exception, dependencyFutures, tasks);
+                }
+            }, options.getBootstrapTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
 
-                    if (dependencyDownloadResults.values().stream().noneMatch(DownloadResult::isSuccess)) {
-                        logger.error(String.format("Could not find %s in repositories: ", dependency), null);
-                        manifest.getRepositories().forEach(repository -> {
-                            String errorMessage = Optional.ofNullable(dependencyDownloadResults.get(repository))
-                                    .map(DownloadResult::getErrorMessage)
-                                    .orElse("N/A");
-                            logger.error(String.format(" - %s: %s", repository.getUrl(), errorMessage), null);
-                        });
-
-                        if (options.isFailOnMissingDependency()) {
-                            throw new IOException("Failed to download dependency: " + dependency);
-                        }
-                    }
+        BiConsumer<CompletableFuture<List<Path>>, Exception> failDependency = (dependencyFuture, exception) -> {
+            // Recorded first, so the bootstrap fails with it even if this is the last unfinished dependency
+            boolean firstFailure = failure.compareAndSet(null, exception);
+            dependencyFuture.completeExceptionally(exception);
+            if (firstFailure) {
+                // The bootstrap can't succeed anymore, don't let in-flight downloads hold it up
+                failFast(completion, exception, dependencyFutures, tasks);
+            }
+        };
 
-                    if (checksumResult != ChecksumResult.MATCH) {
-                        if (checksumDownloadResult != null) {
-                            logger.error(String.format("Checksum validation failed for %s: %s with error %s", dependency, checksumResult, checksumDownloadResult.getErrorMessage()), null);
-                        } else {
-                            logger.error(String.format("Checksum validation failed for %s: %s", dependency, checksumResult), null);
-                        }
+        for (ScheduledDependency scheduledDependency : scheduledDependencies) {
+            if (failure.get() != null) {
+                break; // Futures of the remaining dependencies were already failed
+            }
+            CompletableFuture<List<Path>> dependencyFuture = dependencyFutures.get(scheduledDependency.getDependency().getNotation());
+            DependencyReport report = getDependencyReport(scheduledDependency.getDependency());
 
-                        if (options.isFailOnInvalidChecksum()) {
-                            throw new IOException("Invalid checksum for dependency: " + dependency);
-                        }
-                    }
+            tasks.add(executorService.submit(() -> {
+                if (failure.get() != null) {
+                    logger.debug("Skipping download of " + scheduledDependency.getDependency() + " due to previous error.");
+                    // Skip further processing if an exception has already occurred
+                    dependencyFuture.completeExceptionally(new IOException("Skipped due to a previous error: " + scheduledDependency.getDependency()));
+                    return;
+                }
 
-                    // Move temp file to library directory
-                    logger.debug(String.format("Moving downloaded dependency at %s to %s", tempJarPath, jarPath));
-                    Files.move(tempJarPath, jarPath, StandardCopyOption.REPLACE_EXISTING);
-                    logger.info(String.format("Downloaded dependency %s to %s (took %d ms)", dependency, jarPath, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
-                    dependencyPaths.add(jarPath);
-                    downloadedSomething = true;
-                    options.invokeProgressHintCallback(new ProgressHintContext(dependency, manifest, ProgressHintContext.Type.FINISH_DOWNLOAD), logger);
+                // Recorded before completing the future, as the bootstrap report may be created right away
+                long startTime = System.nanoTime();
+                try {
+                    List<Path> dependencyPaths = processDependencyWithDeadline(scheduledDependency, options, deadlineExecutorService, exception -> {
+                        logger.error("Deadline of dependency " + scheduledDependency.getDependency() + " exceeded", exception);
+                        report.recordOutcome(DependencyReport.Outcome.FAILED, null);
+                        report.recordDuration(System.nanoTime() - startTime);
+                        failDependency.accept(dependencyFuture, exception);
+                    });
+                    report.recordDuration(System.nanoTime() - startTime);
+                    installedPaths.addAll(dependencyPaths);
+                    dependencyFuture.complete(dependencyPaths);
                 } catch (Exception exception) {
-                    logger.error("Error processing dependency " + dependency, exception);
-                    lastException.set(exception);
+                    report.recordOutcome(DependencyReport.Outcome.FAILED, null);
+                    report.recordDuration(System.nanoTime() - startTime);
+                    if (failure.get() == null) {
+                        logger.error("Error processing dependency " + scheduledDependency.getDependency(), exception);
+                    } else {
+                        logger.debug("Processing of " + scheduledDependency.getDependency() + " ended after a previous error: " + exception);
+                    }
+                    failDependency.accept(dependencyFuture, exception);
                 }
-            });
+            }));
         }
 
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(1, TimeUnit.DAYS)) {
-                executorService.shutdownNow();
+        CompletableFuture.allOf(dependencyFutures.values().toArray(new CompletableFuture[0])).whenComplete((ignored, throwable) -> {
+            // Executor services supplied by the application are managed by the application
+            if (executorService != options.getExecutorService()) {
+                if (failure.get() != null) {
+                    executorService.shutdownNow();
+                } else {
+                    executorService.shutdown();
+                }
             }
-        } catch (InterruptedException exception) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
 
-        if (lastException.get() != null) {
-            throw new IOException("An error occurred during bootstrapping.", lastException.get());
-        }
+            if (deadlineExecutorService != null) {
+                deadlineExecutorService.shutdownNow();
+            }
 
-        return dependencyPaths;
+            downloadCoordinator.shutdown();
+
+            if (installedJarVerifier != null) {
+                try {
+                    installedJarVerifier.save(stateDirectory);
+                } catch (IOException exception) {
+                    logger.error("Failed to save verified jars into " + stateDirectory, exception);
+                }
+            }
+
+            if (persistRepositoryStatistics) {
+                try {
+                    repositoryStatistics.save(stateDirectory);
+                } catch (IOException exception) {
+                    logger.error("Failed to save repository statistics into " + stateDirectory, exception);
+                }
+            }
+
+            if (failure.get() != null) {
+                completion.completeExceptionally(new IOException("An error occurred during bootstrapping.", failure.get()));
+            } else if (throwable != null) {
+                completion.completeExceptionally(throwable); // Cancelled
+            } else {
+                updateLibraryPacks(manifests, installedPaths, options);
+                updateJarIndexes(manifests, installedPaths, options);
+                completion.complete(getOrderedDependencyPaths(manifests, installedPaths, options));
+            }
+        });
+
+        return new AsyncBootstrap(dependencyFutures, dependencyJarPaths, completion, tasks);
+    }
+
+    /**
+     * Fails the bootstrap once it can't succeed anymore: interrupts all running downloads and fails futures of unfinished dependencies
+     * right away, so the bootstrap completes with the failure without waiting for in-flight downloads.
+     *
+     * @param completion        the future of the bootstrap
+     * @param failure           the failure of the bootstrap
+     * @param dependencyFutures the futures of all dependencies
+     * @param tasks             the tasks bootstrapping the dependencies
+     */
+    protected void failFast(
+            CompletableFuture<List<Path>> completion,
+            Exception failure,
+            Map<String, CompletableFuture<List<Path>>> dependencyFutures,
+            List<Future<?>> tasks
+    ) {
+        tasks.forEach(task -> task.cancel(true));
+        dependencyFutures.forEach((notation, future) -> {
+            if (!future.isDone()) {
+                future.completeExceptionally(new IOException("Cancelled due to a previous error: " + notation));
+            }
+        });
+        completion.completeExceptionally(new IOException("An error occurred during bootstrapping.", failure));
+    }
+
+    /**
+     * Creates the executor service enforcing {@link BootstrapOptions#getDependencyTimeoutMillis()} and
+     * {@link BootstrapOptions#getBootstrapTimeoutMillis()}. Its single daemon thread is shut down after the bootstrap.
+     *
+     * @return the executor service
+     */
+    protected ScheduledExecutorService createDeadlineExecutorService() {
+        ScheduledThreadPoolExecutor executorService = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Amber bootstrap deadline watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executorService.setRemoveOnCancelPolicy(true);
+        return executorService;
+    }
+
+    /**
+     * Processes a single scheduled dependency (see {@link #processDependency(ScheduledDependency, BootstrapOptions)}) within
+     * {@link BootstrapOptions#getDependencyTimeoutMillis()}. Once the deadline is exceeded, the processing thread is interrupted, which
+     * cancels its in-flight download, and the timeout handler is called right away, as blocking reads of some transports can't be
+     * interrupted (they're bounded by {@link BootstrapOptions#getReadTimeoutMillis()} instead).
+     *
+     * @param scheduledDependency     the scheduled dependency to process
+     * @param options                 the bootstrap options to use
+     * @param deadlineExecutorService the executor service enforcing deadlines, or null if there are none
+     * @param timeoutHandler          the handler called from the deadline thread once the deadline is exceeded
+     *
+     * @return a list of paths to the downloaded (or already existing) dependency in all library directories
+     *
+     * @throws IOException if an I/O error occurs during processing or the deadline was exceeded
+     */
+    protected List<Path> processDependencyWithDeadline(
+            ScheduledDependency scheduledDependency,
+            BootstrapOptions options,
+            ScheduledExecutorService deadlineExecutorService,
+            Consumer<IOException> timeoutHandler
+    ) throws IOException {
+        long timeoutMillis = options.getDependencyTimeoutMillis();
+        if (timeoutMillis <= 0 || deadlineExecutorService == null) {
+            return processDependency(scheduledDependency, options);
+        }
+
+        Thread thread = Thread.currentThread();
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        IOException timeoutException = new IOException(String.format("Processing of %s did not complete within %d ms", scheduledDependency.getDependency(), timeoutMillis));
+        ScheduledFuture<?> watchdog = deadlineExecutorService.schedule(() -> {
+            // Synchronized, so the thread is never interrupted once it moved on to another task
+            synchronized (finished) {
+                if (finished.get()) {
+                    return;
+                }
+                timedOut.set(true);
+                thread.interrupt();
+            }
+            timeoutHandler.accept(timeoutException);
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            List<Path> dependencyPaths = processDependency(scheduledDependency, options);
+            if (timedOut.get()) {
+                throw timeoutException; // Possibly cut short by the interrupt
+            }
+            return dependencyPaths;
+        } catch (IOException exception) {
+            if (timedOut.get()) {
+                throw new IOException(timeoutException.getMessage(), exception);
+            }
+            throw exception;
+        } finally {
+            synchronized (finished) {
+                finished.set(true);
+            }
+            watchdog.cancel(false);
+            if (timedOut.get()) {
+                Thread.interrupted(); // The thread may be reused by the executor service
+            }
+        }
+    }
+
+    /**
+     * Builds the library pack (see {@link LibraryPack}) of each library directory, unless it's already built from the installed jars, or
+     * deletes it if {@link BootstrapOptions#isLibraryPack()} is disabled.
+     *
+     * @param manifests      the Amber manifests
+     * @param installedPaths the installed jar paths
+     * @param options        the bootstrap options to use
+     */
+    protected void updateLibraryPacks(List<AmberManifest> manifests, Set<Path> installedPaths, BootstrapOptions options) {
+        for (Map.Entry<Path, List<Path>> entry : getInstalledPathsByStateDirectory(manifests, installedPaths, options).entrySet()) {
+            Path stateDirectory = entry.getKey();
+            try {
+                if (!options.isLibraryPack()) {
+                    LibraryPack.delete(stateDirectory);
+                    continue;
+                }
+
+                LibraryPack libraryPack = LibraryPack.load(stateDirectory);
+                if (libraryPack == null || !libraryPack.isBuiltFrom(entry.getValue())) {
+                    libraryPack = LibraryPack.build(stateDirectory, entry.getValue());
+                    logger.debug(String.format("Built library pack %s from %d jars", libraryPack.getPath(), entry.getValue().size()));
+                }
+            } catch (IOException exception) {
+                logger.error("Failed to update library pack in " + stateDirectory, exception);
+            }
+        }
+    }
+
+    /**
+     * Updates the jar index of each library directory with the installed jars, so {@link AmberClassLoader} doesn't have to scan them.
+     * Only jars that were installed or changed since the last bootstrap are scanned. The library pack is indexed as well, if there's any.
+     *
+     * @param manifests      the Amber manifests
+     * @param installedPaths the installed jar paths
+     * @param options        the bootstrap options to use
+     */
+    protected void updateJarIndexes(List<AmberManifest> manifests, Set<Path> installedPaths, BootstrapOptions options) {
+        for (Map.Entry<Path, List<Path>> entry : getInstalledPathsByStateDirectory(manifests, installedPaths, options).entrySet()) {
+            Path stateDirectory = entry.getKey();
+            Path libraryPackPath = stateDirectory.resolve(LibraryPack.FILE_NAME);
+            if (options.isLibraryPack() && Files.exists(libraryPackPath)) {
+                entry.getValue().add(libraryPackPath);
+            }
+            JarIndex jarIndex = JarIndex.load(stateDirectory);
+            jarIndex.retain(entry.getValue());
+            for (Path jarPath : entry.getValue()) {
+                try {
+                    jarIndex.getDirectories(jarPath);
+                } catch (IOException exception) {
+                    logger.error("Failed to index jar " + jarPath, exception);
+                }
+            }
+
+            try {
+                jarIndex.save(stateDirectory);
+            } catch (IOException exception) {
+                logger.error("Failed to save jar index into " + stateDirectory, exception);
+            }
+        }
+    }
+
+    /**
+     * Groups the installed jar paths by the state directories of their manifests.
+     *
+     * @param manifests      the Amber manifests
+     * @param installedPaths the installed jar paths
+     * @param options        the bootstrap options to use
+     *
+     * @return the installed jar paths, keyed by the state directory
+     */
+    protected Map<Path, List<Path>> getInstalledPathsByStateDirectory(List<AmberManifest> manifests, Set<Path> installedPaths, BootstrapOptions options) {
+        Map<Path, List<Path>> jarPathsByStateDirectory = new LinkedHashMap<>();
+        for (AmberManifest manifest : manifests) {
+            List<Path> jarPaths = jarPathsByStateDirectory.computeIfAbsent(options.getPreferredStateDirectory(manifest), key -> new ArrayList<>());
+            for (Dependency dependency : manifest.getDependencies()) {
+                Path jarPath = options.getPrefferedLibraryDirectory(manifest).resolve(dependency.getFileName());
+                if (installedPaths.contains(jarPath)) {
+                    jarPaths.add(jarPath);
+                }
+            }
+        }
+        return jarPathsByStateDirectory;
+    }
+
+    /**
+     * Orders the installed jar paths as the manifests and their dependencies were declared, regardless of which download finished first.
+     *
+     * @param manifests      the Amber manifests
+     * @param installedPaths the installed jar paths
+     * @param options        the bootstrap options to use
+     *
+     * @return the ordered installed jar paths
+     */
+    protected List<Path> getOrderedDependencyPaths(List<AmberManifest> manifests, Set<Path> installedPaths, BootstrapOptions options) {
+        Set<Path> dependencyPaths = new LinkedHashSet<>();
+        for (AmberManifest manifest : manifests) {
+            for (Dependency dependency : manifest.getDependencies()) {
+                Path jarPath = options.getPrefferedLibraryDirectory(manifest).resolve(dependency.getFileName());
+                if (installedPaths.contains(jarPath)) {
+                    dependencyPaths.add(jarPath);
+                }
+            }
+        }
+        return new ArrayList<>(dependencyPaths);
+    }
+
+    /**
+     * Creates the executor service running dependency downloads as per {@link BootstrapOptions#getExecutorStrategy()}. Used only if
+     * {@link BootstrapOptions#getExecutorService()} is not set; the created executor service is shut down after the bootstrap.
+     *
+     * @param options the bootstrap options to use
+     *
+     * @return the executor service
+     */
+    protected ExecutorService createExecutorService(BootstrapOptions options) {
+        if (options.getExecutorStrategy() == ExecutorStrategy.VIRTUAL_THREADS) {
+            if (VirtualThreadExecutors.isSupported()) {
+                logger.debug("Downloading dependencies using virtual threads.");
+                return VirtualThreadExecutors.create();
+            }
+            logger.debug("Virtual threads are not supported by this JVM, falling back to a fixed thread pool.");
+        }
+        return Executors.newFixedThreadPool(options.getDownloaderThreadCount());
+    }
+
+    /**
+     * Creates the coordinator of the downloads of a bootstrap, along with the host concurrency limits and the hedging executor service
+     * as per the specified options. Uses the current repository statistics.
+     *
+     * @param options the bootstrap options to use
+     *
+     * @return the download coordinator
+     */
+    protected DownloadCoordinator createDownloadCoordinator(BootstrapOptions options) {
+        HostConcurrencyLimiter hostConcurrencyLimiter = options.isAdaptiveHostConcurrency()
+                ? new HostConcurrencyLimiter(options.getInitialHostConcurrency(), options.getMaxHostConcurrency())
+                : null;
+        ExecutorService hedgingExecutorService = options.isHedgeRepositories() ? createHedgingExecutorService(options) : null;
+        return new DownloadCoordinator(downloaders, logger, options, repositoryStatistics, hostConcurrencyLimiter, hedgingExecutorService,
+                this::getDependencyReport);
+    }
+
+    /**
+     * Creates the executor service running hedged download attempts. Uses virtual threads if
+     * {@link BootstrapOptions#getExecutorStrategy()} requests them and they are supported, otherwise a cached thread pool.
+     *
+     * @param options the bootstrap options to use
+     *
+     * @return the executor service
+     */
+    protected ExecutorService createHedgingExecutorService(BootstrapOptions options) {
+        if (options.getExecutorStrategy() == ExecutorStrategy.VIRTUAL_THREADS && VirtualThreadExecutors.isSupported()) {
+            return VirtualThreadExecutors.create();
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Merges dependencies of all specified manifests by their notation, so each unique dependency is processed only once. If the same
+     * coordinates are declared with different pinned checksums or routes, the first pinned declaration is used and the conflict is logged,
+     * see {@link #mergeDependency(ScheduledDependency, Dependency, AmberManifest)}.
+     *
+     * @param manifests the Amber manifests to schedule dependencies from
+     *
+     * @return the scheduled dependencies, in the order they were first declared
+     */
+    protected Collection<ScheduledDependency> scheduleDependencies(List<AmberManifest> manifests) {
+        Map<String, ScheduledDependency> scheduledDependencies = new LinkedHashMap<>();
+        for (AmberManifest manifest : manifests) {
+            for (Dependency dependency : manifest.getDependencies()) {
+                ScheduledDependency scheduledDependency = scheduledDependencies.get(dependency.getNotation());
+                if (scheduledDependency == null) {
+                    scheduledDependency = new ScheduledDependency(dependency);
+                } else if (!scheduledDependency.getDependency().equals(dependency)) {
+                    scheduledDependency = mergeDependency(scheduledDependency, dependency, manifest);
+                }
+                scheduledDependency.addManifest(manifest);
+                // Replacing a merged dependency keeps its position
+                scheduledDependencies.put(dependency.getNotation(), scheduledDependency);
+            }
+        }
+        return scheduledDependencies.values();
+    }
+
+    /**
+     * Merges a declaration of already scheduled coordinates that differs in its pinned checksum or route. A pinned checksum is never
+     * dropped in favour of a declaration without one; if both declarations are pinned to different checksums, the jar can't match both of
+     * them, so the first pin is kept and the conflict is logged as an error. Differing routes are only hints, the first one is kept.
+     *
+     * @param scheduledDependency the dependency scheduled by previous declarations
+     * @param dependency          the differing declaration
+     * @param manifest            the manifest of the differing declaration
+     *
+     * @return the scheduled dependency to use, with the manifests of the previous declarations
+     */
+    protected ScheduledDependency mergeDependency(ScheduledDependency scheduledDependency, Dependency dependency, AmberManifest manifest) {
+        Dependency scheduled = scheduledDependency.getDependency();
+        Checksum scheduledChecksum = scheduled.getPinnedChecksum();
+        Checksum pinnedChecksum = dependency.getPinnedChecksum();
+
+        if (scheduledChecksum == null && pinnedChecksum != null) {
+            logger.debug(String.format("Dependency %s is pinned to %s by the manifest of %s, validating all its declarations against it",
+                    dependency, pinnedChecksum, manifest.getDirectory()));
+            ScheduledDependency pinnedDependency = new ScheduledDependency(dependency);
+            scheduledDependency.getManifests().forEach(pinnedDependency::addManifest);
+            return pinnedDependency;
+        }
+
+        if (pinnedChecksum != null && !isSameChecksum(scheduledChecksum, pinnedChecksum)) {
+            logger.error(String.format("Dependency %s is pinned to conflicting checksums %s and %s (by the manifest of %s), validating it against %s",
+                    dependency, scheduledChecksum, pinnedChecksum, manifest.getDirectory(), scheduledChecksum), null);
+        } else if (dependency.getRoute() != null && !dependency.getRoute().equals(scheduled.getRoute())) {
+            logger.debug(String.format("Dependency %s is routed differently by the manifest of %s, using route %s",
+                    dependency, manifest.getDirectory(), scheduled.getRoute()));
+        }
+        return scheduledDependency;
+    }
+
+    /**
+     * Checks whether the specified pinned checksums are the same, ignoring the case of their values.
+     *
+     * @param first  the first checksum
+     * @param second the second checksum
+     *
+     * @return true if both checksums are of the same type and value
+     */
+    protected static boolean isSameChecksum(Checksum first, Checksum second) {
+        return first.getType() == second.getType() && first.getValue().trim().equalsIgnoreCase(second.getValue().trim());
+    }
+
+    /**
+     * Processes a single scheduled dependency. Checks which library directories already contain the dependency, downloads
+     * it once if any of them is missing it and installs it into all of them.
+     *
+     * @param scheduledDependency the scheduled dependency to process
+     * @param options             the bootstrap options to use
+     *
+     * @return a list of paths to the downloaded (or already existing) dependency in all library directories
+     *
+     * @throws IOException if an I/O error occurs during processing
+     */
+    protected List<Path> processDependency(ScheduledDependency scheduledDependency, BootstrapOptions options) throws IOException {
+        long startTime = System.nanoTime();
+        Dependency dependency = scheduledDependency.getDependency();
+        DependencyReport report = getDependencyReport(dependency);
+        List<Path> dependencyPaths = new ArrayList<>();
+        Map<Path, AmberManifest> missingJarPaths = new LinkedHashMap<>();
+
+        for (AmberManifest manifest : scheduledDependency.getManifests()) {
+            Path jarPath = options.getPrefferedLibraryDirectory(manifest).resolve(dependency.getFileName());
+
+            if (dependencyPaths.contains(jarPath) || missingJarPaths.containsKey(jarPath)) {
+                continue; // Library directory shared with another manifest
+            }
+
+            if (isDependencyDownloaded(dependency, manifest, options) && (installedJarVerifier == null || verifyInstalledDependency(scheduledDependency, jarPath, options))) {
+                logger.debug("Dependency exists: " + dependency);
+                dependencyPaths.add(jarPath);
+                options.invokeProgressHintCallback(new ProgressHintContext(dependency, manifest, ProgressHintContext.Type.EXISTING), logger);
+            } else {
+                missingJarPaths.put(jarPath, manifest);
+            }
+        }
+
+        if (missingJarPaths.isEmpty()) {
+            report.recordOutcome(DependencyReport.Outcome.EXISTING, null);
+            return dependencyPaths;
+        }
+
+        if (artifactCache != null) {
+            Path cachedJarPath = artifactCache.get(dependency);
+            if (cachedJarPath != null) {
+                long installStartTime = System.nanoTime();
+                installCachedDependency(cachedJarPath, new ArrayList<>(missingJarPaths.keySet()));
+                report.recordPhase(DependencyReport.Phase.MOVE, System.nanoTime() - installStartTime);
+                report.recordOutcome(DependencyReport.Outcome.CACHED, null);
+                recordVerifiedDependency(missingJarPaths.keySet(), new Checksum(ChecksumType.SHA256, artifactCache.getHash(cachedJarPath)));
+                logger.info(String.format("Installed dependency %s from shared cache to %s (took %d ms)", dependency, missingJarPaths.keySet(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+                dependencyPaths.addAll(missingJarPaths.keySet());
+                downloadedSomething = true;
+
+                missingJarPaths.values().forEach(manifest -> {
+                    options.invokeProgressHintCallback(new ProgressHintContext(dependency, manifest, ProgressHintContext.Type.CACHED), logger);
+                });
+
+                return dependencyPaths;
+            }
+        }
+
+        Path sharedTempJarPath = getTempJarPath(dependency, options);
+        Files.createDirectories(sharedTempJarPath.getParent());
+        // The temporary jar path is shared by all processes, so it's only used (and resumed) while locked
+        FileLock tempJarLock = PartialDownload.tryLock(sharedTempJarPath);
+        Path tempJarPath = tempJarLock != null ? sharedTempJarPath : getPrivateTempJarPath(sharedTempJarPath);
+        try {
+            missingJarPaths.values().forEach(manifest -> {
+                options.invokeProgressHintCallback(new ProgressHintContext(dependency, manifest, ProgressHintContext.Type.START_DOWNLOAD), logger);
+            });
+
+            DownloadAttempt download = downloadDependency(dependency, scheduledDependency.getRepositories(), tempJarPath, options);
+            if (download == null) {
+                report.recordOutcome(DependencyReport.Outcome.MISSING, null);
+                return dependencyPaths;
+            }
+
+            long installStartTime = System.nanoTime();
+            // Only artifacts with validated checksums may be shared with other applications
+            if (artifactCache != null && artifactCache.isCacheable(dependency)
+                    && options.isValidateChecksums() && download.getChecksumResult() == ChecksumResult.MATCH) {
+                String sha256 = download.getResult().getChecksums() != null ? download.getResult().getChecksums().get(ChecksumType.SHA256) : null;
+                Path cachedJarPath = artifactCache.put(dependency, download.getJarPath(), sha256);
+                installCachedDependency(cachedJarPath, new ArrayList<>(missingJarPaths.keySet()));
+            } else {
+                installDependency(download.getJarPath(), new ArrayList<>(missingJarPaths.keySet()));
+            }
+            report.recordPhase(DependencyReport.Phase.MOVE, System.nanoTime() - installStartTime);
+            report.recordOutcome(DependencyReport.Outcome.DOWNLOADED, download.getRepository().getUrl());
+
+            if (options.isValidateChecksums() && download.getChecksumResult() == ChecksumResult.MATCH) {
+                recordVerifiedDependency(missingJarPaths.keySet(), getVerifiedChecksum(dependency, download.getResult()));
+            }
+            logger.info(String.format("Downloaded dependency %s to %s (took %d ms)", dependency, missingJarPaths.keySet(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+            dependencyPaths.addAll(missingJarPaths.keySet());
+            downloadedSomething = true;
+
+            missingJarPaths.values().forEach(manifest -> {
+                options.invokeProgressHintCallback(new ProgressHintContext(dependency, manifest, ProgressHintContext.Type.FINISH_DOWNLOAD), logger);
+            });
+
+            return dependencyPaths;
+        } finally {
+            releaseTempJarPath(tempJarPath, tempJarLock);
+        }
+    }
+
+    /**
+     * Resolves a temporary path private to this download, used when the shared temporary jar path is locked by another process or
+     * download. Private downloads are never resumed.
+     *
+     * @param tempJarPath the shared temporary jar path of the dependency
+     *
+     * @return the private temporary jar path
+     */
+    protected Path getPrivateTempJarPath(Path tempJarPath) {
+        return tempJarPath.resolveSibling(tempJarPath.getFileName() + "." + UUID.randomUUID());
+    }
+
+    /**
+     * Releases the temporary jar path after the download: the lock of the shared path is released, keeping any partial download for the
+     * next bootstrap, while anything left in a private path is deleted.
+     *
+     * @param tempJarPath the temporary jar path used by the download
+     * @param lock        the lock of the shared temporary jar path, or null if the path is private
+     */
+    protected void releaseTempJarPath(Path tempJarPath, FileLock lock) {
+        try {
+            if (lock != null) {
+                lock.channel().close();
+                return;
+            }
+            PartialDownload.delete(tempJarPath);
+            Files.deleteIfExists(tempJarPath);
+        } catch (IOException exception) {
+            logger.error("Failed to release temporary download " + tempJarPath, exception);
+        }
+    }
+
+    /**
+     * Resolves the temporary path the specified dependency is downloaded to. The path is deterministic, so an interrupted download may be
+     * resumed by the next bootstrap, and shared by all processes, so it may only be used while locked (see
+     * {@link PartialDownload#tryLock(Path)}).
+     *
+     * @param dependency the dependency to download
+     * @param options    the bootstrap options to use
+     *
+     * @return the temporary jar path
+     */
+    protected Path getTempJarPath(Dependency dependency, BootstrapOptions options) {
+        return options.getTempDirectory()
+                .resolve(TEMP_DIRECTORY_NAME)
+                .resolve(dependency.getGroupId())
+                .resolve(dependency.getFileName() + ".part");
+    }
+
+    /**
+     * Downloads the specified dependency into the temporary jar path, trying all specified repositories in order, and validates
+     * its checksum as per the specified options. Repositories may be reordered by their statistics and downloads may be hedged
+     * across them, as per the specified options. The repository of the dependency's route is always tried first.
+     *
+     * @param dependency   the dependency to download
+     * @param repositories the repositories to download from, in order
+     * @param tempJarPath  the temporary path to download the jar to
+     * @param options      the bootstrap options to use
+     *
+     * @return the download attempt that was validated, with its checksum result; its jar path is the temporary jar path unless a hedged
+     * download won. Null if the dependency could not be found in any repository and {@link BootstrapOptions#isFailOnMissingDependency()}
+     * is false
+     *
+     * @throws IOException if the dependency could not be downloaded or validated and the options require it to fail
+     */
+    protected DownloadAttempt downloadDependency(Dependency dependency, List<Repository> repositories, Path tempJarPath, BootstrapOptions options) throws IOException {
+        Map<Repository, DownloadResult> dependencyDownloadResults = new HashMap<>();
+        DependencyReport report = getDependencyReport(dependency);
+        StringDownloadResult checksumDownloadResult = null;
+        ChecksumResult checksumResult = ChecksumResult.NOT_FOUND;
+
+        DownloadAttempt download = null;
+
+        logger.debug(String.format("Downloading dependency %s from %d repositories...", dependency, repositories.size()));
+
+        List<Repository> orderedRepositories = options.isAdaptiveRepositoryOrder() ? repositoryStatistics.order(repositories) : repositories;
+        orderedRepositories = getRoutedRepositories(dependency, orderedRepositories);
+        int repositoryIndex = 0;
+
+        repository_loop:
+        while (repositoryIndex < orderedRepositories.size()) {
+            List<Repository> remainingRepositories = orderedRepositories.subList(repositoryIndex, orderedRepositories.size());
+            DownloadAttempt attempt = downloadCoordinator.download(dependency, remainingRepositories, tempJarPath, dependencyDownloadResults);
+
+            if (attempt == null) {
+                break; // No remaining repository has the dependency
+            }
+
+            if (download != null && !download.getJarPath().equals(attempt.getJarPath())) {
+                downloadCoordinator.deleteHedgedJar(download.getJarPath(), tempJarPath);
+            }
+
+            Repository repository = attempt.getRepository();
+            DependencyDownloader downloader = downloaders.get(repository.getType());
+            DownloadResult result = attempt.getResult();
+            Path jarPath = attempt.getJarPath();
+            download = attempt;
+            repositoryIndex = orderedRepositories.indexOf(repository) + 1;
+
+            if (options.isValidateChecksums()) {
+                Checksum pinnedChecksum = dependency.getPinnedChecksum();
+                if (pinnedChecksum != null) {
+                    logger.debug("Validating pinned checksum for " + dependency);
+                    long hashingStartTime = System.nanoTime();
+                    checksumResult = checksumValidator.validate(pinnedChecksum.getType(), pinnedChecksum.getValue(), jarPath, result.getChecksums());
+                    report.recordPhase(DependencyReport.Phase.HASHING, System.nanoTime() - hashingStartTime);
+                    logger.debug("Pinned checksum " + pinnedChecksum.getType() + " validation result: " + checksumResult);
+
+                    if (checksumResult != ChecksumResult.UNSUPPORTED) {
+                        break; // No need to download checksums from the repository
+                    }
+
+                    logger.error("Unsupported algorithm for pinned checksum type: " + pinnedChecksum.getType() + ", falling back to repository checksums", null);
+                }
+
+                logger.debug("Validating checksums for " + dependency);
+                for (ChecksumType checksumType : ChecksumType.values()) {
+                    StringDownloadResult tempResult = downloadCoordinator.downloadChecksum(downloader, dependency, repository, checksumType);
+
+                    if (tempResult.isSuccess()) {
+                        long hashingStartTime = System.nanoTime();
+                        checksumResult = checksumValidator.validate(checksumType, tempResult.getContent(), jarPath, result.getChecksums());
+                        report.recordPhase(DependencyReport.Phase.HASHING, System.nanoTime() - hashingStartTime);
+                        logger.debug("Checksum " + checksumType + " validation result: " + checksumResult);
+
+                        if (checksumResult == ChecksumResult.UNSUPPORTED) {
+                            logger.error("Unsupported algorithm for checksum type: " + checksumType, null);
+                            // Continue on unsupported checksum type
+                        } else {
+                            checksumDownloadResult = tempResult;
+                            break repository_loop; // Break on first (in)valid checksum that is supported
+                        }
+                    } else {
+                        logger.debug("Checksum download failed for type " + checksumType + ": " + tempResult.getErrorMessage());
+                        // Assign the last error if no checksum was found yet
+                        checksumDownloadResult = tempResult;
+                    }
+                }
+            } else {
+                logger.debug("Skipping checksum validation for " + dependency + " as per configuration.");
+                checksumResult = ChecksumResult.MATCH; // Skip checksum validation
+                break;
+            }
+        }
+
+        if (dependencyDownloadResults.values().stream().noneMatch(DownloadResult::isSuccess)) {
+            logger.error(String.format("Could not find %s in repositories: ", dependency), null);
+            repositories.forEach(repository -> {
+                String errorMessage = Optional.ofNullable(dependencyDownloadResults.get(repository))
+                        .map(DownloadResult::getErrorMessage)
+                        .orElse("N/A");
+                logger.error(String.format(" - %s: %s", repository.getUrl(), errorMessage), null);
+            });
+
+            if (options.isFailOnMissingDependency()) {
+                throw new IOException("Failed to download dependency: " + dependency);
+            }
+
+            return null;
+        }
+
+        if (checksumResult != ChecksumResult.MATCH) {
+            if (checksumDownloadResult != null) {
+                logger.error(String.format("Checksum validation failed for %s: %s with error %s", dependency, checksumResult, checksumDownloadResult.getErrorMessage()), null);
+            } else {
+                logger.error(String.format("Checksum validation failed for %s: %s", dependency, checksumResult), null);
+            }
+
+            if (options.isFailOnInvalidChecksum()) {
+                // The downloaded jar is invalid, don't resume from it next time
+                Files.deleteIfExists(download.getJarPath());
+                throw new IOException("Invalid checksum for dependency: " + dependency);
+            }
+        }
+
+        download.setChecksumResult(checksumResult);
+        return download;
+    }
+
+    /**
+     * Moves the repository the specified dependency was resolved from at build time (see {@link Dependency#getRoute()}) to the front of
+     * the specified repositories, so the other repositories are tried only if the routed one fails.
+     *
+     * @param dependency   the dependency to download
+     * @param repositories the repositories to download from, in order
+     *
+     * @return the repositories with the routed one first, or the specified repositories if the dependency has no route among them
+     */
+    protected List<Repository> getRoutedRepositories(Dependency dependency, List<Repository> repositories) {
+        DependencyRoute route = dependency.getRoute();
+        if (route == null || repositories.isEmpty() || route.isRoutedTo(repositories.get(0)) || !repositories.contains(route.getRepository())) {
+            return repositories;
+        }
+
+        List<Repository> routedRepositories = new ArrayList<>(repositories.size());
+        routedRepositories.add(route.getRepository());
+        for (Repository repository : repositories) {
+            if (!route.isRoutedTo(repository)) {
+                routedRepositories.add(repository);
+            }
+        }
+        return routedRepositories;
+    }
+
+    /**
+     * Installs the downloaded jar into all specified jar paths. The jar is copied into all but the last path, where it is moved to. Each
+     * copy and move is recorded as {@link FileMoveEvent}.
+     *
+     * @param tempJarPath the temporary path of the downloaded jar
+     * @param jarPaths    the final jar paths in library directories
+     *
+     * @throws IOException if an I/O error occurs while copying or moving the jar
+     */
+    protected void installDependency(Path tempJarPath, List<Path> jarPaths) throws IOException {
+        for (int i = 0; i < jarPaths.size(); i++) {
+            Path jarPath = jarPaths.get(i);
+            Files.createDirectories(jarPath.getParent());
+
+            FileMoveEvent event = new FileMoveEvent();
+            event.begin();
+            boolean copied = i < jarPaths.size() - 1;
+            if (copied) {
+                logger.debug(String.format("Copying downloaded dependency at %s to %s", tempJarPath, jarPath));
+                Files.copy(tempJarPath, jarPath, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                logger.debug(String.format("Moving downloaded dependency at %s to %s", tempJarPath, jarPath));
+                Files.move(tempJarPath, jarPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            commitFileMoveEvent(event, tempJarPath, jarPath, copied ? "copy" : "move");
+        }
+    }
+
+    /**
+     * Installs the artifact from the shared cache into all specified jar paths, by hard links if possible. Each link and copy is recorded as
+     * {@link FileMoveEvent}.
+     *
+     * @param cachedJarPath the path of the artifact in the shared cache
+     * @param jarPaths      the final jar paths in library directories
+     *
+     * @throws IOException if an I/O error occurs while linking or copying the artifact
+     */
+    protected void installCachedDependency(Path cachedJarPath, List<Path> jarPaths) throws IOException {
+        for (Path jarPath : jarPaths) {
+            FileMoveEvent event = new FileMoveEvent();
+            event.begin();
+            boolean linked = artifactCache.install(cachedJarPath, jarPath);
+            commitFileMoveEvent(event, cachedJarPath, jarPath, linked ? "link" : "copy");
+            logger.debug(String.format("%s cached dependency at %s to %s", linked ? "Linked" : "Copied", cachedJarPath, jarPath));
+        }
+    }
+
+    /**
+     * Fills in and commits the event of an installed jar, if it's enabled.
+     *
+     * @param event     the begun event
+     * @param source    the installed jar
+     * @param target    the final jar path
+     * @param operation <code>move</code>, <code>copy</code> or <code>link</code>
+     */
+    protected void commitFileMoveEvent(FileMoveEvent event, Path source, Path target, String operation) {
+        if (event.shouldCommit()) {
+            event.setSource(source.toString());
+            event.setTarget(target.toString());
+            event.setOperation(operation);
+            event.commit();
+        }
+    }
+
+    /**
+     * Verifies the integrity of an installed dependency. Jars that did not change since their last verification are trusted. Other jars are
+     * hashed and compared with the dependency's pinned checksum, the checksum recorded during their last verification, or the checksum
+     * in the dependency's repositories, in this order. If no checksum can be found, the jar is trusted.
+     *
+     * @param scheduledDependency the scheduled dependency
+     * @param jarPath             the installed jar
+     * @param options             the bootstrap options to use
+     *
+     * @return true if the jar is intact, false if it is corrupted or unreadable and should be downloaded again
+     *
+     * @throws IOException if the bootstrap was interrupted while downloading checksums
+     */
+    protected boolean verifyInstalledDependency(ScheduledDependency scheduledDependency, Path jarPath, BootstrapOptions options) throws IOException {
+        if (installedJarVerifier.isVerified(jarPath)) {
+            return true;
+        }
+
+        DependencyReport report = getDependencyReport(scheduledDependency.getDependency());
+        long startTime = System.nanoTime();
+        long checksumFetchNanos = report.getPhaseNanos(DependencyReport.Phase.CHECKSUM_FETCH);
+        try {
+            return verifyInstalledJar(scheduledDependency, jarPath, options);
+        } catch (UncheckedIOException exception) {
+            logger.info(String.format("Installed dependency %s at %s is unreadable (%s), downloading it again", scheduledDependency.getDependency(), jarPath, exception.getCause()));
+            return false;
+        } finally {
+            // Downloads of checksums are recorded on their own
+            long fetchedNanos = report.getPhaseNanos(DependencyReport.Phase.CHECKSUM_FETCH) - checksumFetchNanos;
+            report.recordPhase(DependencyReport.Phase.HASHING, System.nanoTime() - startTime - fetchedNanos);
+        }
+    }
+
+    /**
+     * Hashes an installed jar that was not verified yet or changed since, and compares it with the expected checksum. Checksums are
+     * downloaded by {@link DownloadCoordinator#downloadChecksum(DependencyDownloader, Dependency, Repository, ChecksumType)}, and a
+     * repository that can't be reached even after retrying is skipped.
+     *
+     * @param scheduledDependency the scheduled dependency
+     * @param jarPath             the installed jar
+     * @param options             the bootstrap options to use
+     *
+     * @return true if the jar is intact or there's no checksum to compare with, false if it is corrupted
+     *
+     * @throws IOException if the bootstrap was interrupted while downloading checksums
+     * @see #verifyInstalledDependency(ScheduledDependency, Path, BootstrapOptions)
+     */
+    protected boolean verifyInstalledJar(ScheduledDependency scheduledDependency, Path jarPath, BootstrapOptions options) throws IOException {
+        Dependency dependency = scheduledDependency.getDependency();
+        Checksum expectedChecksum = dependency.getPinnedChecksum() != null ? dependency.getPinnedChecksum() : installedJarVerifier.getRecordedChecksum(jarPath);
+        if (expectedChecksum != null) {
+            String checksum = calculateChecksum(jarPath, expectedChecksum.getType());
+            if (checksum != null) {
+                return compareChecksum(dependency, jarPath, expectedChecksum, checksum);
+            }
+        }
+
+        logger.debug("Verifying installed dependency " + dependency + " against repository checksums");
+        Map<ChecksumType, String> calculatedChecksums = new EnumMap<>(ChecksumType.class);
+        for (Repository repository : scheduledDependency.getRepositories()) {
+            DependencyDownloader downloader = downloaders.get(repository.getType());
+            if (downloader == null) {
+                continue;
+            }
+
+            for (ChecksumType checksumType : ChecksumType.values()) {
+                StringDownloadResult checksumDownloadResult;
+                try {
+                    checksumDownloadResult = downloadCoordinator.downloadChecksum(downloader, dependency, repository, checksumType);
+                } catch (IOException exception) {
+                    if (exception instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) {
+                        throw exception;
+                    }
+                    logger.debug(String.format("Failed to download %s checksum of installed dependency %s from %s (%s), skipping the repository",
+                            checksumType, dependency, repository.getUrl(), exception));
+                    break; // Next repository
+                }
+                if (downloadCoordinator.isRetryable(checksumDownloadResult)) {
+                    logger.debug(String.format("Failed to download %s checksum of installed dependency %s from %s (%s), skipping the repository",
+                            checksumType, dependency, repository.getUrl(), checksumDownloadResult.getErrorMessage()));
+                    break; // Next repository
+                }
+                if (!checksumDownloadResult.isSuccess()) {
+                    continue;
+                }
+
+                String checksum = calculatedChecksums.computeIfAbsent(checksumType, type -> calculateChecksum(jarPath, type));
+                if (checksum == null) {
+                    continue; // Unsupported algorithm
+                }
+
+                ChecksumResult checksumResult = checksumValidator.validate(checksumType, checksumDownloadResult.getContent(), jarPath, calculatedChecksums);
+                if (checksumResult == ChecksumResult.MATCH) {
+                    installedJarVerifier.record(jarPath, new Checksum(checksumType, checksum));
+                    return true;
+                } else if (checksumResult == ChecksumResult.MISMATCH) {
+                    logger.info(String.format("Installed dependency %s at %s is corrupted (%s mismatch), downloading it again", dependency, jarPath, checksumType));
+                    return false;
+                }
+            }
+        }
+
+        logger.debug("No checksum found to verify installed dependency " + dependency + ", trusting it.");
+        return true;
+    }
+
+    /**
+     * Compares the calculated checksum of an installed jar with the expected one and records the jar as verified if they match.
+     *
+     * @param dependency       the dependency of the jar
+     * @param jarPath          the installed jar
+     * @param expectedChecksum the expected checksum
+     * @param checksum         the calculated checksum of the same type
+     *
+     * @return true if the checksums match, false otherwise
+     *
+     * @throws IOException if an I/O error occurs while reading the jar's attributes
+     */
+    protected boolean compareChecksum(Dependency dependency, Path jarPath, Checksum expectedChecksum, String checksum) throws IOException {
+        if (!checksum.equalsIgnoreCase(expectedChecksum.getValue().trim())) {
+            logger.info(String.format("Installed dependency %s at %s is corrupted (%s mismatch), downloading it again", dependency, jarPath, expectedChecksum.getType()));
+            return false;
+        }
+
+        installedJarVerifier.record(jarPath, new Checksum(expectedChecksum.getType(), checksum));
+        return true;
+    }
+
+    /**
+     * Calculates the checksum of an installed jar using memory-mapped reads.
+     *
+     * @param jarPath      the installed jar
+     * @param checksumType the type of checksum to calculate
+     *
+     * @return the checksum, or null if the checksum type is not supported
+     *
+     * @throws UncheckedIOException if an I/O error occurs while reading the jar
+     */
+    protected String calculateChecksum(Path jarPath, ChecksumType checksumType) {
+        try {
+            return InstalledJarVerifier.calculateChecksum(jarPath, checksumType);
+        } catch (NoSuchAlgorithmException exception) {
+            return null;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Gets the checksum to remember for a downloaded and validated dependency: its pinned checksum type if it has one, otherwise
+     * SHA-256 or any other calculated checksum.
+     *
+     * @param dependency the downloaded dependency
+     * @param result     the result of the download
+     *
+     * @return the checksum, or null if no checksum was calculated while downloading
+     */
+    protected Checksum getVerifiedChecksum(Dependency dependency, DownloadResult result) {
+        Map<ChecksumType, String> checksums = result.getChecksums();
+        if (checksums == null || checksums.isEmpty()) {
+            return null;
+        }
+
+        ChecksumType preferredType = dependency.getPinnedChecksum() != null ? dependency.getPinnedChecksum().getType() : ChecksumType.SHA256;
+        if (checksums.containsKey(preferredType)) {
+            return new Checksum(preferredType, checksums.get(preferredType));
+        }
+        Map.Entry<ChecksumType, String> entry = checksums.entrySet().iterator().next();
+        return new Checksum(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Records freshly installed jars as verified, if {@link BootstrapOptions#isVerifyExisting()} is enabled.
+     *
+     * @param jarPaths the installed jars
+     * @param checksum the verified checksum of the jars, may be null
+     *
+     * @throws IOException if an I/O error occurs while reading the jars' attributes
+     */
+    protected void recordVerifiedDependency(Collection<Path> jarPaths, Checksum checksum) throws IOException {
+        if (installedJarVerifier == null || checksum == null) {
+            return;
+        }
+        for (Path jarPath : jarPaths) {
+            installedJarVerifier.record(jarPath, checksum);
+        }
     }
 
     /**
@@ -1,14 +1,58 @@
 package enterprises.iwakura.amber;
 
+import enterprises.iwakura.amber.impl.ClassLoadEvent;
+import enterprises.iwakura.amber.impl.JarFiles;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
 
 /**
  * Custom class loader for loading classes from specified dependencies and the caller's location. This class loader allows immediate
  * access to all downloaded/loaded dependencies without restarting the JVM in order to load Class-Path resources.
+ * <p>
+ * Jars are looked up using a {@link JarIndex}, persisted by {@link Amber} in the library directory, so classes and resources are searched
+ * only in jars containing their package (or directory) instead of probing every jar. Names that were not found in any jar are remembered
+ * until another jar is added.
+ * </p>
+ * <p>
+ * Optionally, jars are read using {@link MappedJarFile} instead of {@link JarFile}, which defines classes straight from the mapped jars
+ * and inflates them into pooled buffers, reducing allocations during class loading. Signed jars and jars that can't be mapped are still
+ * read using {@link JarFile}.
+ * </p>
  */
 public class AmberClassLoader extends URLClassLoader {
 
@@ -16,6 +60,46 @@ public class AmberClassLoader extends URLClassLoader {
         ClassLoader.registerAsParallelCapable();
     }
 
+    /**
+     * The order of the caller's location among the jars, after all dependencies.
+     */
+    protected static final int CALLER_ORDER = Integer.MAX_VALUE;
+
+    /**
+     * The dependencies of a background bootstrap that are not installed yet, in the order they were declared.
+     */
+    protected final List<PendingDependency> pendingDependencies = new CopyOnWriteArrayList<>();
+
+    /**
+     * The directories contained in the caller's location, i.e. the application's own packages.
+     */
+    protected volatile Set<String> callerDirectories = Collections.emptySet();
+
+    /**
+     * The URLs of all dependencies and the caller's location, in the order they were added.
+     */
+    protected final List<URL> urls = new CopyOnWriteArrayList<>();
+
+    /**
+     * The indexed jars, keyed by the directories they contain, see {@link JarIndex#getDirectory(String)}.
+     */
+    protected final Map<String, List<IndexedJarFile>> jarsByDirectory = new ConcurrentHashMap<>();
+
+    /**
+     * The loaded jar indexes, keyed by the library directory.
+     */
+    protected final Map<Path, JarIndex> jarIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * The class and resource names that were not found in any jar. Replaced whenever a jar is added.
+     */
+    protected volatile Set<String> missingNames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether jars are read using {@link MappedJarFile}.
+     */
+    protected final boolean mapJars;
+
     /**
      * Constructs a new AmberClassLoader with the specified dependencies, parent class loader, and caller class.
      *
@@ -24,34 +108,291 @@ public class AmberClassLoader extends URLClassLoader {
      * @param caller       the caller class whose code source location will be included
      */
     public AmberClassLoader(List<Path> dependencies, ClassLoader parent, Class<?> caller) {
-        super(constructUrls(dependencies, caller), parent);
+        this(dependencies, parent, caller, false);
     }
 
     /**
-     * Constructs an array of URLs from the given list of paths and the caller's location.
-     *
-     * @param pathList the list of paths to convert to URLs
-     * @param caller   the caller class whose code source location will be included
+     * Constructs a new AmberClassLoader with the specified dependencies, parent class loader, and caller class.
      *
-     * @return an array of URLs
+     * @param dependencies the list of dependency paths to include in the class loader
+     * @param parent       the parent class loader
+     * @param caller       the caller class whose code source location will be included
+     * @param mapJars      whether to read jars using {@link MappedJarFile}
      */
-    private static URL[] constructUrls(List<Path> pathList, Class<?> caller) {
-        URL[] urls = new URL[pathList.size() + 1];
-        for (int i = 0; i < pathList.size(); i++) {
-            Path path = pathList.get(i);
+    public AmberClassLoader(List<Path> dependencies, ClassLoader parent, Class<?> caller, boolean mapJars) {
+        super(new URL[0], parent);
+        this.mapJars = mapJars;
+        Map<String, LibraryPack> libraryPacks = findLibraryPacks(dependencies);
+        Set<LibraryPack> addedLibraryPacks = new HashSet<>();
+        for (int order = 0; order < dependencies.size(); order++) {
+            Path path = dependencies.get(order);
             // FIXME: In rare cases there can be null path. Find why
-            if (path != null) {
-                try {
-                    urls[i] = path.toUri().toURL();
-                } catch (MalformedURLException e) {
-                    throw new RuntimeException("Failed to convert path " + path + " into URL", e);
+            if (path == null) {
+                System.err.println("Null path passed into AmberClassLoader");
+                continue;
+            }
+
+            LibraryPack libraryPack = libraryPacks.get(path.toString());
+            if (libraryPack != null) {
+                // Packed jars are loaded from the pack, which takes the place of the first packed jar
+                urls.add(toUrl(path));
+                if (addedLibraryPacks.add(libraryPack)) {
+                    addLibraryPack(libraryPack, order);
                 }
             } else {
-                System.err.println("Null path passed into AmberClassLoader");
+                addDependency(path, order);
+            }
+        }
+        addCallerLocation(caller);
+    }
+
+    /**
+     * Constructs a new AmberClassLoader serving dependencies of the specified background bootstrap as soon as they are installed. Jars are
+     * searched in the order their dependencies were declared, regardless of the order they are installed in.
+     * <p>
+     * A lookup waits only for pending dependencies that may contain the class or resource and are declared before the jar containing it
+     * (if any). Which packages a pending dependency contains is looked up in the {@link JarIndex} persisted by previous bootstraps; if
+     * the dependency's jar was not indexed yet, it may contain any package, except for the packages of the caller's location, which are
+     * assumed to be the application's own. Lookups no pending dependency can satisfy fall through to the parent class loader right away.
+     * </p>
+     *
+     * @param bootstrap the bootstrap running in the background
+     * @param parent    the parent class loader
+     * @param caller    the caller class whose code source location will be included
+     */
+    public AmberClassLoader(AsyncBootstrap bootstrap, ClassLoader parent, Class<?> caller) {
+        this(bootstrap, parent, caller, false);
+    }
+
+    /**
+     * Constructs a new AmberClassLoader serving dependencies of the specified background bootstrap as soon as they are installed, see
+     * {@link #AmberClassLoader(AsyncBootstrap, ClassLoader, Class)}.
+     *
+     * @param bootstrap the bootstrap running in the background
+     * @param parent    the parent class loader
+     * @param caller    the caller class whose code source location will be included
+     * @param mapJars   whether to read jars using {@link MappedJarFile}
+     */
+    public AmberClassLoader(AsyncBootstrap bootstrap, ClassLoader parent, Class<?> caller, boolean mapJars) {
+        super(new URL[0], parent);
+        this.mapJars = mapJars;
+        addCallerLocation(caller);
+
+        int order = 0;
+        for (Map.Entry<String, CompletableFuture<List<Path>>> entry : bootstrap.getDependencyFutures().entrySet()) {
+            List<Path> jarPaths = bootstrap.getDependencyJarPaths().get(entry.getKey());
+            pendingDependencies.add(new PendingDependency(order++, entry.getKey(), entry.getValue(), getIndexedDirectories(jarPaths)));
+        }
+        // Registered only once all dependencies are pending, as completed futures run the action right away
+        for (PendingDependency dependency : new ArrayList<>(pendingDependencies)) {
+            dependency.future.whenComplete((paths, throwable) -> onDownloadCompleted(dependency, paths));
+        }
+    }
+
+    /**
+     * Gets the directories of the specified jars recorded in the jar indexes of their library directories.
+     *
+     * @param jarPaths the jar paths of a dependency, or null if unknown
+     *
+     * @return the recorded directories, or null if any of the jars was not indexed (or is a snapshot, which may change its content)
+     */
+    protected Set<String> getIndexedDirectories(List<Path> jarPaths) {
+        if (jarPaths == null || jarPaths.isEmpty()) {
+            return null;
+        }
+
+        Set<String> directories = new HashSet<>();
+        for (Path jarPath : jarPaths) {
+            if (jarPath.getFileName().toString().contains("-SNAPSHOT")) {
+                return null;
+            }
+            Set<String> indexedDirectories = jarIndexes.computeIfAbsent(jarPath.toAbsolutePath().getParent(),
+                    directory -> JarIndex.load(directory.resolve(BootstrapOptions.STATE_DIRECTORY_NAME))).getIndexedDirectories(jarPath);
+            if (indexedDirectories == null) {
+                return null;
+            }
+            directories.addAll(indexedDirectories);
+        }
+        return directories;
+    }
+
+    /**
+     * Adds the specified dependency. Jars are indexed using the jar index persisted in their library directory; other paths (and jars
+     * that could not be indexed) are searched by the {@link URLClassLoader} itself.
+     *
+     * @param path  the dependency path
+     * @param order the order of the dependency, see {@link IndexedJarFile#order}
+     */
+    protected void addDependency(Path path, int order) {
+        URL url = toUrl(path);
+        urls.add(url);
+
+        try {
+            Path libraryDirectory = path.toAbsolutePath().getParent();
+            JarIndex jarIndex = jarIndexes.computeIfAbsent(libraryDirectory,
+                    directory -> JarIndex.load(directory.resolve(BootstrapOptions.STATE_DIRECTORY_NAME)));
+            addIndexedJar(new IndexedJarFile(path, url, mapJars, order), jarIndex.getDirectories(path));
+            return;
+        } catch (IOException exception) {
+            // Not a jar (e.g. a directory) or unreadable, fall back to searching it by the URLClassLoader
+        }
+
+        addURL(url);
+        missingNames = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Finds up to date library packs (see {@link LibraryPack}) in library directories of the specified dependencies. A pack is used only if
+     * all of its packed jars are among the dependencies.
+     *
+     * @param dependencies the dependency paths
+     *
+     * @return the library packs, keyed by the paths of their packed jars
+     */
+    protected Map<String, LibraryPack> findLibraryPacks(List<Path> dependencies) {
+        Set<String> dependencyPaths = new HashSet<>();
+        Set<Path> libraryDirectories = new LinkedHashSet<>();
+        for (Path path : dependencies) {
+            if (path != null) {
+                dependencyPaths.add(path.toString());
+                libraryDirectories.add(path.toAbsolutePath().getParent());
+            }
+        }
+
+        Map<String, LibraryPack> libraryPacks = new HashMap<>();
+        for (Path libraryDirectory : libraryDirectories) {
+            LibraryPack libraryPack = LibraryPack.load(libraryDirectory.resolve(BootstrapOptions.STATE_DIRECTORY_NAME));
+            if (libraryPack == null || !libraryPack.isUpToDate()) {
+                continue;
+            }
+
+            List<String> packedPaths = new ArrayList<>();
+            for (LibraryPack.SourceJar jar : libraryPack.getJars()) {
+                if (jar.isPacked()) {
+                    packedPaths.add(jar.getPath());
+                }
+            }
+            if (dependencyPaths.containsAll(packedPaths)) {
+                for (String packedPath : packedPaths) {
+                    libraryPacks.put(packedPath, libraryPack);
+                }
+            }
+        }
+        return libraryPacks;
+    }
+
+    /**
+     * Adds the specified library pack, indexed using the jar index persisted in its library directory.
+     *
+     * @param libraryPack the library pack
+     * @param order       the order of the first packed jar, see {@link IndexedJarFile#order}
+     */
+    protected void addLibraryPack(LibraryPack libraryPack, int order) {
+        Path packPath = libraryPack.getPath();
+        try {
+            Path libraryDirectory = packPath.toAbsolutePath().getParent().getParent();
+            JarIndex jarIndex = jarIndexes.computeIfAbsent(libraryDirectory,
+                    directory -> JarIndex.load(directory.resolve(BootstrapOptions.STATE_DIRECTORY_NAME)));
+            addIndexedJar(new PackedJarFile(packPath, toUrl(packPath), mapJars, order, libraryPack), jarIndex.getDirectories(packPath));
+        } catch (IOException exception) {
+            // Fall back to loading the packed jars separately
+            for (LibraryPack.SourceJar jar : libraryPack.getJars()) {
+                if (jar.isPacked()) {
+                    addDependency(Paths.get(jar.getPath()), order);
+                }
             }
         }
-        urls[pathList.size()] = caller.getProtectionDomain().getCodeSource().getLocation();
-        return urls;
+    }
+
+    /**
+     * Adds the code source location of the specified caller, after all dependencies. The location is indexed if it's a jar, without
+     * persisting the index. The directories of the location (see {@link #callerDirectories}) are collected from directories as well.
+     *
+     * @param caller the caller class whose code source location will be included
+     */
+    protected void addCallerLocation(Class<?> caller) {
+        URL url = caller.getProtectionDomain().getCodeSource().getLocation();
+        urls.add(url);
+
+        if ("file".equals(url.getProtocol())) {
+            try {
+                Path path = Paths.get(url.toURI());
+                if (Files.isRegularFile(path)) {
+                    Set<String> directories = JarIndex.scan(path);
+                    callerDirectories = directories;
+                    addIndexedJar(new IndexedJarFile(path, url, mapJars, CALLER_ORDER), directories);
+                    return;
+                }
+                if (Files.isDirectory(path)) {
+                    callerDirectories = scanDirectory(path);
+                }
+            } catch (URISyntaxException | IllegalArgumentException | IOException exception) {
+                // Fall back to searching the location by the URLClassLoader
+            }
+        }
+
+        addURL(url);
+        missingNames = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Scans the specified directory of classes for its subdirectories, see {@link JarIndex#getDirectory(String)}.
+     *
+     * @param directory the directory
+     *
+     * @return the subdirectories, including the root (an empty string)
+     *
+     * @throws IOException if an I/O error occurs while walking the directory
+     */
+    protected static Set<String> scanDirectory(Path directory) throws IOException {
+        Set<String> directories = new HashSet<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.filter(Files::isDirectory).forEach(path -> {
+                String name = directory.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+                directories.add(name.isEmpty() ? "" : name + "/");
+            });
+        }
+        return directories;
+    }
+
+    /**
+     * Adds the specified jar into the lookup tables, keeping the jars of each directory sorted by their order.
+     *
+     * @param jar         the indexed jar
+     * @param directories the directories contained in the jar
+     */
+    protected void addIndexedJar(IndexedJarFile jar, Set<String> directories) {
+        for (String directory : directories) {
+            List<IndexedJarFile> jars = jarsByDirectory.computeIfAbsent(directory, key -> new CopyOnWriteArrayList<>());
+            synchronized (jars) {
+                int index = jars.size();
+                while (index > 0 && jars.get(index - 1).order > jar.order) {
+                    index--;
+                }
+                jars.add(index, jar);
+            }
+        }
+        missingNames = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Converts the specified path into URL.
+     *
+     * @param path the path to convert
+     *
+     * @return the URL
+     */
+    private static URL toUrl(Path path) {
+        try {
+            return path.toUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Failed to convert path " + path + " into URL", e);
+        }
+    }
+
+    @Override
+    public URL[] getURLs() {
+        return urls.toArray(new URL[0]);
     }
 
     @Override
@@ -63,9 +404,8 @@ public class AmberClassLoader extends URLClassLoader {
                 if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.")) {
                     clazz = getParent().loadClass(name);
                 } else {
-                    try {
-                        clazz = findClass(name); // try own URLs first
-                    } catch (ClassNotFoundException e) {
+                    clazz = findOwnClass(name); // try own URLs first
+                    if (clazz == null) {
                         clazz = getParent().loadClass(name); // fallback to parent
                     }
                 }
@@ -76,4 +416,736 @@ public class AmberClassLoader extends URLClassLoader {
             return clazz;
         }
     }
+
+    /**
+     * Finds the class in own URLs, waiting for pending dependencies of a background bootstrap that may contain it (see
+     * {@link #awaitOwningDependencies(String, boolean)}).
+     *
+     * @param name the binary name of the class
+     *
+     * @return the class, or null if none of the dependencies contains it
+     *
+     * @throws ClassNotFoundException if the current thread was interrupted while waiting for a download
+     */
+    protected Class<?> findOwnClass(String name) throws ClassNotFoundException {
+        try {
+            awaitOwningDependencies(name.replace('.', '/') + ".class", false);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new ClassNotFoundException("Interrupted while waiting for dependencies to load " + name, exception);
+        }
+
+        try {
+            return findClass(name);
+        } catch (ClassNotFoundException exception) {
+            return null;
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String resourceName = name.replace('.', '/') + ".class";
+        Set<String> missingNames = this.missingNames;
+        if (missingNames.contains(resourceName)) {
+            throw new ClassNotFoundException(name);
+        }
+
+        // One event times finding the class across all candidate jars; when it's disabled, the JIT elides the allocation
+        ClassLoadEvent event = new ClassLoadEvent();
+        if (event.isEnabled()) {
+            event.begin();
+        }
+        for (IndexedJarFile jar : getCandidateJars(resourceName)) {
+            try {
+                MappedJarFile mappedJarFile = jar.getMappedJarFile();
+                if (mappedJarFile != null) {
+                    int entry = mappedJarFile.getEntry(resourceName);
+                    if (entry != -1) {
+                        return commitClassLoadEvent(event, name, jar, defineMappedClass(name, jar, mappedJarFile, entry));
+                    }
+                    continue;
+                }
+
+                JarEntry entry = jar.getEntry(resourceName);
+                if (entry != null) {
+                    return commitClassLoadEvent(event, name, jar, defineIndexedClass(name, jar, entry));
+                }
+            } catch (IOException exception) {
+                throw new ClassNotFoundException(name, exception);
+            }
+        }
+
+        try {
+            return super.findClass(name);
+        } catch (ClassNotFoundException exception) {
+            missingNames.add(resourceName);
+            throw exception;
+        }
+    }
+
+    /**
+     * Fills in and commits the event of a class found in the specified jar, if it's enabled.
+     *
+     * @param event the event, begun if it's enabled
+     * @param name  the binary name of the class
+     * @param jar   the indexed jar the class was defined from
+     * @param clazz the defined class
+     *
+     * @return the defined class
+     */
+    protected Class<?> commitClassLoadEvent(ClassLoadEvent event, String name, IndexedJarFile jar, Class<?> clazz) {
+        if (event.shouldCommit()) {
+            event.setClassName(name);
+            event.setJar(jar.path.toString());
+            event.commit();
+        }
+        return clazz;
+    }
+
+    /**
+     * Defines the class from the specified entry of an indexed jar, along with its package.
+     *
+     * @param name  the binary name of the class
+     * @param jar   the indexed jar
+     * @param entry the entry of the class
+     *
+     * @return the defined class
+     *
+     * @throws IOException if an I/O error occurs while reading the class
+     */
+    protected Class<?> defineIndexedClass(String name, IndexedJarFile jar, JarEntry entry) throws IOException {
+        byte[] bytes;
+        try (InputStream inputStream = jar.getJarFile().getInputStream(entry)) {
+            bytes = readAllBytes(inputStream, entry.getSize());
+        }
+
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot != -1) {
+            defineIndexedPackage(name.substring(0, lastDot), jar, entry.getName());
+        }
+
+        // Code signers are available only after the entry was read completely
+        CodeSource codeSource = new CodeSource(jar.getCodeSourceUrl(entry.getName()), entry.getCodeSigners());
+        return defineClass(name, bytes, 0, bytes.length, codeSource);
+    }
+
+    /**
+     * Defines the class from the specified entry of a mapped jar, along with its package. Stored classes are defined straight from the
+     * mapping, compressed ones are inflated into pooled buffers.
+     *
+     * @param name          the binary name of the class
+     * @param jar           the indexed jar
+     * @param mappedJarFile the mapped jar
+     * @param entry         the entry of the class
+     *
+     * @return the defined class
+     *
+     * @throws IOException if an I/O error occurs while reading the class
+     */
+    protected Class<?> defineMappedClass(String name, IndexedJarFile jar, MappedJarFile mappedJarFile, int entry) throws IOException {
+        String resourceName = name.replace('.', '/') + ".class";
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot != -1) {
+            defineIndexedPackage(name.substring(0, lastDot), jar, resourceName);
+        }
+
+        CodeSource codeSource = jar.getCodeSource(resourceName);
+        ByteBuffer content = mappedJarFile.getStoredContent(entry);
+        if (content != null) {
+            return defineClass(name, content, codeSource);
+        }
+
+        MappedJarFile.InflaterBuffers buffers = MappedJarFile.acquireBuffers();
+        try {
+            int length = mappedJarFile.read(entry, buffers);
+            return defineClass(name, buffers.getOutput(length), 0, length, codeSource);
+        } finally {
+            MappedJarFile.releaseBuffers(buffers);
+        }
+    }
+
+    /**
+     * Defines the specified package using the manifest of the indexed jar, unless it's already defined.
+     *
+     * @param packageName the name of the package
+     * @param jar         the indexed jar
+     * @param entryName   the name of the entry of the class being defined
+     *
+     * @throws IOException if an I/O error occurs while reading the manifest
+     */
+    @SuppressWarnings("deprecation")
+    protected void defineIndexedPackage(String packageName, IndexedJarFile jar, String entryName) throws IOException {
+        if (getPackage(packageName) != null) {
+            return;
+        }
+
+        try {
+            Manifest manifest = jar.getManifest(entryName);
+            if (manifest != null) {
+                definePackage(packageName, manifest, jar.getCodeSourceUrl(entryName));
+            } else {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            }
+        } catch (IllegalArgumentException ignored) {
+            // Defined concurrently by another thread
+        }
+    }
+
+    /**
+     * Reads all bytes from the specified input stream.
+     *
+     * @param inputStream the input stream
+     * @param size        the expected size, or -1 if unknown
+     *
+     * @return the read bytes
+     *
+     * @throws IOException if an I/O error occurs while reading
+     */
+    private static byte[] readAllBytes(InputStream inputStream, long size) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size > 0 ? (int) size : 8192);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    @Override
+    public URL findResource(String name) {
+        try {
+            awaitOwningDependencies(name, false);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return findIndexedResource(name);
+    }
+
+    /**
+     * Finds the resource in indexed jars, falling back to the {@link URLClassLoader} for locations that are not indexed.
+     *
+     * @param name the resource name
+     *
+     * @return the resource URL, or null if not found
+     */
+    protected URL findIndexedResource(String name) {
+        Set<String> missingNames = this.missingNames;
+        if (missingNames.contains(name)) {
+            return null;
+        }
+
+        for (IndexedJarFile jar : getCandidateJars(name)) {
+            try {
+                if (jar.hasEntry(name)) {
+                    return jar.getResourceUrl(name);
+                }
+            } catch (IOException exception) {
+                // Skip unreadable jars, same as the URLClassLoader does
+            }
+        }
+
+        URL url = super.findResource(name);
+        if (url == null) {
+            missingNames.add(name);
+        }
+        return url;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        try {
+            // Resources may be contained in multiple jars, so all that may contain it have to be installed
+            awaitOwningDependencies(name, true);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<URL> resources = new ArrayList<>();
+        for (IndexedJarFile jar : getCandidateJars(name)) {
+            try {
+                if (jar.hasEntry(name)) {
+                    resources.add(jar.getResourceUrl(name));
+                }
+            } catch (IOException exception) {
+                // Skip unreadable jars, same as the URLClassLoader does
+            }
+        }
+        resources.addAll(Collections.list(super.findResources(name)));
+        return Collections.enumeration(resources);
+    }
+
+    /**
+     * Gets the indexed jars that contain the directory of the specified resource.
+     *
+     * @param name the resource name
+     *
+     * @return the candidate jars, in the order they were added
+     */
+    protected List<IndexedJarFile> getCandidateJars(String name) {
+        List<IndexedJarFile> jars = jarsByDirectory.get(JarIndex.getDirectory(name));
+        return jars != null ? jars : Collections.emptyList();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException closeException = null;
+        for (List<IndexedJarFile> jars : jarsByDirectory.values()) {
+            for (IndexedJarFile jar : jars) {
+                try {
+                    jar.close();
+                } catch (IOException exception) {
+                    closeException = exception;
+                }
+            }
+        }
+
+        super.close();
+        if (closeException != null) {
+            throw closeException;
+        }
+    }
+
+    /**
+     * Waits for pending dependencies of a background bootstrap that may contain the specified class or resource, one at a time in the
+     * order they were declared. Unless all of them are awaited, only those declared before the first jar containing the name are, so
+     * the name is resolved from the same jar regardless of the order the dependencies are installed in.
+     *
+     * @param name the resource name, e.g. <code>com/google/gson/Gson.class</code>
+     * @param all  whether to wait for all pending dependencies that may contain the name
+     *
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    protected void awaitOwningDependencies(String name, boolean all) throws InterruptedException {
+        while (!pendingDependencies.isEmpty()) {
+            int foundOrder = all ? CALLER_ORDER : findJarOrder(name);
+            PendingDependency owningDependency = getOwningDependency(name, foundOrder);
+            if (owningDependency == null) {
+                return;
+            }
+            owningDependency.awaitInstalled();
+        }
+    }
+
+    /**
+     * Finds the order of the first installed jar that contains the specified class or resource.
+     *
+     * @param name the resource name
+     *
+     * @return the order of the jar, see {@link IndexedJarFile#order}, or {@link #CALLER_ORDER} if no jar contains the name
+     */
+    protected int findJarOrder(String name) {
+        for (IndexedJarFile jar : getCandidateJars(name)) {
+            try {
+                if (jar.hasEntry(name)) {
+                    return jar.order;
+                }
+            } catch (IOException exception) {
+                // Skip unreadable jars, same as the lookup does
+            }
+        }
+        return CALLER_ORDER;
+    }
+
+    /**
+     * Gets the first pending dependency declared before the specified order that may contain the specified class or resource. A
+     * dependency with indexed directories may contain only names in these directories; a dependency that was not indexed yet may
+     * contain any name except for those in the application's own packages (see {@link #callerDirectories}).
+     *
+     * @param name       the resource name
+     * @param foundOrder the order of the jar that contains the name, or {@link #CALLER_ORDER} if no jar does
+     *
+     * @return the pending dependency, or null if none may contain the name
+     */
+    protected PendingDependency getOwningDependency(String name, int foundOrder) {
+        String directory = JarIndex.getDirectory(name);
+        boolean ownedByCaller = callerDirectories.contains(directory);
+        for (PendingDependency dependency : pendingDependencies) {
+            if (dependency.order >= foundOrder) {
+                break;
+            }
+            if (dependency.directories != null ? dependency.directories.contains(directory) : !ownedByCaller) {
+                return dependency;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the installed jars of a completed download of a background bootstrap and wakes up lookups waiting for it.
+     *
+     * @param dependency the completed dependency
+     * @param paths      the installed jars, or null if the download failed
+     */
+    protected void onDownloadCompleted(PendingDependency dependency, List<Path> paths) {
+        try {
+            if (paths != null) {
+                for (Path path : paths) {
+                    addDependency(path, dependency.order);
+                }
+            }
+        } finally {
+            pendingDependencies.remove(dependency);
+            dependency.installed.countDown();
+        }
+    }
+
+    /**
+     * A dependency of a background bootstrap that is not installed yet.
+     */
+    @RequiredArgsConstructor
+    protected static class PendingDependency {
+
+        /**
+         * The order the dependency was declared in.
+         */
+        protected final int order;
+
+        /**
+         * The notation of the dependency.
+         */
+        protected final String notation;
+
+        /**
+         * The future of the dependency, see {@link AsyncBootstrap#getDependencyFutures()}.
+         */
+        protected final CompletableFuture<List<Path>> future;
+
+        /**
+         * The directories contained in the dependency's jars, or null if unknown.
+         */
+        protected final Set<String> directories;
+
+        /**
+         * Released once the dependency's jars were added, or its download failed.
+         */
+        protected final CountDownLatch installed = new CountDownLatch(1);
+
+        /**
+         * Waits until the dependency's jars are added, or its download failed.
+         *
+         * @throws InterruptedException if the current thread was interrupted while waiting
+         */
+        public void awaitInstalled() throws InterruptedException {
+            installed.await();
+        }
+    }
+
+    /**
+     * An indexed jar, opened when a class or resource is looked up in it for the first time.
+     */
+    @RequiredArgsConstructor
+    protected static class IndexedJarFile {
+
+        /**
+         * The jar path.
+         */
+        protected final Path path;
+
+        /**
+         * The jar URL, used as the code source of its classes.
+         */
+        @Getter
+        protected final URL url;
+
+        /**
+         * Whether to read the jar using {@link MappedJarFile}.
+         */
+        protected final boolean mapped;
+
+        /**
+         * The order of the jar among all jars, i.e. the index of its dependency, or {@link #CALLER_ORDER} for the caller's location.
+         * Classes and resources contained in multiple jars are loaded from the jar with the lowest order.
+         */
+        protected final int order;
+
+        /**
+         * The opened jar file, or null if not opened yet.
+         */
+        protected JarFile jarFile;
+
+        /**
+         * The mapped jar file, or null if not mapped yet.
+         */
+        protected volatile MappedJarFile mappedJarFile;
+
+        /**
+         * Whether the jar can't be read using {@link MappedJarFile}, e.g. because it's signed.
+         */
+        protected volatile boolean mappingFailed;
+
+        /**
+         * The code sources of classes, keyed by their jar URL.
+         */
+        protected final Map<URL, CodeSource> codeSources = new ConcurrentHashMap<>();
+
+        /**
+         * Whether the class loader was closed.
+         */
+        protected boolean closed;
+
+        /**
+         * Gets the opened jar file, opening it if needed.
+         *
+         * @return the jar file
+         *
+         * @throws IOException if an I/O error occurs while opening the jar, or if the class loader was closed
+         */
+        public synchronized JarFile getJarFile() throws IOException {
+            if (closed) {
+                throw new IOException("Class loader was closed");
+            }
+            if (jarFile == null) {
+                jarFile = JarFiles.open(path.toFile());
+            }
+            return jarFile;
+        }
+
+        /**
+         * Gets the mapped jar file, mapping it if needed.
+         *
+         * @return the mapped jar file, or null if the jar should be read using {@link #getJarFile()}
+         *
+         * @throws IOException if the class loader was closed
+         */
+        public MappedJarFile getMappedJarFile() throws IOException {
+            MappedJarFile mappedJarFile = this.mappedJarFile;
+            if (mappedJarFile != null || !mapped || mappingFailed) {
+                return mappedJarFile;
+            }
+
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Class loader was closed");
+                }
+                if (this.mappedJarFile == null && !mappingFailed) {
+                    try {
+                        mappedJarFile = MappedJarFile.open(path);
+                        if (mappedJarFile.isSigned()) {
+                            // Signatures are verified only by the JarFile
+                            mappingFailed = true;
+                        } else {
+                            this.mappedJarFile = mappedJarFile;
+                        }
+                    } catch (IOException exception) {
+                        mappingFailed = true;
+                    }
+                }
+                return this.mappedJarFile;
+            }
+        }
+
+        /**
+         * Gets the code source of classes defined from the specified entry, for jars read using {@link MappedJarFile}, which are never
+         * signed.
+         *
+         * @param name the entry name
+         *
+         * @return the code source
+         *
+         * @throws IOException if an I/O error occurs while reading the jar
+         */
+        public CodeSource getCodeSource(String name) throws IOException {
+            return codeSources.computeIfAbsent(getCodeSourceUrl(name), key -> new CodeSource(key, (CodeSigner[]) null));
+        }
+
+        /**
+         * Gets the URL of the jar the specified entry comes from, used as the code source of classes.
+         *
+         * @param name the entry name
+         *
+         * @return the jar URL
+         *
+         * @throws IOException if an I/O error occurs while reading the jar
+         */
+        public URL getCodeSourceUrl(String name) throws IOException {
+            return url;
+        }
+
+        /**
+         * Gets the manifest of the jar the specified entry comes from.
+         *
+         * @param name the entry name
+         *
+         * @return the manifest, or null if the jar has no manifest
+         *
+         * @throws IOException if an I/O error occurs while reading the jar
+         */
+        public Manifest getManifest(String name) throws IOException {
+            MappedJarFile mappedJarFile = getMappedJarFile();
+            return mappedJarFile != null ? mappedJarFile.getManifest() : getJarFile().getManifest();
+        }
+
+        /**
+         * Checks whether the jar contains the entry with the specified name.
+         *
+         * @param name the entry name
+         *
+         * @return true if the jar contains the entry
+         *
+         * @throws IOException if an I/O error occurs while opening the jar
+         */
+        public boolean hasEntry(String name) throws IOException {
+            MappedJarFile mappedJarFile = getMappedJarFile();
+            return mappedJarFile != null ? mappedJarFile.getEntry(name) != -1 : getEntry(name) != null;
+        }
+
+        /**
+         * Reads the entry with the specified name.
+         *
+         * @param name the entry name
+         *
+         * @return the content of the entry, or null if the jar does not contain it
+         *
+         * @throws IOException if an I/O error occurs while reading the jar
+         */
+        public byte[] readEntry(String name) throws IOException {
+            MappedJarFile mappedJarFile = getMappedJarFile();
+            if (mappedJarFile != null) {
+                int entry = mappedJarFile.getEntry(name);
+                return entry != -1 ? mappedJarFile.readAllBytes(entry) : null;
+            }
+
+            JarEntry entry = getEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream inputStream = getJarFile().getInputStream(entry)) {
+                return readAllBytes(inputStream, entry.getSize());
+            }
+        }
+
+        /**
+         * Gets the entry with the specified name.
+         *
+         * @param name the entry name
+         *
+         * @return the entry, or null if the jar does not contain it
+         *
+         * @throws IOException if an I/O error occurs while opening the jar
+         */
+        public JarEntry getEntry(String name) throws IOException {
+            return getJarFile().getJarEntry(name);
+        }
+
+        /**
+         * Gets the URL of the specified resource within the jar.
+         *
+         * @param name the resource name
+         *
+         * @return the resource URL
+         *
+         * @throws MalformedURLException if the URL can't be constructed
+         */
+        public URL getResourceUrl(String name) throws MalformedURLException {
+            try {
+                return new URL("jar:" + url + "!/" + new URI(null, null, name, null).getRawPath());
+            } catch (URISyntaxException exception) {
+                throw new MalformedURLException(exception.getMessage());
+            }
+        }
+
+        /**
+         * Closes the jar file, if opened.
+         *
+         * @throws IOException if an I/O error occurs while closing the jar
+         */
+        public synchronized void close() throws IOException {
+            closed = true;
+            // Unmapped once garbage collected
+            mappedJarFile = null;
+            if (jarFile != null) {
+                jarFile.close();
+                jarFile = null;
+            }
+        }
+    }
+
+    /**
+     * A library pack, which keeps the code source and manifest of the jar each entry was packed from.
+     */
+    protected static class PackedJarFile extends IndexedJarFile {
+
+        /**
+         * The library pack.
+         */
+        protected final LibraryPack libraryPack;
+
+        /**
+         * The indexes of source jars, keyed by the entry names. Loaded on first use.
+         */
+        protected Properties provenance;
+
+        /**
+         * The URLs of source jars, by their index.
+         */
+        protected final Map<Integer, URL> sourceUrls = new ConcurrentHashMap<>();
+
+        /**
+         * The manifests of source jars, by their index.
+         */
+        protected final Map<Integer, Optional<Manifest>> sourceManifests = new ConcurrentHashMap<>();
+
+        /**
+         * Constructs a new PackedJarFile.
+         *
+         * @param path        the pack path
+         * @param url         the pack URL
+         * @param mapped      whether to read the pack using {@link MappedJarFile}
+         * @param order       the order of the first packed jar
+         * @param libraryPack the library pack
+         */
+        protected PackedJarFile(Path path, URL url, boolean mapped, int order, LibraryPack libraryPack) {
+            super(path, url, mapped, order);
+            this.libraryPack = libraryPack;
+        }
+
+        @Override
+        public URL getCodeSourceUrl(String name) throws IOException {
+            int index = getSourceIndex(name);
+            if (index == -1) {
+                return getUrl();
+            }
+            return sourceUrls.computeIfAbsent(index, key -> toUrl(Paths.get(libraryPack.getJars().get(key).getPath())));
+        }
+
+        @Override
+        public Manifest getManifest(String name) throws IOException {
+            int index = getSourceIndex(name);
+            if (index == -1) {
+                return super.getManifest(name);
+            }
+
+            Optional<Manifest> manifest = sourceManifests.get(index);
+            if (manifest == null) {
+                byte[] bytes = readEntry(LibraryPack.MANIFESTS_DIRECTORY + index + ".MF");
+                manifest = bytes != null ? Optional.of(new Manifest(new ByteArrayInputStream(bytes))) : Optional.empty();
+                sourceManifests.put(index, manifest);
+            }
+            return manifest.orElse(null);
+        }
+
+        /**
+         * Gets the index of the source jar of the specified entry.
+         *
+         * @param name the entry name
+         *
+         * @return the index of the source jar, or -1 if unknown
+         *
+         * @throws IOException if an I/O error occurs while reading the provenance
+         */
+        protected synchronized int getSourceIndex(String name) throws IOException {
+            if (provenance == null) {
+                Properties properties = new Properties();
+                byte[] bytes = readEntry(LibraryPack.PROVENANCE_ENTRY_NAME);
+                if (bytes != null) {
+                    properties.load(new ByteArrayInputStream(bytes));
+                }
+                provenance = properties;
+            }
+
+            String index = provenance.getProperty(name);
+            return index != null ? Integer.parseInt(index) : -1;
+        }
+    }
 }
@@ -0,0 +1,306 @@
+package enterprises.iwakura.amber;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of an {@link AmberManifest}, written by the Amber Gradle plugin into {@link ManifestLoader#INDEX_FILE_PATH}. Unlike
+ * <code>MANIFEST.MF</code> attributes, the index is found by its own resource name and read without any line unwrapping or splitting.
+ * <p>
+ * The format is: the magic bytes <code>AMBI</code>, the format version byte, the string pool (a count followed by strings in modified
+ * UTF-8, see {@link DataOutput#writeUTF(String)}), the library directory, the repository URLs and the dependencies. Strings are referenced
+ * by their index in the pool and all counts and indexes are unsigned variable-length integers (7 bits per byte, least significant group
+ * first). Optional values are stored as their index plus one, with zero meaning none. Each dependency is its group ID, name and version,
+ * a flags byte ({@link #FLAG_CHECKSUM}, {@link #FLAG_ROUTE}), the pinned checksum type and raw digest bytes if flagged, and the route's
+ * repository index, optional exact version and optional size if flagged.
+ */
+public final class AmberIndex {
+
+    /**
+     * The magic bytes the index starts with.
+     */
+    public static final byte[] MAGIC = {'A', 'M', 'B', 'I'};
+
+    /**
+     * The version of the index format.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The flag of a dependency with a pinned checksum.
+     */
+    public static final int FLAG_CHECKSUM = 1;
+
+    /**
+     * The flag of a dependency with a route.
+     */
+    public static final int FLAG_ROUTE = 2;
+
+    private AmberIndex() {
+    }
+
+    /**
+     * Reads an Amber manifest from the specified index.
+     *
+     * @param inputStream the stream of the index
+     *
+     * @return the read Amber manifest
+     *
+     * @throws IOException if the index could not be read, is malformed or of an unsupported format version
+     */
+    public static AmberManifest read(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not an Amber index");
+            }
+        }
+        int formatVersion = input.readUnsignedByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported Amber index format version: " + formatVersion);
+        }
+
+        try {
+            String[] strings = new String[readVarInt(input)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = input.readUTF();
+            }
+
+            String directory = readOptionalString(input, strings);
+            List<Repository> repositories = new ArrayList<>();
+            for (int count = readVarInt(input); count > 0; count--) {
+                repositories.add(new Repository(RepositoryType.MAVEN, strings[readVarInt(input)]));
+            }
+
+            List<Dependency> dependencies = new ArrayList<>();
+            for (int count = readVarInt(input); count > 0; count--) {
+                String groupId = strings[readVarInt(input)];
+                String name = strings[readVarInt(input)];
+                String version = strings[readVarInt(input)];
+                Dependency dependency = new Dependency(groupId + ":" + name + ":" + version);
+
+                int flags = input.readUnsignedByte();
+                if ((flags & FLAG_CHECKSUM) != 0) {
+                    ChecksumType type = ChecksumType.valueOf(strings[readVarInt(input)]);
+                    byte[] digest = new byte[readVarInt(input)];
+                    input.readFully(digest);
+                    dependency.setPinnedChecksum(new Checksum(type, Checksum.toHexString(digest)));
+                }
+                if ((flags & FLAG_ROUTE) != 0) {
+                    int repositoryIndex = readVarInt(input);
+                    String exactVersion = readOptionalString(input, strings);
+                    long size = readVarLong(input) - 1;
+                    if (repositoryIndex >= repositories.size()) {
+                        throw new IOException("Dependency route points to unknown repository: " + dependency);
+                    }
+                    dependency.setRoute(new DependencyRoute(repositories.get(repositoryIndex), exactVersion, size));
+                }
+                dependencies.add(dependency);
+            }
+
+            return new AmberManifest(directory != null ? Paths.get(directory) : null, dependencies, repositories);
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException exception) {
+            throw new IOException("Malformed Amber index", exception);
+        }
+    }
+
+    /**
+     * Writes the specified Amber manifest as an index.
+     *
+     * @param manifest     the Amber manifest to write
+     * @param outputStream the stream to write the index into
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(AmberManifest manifest, OutputStream outputStream) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Path directory = manifest.getDirectory();
+        if (directory != null) {
+            intern(strings, directory.toString());
+        }
+        for (Repository repository : manifest.getRepositories()) {
+            intern(strings, repository.getUrl());
+        }
+        for (Dependency dependency : manifest.getDependencies()) {
+            intern(strings, dependency.getGroupId());
+            intern(strings, dependency.getName());
+            intern(strings, dependency.getVersion());
+            if (dependency.getPinnedChecksum() != null) {
+                intern(strings, dependency.getPinnedChecksum().getType().name());
+            }
+            if (dependency.getRoute() != null && dependency.getRoute().getVersion() != null) {
+                intern(strings, dependency.getRoute().getVersion());
+            }
+        }
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.write(MAGIC);
+        output.writeByte(FORMAT_VERSION);
+        writeVarInt(output, strings.size());
+        for (String string : strings.keySet()) {
+            output.writeUTF(string);
+        }
+
+        writeVarInt(output, directory != null ? strings.get(directory.toString()) + 1 : 0);
+        writeVarInt(output, manifest.getRepositories().size());
+        Map<Repository, Integer> repositoryIndexes = new HashMap<>();
+        for (Repository repository : manifest.getRepositories()) {
+            repositoryIndexes.putIfAbsent(repository, repositoryIndexes.size());
+            writeVarInt(output, strings.get(repository.getUrl()));
+        }
+
+        writeVarInt(output, manifest.getDependencies().size());
+        for (Dependency dependency : manifest.getDependencies()) {
+            writeVarInt(output, strings.get(dependency.getGroupId()));
+            writeVarInt(output, strings.get(dependency.getName()));
+            writeVarInt(output, strings.get(dependency.getVersion()));
+
+            Checksum checksum = dependency.getPinnedChecksum();
+            DependencyRoute route = dependency.getRoute();
+            Integer routeIndex = route != null ? repositoryIndexes.get(route.getRepository()) : null;
+            output.writeByte((checksum != null ? FLAG_CHECKSUM : 0) | (routeIndex != null ? FLAG_ROUTE : 0));
+            if (checksum != null) {
+                byte[] digest = parseHexString(checksum.getValue());
+                writeVarInt(output, strings.get(checksum.getType().name()));
+                writeVarInt(output, digest.length);
+                output.write(digest);
+            }
+            if (routeIndex != null) {
+                writeVarInt(output, routeIndex);
+                writeVarInt(output, route.getVersion() != null ? strings.get(route.getVersion()) + 1 : 0);
+                writeVarLong(output, Math.max(route.getSize(), -1) + 1);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Adds the specified string into the string pool, unless it's already there.
+     *
+     * @param strings the string pool, mapping strings to their indexes
+     * @param string  the string
+     */
+    private static void intern(Map<String, Integer> strings, String string) {
+        strings.putIfAbsent(string, strings.size());
+    }
+
+    /**
+     * Reads an optional string reference.
+     *
+     * @param input   the input
+     * @param strings the string pool
+     *
+     * @return the referenced string, or null if there's none
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private static String readOptionalString(DataInput input, String[] strings) throws IOException {
+        int index = readVarInt(input);
+        return index != 0 ? strings[index - 1] : null;
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     *
+     * @param input the input
+     *
+     * @return the read integer
+     *
+     * @throws IOException if an I/O error occurs or the integer is too large
+     */
+    private static int readVarInt(DataInput input) throws IOException {
+        long value = readVarLong(input);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Malformed Amber index");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads an unsigned variable-length long.
+     *
+     * @param input the input
+     *
+     * @return the read long
+     *
+     * @throws IOException if an I/O error occurs or the long is too large
+     */
+    private static long readVarLong(DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed Amber index");
+    }
+
+    /**
+     * Writes an unsigned variable-length integer.
+     *
+     * @param output the output
+     * @param value  the non-negative integer
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeVarInt(DataOutput output, int value) throws IOException {
+        writeVarLong(output, value);
+    }
+
+    /**
+     * Writes an unsigned variable-length long.
+     *
+     * @param output the output
+     * @param value  the non-negative long
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeVarLong(DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    /**
+     * Converts the specified hexadecimal string into bytes.
+     *
+     * @param hexString the hexadecimal string
+     *
+     * @return the bytes
+     *
+     * @throws IOException if the string is not a valid hexadecimal string
+     */
+    private static byte[] parseHexString(String hexString) throws IOException {
+        if (hexString.length() % 2 != 0) {
+            throw new IOException("Invalid checksum value: " + hexString);
+        }
+        byte[] bytes = new byte[hexString.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hexString.charAt(i * 2), 16);
+            int low = Character.digit(hexString.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("Invalid checksum value: " + hexString);
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+}
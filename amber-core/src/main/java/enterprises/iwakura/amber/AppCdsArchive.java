@@ -0,0 +1,207 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.JarFiles;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dynamic AppCDS archive of installed dependencies. The archive is keyed by the installed jars (their paths, sizes and modification times)
+ * and the JVM, so it's recreated whenever any dependency changes. Since a running JVM can't start using an archive, Amber writes the JVM
+ * flags recording or using the archive into an argument file in the state directory, which should be passed to the next launch, e.g.
+ * <code>java @libs/.amber/appcds.args -jar app.jar</code>.
+ * <p>
+ * On Java 19 and newer, the JVM records the archive on its own when it's missing and uses it otherwise
+ * (<code>-XX:+AutoCreateSharedArchive</code>). On Java 13 to 18, the archive is recorded at exit of the first launch after a dependency
+ * changed (<code>-XX:ArchiveClassesAtExit</code>) and used from the launch after the next bootstrap. Older JVMs don't support dynamic
+ * archives, so the argument file is left empty.
+ * </p>
+ */
+@Getter
+@RequiredArgsConstructor
+public class AppCdsArchive {
+
+    /**
+     * The name of the directory within the state directory where archives are stored.
+     */
+    public static final String DIRECTORY_NAME = "appcds";
+
+    /**
+     * The name of the JVM argument file within the state directory.
+     */
+    public static final String ARGUMENTS_FILE_NAME = "appcds.args";
+
+    /**
+     * The suffix of archive files.
+     */
+    public static final String ARCHIVE_FILE_SUFFIX = ".jsa";
+
+    /**
+     * The state directory.
+     */
+    protected final Path stateDirectory;
+
+    /**
+     * The key of the archive, see {@link #computeKey(List)}.
+     */
+    protected final String key;
+
+    /**
+     * Creates the archive of the specified installed jars.
+     *
+     * @param stateDirectory the state directory
+     * @param jarPaths       the installed jars, in the order they were returned by the bootstrap
+     *
+     * @return the archive
+     *
+     * @throws IOException if an I/O error occurs while reading the jars' attributes
+     */
+    public static AppCdsArchive of(Path stateDirectory, List<Path> jarPaths) throws IOException {
+        return new AppCdsArchive(stateDirectory, computeKey(jarPaths));
+    }
+
+    /**
+     * Computes the key of the archive from the current JVM and the paths, sizes and modification times of the specified jars.
+     *
+     * @param jarPaths the installed jars
+     *
+     * @return the key as a hex string
+     *
+     * @throws IOException if an I/O error occurs while reading the jars' attributes
+     */
+    public static String computeKey(List<Path> jarPaths) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("vm=").append(System.getProperty("java.vm.name")).append(' ').append(System.getProperty("java.vm.version")).append('\n');
+        builder.append("home=").append(System.getProperty("java.home")).append('\n');
+        for (Path jarPath : jarPaths) {
+            BasicFileAttributes attributes = Files.readAttributes(jarPath, BasicFileAttributes.class);
+            builder.append("jar=").append(jarPath.toAbsolutePath()).append('=').append(attributes.size())
+                    .append('=').append(attributes.lastModifiedTime().toMillis()).append('\n');
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance(ChecksumType.SHA256.getAlgorithm());
+            return Checksum.toHexString(digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not supported", exception);
+        }
+    }
+
+    /**
+     * Gets the path of the archive file.
+     *
+     * @return the path of the archive file
+     */
+    public Path getArchivePath() {
+        return stateDirectory.resolve(DIRECTORY_NAME).resolve(key + ARCHIVE_FILE_SUFFIX);
+    }
+
+    /**
+     * Gets the path of the JVM argument file.
+     *
+     * @return the path of the JVM argument file
+     */
+    public Path getArgumentsFilePath() {
+        return stateDirectory.resolve(ARGUMENTS_FILE_NAME);
+    }
+
+    /**
+     * Checks whether the archive was already recorded.
+     *
+     * @return true if the archive file exists
+     */
+    public boolean isRecorded() {
+        return Files.exists(getArchivePath());
+    }
+
+    /**
+     * Gets the JVM flags recording or using the archive, as supported by the current JVM.
+     *
+     * @return the JVM flags, or an empty list if the current JVM doesn't support dynamic archives
+     */
+    public List<String> getJvmFlags() {
+        int javaVersion = getJavaVersion();
+        String archivePath = getArchivePath().toAbsolutePath().toString();
+        if (javaVersion >= 19) {
+            return Arrays.asList("-XX:SharedArchiveFile=" + archivePath, "-XX:+AutoCreateSharedArchive");
+        } else if (javaVersion >= 13) {
+            return Collections.singletonList((isRecorded() ? "-XX:SharedArchiveFile=" : "-XX:ArchiveClassesAtExit=") + archivePath);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Deletes archives of other dependency sets and writes the JVM flags into the argument file, unless it already contains them.
+     *
+     * @return the JVM flags
+     *
+     * @throws IOException if an I/O error occurs while writing the argument file
+     */
+    public List<String> update() throws IOException {
+        deleteStaleArchives();
+
+        List<String> jvmFlags = getJvmFlags();
+        List<String> lines = new ArrayList<>();
+        for (String jvmFlag : jvmFlags) {
+            // Argument files treat backslashes within quotes as escape characters
+            lines.add('"' + jvmFlag.replace("\\", "\\\\") + '"');
+        }
+
+        Path filePath = getArgumentsFilePath();
+        if (Files.exists(filePath) && Files.readAllLines(filePath, StandardCharsets.UTF_8).equals(lines)) {
+            return jvmFlags;
+        }
+
+        Path tempFilePath = stateDirectory.resolve(ARGUMENTS_FILE_NAME + ".tmp");
+        Files.createDirectories(getArchivePath().getParent());
+        Files.write(tempFilePath, lines, StandardCharsets.UTF_8);
+        Files.move(tempFilePath, filePath, StandardCopyOption.REPLACE_EXISTING);
+        return jvmFlags;
+    }
+
+    /**
+     * Deletes archives of other dependency sets or JVMs.
+     */
+    protected void deleteStaleArchives() {
+        Path directory = getArchivePath().getParent();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(directory, "*" + ARCHIVE_FILE_SUFFIX)) {
+            for (Path archive : archives) {
+                if (!archive.getFileName().toString().equals(key + ARCHIVE_FILE_SUFFIX)) {
+                    try {
+                        Files.deleteIfExists(archive);
+                    } catch (IOException ignored) {
+                        // May be still mapped by a running JVM on Windows, deleted on the next bootstrap
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // Stale archives only waste disk space
+        }
+    }
+
+    /**
+     * Gets the feature version of the JVM the flags are meant for, i.e. the current one.
+     *
+     * @return the feature version, see {@link JarFiles#getJavaFeatureVersion()}
+     */
+    protected int getJavaVersion() {
+        return JarFiles.getJavaFeatureVersion();
+    }
+}
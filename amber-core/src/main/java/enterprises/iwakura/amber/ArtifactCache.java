@@ -0,0 +1,290 @@
+package enterprises.iwakura.amber;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Host-wide cache of downloaded artifacts, shared by all applications using the same cache directory. Artifacts are stored once by their
+ * SHA-256 hash (<code>blobs/ab/abcdef...jar</code>) and an index maps dependency coordinates to these hashes and the artifacts' sizes
+ * (<code>index/groupId/name/version/fileName.sha256</code>). Artifacts are installed into library directories by hard links, falling back to
+ * copying if the file system does not support them.
+ * <p>
+ * All writes are atomic, so multiple processes may use the same cache directory concurrently. Snapshot dependencies are never cached,
+ * since their content may change under the same coordinates.
+ * </p>
+ * <p>
+ * Since the cache is shared by all applications on the host, blobs are not trusted blindly: the first time an instance uses a blob, its
+ * size and SHA-256 hash are checked against the index, and blobs that don't match are deleted. Create a new instance for every bootstrap,
+ * so each bootstrap checks the blobs it uses.
+ * </p>
+ */
+@Getter
+@RequiredArgsConstructor
+public class ArtifactCache {
+
+    /**
+     * The name of the directory within the cache directory where artifacts are stored by their hash.
+     */
+    public static final String BLOBS_DIRECTORY_NAME = "blobs";
+
+    /**
+     * The name of the directory within the cache directory where dependency coordinates are mapped to hashes.
+     */
+    public static final String INDEX_DIRECTORY_NAME = "index";
+
+    /**
+     * The suffix of index files.
+     */
+    public static final String INDEX_FILE_SUFFIX = ".sha256";
+
+    /**
+     * The pattern of a SHA-256 hash as a lowercase hex string, as used in index files and blob names.
+     */
+    protected static final Pattern SHA256_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * The cache directory.
+     */
+    protected final Path directory;
+
+    /**
+     * The hashes of blobs checked by this instance, see {@link #verifyBlob(Path, String, long)}.
+     */
+    protected final Set<String> verifiedBlobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Checks whether the specified dependency may be cached.
+     *
+     * @param dependency the dependency to check
+     *
+     * @return true if the dependency may be cached, false if it's a snapshot
+     */
+    public boolean isCacheable(Dependency dependency) {
+        return !dependency.getVersion().endsWith("-SNAPSHOT");
+    }
+
+    /**
+     * Gets the cached artifact of the specified dependency. The artifact's size and hash are checked the first time this instance uses it
+     * (see {@link #verifyBlob(Path, String, long)}). If the dependency has a pinned checksum of any type, the cached artifact is used only
+     * if it matches the pinned one.
+     *
+     * @param dependency the dependency to get the cached artifact of
+     *
+     * @return the path to the cached artifact, or null if the dependency is not cached or its cached artifact is invalid
+     */
+    public Path get(Dependency dependency) {
+        if (!isCacheable(dependency)) {
+            return null;
+        }
+
+        Path indexPath = getIndexPath(dependency);
+        if (!Files.exists(indexPath)) {
+            return null;
+        }
+
+        String hash;
+        long size = -1;
+        try {
+            // The hash, optionally followed by the size of the artifact
+            String[] parts = new String(Files.readAllBytes(indexPath), StandardCharsets.UTF_8).trim().split("\\s+");
+            hash = parts[0].toLowerCase();
+            if (parts.length > 1) {
+                size = Long.parseLong(parts[1]);
+            }
+        } catch (IOException | NumberFormatException exception) {
+            return null; // Treat unreadable index entries as missing
+        }
+        if (!SHA256_PATTERN.matcher(hash).matches()) {
+            return null;
+        }
+
+        Checksum pinnedChecksum = dependency.getPinnedChecksum();
+        if (pinnedChecksum != null && pinnedChecksum.getType() == ChecksumType.SHA256 && !pinnedChecksum.getValue().trim().equalsIgnoreCase(hash)) {
+            return null; // Cached from a different artifact than the one pinned at build time
+        }
+
+        Path blobPath = getBlobPath(hash);
+        try {
+            if (!Files.exists(blobPath) || !verifyBlob(blobPath, hash, size)) {
+                return null;
+            }
+            if (pinnedChecksum != null && pinnedChecksum.getType() != ChecksumType.SHA256
+                    && !pinnedChecksum.getValue().trim().equalsIgnoreCase(InstalledJarVerifier.calculateChecksum(blobPath, pinnedChecksum.getType()))) {
+                return null; // Cached from a different artifact than the one pinned at build time
+            }
+        } catch (IOException | NoSuchAlgorithmException exception) {
+            return null; // Download the artifact instead
+        }
+        return blobPath;
+    }
+
+    /**
+     * Checks the specified blob, unless this instance already did: its size must match the size recorded in the index (if any) and its
+     * SHA-256 hash must match its name. A blob that doesn't match was corrupted or tampered with, so it's deleted, to be replaced by the
+     * next download of the artifact. Jars already installed from it are not affected, as they're verified on their own (see
+     * {@link BootstrapOptions#isVerifyExisting()}).
+     *
+     * @param blobPath the path to the blob
+     * @param hash     the expected SHA-256 hash as a lowercase hex string
+     * @param size     the expected size in bytes, or -1 if unknown
+     *
+     * @return true if the blob is valid, false if it was deleted
+     *
+     * @throws IOException if an I/O error occurs while reading or deleting the blob
+     */
+    protected boolean verifyBlob(Path blobPath, String hash, long size) throws IOException {
+        if (verifiedBlobs.contains(hash)) {
+            return true;
+        }
+
+        if ((size >= 0 && Files.size(blobPath) != size) || !calculateSha256(blobPath).equals(hash)) {
+            Files.deleteIfExists(blobPath);
+            return false;
+        }
+        verifiedBlobs.add(hash);
+        return true;
+    }
+
+    /**
+     * Stores the specified downloaded artifact into the cache. The artifact is moved into the cache, unless the cache already contains
+     * the very same artifact, in which case it's deleted. A cached artifact that fails its check (see {@link #verifyBlob(Path, String, long)})
+     * is replaced.
+     *
+     * @param dependency the dependency of the artifact
+     * @param jarPath    the downloaded artifact, must be already validated
+     * @param sha256     the SHA-256 hash of the artifact as a hex string, or null to calculate it
+     *
+     * @return the path to the cached artifact
+     *
+     * @throws IOException if an I/O error occurs while storing the artifact
+     */
+    public Path put(Dependency dependency, Path jarPath, String sha256) throws IOException {
+        String hash = sha256 != null ? sha256.toLowerCase() : calculateSha256(jarPath);
+        Path blobPath = getBlobPath(hash);
+        long size = Files.size(jarPath);
+
+        if (Files.exists(blobPath) && verifyBlob(blobPath, hash, size)) {
+            Files.delete(jarPath);
+        } else {
+            Files.createDirectories(blobPath.getParent());
+            Path tempBlobPath = blobPath.resolveSibling(blobPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            Files.move(jarPath, tempBlobPath, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempBlobPath, blobPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            verifiedBlobs.add(hash);
+        }
+
+        if (isCacheable(dependency)) {
+            Path indexPath = getIndexPath(dependency);
+            Path tempIndexPath = indexPath.resolveSibling(indexPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            Files.createDirectories(indexPath.getParent());
+            Files.write(tempIndexPath, (hash + " " + size).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempIndexPath, indexPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        return blobPath;
+    }
+
+    /**
+     * Installs the cached artifact into the specified jar path by creating a hard link. Falls back to copying if hard links are not supported
+     * (e.g. the library directory is on a different file system).
+     *
+     * @param blobPath the path to the cached artifact
+     * @param jarPath  the jar path in the library directory
+     *
+     * @return true if the artifact was hard linked, false if it was copied
+     *
+     * @throws IOException if an I/O error occurs while installing the artifact
+     */
+    public boolean install(Path blobPath, Path jarPath) throws IOException {
+        Files.createDirectories(jarPath.getParent());
+        Files.deleteIfExists(jarPath);
+
+        try {
+            createLink(jarPath, blobPath);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException exception) {
+            Files.copy(blobPath, jarPath, StandardCopyOption.REPLACE_EXISTING);
+            return false;
+        }
+    }
+
+    /**
+     * Creates a hard link to the specified cached artifact.
+     *
+     * @param jarPath  the link to create
+     * @param blobPath the path to the cached artifact
+     *
+     * @throws IOException if the link can't be created
+     */
+    protected void createLink(Path jarPath, Path blobPath) throws IOException {
+        Files.createLink(jarPath, blobPath);
+    }
+
+    /**
+     * Resolves the path of the artifact with the specified hash.
+     *
+     * @param sha256 the SHA-256 hash of the artifact as a lowercase hex string
+     *
+     * @return the path of the artifact
+     */
+    protected Path getBlobPath(String sha256) {
+        return directory.resolve(BLOBS_DIRECTORY_NAME)
+                .resolve(sha256.substring(0, 2))
+                .resolve(sha256 + ".jar");
+    }
+
+    /**
+     * Resolves the path of the index file of the specified dependency.
+     *
+     * @param dependency the dependency
+     *
+     * @return the path of the index file
+     */
+    protected Path getIndexPath(Dependency dependency) {
+        return directory.resolve(INDEX_DIRECTORY_NAME)
+                .resolve(dependency.getGroupId())
+                .resolve(dependency.getName())
+                .resolve(dependency.getVersion())
+                .resolve(dependency.getFileName() + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Gets the SHA-256 hash of the specified cached artifact from its file name.
+     *
+     * @param blobPath the path to the cached artifact
+     *
+     * @return the SHA-256 hash as a lowercase hex string
+     */
+    public String getHash(Path blobPath) {
+        String fileName = blobPath.getFileName().toString();
+        return fileName.substring(0, fileName.length() - ".jar".length());
+    }
+
+    /**
+     * Calculates the SHA-256 hash of the specified file.
+     *
+     * @param filePath the file to hash
+     *
+     * @return the SHA-256 hash as a lowercase hex string
+     *
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    protected String calculateSha256(Path filePath) throws IOException {
+        try {
+            return InstalledJarVerifier.calculateChecksum(filePath, ChecksumType.SHA256);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IOException("SHA-256 is not supported", exception);
+        }
+    }
+}
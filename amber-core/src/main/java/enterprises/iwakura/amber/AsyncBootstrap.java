@@ -0,0 +1,118 @@
+package enterprises.iwakura.amber;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A bootstrap running in the background, see {@link Amber#bootstrapAsync(BootstrapOptions)}. Each dependency has its own future, so the
+ * application may start using dependencies as soon as they are installed, e.g. using {@link AmberClassLoader#AmberClassLoader(AsyncBootstrap, ClassLoader, Class)}.
+ */
+@Getter
+@RequiredArgsConstructor
+public class AsyncBootstrap {
+
+    /**
+     * The futures of all dependencies, keyed by their notation, in the order they were declared. Each future completes with the paths of the
+     * dependency's jar in all library directories that require it, or exceptionally if the dependency could not be bootstrapped. If the
+     * dependency could not be found and {@link BootstrapOptions#isFailOnMissingDependency()} is false, the future completes with an empty
+     * list.
+     */
+    private final Map<String, CompletableFuture<List<Path>>> dependencyFutures;
+
+    /**
+     * The paths each dependency's jar is installed to, keyed by the dependency's notation. Used by {@link AmberClassLoader} to look up the
+     * packages of dependencies that are still being downloaded in the {@link JarIndex} persisted by previous bootstraps.
+     */
+    private final Map<String, List<Path>> dependencyJarPaths;
+
+    /**
+     * The future of the whole bootstrap. Completes with the same list of jar files as {@link Amber#bootstrap(BootstrapOptions)} once all
+     * dependencies are bootstrapped, or exceptionally with an {@link IOException} if any of them could not be bootstrapped.
+     */
+    private final CompletableFuture<List<Path>> completion;
+
+    /**
+     * The tasks bootstrapping the dependencies, used for cancelling the bootstrap.
+     */
+    @Getter(AccessLevel.NONE)
+    protected final List<Future<?>> tasks;
+
+    /**
+     * Creates an already completed bootstrap.
+     *
+     * @param dependencyPaths the paths of each dependency's jar, keyed by the dependency's notation
+     * @param allPaths        the paths of all jars
+     *
+     * @return the completed bootstrap
+     */
+    public static AsyncBootstrap completed(Map<String, List<Path>> dependencyPaths, List<Path> allPaths) {
+        Map<String, CompletableFuture<List<Path>>> dependencyFutures = new LinkedHashMap<>();
+        dependencyPaths.forEach((notation, paths) -> dependencyFutures.put(notation, CompletableFuture.completedFuture(paths)));
+        return new AsyncBootstrap(dependencyFutures, dependencyPaths, CompletableFuture.completedFuture(allPaths), Collections.emptyList());
+    }
+
+    /**
+     * Gets the future of the specified dependency.
+     *
+     * @param notation the dependency's notation, e.g. <code>com.google.code.gson:gson:2.13.1</code>
+     *
+     * @return the future, or null if no manifest requires the dependency
+     */
+    public CompletableFuture<List<Path>> getDependencyFuture(String notation) {
+        return dependencyFutures.get(notation);
+    }
+
+    /**
+     * Checks whether all dependencies are bootstrapped.
+     *
+     * @return true if the bootstrap completed (normally or exceptionally)
+     */
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Waits for the bootstrap to complete. If the current thread is interrupted while waiting, the bootstrap is cancelled.
+     *
+     * @return the list of jar files that were required by loaded manifests
+     *
+     * @throws IOException if any dependency could not be bootstrapped or the current thread was interrupted
+     */
+    public List<Path> await() throws IOException {
+        try {
+            return completion.get();
+        } catch (InterruptedException exception) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while bootstrapping");
+        } catch (CancellationException exception) {
+            throw new IOException("Bootstrapping was cancelled", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException("An error occurred during bootstrapping.", exception.getCause());
+        }
+    }
+
+    /**
+     * Cancels the bootstrap. Running downloads are interrupted and futures of unfinished dependencies are cancelled.
+     */
+    public void cancel() {
+        tasks.forEach(task -> task.cancel(true));
+        dependencyFutures.values().forEach(future -> future.cancel(false));
+    }
+}
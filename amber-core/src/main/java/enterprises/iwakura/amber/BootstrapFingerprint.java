@@ -0,0 +1,242 @@
+package enterprises.iwakura.amber;
+
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Snapshot of a completed bootstrap: a hash of all loaded manifests and the size and modification time of every installed jar. If the
+ * manifests did not change and all jars are still intact, the next bootstrap may return the jar paths straight away, without checking
+ * each dependency and scheduling any downloads.
+ */
+@Data
+public class BootstrapFingerprint {
+
+    /**
+     * The name of the file within the state directory where the fingerprint is stored.
+     */
+    public static final String FILE_NAME = "fingerprint.properties";
+
+    /**
+     * The hash of all loaded manifests, see {@link #hashManifests(List, BootstrapOptions)}.
+     */
+    private final String manifestsHash;
+
+    /**
+     * The installed jars, in the order they were returned by the bootstrap.
+     */
+    private final List<InstalledJar> jars;
+
+    /**
+     * Hashes the specified manifests as they are resolved with the specified options, i.e. their library directories, dependencies
+     * (including pinned checksums) and repositories. Any change to the manifests changes the hash.
+     *
+     * @param manifests the loaded manifests
+     * @param options   the bootstrap options
+     *
+     * @return the hash as a hex string
+     */
+    public static String hashManifests(List<AmberManifest> manifests, BootstrapOptions options) {
+        StringBuilder builder = new StringBuilder(Version.VERSION).append('\n');
+        builder.append("verifyExisting=").append(options.isVerifyExisting()).append('\n');
+        builder.append("libraryPack=").append(options.isLibraryPack()).append('\n');
+        for (AmberManifest manifest : manifests) {
+            builder.append("directory=").append(options.getPrefferedLibraryDirectory(manifest)).append('\n');
+            for (Dependency dependency : manifest.getDependencies()) {
+                builder.append("dependency=").append(dependency.getNotation());
+                if (dependency.getPinnedChecksum() != null) {
+                    builder.append('=').append(dependency.getPinnedChecksum());
+                }
+                builder.append('\n');
+            }
+            for (Repository repository : manifest.getRepositories()) {
+                builder.append("repository=").append(repository.getType()).append('=').append(repository.getUrl()).append('\n');
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance(ChecksumType.SHA256.getAlgorithm());
+            return Checksum.toHexString(digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not supported", exception);
+        }
+    }
+
+    /**
+     * Captures the fingerprint of the specified installed jars.
+     *
+     * @param manifestsHash the hash of all loaded manifests
+     * @param jarPaths      the installed jars
+     *
+     * @return the fingerprint
+     *
+     * @throws IOException if an I/O error occurs while reading the jars' attributes
+     */
+    public static BootstrapFingerprint capture(String manifestsHash, List<Path> jarPaths) throws IOException {
+        List<InstalledJar> jars = new ArrayList<>();
+        for (Path jarPath : jarPaths) {
+            BasicFileAttributes attributes = Files.readAttributes(jarPath, BasicFileAttributes.class);
+            jars.add(new InstalledJar(jarPath.toString(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+        }
+        return new BootstrapFingerprint(manifestsHash, jars);
+    }
+
+    /**
+     * Loads the fingerprint from the specified state directory.
+     *
+     * @param stateDirectory the state directory
+     *
+     * @return the fingerprint, or null if there's no fingerprint or it is unreadable
+     */
+    public static BootstrapFingerprint load(Path stateDirectory) {
+        Path filePath = stateDirectory.resolve(FILE_NAME);
+        if (!Files.exists(filePath)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            properties.load(inputStream);
+
+            List<InstalledJar> jars = new ArrayList<>();
+            int count = Integer.parseInt(properties.getProperty("jars", "0"));
+            for (int i = 0; i < count; i++) {
+                jars.add(new InstalledJar(
+                        properties.getProperty("jar." + i + ".path"),
+                        Long.parseLong(properties.getProperty("jar." + i + ".size")),
+                        Long.parseLong(properties.getProperty("jar." + i + ".modified"))
+                ));
+            }
+            String manifestsHash = properties.getProperty("manifests");
+            return manifestsHash != null ? new BootstrapFingerprint(manifestsHash, jars) : null;
+        } catch (IOException | RuntimeException exception) {
+            return null; // Treat unreadable fingerprints as missing
+        }
+    }
+
+    /**
+     * Saves the fingerprint into the specified state directory.
+     *
+     * @param stateDirectory the state directory
+     *
+     * @throws IOException if an I/O error occurs while writing the fingerprint
+     */
+    public void save(Path stateDirectory) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("manifests", manifestsHash);
+        properties.setProperty("jars", String.valueOf(jars.size()));
+        for (int i = 0; i < jars.size(); i++) {
+            InstalledJar jar = jars.get(i);
+            properties.setProperty("jar." + i + ".path", jar.getPath());
+            properties.setProperty("jar." + i + ".size", String.valueOf(jar.getSize()));
+            properties.setProperty("jar." + i + ".modified", String.valueOf(jar.getLastModified()));
+        }
+
+        Path filePath = stateDirectory.resolve(FILE_NAME);
+        Path tempFilePath = stateDirectory.resolve(FILE_NAME + ".tmp");
+        Files.createDirectories(stateDirectory);
+        try (OutputStream outputStream = Files.newOutputStream(tempFilePath)) {
+            properties.store(outputStream, "Amber bootstrap fingerprint");
+        }
+        Files.move(tempFilePath, filePath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Checks whether all installed jars are still intact, listing each library directory only once.
+     *
+     * @return the paths of the installed jars, or null if any jar is missing or was modified
+     */
+    public List<Path> verify() {
+        Map<Path, List<InstalledJar>> jarsByDirectory = new HashMap<>();
+        List<Path> jarPaths = new ArrayList<>();
+        for (InstalledJar jar : jars) {
+            Path jarPath = Paths.get(jar.getPath());
+            Path directory = jarPath.toAbsolutePath().getParent();
+            jarsByDirectory.computeIfAbsent(directory, key -> new ArrayList<>()).add(jar);
+            jarPaths.add(jarPath);
+        }
+
+        for (Map.Entry<Path, List<InstalledJar>> entry : jarsByDirectory.entrySet()) {
+            Set<InstalledJar> listedJars = listJars(entry.getKey());
+            if (listedJars == null) {
+                return null;
+            }
+            for (InstalledJar jar : entry.getValue()) {
+                InstalledJar listedJar = new InstalledJar(Paths.get(jar.getPath()).getFileName().toString(), jar.getSize(), jar.getLastModified());
+                if (!listedJars.contains(listedJar)) {
+                    return null;
+                }
+            }
+        }
+
+        return jarPaths;
+    }
+
+    /**
+     * Lists regular files in the specified directory along with their sizes and modification times.
+     *
+     * @param directory the directory to list
+     *
+     * @return the listed files with file names as their paths, or null if the directory could not be listed
+     */
+    protected Set<InstalledJar> listJars(Path directory) {
+        Set<InstalledJar> listedJars = new LinkedHashSet<>();
+        try {
+            Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile()) {
+                        listedJars.add(new InstalledJar(file.getFileName().toString(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException exception) {
+            return null;
+        }
+        return listedJars;
+    }
+
+    /**
+     * An installed jar recorded by the fingerprint.
+     */
+    @Data
+    public static class InstalledJar {
+
+        /**
+         * The path of the jar, as returned by the bootstrap.
+         */
+        private final String path;
+
+        /**
+         * The size of the jar in bytes.
+         */
+        private final long size;
+
+        /**
+         * The last modification time of the jar in milliseconds since the epoch.
+         */
+        private final long lastModified;
+    }
+}
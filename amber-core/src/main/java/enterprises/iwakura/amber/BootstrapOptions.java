@@ -6,6 +6,7 @@ import lombok.Data;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -21,6 +22,23 @@ import java.util.function.Function;
  *     <li>Fail on Missing Dependency: <code>true</code></li>
  *     <li>Exit Code After Download: <code>null</code> (no exit)</li>
  *     <li>Library Directory Override: <code>null</code> (use manifest's directory)</li>
+ *     <li>Executor Strategy: {@link ExecutorStrategy#FIXED_THREAD_POOL}</li>
+ *     <li>Executor Service: <code>null</code> (created as per the executor strategy)</li>
+ *     <li>Connect Timeout: 10 seconds</li>
+ *     <li>Read Timeout: 30 seconds</li>
+ *     <li>Max Retries: <code>3</code> (backoff from 500 ms up to 10 seconds)</li>
+ *     <li>Dependency Timeout: <code>0</code> (no deadline)</li>
+ *     <li>Bootstrap Timeout: <code>0</code> (no deadline)</li>
+ *     <li>Persist Metadata Cache: <code>false</code></li>
+ *     <li>Adaptive Repository Order: <code>false</code></li>
+ *     <li>Hedge Repositories: <code>false</code></li>
+ *     <li>Adaptive Host Concurrency: <code>false</code> (initial limit 2, max limit 16)</li>
+ *     <li>Shared Cache Directory: <code>null</code> (no shared cache)</li>
+ *     <li>Warm Start: <code>true</code></li>
+ *     <li>Verify Existing: <code>false</code></li>
+ *     <li>AppCDS Archive: <code>false</code></li>
+ *     <li>Library Pack: <code>false</code></li>
+ *     <li>Map Jars: <code>false</code></li>
  * </ul>
  * You may use the builder to easily create an instance with custom settings.
  */
@@ -28,6 +46,11 @@ import java.util.function.Function;
 @Builder
 public class BootstrapOptions {
 
+    /**
+     * The name of the directory within the library directory where Amber keeps its state between bootstraps.
+     */
+    public static final String STATE_DIRECTORY_NAME = ".amber";
+
     /**
      * The temporary directory to use for downloading dependencies before moving them to the final location.
      */
@@ -86,6 +109,14 @@ public class BootstrapOptions {
      */
     private Consumer<ProgressHintContext> progressHintCallback;
 
+    /**
+     * An optional callback that will receive the {@link BootstrapReport} of each bootstrap once it completes, successfully or not, and before
+     * exiting after downloading dependencies (see {@link #exitCodeAfterDownload}). The report is also available from
+     * {@link Amber#getLastBootstrapReport()}. Any exceptions thrown by this callback will be caught and logged, but will <b>not</b> affect
+     * the bootstrap process.
+     */
+    private Consumer<BootstrapReport> reportCallback;
+
     /**
      * An optional override for the library directory specified in the manifest. If set, this directory will be used instead of the one in the
      * manifest.
@@ -99,6 +130,191 @@ public class BootstrapOptions {
     @Builder.Default
     private int downloaderThreadCount = Runtime.getRuntime().availableProcessors() * 2;
 
+    /**
+     * The strategy of running dependency downloads. {@link ExecutorStrategy#VIRTUAL_THREADS} runs each dependency in its own virtual thread
+     * on Java 21 or newer, so the concurrency follows the number of outstanding downloads instead of {@link #downloaderThreadCount}.
+     * Ignored if {@link #executorService} is set.
+     */
+    @Builder.Default
+    private ExecutorStrategy executorStrategy = ExecutorStrategy.FIXED_THREAD_POOL;
+
+    /**
+     * An optional executor service owned by the application to run dependency downloads on. If set, {@link #executorStrategy} and
+     * {@link #downloaderThreadCount} are ignored. Amber never shuts this executor service down.
+     */
+    private ExecutorService executorService;
+
+    /**
+     * The timeout in milliseconds for connecting to repositories, 0 for no timeout.
+     */
+    @Builder.Default
+    private long connectTimeoutMillis = 10_000;
+
+    /**
+     * The timeout in milliseconds for a single read from a repository (including waiting for response headers), 0 for no timeout.
+     */
+    @Builder.Default
+    private long readTimeoutMillis = 30_000;
+
+    /**
+     * The number of times a request failing transiently (an I/O error such as a timeout or a reset, HTTP 5xx, 408 or 429) is retried on
+     * the same repository before moving on to the next one. Retries are delayed using exponential backoff with full jitter, see
+     * {@link #retryBackoffMillis}. Throttled requests wait for at least the repository's <code>Retry-After</code>.
+     */
+    @Builder.Default
+    private int maxRetries = 3;
+
+    /**
+     * The base delay in milliseconds of retries. The n-th retry waits a random delay between 0 and <code>retryBackoffMillis * 2^(n-1)</code>,
+     * capped by {@link #maxRetryBackoffMillis}.
+     */
+    @Builder.Default
+    private long retryBackoffMillis = 500;
+
+    /**
+     * The maximum delay in milliseconds of a single retry.
+     */
+    @Builder.Default
+    private long maxRetryBackoffMillis = 10_000;
+
+    /**
+     * The deadline in milliseconds for processing a single dependency (downloading it from all repositories, including retries, and
+     * validating it), 0 for no deadline. A dependency exceeding the deadline fails the bootstrap.
+     */
+    @Builder.Default
+    private long dependencyTimeoutMillis = 0;
+
+    /**
+     * The deadline in milliseconds for the whole bootstrap, 0 for no deadline. Once exceeded, in-flight downloads are cancelled and the
+     * bootstrap fails.
+     */
+    @Builder.Default
+    private long bootstrapTimeoutMillis = 0;
+
+    /**
+     * Whether to persist the <code>maven-metadata.xml</code> cache into the state directory (see {@link #getPreferredStateDirectory(AmberManifest)}).
+     * Persisted entries are revalidated using <code>ETag</code> and <code>Last-Modified</code> headers on the next bootstrap. Regardless of
+     * this option, the metadata is cached in memory for the whole bootstrap.
+     */
+    @Builder.Default
+    private boolean persistMetadataCache = false;
+
+    /**
+     * Whether to order repositories by their measured latency and success rate instead of the declared order. The statistics are persisted
+     * into the state directory (see {@link #getPreferredStateDirectory(AmberManifest)}), so the order adapts over multiple bootstraps.
+     */
+    @Builder.Default
+    private boolean adaptiveRepositoryOrder = false;
+
+    /**
+     * Whether to hedge downloads across repositories. If a repository does not finish the download within the hedging delay, the same
+     * download is started from the next repository as well. The first successful download wins and the others are cancelled. The hedging
+     * delay is computed from the repository's latency statistics (see {@link #hedgingPercentile}), which are persisted the same way as with
+     * {@link #adaptiveRepositoryOrder}.
+     */
+    @Builder.Default
+    private boolean hedgeRepositories = false;
+
+    /**
+     * The latency percentile of a repository after which the download is hedged with the next repository, between 0 and 1.
+     * {@link #hedgeRepositories} must be enabled for this to have any effect.
+     */
+    @Builder.Default
+    private double hedgingPercentile = 0.95;
+
+    /**
+     * The hedging delay in milliseconds used for repositories without any latency statistics yet.
+     * {@link #hedgeRepositories} must be enabled for this to have any effect.
+     */
+    @Builder.Default
+    private long hedgingDelayMillis = 1000;
+
+    /**
+     * Whether to adapt the number of concurrent downloads from each repository host (see {@link HostConcurrencyLimiter}). The limit of
+     * a host grows while its downloads succeed with steady latency and is halved when the host throttles (HTTP 429 or 503), fails, times
+     * out or slows down. Throttled downloads are retried after the host's <code>Retry-After</code>. The overall concurrency is still capped
+     * by the executor (see {@link #executorStrategy}), so consider virtual threads or a higher {@link #downloaderThreadCount}.
+     */
+    @Builder.Default
+    private boolean adaptiveHostConcurrency = false;
+
+    /**
+     * The number of concurrent downloads each repository host starts with. {@link #adaptiveHostConcurrency} must be enabled for this to
+     * have any effect.
+     */
+    @Builder.Default
+    private int initialHostConcurrency = 2;
+
+    /**
+     * The maximum number of concurrent downloads from each repository host. {@link #adaptiveHostConcurrency} must be enabled for this to
+     * have any effect.
+     */
+    @Builder.Default
+    private int maxHostConcurrency = 16;
+
+    /**
+     * An optional host-wide cache directory shared by all applications (see {@link #getDefaultSharedCacheDirectory()}). If set, validated
+     * dependencies are stored there by their hash and installed into library directories by hard links (or copies if hard links are not
+     * supported), so each dependency is downloaded and stored only once per host. Checksums must be validated for dependencies to be
+     * stored into the cache. Cached dependencies are re-hashed once per bootstrap before they're installed, and downloaded again if they
+     * don't match.
+     */
+    private Path sharedCacheDirectory;
+
+    /**
+     * Whether to use the fingerprint of the last completed bootstrap to skip checking each dependency. If the loaded manifests did not
+     * change and all installed jars have the same size and modification time, the bootstrap returns immediately. The fingerprint is kept
+     * in the state directory (see {@link #getPreferredStateDirectory(AmberManifest)}). Ignored if {@link #forceRedownload} or
+     * {@link #verifyExisting} is enabled, since the fingerprint only compares the size and modification time of the jars, not the file
+     * keys the verification relies on.
+     */
+    @Builder.Default
+    private boolean warmStart = false;
+
+    /**
+     * Whether to verify the integrity of dependencies that are already installed in the library directory. Installed jars are hashed and
+     * compared with their pinned checksum, the checksum recorded when Amber installed them, or the repository's checksum, in this order.
+     * Jars failing the verification are downloaded again. Verified jars are remembered in the state directory (see
+     * {@link #getPreferredStateDirectory(AmberManifest)}) along with their size, modification time and file key, so they are hashed
+     * again only if they change.
+     */
+    @Builder.Default
+    private boolean verifyExisting = false;
+
+    /**
+     * Whether to manage a dynamic AppCDS archive of the installed dependencies (see {@link AppCdsArchive}). JVM flags recording or using
+     * the archive are written into the state directory (see {@link #getPreferredStateDirectory(AmberManifest)}) and should be passed to
+     * the next launch of the JVM. The archive is recreated whenever any installed dependency changes.
+     */
+    @Builder.Default
+    private boolean appCdsArchive = false;
+
+    /**
+     * Whether to merge the installed dependencies into a single uncompressed library pack (see {@link LibraryPack}) in the state directory
+     * (see {@link #getPreferredStateDirectory(AmberManifest)}). {@link AmberClassLoader} created from the bootstrapped paths loads classes
+     * from the pack instead of the separate jars. The pack is rebuilt whenever any installed dependency changes and deleted when this
+     * option is disabled.
+     */
+    @Builder.Default
+    private boolean libraryPack = false;
+
+    /**
+     * Whether {@link AmberClassLoader} created by {@link Amber#launch(String, String[], BootstrapOptions)} reads jars using
+     * {@link MappedJarFile}, defining classes straight from memory-mapped jars instead of going through {@link java.util.jar.JarFile}.
+     * Signed jars are still read using {@link java.util.jar.JarFile}.
+     */
+    @Builder.Default
+    private boolean mapJars = false;
+
+    /**
+     * Get the default host-wide cache directory, <code>~/.amber/cache</code>.
+     *
+     * @return The default shared cache directory.
+     */
+    public static Path getDefaultSharedCacheDirectory() {
+        return Paths.get(System.getProperty("user.home"), STATE_DIRECTORY_NAME, "cache");
+    }
+
     /**
      * Get the preferred library directory, using the override if set, otherwise falling back to the manifest's directory.
      *
@@ -110,6 +326,17 @@ public class BootstrapOptions {
         return libraryDirectoryOverride != null ? libraryDirectoryOverride : manifest.getDirectory();
     }
 
+    /**
+     * Get the preferred state directory, where Amber keeps its state between bootstraps. It is located within the preferred library directory.
+     *
+     * @param manifest The Amber manifest to get the library directory from if no override is set.
+     *
+     * @return The preferred state directory.
+     */
+    public Path getPreferredStateDirectory(AmberManifest manifest) {
+        return getPrefferedLibraryDirectory(manifest).resolve(STATE_DIRECTORY_NAME);
+    }
+
     /**
      * Invokes the progress hint callback with the given context, if it is set.
      *
@@ -124,4 +351,19 @@ public class BootstrapOptions {
             }
         }
     }
+
+    /**
+     * Invokes the report callback with the given report, if it is set.
+     *
+     * @param report The report of the completed bootstrap.
+     */
+    public void invokeReportCallback(BootstrapReport report, Logger logger) {
+        if (reportCallback != null) {
+            try {
+                reportCallback.accept(report);
+            } catch (Exception exception) {
+                logger.error("An exception occurred while invoking the report callback!", exception);
+            }
+        }
+    }
 }
@@ -0,0 +1,405 @@
+package enterprises.iwakura.amber;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The timings and transfer statistics of a bootstrap: per dependency (see {@link DependencyReport}) and in aggregate. Available from
+ * {@link Amber#getLastBootstrapReport()} and {@link BootstrapOptions#getReportCallback()} once the bootstrap completes, successfully or
+ * not, and writable as JSON ({@link #writeJson(Writer)}) or in the Prometheus text format ({@link #writePrometheus(Writer)}).
+ */
+@Getter
+@RequiredArgsConstructor
+public class BootstrapReport {
+
+    /**
+     * The prefix of all Prometheus metric names.
+     */
+    public static final String METRIC_PREFIX = "amber_bootstrap_";
+
+    /**
+     * The time the bootstrap started at.
+     */
+    private final Instant startTime;
+
+    /**
+     * The duration of the bootstrap, in nanoseconds.
+     */
+    private final long durationNanos;
+
+    /**
+     * Whether the bootstrap was skipped by a warm start (see {@link BootstrapOptions#isWarmStart()}), in which case there are no dependency
+     * reports.
+     */
+    private final boolean warmStart;
+
+    /**
+     * The error message of the failed bootstrap, or null if the bootstrap succeeded.
+     */
+    private final String errorMessage;
+
+    /**
+     * The reports of all dependencies, in the order they were scheduled.
+     */
+    private final List<DependencyReport> dependencies;
+
+    /**
+     * Checks whether the bootstrap succeeded.
+     *
+     * @return true if the bootstrap succeeded
+     */
+    public boolean isSuccess() {
+        return errorMessage == null;
+    }
+
+    /**
+     * Gets the time spent in the specified phase by all dependencies.
+     *
+     * @param phase the phase
+     *
+     * @return the time in nanoseconds
+     */
+    public long getPhaseNanos(DependencyReport.Phase phase) {
+        return dependencies.stream().mapToLong(dependency -> dependency.getPhaseNanos(phase)).sum();
+    }
+
+    /**
+     * Gets the number of bytes transferred from repositories by all dependencies.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesTransferred() {
+        return dependencies.stream().mapToLong(DependencyReport::getBytesTransferred).sum();
+    }
+
+    /**
+     * Gets the throughput of the bootstrap.
+     *
+     * @return the transferred bytes per second of the bootstrap's duration, or 0 if nothing was transferred
+     */
+    public double getThroughputBytesPerSecond() {
+        return durationNanos > 0 ? getBytesTransferred() * 1e9 / durationNanos : 0;
+    }
+
+    /**
+     * Gets the number of retried requests of all dependencies.
+     *
+     * @return the number of retries
+     */
+    public int getRetries() {
+        return dependencies.stream().mapToInt(DependencyReport::getRetries).sum();
+    }
+
+    /**
+     * Gets the number of dependencies installed from the shared cache (see {@link BootstrapOptions#getSharedCacheDirectory()}).
+     *
+     * @return the number of cache hits
+     */
+    public int getCacheHits() {
+        return getCount(DependencyReport.Outcome.CACHED);
+    }
+
+    /**
+     * Gets the number of dependencies with the specified outcome.
+     *
+     * @param outcome the outcome
+     *
+     * @return the number of dependencies
+     */
+    public int getCount(DependencyReport.Outcome outcome) {
+        return (int) dependencies.stream().filter(dependency -> dependency.getOutcome() == outcome).count();
+    }
+
+    /**
+     * Gets the number of bytes transferred by dependencies downloaded from each repository.
+     *
+     * @return the number of bytes, keyed by the repository URL
+     */
+    public Map<String, Long> getBytesTransferredByRepository() {
+        Map<String, Long> bytesTransferred = new LinkedHashMap<>();
+        for (DependencyReport dependency : dependencies) {
+            if (dependency.getRepository() != null) {
+                bytesTransferred.merge(dependency.getRepository(), dependency.getBytesTransferred(), Long::sum);
+            }
+        }
+        return bytesTransferred;
+    }
+
+    /**
+     * Writes the report as a JSON object. Durations are in milliseconds.
+     *
+     * @param writer the writer to write into
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("{\"startTime\":");
+        writeJsonString(writer, startTime.toString());
+        writer.write(",\"durationMillis\":" + toMillis(durationNanos));
+        writer.write(",\"warmStart\":" + warmStart);
+        writer.write(",\"success\":" + isSuccess());
+        writer.write(",\"error\":");
+        writeJsonString(writer, errorMessage);
+        writer.write(",\"bytesTransferred\":" + getBytesTransferred());
+        writer.write(",\"throughputBytesPerSecond\":" + getThroughputBytesPerSecond());
+        writer.write(",\"retries\":" + getRetries());
+        writer.write(",\"cacheHits\":" + getCacheHits());
+
+        writer.write(",\"outcomes\":{");
+        String separator = "";
+        for (DependencyReport.Outcome outcome : DependencyReport.Outcome.values()) {
+            writer.write(separator + "\"" + outcome.name().toLowerCase(Locale.ROOT) + "\":" + getCount(outcome));
+            separator = ",";
+        }
+        writer.write("},\"phasesMillis\":{");
+        separator = "";
+        for (DependencyReport.Phase phase : DependencyReport.Phase.values()) {
+            writer.write(separator + "\"" + phase.getKey() + "\":" + toMillis(getPhaseNanos(phase)));
+            separator = ",";
+        }
+
+        writer.write("},\"repositories\":[");
+        separator = "";
+        for (Map.Entry<String, Long> entry : getBytesTransferredByRepository().entrySet()) {
+            writer.write(separator + "{\"url\":");
+            writeJsonString(writer, entry.getKey());
+            writer.write(",\"bytesTransferred\":" + entry.getValue() + "}");
+            separator = ",";
+        }
+
+        writer.write("],\"dependencies\":[");
+        separator = "";
+        for (DependencyReport dependency : dependencies) {
+            writer.write(separator + "{\"notation\":");
+            writeJsonString(writer, dependency.getNotation());
+            writer.write(",\"outcome\":\"" + dependency.getOutcome().name().toLowerCase(Locale.ROOT) + "\"");
+            writer.write(",\"repository\":");
+            writeJsonString(writer, dependency.getRepository());
+            writer.write(",\"durationMillis\":" + toMillis(dependency.getDurationNanos()));
+            writer.write(",\"bytesTransferred\":" + dependency.getBytesTransferred());
+            writer.write(",\"throughputBytesPerSecond\":" + dependency.getThroughputBytesPerSecond());
+            writer.write(",\"attempts\":" + dependency.getAttempts());
+            writer.write(",\"retries\":" + dependency.getRetries());
+            writer.write(",\"phasesMillis\":{");
+            String phaseSeparator = "";
+            for (DependencyReport.Phase phase : DependencyReport.Phase.values()) {
+                writer.write(phaseSeparator + "\"" + phase.getKey() + "\":" + toMillis(dependency.getPhaseNanos(phase)));
+                phaseSeparator = ",";
+            }
+            writer.write("}}");
+            separator = ",";
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    /**
+     * Writes the report in the Prometheus text exposition format, e.g. for the textfile collector of the node exporter. All metrics are
+     * gauges of this bootstrap and durations are in seconds.
+     *
+     * @param writer the writer to write into
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        writeMetricHeader(writer, "duration_seconds", "Duration of the bootstrap.");
+        writeMetric(writer, "duration_seconds", "", toSeconds(durationNanos));
+        writeMetricHeader(writer, "success", "Whether the bootstrap succeeded.");
+        writeMetric(writer, "success", "", isSuccess() ? 1 : 0);
+        writeMetricHeader(writer, "warm_start", "Whether the bootstrap was skipped by a warm start.");
+        writeMetric(writer, "warm_start", "", warmStart ? 1 : 0);
+        writeMetricHeader(writer, "bytes_transferred", "Bytes transferred from repositories.");
+        writeMetric(writer, "bytes_transferred", "", getBytesTransferred());
+        writeMetricHeader(writer, "throughput_bytes_per_second", "Bytes transferred per second of the bootstrap.");
+        writeMetric(writer, "throughput_bytes_per_second", "", getThroughputBytesPerSecond());
+        writeMetricHeader(writer, "retries", "Retried requests.");
+        writeMetric(writer, "retries", "", getRetries());
+        writeMetricHeader(writer, "cache_hits", "Dependencies installed from the shared cache.");
+        writeMetric(writer, "cache_hits", "", getCacheHits());
+
+        writeMetricHeader(writer, "dependencies", "Dependencies by outcome.");
+        for (DependencyReport.Outcome outcome : DependencyReport.Outcome.values()) {
+            writeMetric(writer, "dependencies", labels("outcome", outcome.name().toLowerCase(Locale.ROOT)), getCount(outcome));
+        }
+        writeMetricHeader(writer, "phase_seconds", "Time spent in each phase by all dependencies.");
+        for (DependencyReport.Phase phase : DependencyReport.Phase.values()) {
+            writeMetric(writer, "phase_seconds", labels("phase", phase.name().toLowerCase(Locale.ROOT)), toSeconds(getPhaseNanos(phase)));
+        }
+        writeMetricHeader(writer, "repository_bytes_transferred", "Bytes transferred by dependencies downloaded from each repository.");
+        for (Map.Entry<String, Long> entry : getBytesTransferredByRepository().entrySet()) {
+            writeMetric(writer, "repository_bytes_transferred", labels("repository", entry.getKey()), entry.getValue());
+        }
+
+        writeMetricHeader(writer, "dependency_duration_seconds", "Duration of each dependency's bootstrap.");
+        for (DependencyReport dependency : dependencies) {
+            String labels = labels("dependency", dependency.getNotation(), "outcome", dependency.getOutcome().name().toLowerCase(Locale.ROOT));
+            writeMetric(writer, "dependency_duration_seconds", labels, toSeconds(dependency.getDurationNanos()));
+        }
+        writeMetricHeader(writer, "dependency_phase_seconds", "Time spent in each phase by each dependency.");
+        for (DependencyReport dependency : dependencies) {
+            for (DependencyReport.Phase phase : DependencyReport.Phase.values()) {
+                String labels = labels("dependency", dependency.getNotation(), "phase", phase.name().toLowerCase(Locale.ROOT));
+                writeMetric(writer, "dependency_phase_seconds", labels, toSeconds(dependency.getPhaseNanos(phase)));
+            }
+        }
+        writeMetricHeader(writer, "dependency_bytes_transferred", "Bytes transferred by each dependency.");
+        for (DependencyReport dependency : dependencies) {
+            String repository = dependency.getRepository() != null ? dependency.getRepository() : "";
+            writeMetric(writer, "dependency_bytes_transferred", labels("dependency", dependency.getNotation(), "repository", repository), dependency.getBytesTransferred());
+        }
+        writeMetricHeader(writer, "dependency_retries", "Retried requests of each dependency.");
+        for (DependencyReport dependency : dependencies) {
+            writeMetric(writer, "dependency_retries", labels("dependency", dependency.getNotation()), dependency.getRetries());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Gets the report as a JSON object, see {@link #writeJson(Writer)}.
+     *
+     * @return the JSON object
+     */
+    public String toJson() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeJson(writer);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception); // Never thrown by StringWriter
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Gets the report in the Prometheus text exposition format, see {@link #writePrometheus(Writer)}.
+     *
+     * @return the metrics
+     */
+    public String toPrometheus() {
+        StringWriter writer = new StringWriter();
+        try {
+            writePrometheus(writer);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception); // Never thrown by StringWriter
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the <code>HELP</code> and <code>TYPE</code> lines of a gauge.
+     *
+     * @param writer the writer
+     * @param name   the metric name without {@link #METRIC_PREFIX}
+     * @param help   the help text
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected static void writeMetricHeader(Writer writer, String name, String help) throws IOException {
+        writer.write("# HELP " + METRIC_PREFIX + name + " " + help + "\n");
+        writer.write("# TYPE " + METRIC_PREFIX + name + " gauge\n");
+    }
+
+    /**
+     * Writes a single sample.
+     *
+     * @param writer the writer
+     * @param name   the metric name without {@link #METRIC_PREFIX}
+     * @param labels the formatted labels, see {@link #labels(String...)}
+     * @param value  the value
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected static void writeMetric(Writer writer, String name, String labels, double value) throws IOException {
+        String formattedValue = value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+        writer.write(METRIC_PREFIX + name + labels + " " + formattedValue + "\n");
+    }
+
+    /**
+     * Formats Prometheus labels, escaping their values.
+     *
+     * @param namesAndValues the label names, each followed by its value
+     *
+     * @return the formatted labels, e.g. <code>{phase="transfer"}</code>
+     */
+    protected static String labels(String... namesAndValues) {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(namesAndValues[i]).append("=\"");
+            String value = namesAndValues[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    builder.append('\\').append(c);
+                } else if (c == '\n') {
+                    builder.append("\\n");
+                } else {
+                    builder.append(c);
+                }
+            }
+            builder.append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Writes a JSON string, escaping it.
+     *
+     * @param writer the writer
+     * @param value  the string, may be null
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected static void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Converts nanoseconds into milliseconds, keeping microsecond precision.
+     *
+     * @param nanos the nanoseconds
+     *
+     * @return the milliseconds
+     */
+    protected static double toMillis(long nanos) {
+        return nanos / 1000 / 1000.0;
+    }
+
+    /**
+     * Converts nanoseconds into seconds, keeping microsecond precision.
+     *
+     * @param nanos the nanoseconds
+     *
+     * @return the seconds
+     */
+    protected static double toSeconds(long nanos) {
+        return nanos / 1000 / 1e6;
+    }
+}
@@ -0,0 +1,69 @@
+package enterprises.iwakura.amber;
+
+import lombok.Data;
+
+/**
+ * Represents a checksum value of a specific {@link ChecksumType}, such as a checksum pinned at build time by the Amber Gradle plugin.
+ */
+@Data
+public class Checksum {
+
+    /**
+     * The delimiter between the checksum type and its value in the checksum notation.
+     */
+    public static final String NOTATION_DELIMITER = ":";
+
+    /**
+     * The type of the checksum.
+     */
+    private final ChecksumType type;
+
+    /**
+     * The checksum value as a hexadecimal string.
+     */
+    private final String value;
+
+    /**
+     * Parses a checksum from its notation in the format "type:value" (e.g. <code>SHA256:9f86d0...</code>). The type is case-insensitive.
+     *
+     * @param notation the checksum notation
+     *
+     * @return the parsed checksum
+     *
+     * @throws IllegalArgumentException if the notation is invalid or the checksum type is unknown
+     */
+    public static Checksum parse(String notation) {
+        int delimiterIndex = notation.indexOf(NOTATION_DELIMITER);
+        if (delimiterIndex <= 0 || delimiterIndex == notation.length() - 1) {
+            throw new IllegalArgumentException("Invalid checksum notation: " + notation);
+        }
+        ChecksumType type = ChecksumType.valueOf(notation.substring(0, delimiterIndex).trim().toUpperCase());
+        return new Checksum(type, notation.substring(delimiterIndex + 1).trim());
+    }
+
+    /**
+     * Converts the specified digest bytes into a lowercase hexadecimal string.
+     *
+     * @param digest the digest bytes
+     *
+     * @return the hexadecimal string
+     */
+    public static String toHexString(byte[] digest) {
+        char[] hexChars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hexChars[i * 2] = Character.forDigit((digest[i] >> 4) & 0xF, 16);
+            hexChars[i * 2 + 1] = Character.forDigit(digest[i] & 0xF, 16);
+        }
+        return new String(hexChars);
+    }
+
+    /**
+     * Returns the checksum notation in the format "type:value".
+     *
+     * @return the checksum notation
+     */
+    @Override
+    public String toString() {
+        return type.name() + NOTATION_DELIMITER + value;
+    }
+}
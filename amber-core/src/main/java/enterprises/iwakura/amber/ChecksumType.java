@@ -1,13 +1,23 @@
 package enterprises.iwakura.amber;
 
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
 /**
  * Enum representing different types of checksums.
  */
+@RequiredArgsConstructor
+@Getter
 public enum ChecksumType {
-    SHA512,
-    SHA256,
-    SHA1,
-    MD5;
+    SHA512("SHA-512"),
+    SHA256("SHA-256"),
+    SHA1("SHA-1"),
+    MD5("MD5");
+
+    /**
+     * The standard name of the algorithm, as accepted by {@link java.security.MessageDigest#getInstance(String)} on all Java versions.
+     */
+    private final String algorithm;
 
     /**
      * Gets the file extension associated with the checksum type.
@@ -2,6 +2,7 @@ package enterprises.iwakura.amber;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 /**
  * Validates the checksum of a file against a given checksum and type.
@@ -21,4 +22,25 @@ public interface ChecksumValidator {
      * @throws IOException if an I/O error occurs
      */
     ChecksumResult validate(ChecksumType checksumType, String checksum, Path file) throws IOException;
+
+    /**
+     * Validates the checksum of the given file, using checksums already calculated while the file was downloaded. If there's no
+     * calculated checksum of the specified type, this method falls back to {@link #validate(ChecksumType, String, Path)}.
+     *
+     * @param checksumType        the type of checksum (e.g., MD5, SHA-1, SHA-256)
+     * @param checksum            the expected checksum value
+     * @param file                the file to validate
+     * @param calculatedChecksums the checksums calculated while downloading the file, may be null
+     *
+     * @return the result of the checksum validation
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    default ChecksumResult validate(ChecksumType checksumType, String checksum, Path file, Map<ChecksumType, String> calculatedChecksums) throws IOException {
+        String calculatedChecksum = calculatedChecksums != null ? calculatedChecksums.get(checksumType) : null;
+        if (calculatedChecksum == null) {
+            return validate(checksumType, checksum, file);
+        }
+        return calculatedChecksum.equalsIgnoreCase(checksum) ? ChecksumResult.MATCH : ChecksumResult.MISMATCH;
+    }
 }
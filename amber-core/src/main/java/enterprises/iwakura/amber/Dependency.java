@@ -28,6 +28,18 @@ public class Dependency {
      */
     private final String version;
 
+    /**
+     * The checksum of the dependency's JAR file pinned at build time, or null if there's none. If set, the downloaded JAR file is
+     * validated against this checksum instead of checksum files from the repository.
+     */
+    private Checksum pinnedChecksum;
+
+    /**
+     * The repository and exact version the dependency was resolved from at build time, or null if there's none. If set, the dependency is
+     * downloaded from the routed repository first.
+     */
+    private DependencyRoute route;
+
     /**
      * Constructs a Dependency object by parsing the given notation.
      *
@@ -28,6 +28,19 @@ public interface DependencyDownloader {
         return downloaders;
     }
 
+    /**
+     * Prepares the downloader for a new bootstrap. Called once per bootstrap before any dependency is downloaded. Downloaders
+     * may use this to reset or load their per-bootstrap state, such as caches.
+     *
+     * @param options        the bootstrap options in use
+     * @param stateDirectory the directory where the downloader may persist its state between bootstraps
+     *
+     * @throws IOException if an I/O error occurs while preparing
+     */
+    default void prepare(BootstrapOptions options, Path stateDirectory) throws IOException {
+        // Nothing to prepare by default
+    }
+
     /**
      * Downloads the jar file for the specified dependency from the given repository and saves it to the specified file path.
      *
@@ -41,6 +54,26 @@ public interface DependencyDownloader {
      */
     DownloadResult downloadJar(Dependency dependency, Repository repository, Path filePath) throws IOException;
 
+    /**
+     * Downloads the jar file like {@link #downloadJar(Dependency, Repository, Path)}, notifying the listener once the repository started
+     * sending the jar, before it is transferred. Hedged downloads use this to hedge only repositories that did not start sending yet. By
+     * default, the listener is notified once the download finished.
+     *
+     * @param dependency       the dependency to download
+     * @param repository       the repository to download from
+     * @param filePath         the path to save the downloaded jar file
+     * @param responseListener the listener to notify once the repository started sending the jar
+     *
+     * @return a {@link DownloadResult} indicating the success or failure of the download
+     *
+     * @throws IOException if an I/O error occurs during the download
+     */
+    default DownloadResult downloadJar(Dependency dependency, Repository repository, Path filePath, Runnable responseListener) throws IOException {
+        DownloadResult result = downloadJar(dependency, repository, filePath);
+        responseListener.run();
+        return result;
+    }
+
     /**
      * Downloads the checksum for the specified dependency from the given repository.
      *
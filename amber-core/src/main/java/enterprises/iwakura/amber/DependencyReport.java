@@ -0,0 +1,203 @@
+package enterprises.iwakura.amber;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The timings and transfer statistics of a single dependency within a {@link BootstrapReport}. Recorded by {@link Amber} while the
+ * dependency is being bootstrapped, possibly from multiple threads (hedged downloads), so all recording methods are synchronized. Timings
+ * of phases are summed over all attempts, including hedged attempts running at the same time.
+ */
+@Getter
+public class DependencyReport {
+
+    /**
+     * The dependency's notation, e.g. <code>com.google.code.gson:gson:2.13.1</code>.
+     */
+    private final String notation;
+
+    /**
+     * The time spent in each phase, in nanoseconds.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+
+    /**
+     * The outcome of the dependency's bootstrap.
+     */
+    private Outcome outcome = Outcome.PENDING;
+
+    /**
+     * The URL of the repository the dependency was downloaded from, or null if it was not downloaded.
+     */
+    private String repository;
+
+    /**
+     * The time spent on bootstrapping the dependency, in nanoseconds.
+     */
+    private long durationNanos;
+
+    /**
+     * The number of bytes transferred from repositories, over all attempts.
+     */
+    private long bytesTransferred;
+
+    /**
+     * The number of download attempts, including retries.
+     */
+    private int attempts;
+
+    /**
+     * The number of retried requests, including checksum requests.
+     */
+    private int retries;
+
+    /**
+     * Constructs a new DependencyReport.
+     *
+     * @param notation the dependency's notation
+     */
+    public DependencyReport(String notation) {
+        this.notation = notation;
+    }
+
+    /**
+     * Gets the time spent in the specified phase.
+     *
+     * @param phase the phase
+     *
+     * @return the time in nanoseconds
+     */
+    public synchronized long getPhaseNanos(Phase phase) {
+        return phaseNanos.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * Gets the throughput of the dependency's transfer.
+     *
+     * @return the transferred bytes per second of {@link Phase#TRANSFER}, or 0 if nothing was transferred
+     */
+    public synchronized double getThroughputBytesPerSecond() {
+        long transferNanos = getPhaseNanos(Phase.TRANSFER);
+        return transferNanos > 0 ? bytesTransferred * 1e9 / transferNanos : 0;
+    }
+
+    /**
+     * Adds the specified time to the specified phase.
+     *
+     * @param phase the phase
+     * @param nanos the time in nanoseconds
+     */
+    public synchronized void recordPhase(Phase phase, long nanos) {
+        phaseNanos.merge(phase, Math.max(nanos, 0), Long::sum);
+    }
+
+    /**
+     * Records a finished download attempt: its metadata lookup, its transfer (the rest of the attempt) and the transferred bytes.
+     *
+     * @param result        the download result
+     * @param durationNanos the duration of the attempt in nanoseconds
+     */
+    public synchronized void recordAttempt(DownloadResult result, long durationNanos) {
+        attempts++;
+        recordPhase(Phase.METADATA_LOOKUP, result.getMetadataLookupNanos());
+        recordPhase(Phase.TRANSFER, durationNanos - result.getMetadataLookupNanos());
+        bytesTransferred += result.getBytesTransferred();
+    }
+
+    /**
+     * Records a retried request.
+     */
+    public synchronized void recordRetry() {
+        retries++;
+    }
+
+    /**
+     * Records the outcome of the dependency's bootstrap.
+     *
+     * @param outcome    the outcome
+     * @param repository the URL of the repository the dependency was downloaded from, or null
+     */
+    public synchronized void recordOutcome(Outcome outcome, String repository) {
+        this.outcome = outcome;
+        this.repository = repository;
+    }
+
+    /**
+     * Records the time spent on bootstrapping the dependency.
+     *
+     * @param durationNanos the time in nanoseconds
+     */
+    public synchronized void recordDuration(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * The phases of bootstrapping a dependency.
+     */
+    @Getter
+    public enum Phase {
+        /**
+         * Looking up the version in <code>maven-metadata.xml</code>.
+         */
+        METADATA_LOOKUP("metadataLookup"),
+        /**
+         * Downloading the jar, including the checksums calculated on the fly.
+         */
+        TRANSFER("transfer"),
+        /**
+         * Downloading checksums from repositories.
+         */
+        CHECKSUM_FETCH("checksumFetch"),
+        /**
+         * Hashing jars outside of the transfer, i.e. validating checksums and verifying installed jars.
+         */
+        HASHING("hashing"),
+        /**
+         * Moving, copying or linking the jar into library directories and the shared cache.
+         */
+        MOVE("move");
+
+        /**
+         * The name of the phase in JSON.
+         */
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The outcome of bootstrapping a dependency.
+     */
+    public enum Outcome {
+        /**
+         * The dependency was not processed, e.g. the bootstrap failed before it.
+         */
+        PENDING,
+        /**
+         * The dependency was already installed.
+         */
+        EXISTING,
+        /**
+         * The dependency was installed from the shared cache.
+         */
+        CACHED,
+        /**
+         * The dependency was downloaded.
+         */
+        DOWNLOADED,
+        /**
+         * The dependency could not be found in any repository.
+         */
+        MISSING,
+        /**
+         * The dependency could not be bootstrapped.
+         */
+        FAILED
+    }
+}
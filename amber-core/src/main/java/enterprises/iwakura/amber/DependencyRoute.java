@@ -0,0 +1,79 @@
+package enterprises.iwakura.amber;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Represents where a dependency was resolved from at build time, as recorded by the Amber Gradle plugin. Amber downloads the dependency
+ * from the routed repository first, without looking up <code>maven-metadata.xml</code>, and falls back to all repositories only if that
+ * fails.
+ */
+@Data
+public class DependencyRoute {
+
+    /**
+     * The delimiter between the parts of the route notation.
+     */
+    public static final String NOTATION_DELIMITER = ";";
+
+    /**
+     * The repository the dependency was resolved from.
+     */
+    private final Repository repository;
+
+    /**
+     * The exact version of the dependency's JAR file (e.g. the timestamped version of a snapshot), or null if it's the dependency's version.
+     */
+    private final String version;
+
+    /**
+     * The size of the dependency's JAR file in bytes, or -1 if unknown.
+     */
+    private final long size;
+
+    /**
+     * Parses a route from its notation in the format "repositoryIndex;version;size", where the repository index points into the specified
+     * repositories and the version and size may be empty (e.g. <code>1;1.0-20240101.120000-3;48213</code> or <code>0;;48213</code>).
+     *
+     * @param notation     the route notation
+     * @param repositories the repositories of the manifest, in the declared order
+     *
+     * @return the parsed route
+     *
+     * @throws IllegalArgumentException if the notation is invalid or the repository index is out of bounds
+     */
+    public static DependencyRoute parse(String notation, List<Repository> repositories) {
+        String[] parts = notation.split(NOTATION_DELIMITER, -1);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid dependency route notation: " + notation);
+        }
+
+        try {
+            int repositoryIndex = Integer.parseInt(parts[0].trim());
+            if (repositoryIndex < 0 || repositoryIndex >= repositories.size()) {
+                throw new IllegalArgumentException("Dependency route points to unknown repository: " + notation);
+            }
+            String version = parts[1].trim();
+            String size = parts[2].trim();
+            return new DependencyRoute(
+                    repositories.get(repositoryIndex),
+                    version.isEmpty() ? null : version,
+                    size.isEmpty() ? -1 : Long.parseLong(size)
+            );
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("Invalid dependency route notation: " + notation, exception);
+        }
+    }
+
+    /**
+     * Checks whether this route applies to downloads from the specified repository.
+     *
+     * @param repository the repository to download from
+     *
+     * @return true if the dependency was resolved from the repository
+     */
+    public boolean isRoutedTo(Repository repository) {
+        return this.repository.equals(repository);
+    }
+}
@@ -0,0 +1,502 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.PartialDownload;
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Coordinates the downloads of a single bootstrap: retries transient failures with exponential backoff, hedges jar downloads across
+ * repositories and keeps downloads within the adaptive concurrency limits of repository hosts. Every download is recorded into the
+ * repository statistics and the report of its dependency. This class is thread-safe.
+ */
+@Getter
+@RequiredArgsConstructor
+public class DownloadCoordinator {
+
+    /**
+     * The map of repository types to their corresponding dependency downloaders.
+     */
+    protected final Map<RepositoryType, DependencyDownloader> downloaders;
+
+    /**
+     * The logger to log messages during downloading.
+     */
+    protected final Logger logger;
+
+    /**
+     * The bootstrap options to use.
+     */
+    protected final BootstrapOptions options;
+
+    /**
+     * The latency and success statistics of repositories, used to compute hedging delays.
+     */
+    protected final RepositoryStatistics repositoryStatistics;
+
+    /**
+     * The adaptive limits of concurrent downloads from each repository host, or null if
+     * {@link BootstrapOptions#isAdaptiveHostConcurrency()} is disabled.
+     */
+    protected final HostConcurrencyLimiter hostConcurrencyLimiter;
+
+    /**
+     * The executor service running hedged download attempts, or null if {@link BootstrapOptions#isHedgeRepositories()} is disabled.
+     */
+    protected final ExecutorService hedgingExecutorService;
+
+    /**
+     * The function resolving the report of a dependency within the bootstrap.
+     */
+    protected final Function<Dependency, DependencyReport> dependencyReports;
+
+    /**
+     * Downloads the specified dependency into the temporary jar path from the first of the specified repositories that has it. The download
+     * is hedged across the repositories if {@link BootstrapOptions#isHedgeRepositories()} is enabled, see
+     * {@link #downloadJarHedged(Dependency, List, Path, Map)}.
+     *
+     * @param dependency   the dependency to download
+     * @param repositories the repositories to download from, in order
+     * @param tempJarPath  the temporary path to download the jar to
+     * @param results      the map to put download results of every finished attempt into
+     *
+     * @return the successful download attempt, or null if no repository has the dependency
+     *
+     * @throws IOException if an I/O error occurs during downloading or the current thread was interrupted
+     */
+    public DownloadAttempt download(Dependency dependency, List<Repository> repositories, Path tempJarPath, Map<Repository, DownloadResult> results) throws IOException {
+        return hedgingExecutorService != null && repositories.size() > 1
+                ? downloadJarHedged(dependency, repositories, tempJarPath, results)
+                : downloadJar(dependency, repositories, tempJarPath, results);
+    }
+
+    /**
+     * Downloads the specified dependency into the temporary jar path, trying the specified repositories one by one until the first
+     * successful download.
+     *
+     * @param dependency   the dependency to download
+     * @param repositories the repositories to download from, in order
+     * @param tempJarPath  the temporary path to download the jar to
+     * @param results      the map to put download results of every tried repository into
+     *
+     * @return the successful download attempt, or null if no repository has the dependency
+     *
+     * @throws IOException if an I/O error occurs during downloading
+     */
+    protected DownloadAttempt downloadJar(Dependency dependency, List<Repository> repositories, Path tempJarPath, Map<Repository, DownloadResult> results) throws IOException {
+        for (Repository repository : repositories) {
+            DownloadAttempt attempt = attemptDownload(dependency, repository, tempJarPath, () -> {});
+            if (attempt == null) {
+                continue;
+            }
+
+            results.put(repository, attempt.getResult());
+            if (attempt.getResult().isSuccess()) {
+                return attempt;
+            }
+            logger.debug("Download failed: " + attempt.getResult().getErrorMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Downloads the specified dependency, hedging the download across the specified repositories. The download is started from the first
+     * repository; whenever the last started download fails or its repository does not start sending the jar within its hedging delay (see
+     * {@link #getHedgingDelayMillis(Repository)}), the download is started from the next repository as well. The first successful
+     * download wins and the other ones are cancelled by interrupting them. Every repository but the first one downloads into its own
+     * temporary path, see {@link #getHedgedTempJarPath(Path, int)}.
+     *
+     * @param dependency   the dependency to download
+     * @param repositories the repositories to download from, in order
+     * @param tempJarPath  the temporary path to download the jar to
+     * @param results      the map to put download results of every finished attempt into
+     *
+     * @return the winning download attempt, or null if no repository has the dependency
+     *
+     * @throws IOException if an I/O error occurs during downloading or the current thread was interrupted
+     */
+    protected DownloadAttempt downloadJarHedged(
+            Dependency dependency,
+            List<Repository> repositories,
+            Path tempJarPath,
+            Map<Repository, DownloadResult> results
+    ) throws IOException {
+        CompletionService<DownloadAttempt> completionService = new ExecutorCompletionService<>(hedgingExecutorService);
+        List<Future<DownloadAttempt>> futures = new ArrayList<>();
+        List<AtomicBoolean> responses = new ArrayList<>();
+        AtomicReference<DownloadAttempt> winner = new AtomicReference<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        long lastStartTime = 0;
+        int running = 0;
+
+        try {
+            while (futures.size() < repositories.size() || running > 0) {
+                Future<DownloadAttempt> future = null;
+                if (running > 0) {
+                    AtomicBoolean lastResponded = responses.get(responses.size() - 1);
+                    if (futures.size() < repositories.size() && !lastResponded.get()) {
+                        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastStartTime);
+                        long delayMillis = getHedgingDelayMillis(repositories.get(futures.size() - 1)) - elapsedMillis;
+                        future = completionService.poll(Math.max(delayMillis, 0), TimeUnit.MILLISECONDS);
+                        if (future == null && lastResponded.get()) {
+                            continue; // Started sending in time, the transfer itself is not hedged
+                        }
+                    } else {
+                        future = completionService.take();
+                    }
+                }
+
+                if (future == null) {
+                    // Nothing is running or the last started download is too slow, start the next one
+                    int index = futures.size();
+                    Repository repository = repositories.get(index);
+                    Path jarPath = index == 0 ? tempJarPath : getHedgedTempJarPath(tempJarPath, index);
+                    if (index > 0) {
+                        logger.debug(String.format("Hedging download of %s with %s", dependency, repository.getUrl()));
+                    }
+
+                    AtomicBoolean responded = new AtomicBoolean();
+                    responses.add(responded);
+                    futures.add(completionService.submit(() -> {
+                        DownloadAttempt attempt = attemptDownload(dependency, repository, jarPath, () -> responded.set(true));
+                        if (settled.get() && (attempt == null || attempt != winner.get())) {
+                            deleteHedgedJar(jarPath, tempJarPath); // Finished after the race was settled
+                        }
+                        return attempt;
+                    }));
+                    lastStartTime = System.nanoTime();
+                    running++;
+                    continue;
+                }
+
+                running--;
+                DownloadAttempt attempt = future.get();
+                if (attempt == null) {
+                    continue;
+                }
+
+                results.put(attempt.getRepository(), attempt.getResult());
+                if (attempt.getResult().isSuccess()) {
+                    winner.set(attempt);
+                    return attempt;
+                }
+                logger.debug("Download failed: " + attempt.getResult().getErrorMessage());
+            }
+            return null;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + dependency);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException("Failed to download " + dependency, exception.getCause());
+        } finally {
+            settled.set(true);
+            for (Future<DownloadAttempt> future : futures) {
+                if (!future.isDone()) {
+                    future.cancel(true);
+                    continue;
+                }
+
+                try {
+                    DownloadAttempt attempt = future.get();
+                    if (attempt != null && attempt != winner.get()) {
+                        deleteHedgedJar(attempt.getJarPath(), tempJarPath);
+                    }
+                } catch (InterruptedException | ExecutionException ignored) {
+                    // Failed attempts don't leave anything to clean up
+                }
+            }
+        }
+    }
+
+    /**
+     * Attempts to download the specified dependency from a single repository and records the attempt into the repository statistics.
+     * Transient failures are retried as per {@link BootstrapOptions#getMaxRetries()}. The latency of every request is recorded on its
+     * own, from sending it to its response headers, so retry delays, waiting for host permits and the transfer are not part of it.
+     *
+     * @param dependency       the dependency to download
+     * @param repository       the repository to download from
+     * @param jarPath          the path to download the jar to
+     * @param responseListener the listener to notify once the repository started sending the jar, see
+     *                         {@link DependencyDownloader#downloadJar(Dependency, Repository, Path, Runnable)}
+     *
+     * @return the download attempt, or null if there's no downloader for the repository's type
+     *
+     * @throws IOException if an I/O error occurs during downloading or the current thread was interrupted while waiting for a retry
+     */
+    protected DownloadAttempt attemptDownload(Dependency dependency, Repository repository, Path jarPath, Runnable responseListener) throws IOException {
+        DependencyDownloader downloader = downloaders.get(repository.getType());
+
+        if (downloader == null) {
+            logger.error("No downloader found for repository type: " + repository.getType(), null);
+            return null;
+        }
+
+        logger.debug(String.format("Attempting to download %s from %s (may not specify the exact version)", dependency, repository.getJarDownloadPath(dependency, null)));
+        DependencyReport report = dependencyReports.apply(dependency);
+        DownloadResult result;
+        int retries = 0;
+        while (true) {
+            long attemptStartTime;
+            if (hostConcurrencyLimiter == null) {
+                attemptStartTime = System.nanoTime();
+                result = downloader.downloadJar(dependency, repository, jarPath, responseListener);
+            } else {
+                HostConcurrencyLimiter.Permit permit = acquireHostPermit(repository);
+                attemptStartTime = System.nanoTime();
+                result = null;
+                try {
+                    result = downloader.downloadJar(dependency, repository, jarPath, responseListener);
+                } finally {
+                    permit.release(result);
+                }
+            }
+            report.recordAttempt(result, System.nanoTime() - attemptStartTime);
+            if (result.getResponseNanos() >= 0) {
+                repositoryStatistics.recordLatency(repository, TimeUnit.NANOSECONDS.toMillis(result.getResponseNanos()), result.isSuccess());
+            }
+
+            if (!isRetryable(result) || retries >= options.getMaxRetries()) {
+                break;
+            }
+            retries++;
+            report.recordRetry();
+            // Partial downloads are resumed by the retry
+            long delayMillis = getRetryDelayMillis(retries, result);
+            logger.debug(String.format("Download of %s from %s failed (%s), retrying in %d ms (%d/%d)...",
+                    dependency, repository.getUrl(), result.getErrorMessage(), delayMillis, retries, options.getMaxRetries()));
+            sleepBeforeRetry(delayMillis, dependency);
+        }
+
+        // Cancelled attempts count as unsuccessful, so repositories losing every race get ordered last
+        boolean cancelled = Thread.currentThread().isInterrupted();
+        repositoryStatistics.record(repository, result.isSuccess() && !cancelled);
+
+        return new DownloadAttempt(repository, jarPath, result);
+    }
+
+    /**
+     * Downloads the checksum of the specified dependency, within the repository host's concurrency limit if
+     * {@link BootstrapOptions#isAdaptiveHostConcurrency()} is enabled. Transient failures are retried as per
+     * {@link BootstrapOptions#getMaxRetries()}.
+     *
+     * @param downloader   the downloader of the repository's type
+     * @param dependency   the dependency to download the checksum of
+     * @param repository   the repository to download from
+     * @param checksumType the type of the checksum
+     *
+     * @return the checksum download result
+     *
+     * @throws IOException if an I/O error occurs during downloading, even after retrying
+     */
+    public StringDownloadResult downloadChecksum(DependencyDownloader downloader, Dependency dependency, Repository repository, ChecksumType checksumType) throws IOException {
+        DependencyReport report = dependencyReports.apply(dependency);
+        int retries = 0;
+        while (true) {
+            StringDownloadResult result = null;
+            IOException failure = null;
+            HostConcurrencyLimiter.Permit permit = hostConcurrencyLimiter != null ? acquireHostPermit(repository) : null;
+            long fetchStartTime = System.nanoTime();
+            try {
+                result = downloader.downloadChecksum(dependency, repository, checksumType);
+            } catch (IOException exception) {
+                failure = exception;
+            } finally {
+                report.recordPhase(DependencyReport.Phase.CHECKSUM_FETCH, System.nanoTime() - fetchStartTime);
+                if (permit != null) {
+                    permit.release(result);
+                }
+            }
+
+            boolean retryable = failure != null ? !(failure instanceof InterruptedIOException) && !Thread.currentThread().isInterrupted() : isRetryable(result);
+            if (!retryable || retries >= options.getMaxRetries()) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return result;
+            }
+            retries++;
+            report.recordRetry();
+            long delayMillis = getRetryDelayMillis(retries, result);
+            logger.debug(String.format("Download of %s checksum of %s from %s failed (%s), retrying in %d ms (%d/%d)...",
+                    checksumType, dependency, repository.getUrl(), failure != null ? failure : result.getErrorMessage(), delayMillis, retries, options.getMaxRetries()));
+            sleepBeforeRetry(delayMillis, dependency);
+        }
+    }
+
+    /**
+     * Checks whether the specified failed download may succeed if retried: the request failed with an I/O error (e.g. a timeout or a
+     * reset), HTTP 5xx, HTTP 408 or HTTP 429. Downloads of a cancelled bootstrap (the current thread is interrupted) are never retried.
+     *
+     * @param result the download result
+     *
+     * @return true if the download should be retried
+     */
+    public boolean isRetryable(DownloadResult result) {
+        if (result == null || result.isSuccess() || Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        int statusCode = result.getStatusCode();
+        return statusCode == 0 || statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+
+    /**
+     * Gets the delay before the specified retry, using exponential backoff with full jitter: a random delay between 0 and
+     * {@link BootstrapOptions#getRetryBackoffMillis()} doubled for every previous retry, capped by
+     * {@link BootstrapOptions#getMaxRetryBackoffMillis()}. The repository's <code>Retry-After</code> is waited for at least, up to
+     * {@link HostConcurrencyLimiter#MAX_RETRY_AFTER_MILLIS}.
+     *
+     * @param retry  the number of the retry, starting at 1
+     * @param result the failed download result, or null if the download failed with an exception
+     *
+     * @return the delay in milliseconds
+     */
+    protected long getRetryDelayMillis(int retry, DownloadResult result) {
+        long backoffMillis = options.getRetryBackoffMillis() << Math.min(retry - 1, 30);
+        if (backoffMillis < 0 || backoffMillis > options.getMaxRetryBackoffMillis()) {
+            backoffMillis = options.getMaxRetryBackoffMillis();
+        }
+        long delayMillis = backoffMillis > 0 ? ThreadLocalRandom.current().nextLong(backoffMillis + 1) : 0;
+
+        if (result != null && result.getRetryAfterMillis() >= 0) {
+            delayMillis = Math.max(delayMillis, Math.min(result.getRetryAfterMillis(), HostConcurrencyLimiter.MAX_RETRY_AFTER_MILLIS));
+        }
+        return delayMillis;
+    }
+
+    /**
+     * Waits before retrying a download of the specified dependency.
+     *
+     * @param delayMillis the delay in milliseconds
+     * @param dependency  the dependency being downloaded
+     *
+     * @throws IOException if the current thread was interrupted while waiting
+     */
+    protected void sleepBeforeRetry(long delayMillis, Dependency dependency) throws IOException {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry download of " + dependency);
+        }
+    }
+
+    /**
+     * Waits until a download from the specified repository fits within its host's concurrency limit.
+     *
+     * @param repository the repository to download from
+     *
+     * @return the permit, which must be released once the download finishes
+     *
+     * @throws IOException if the current thread was interrupted while waiting
+     */
+    protected HostConcurrencyLimiter.Permit acquireHostPermit(Repository repository) throws IOException {
+        try {
+            return hostConcurrencyLimiter.acquire(repository.getUrl());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a download slot of " + repository.getUrl());
+        }
+    }
+
+    /**
+     * Gets the delay after which a download from the specified repository is hedged with the next repository.
+     *
+     * @param repository the repository of the last started download
+     *
+     * @return the hedging delay in milliseconds
+     */
+    protected long getHedgingDelayMillis(Repository repository) {
+        long latencyPercentile = repositoryStatistics.getLatencyPercentile(repository, options.getHedgingPercentile());
+        return latencyPercentile >= 0 ? latencyPercentile : options.getHedgingDelayMillis();
+    }
+
+    /**
+     * Resolves the temporary path a hedged download is downloaded to, so concurrent downloads from multiple repositories don't
+     * overwrite each other.
+     *
+     * @param tempJarPath the temporary jar path of the dependency
+     * @param index       the index of the hedged repository, greater than zero
+     *
+     * @return the temporary jar path of the hedged download
+     */
+    protected Path getHedgedTempJarPath(Path tempJarPath, int index) {
+        return tempJarPath.resolveSibling(tempJarPath.getFileName() + "." + index);
+    }
+
+    /**
+     * Deletes a jar downloaded by a hedged download that lost the race. Jars downloaded into the temporary jar path itself are kept, so
+     * they may be resumed by the next bootstrap.
+     *
+     * @param jarPath     the path of the hedged download
+     * @param tempJarPath the temporary jar path of the dependency
+     */
+    public void deleteHedgedJar(Path jarPath, Path tempJarPath) {
+        if (jarPath.equals(tempJarPath)) {
+            return;
+        }
+
+        try {
+            PartialDownload.delete(jarPath);
+            Files.deleteIfExists(jarPath);
+        } catch (IOException exception) {
+            logger.error("Failed to delete hedged download " + jarPath, exception);
+        }
+    }
+
+    /**
+     * Stops the hedged download attempts that are still running, if any. Called once the bootstrap completes.
+     */
+    public void shutdown() {
+        if (hedgingExecutorService != null) {
+            hedgingExecutorService.shutdownNow();
+        }
+    }
+
+    /**
+     * A finished attempt to download a dependency from a single repository.
+     */
+    @Data
+    public static class DownloadAttempt {
+
+        /**
+         * The repository the dependency was downloaded from.
+         */
+        private final Repository repository;
+
+        /**
+         * The path the jar was downloaded to.
+         */
+        private final Path jarPath;
+
+        /**
+         * The result of the download.
+         */
+        private final DownloadResult result;
+
+        /**
+         * The result of the checksum validation, set once the downloaded jar was validated.
+         */
+        private ChecksumResult checksumResult;
+    }
+}
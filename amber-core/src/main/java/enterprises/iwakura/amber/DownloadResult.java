@@ -1,13 +1,15 @@
 package enterprises.iwakura.amber;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
 
 /**
  * Represents the result of a download operation, indicating success or failure and providing an error message if applicable.
  */
 @Data
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class DownloadResult {
 
     /**
@@ -20,6 +22,39 @@ public class DownloadResult {
      */
     private final String errorMessage;
 
+    /**
+     * The checksums of the downloaded file calculated during the download, for each calculated checksum type; null if the downloader
+     * did not calculate any.
+     */
+    private Map<ChecksumType, String> checksums;
+
+    /**
+     * The HTTP status code of the failed request, or 0 if the download did not fail with an HTTP error.
+     */
+    private int statusCode;
+
+    /**
+     * The delay in milliseconds the repository asked for before the next request (the <code>Retry-After</code> header), or -1 if it did not
+     * ask for any.
+     */
+    private long retryAfterMillis = -1;
+
+    /**
+     * The number of bytes transferred from the repository, excluding the already present part of a resumed download.
+     */
+    private long bytesTransferred;
+
+    /**
+     * The time in nanoseconds spent on looking up the version in <code>maven-metadata.xml</code> before the download, or 0 if none.
+     */
+    private long metadataLookupNanos;
+
+    /**
+     * The time in nanoseconds from sending the jar request to receiving its response headers, or -1 if no response was received or the
+     * downloader did not measure it.
+     */
+    private long responseNanos = -1;
+
     /**
      * Creates a DownloadResult representing a failed download with the provided error message.
      *
@@ -31,6 +66,22 @@ public class DownloadResult {
         return new DownloadResult(false, errorMessage);
     }
 
+    /**
+     * Creates a DownloadResult representing a download that failed with an HTTP error.
+     *
+     * @param statusCode       the HTTP status code
+     * @param statusMessage    the HTTP status message
+     * @param retryAfterMillis the delay in milliseconds the repository asked for before the next request, or -1
+     *
+     * @return a DownloadResult indicating failure
+     */
+    public static DownloadResult httpError(int statusCode, String statusMessage, long retryAfterMillis) {
+        DownloadResult result = error(String.format("HTTP %d: %s", statusCode, statusMessage));
+        result.setStatusCode(statusCode);
+        result.setRetryAfterMillis(retryAfterMillis);
+        return result;
+    }
+
     /**
      * Creates a DownloadResult representing a successful download.
      *
@@ -39,4 +90,17 @@ public class DownloadResult {
     public static DownloadResult success() {
         return new DownloadResult(true, null);
     }
+
+    /**
+     * Creates a DownloadResult representing a successful download with checksums calculated during the download.
+     *
+     * @param checksums the calculated checksums of the downloaded file
+     *
+     * @return a DownloadResult indicating success
+     */
+    public static DownloadResult successWithChecksums(Map<ChecksumType, String> checksums) {
+        DownloadResult result = success();
+        result.setChecksums(checksums);
+        return result;
+    }
 }
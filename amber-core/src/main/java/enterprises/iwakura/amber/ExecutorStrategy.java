@@ -0,0 +1,18 @@
+package enterprises.iwakura.amber;
+
+/**
+ * Strategies of running dependency downloads, see {@link BootstrapOptions#getExecutorStrategy()}.
+ */
+public enum ExecutorStrategy {
+
+    /**
+     * A fixed thread pool with {@link BootstrapOptions#getDownloaderThreadCount()} platform threads.
+     */
+    FIXED_THREAD_POOL,
+
+    /**
+     * One virtual thread per dependency, so the concurrency follows the number of outstanding downloads. Requires Java 21 or newer;
+     * falls back to {@link #FIXED_THREAD_POOL} on older JVMs.
+     */
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,343 @@
+package enterprises.iwakura.amber;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive limits of concurrent downloads from each repository host (AIMD, additive increase and multiplicative decrease). A host's limit
+ * starts at the initial limit and grows by one for every limit's worth of successful downloads that used the whole limit. It's halved
+ * whenever the host throttles (HTTP 429 or 503), fails (HTTP 5xx, timeouts or resets), or its smoothed latency rises over
+ * {@link #LATENCY_TOLERANCE} times its long-term latency. The latency is the time to response headers (see
+ * {@link DownloadResult#getResponseNanos()}), so jars and small requests like checksums share it regardless of their size. Downloads that
+ * started before the last decrease don't decrease the limit again, so failures of downloads that were already in flight don't collapse the
+ * limit. A <code>Retry-After</code> sent along with throttling blocks new downloads from the host until then. This class is thread-safe.
+ */
+public class HostConcurrencyLimiter {
+
+    /**
+     * The ratio the limit is multiplied with when the host is overloaded.
+     */
+    public static final double BACKOFF_RATIO = 0.5;
+
+    /**
+     * The ratio of the smoothed latency to the long-term latency above which the host is considered overloaded.
+     */
+    public static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * The delay after which new downloads from a throttled host are started, if the host didn't send <code>Retry-After</code>.
+     */
+    public static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+
+    /**
+     * The longest <code>Retry-After</code> that is honored. Longer delays are shortened to this.
+     */
+    public static final long MAX_RETRY_AFTER_MILLIS = 60_000;
+
+    /**
+     * The weight of a new sample in the smoothed latency.
+     */
+    protected static final double FAST_SMOOTHING = 0.3;
+
+    /**
+     * The weight of a new sample in the long-term latency.
+     */
+    protected static final double SLOW_SMOOTHING = 0.05;
+
+    /**
+     * The limit each host starts with.
+     */
+    protected final int initialLimit;
+
+    /**
+     * The maximum limit of each host.
+     */
+    protected final int maxLimit;
+
+    /**
+     * The limits of each host, keyed by the host and port.
+     */
+    protected final Map<String, HostLimit> hostLimits = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new HostConcurrencyLimiter.
+     *
+     * @param initialLimit the limit each host starts with, at least one
+     * @param maxLimit     the maximum limit of each host, at least the initial limit
+     */
+    public HostConcurrencyLimiter(int initialLimit, int maxLimit) {
+        if (initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Invalid host concurrency limits: initial " + initialLimit + ", max " + maxLimit);
+        }
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Waits until a download from the host of the specified URL may start.
+     *
+     * @param url the URL of the repository
+     *
+     * @return the permit, which must be released once the download finishes
+     *
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    public Permit acquire(String url) throws InterruptedException {
+        HostLimit hostLimit = hostLimits.computeIfAbsent(getHost(url), host -> new HostLimit(initialLimit));
+        long decreases = hostLimit.acquire();
+        return new Permit(hostLimit, System.nanoTime(), decreases);
+    }
+
+    /**
+     * Gets the current limit of the host of the specified URL.
+     *
+     * @param url the URL of the repository
+     *
+     * @return the current limit
+     */
+    public int getLimit(String url) {
+        HostLimit hostLimit = hostLimits.get(getHost(url));
+        return hostLimit != null ? hostLimit.getLimit() : initialLimit;
+    }
+
+    /**
+     * Gets the host and port of the specified URL, used as the key of limits.
+     *
+     * @param url the URL
+     *
+     * @return the lower-cased host and port, or the URL itself if it has no host
+     */
+    public static String getHost(String url) {
+        try {
+            URI uri = new URI(url);
+            if (uri.getHost() != null) {
+                return uri.getHost().toLowerCase(Locale.ROOT) + ":" + uri.getPort();
+            }
+        } catch (URISyntaxException ignored) {
+            // Limit the URL on its own
+        }
+        return url;
+    }
+
+    /**
+     * Checks whether the specified result indicates that the host throttled the download.
+     *
+     * @param result the download result
+     *
+     * @return true if the host responded with HTTP 429 or 503
+     */
+    public static boolean isThrottled(DownloadResult result) {
+        return result != null && (result.getStatusCode() == 429 || result.getStatusCode() == 503);
+    }
+
+    /**
+     * Permit to download from a host, see {@link #acquire(String)}.
+     */
+    public class Permit {
+
+        /**
+         * The limit of the host.
+         */
+        protected final HostLimit hostLimit;
+
+        /**
+         * The time the download started at, in nanoseconds.
+         */
+        protected final long startTime;
+
+        /**
+         * The number of decreases of the host's limit before the download started.
+         */
+        protected final long decreases;
+
+        /**
+         * Whether the permit was released.
+         */
+        protected boolean released;
+
+        /**
+         * Constructs a new Permit.
+         *
+         * @param hostLimit the limit of the host
+         * @param startTime the time the download started at, in nanoseconds
+         * @param decreases the number of decreases of the host's limit before the download started
+         */
+        protected Permit(HostLimit hostLimit, long startTime, long decreases) {
+            this.hostLimit = hostLimit;
+            this.startTime = startTime;
+            this.decreases = decreases;
+        }
+
+        /**
+         * Releases the permit and adapts the host's limit to the result of the download. Results of cancelled downloads (the current thread
+         * is interrupted) and client errors (e.g. HTTP 404) don't change the limit. The latency of a result without a measured time to
+         * response headers is the time since the permit was acquired. Releasing the permit again has no effect.
+         *
+         * @param result the download result, or null if the download failed with an exception
+         */
+        public void release(DownloadResult result) {
+            if (released) {
+                return;
+            }
+            released = true;
+
+            long latencyNanos = result != null && result.getResponseNanos() >= 0 ? result.getResponseNanos() : System.nanoTime() - startTime;
+            if (Thread.currentThread().isInterrupted()) {
+                hostLimit.release();
+            } else if (isThrottled(result)) {
+                long retryAfterMillis = result.getRetryAfterMillis() >= 0 ? result.getRetryAfterMillis() : DEFAULT_RETRY_AFTER_MILLIS;
+                hostLimit.onOverload(TimeUnit.MILLISECONDS.toNanos(Math.min(retryAfterMillis, MAX_RETRY_AFTER_MILLIS)), decreases);
+            } else if (result == null || !result.isSuccess() && (result.getStatusCode() == 0 || result.getStatusCode() >= 500)) {
+                hostLimit.onOverload(0, decreases);
+            } else if (result.isSuccess()) {
+                hostLimit.onSuccess(latencyNanos, decreases);
+            } else {
+                hostLimit.release();
+            }
+        }
+    }
+
+    /**
+     * The limit of a single host. All methods are synchronized on the instance, which is notified whenever a permit is released.
+     */
+    protected class HostLimit {
+
+        /**
+         * The current limit; downloads may start while fewer than its integer part are in flight.
+         */
+        protected double limit;
+
+        /**
+         * The number of downloads in flight.
+         */
+        protected int inFlight;
+
+        /**
+         * The time until which no download may start, in nanoseconds.
+         */
+        protected long blockedUntil;
+
+        /**
+         * Whether {@link #blockedUntil} is set.
+         */
+        protected boolean blocked;
+
+        /**
+         * The smoothed latency in nanoseconds, or -1 without samples.
+         */
+        protected double fastLatency = -1;
+
+        /**
+         * The long-term latency in nanoseconds, or -1 without samples.
+         */
+        protected double slowLatency = -1;
+
+        /**
+         * The number of decreases of the limit so far.
+         */
+        protected long decreases;
+
+        /**
+         * Constructs a new HostLimit.
+         *
+         * @param initialLimit the initial limit
+         */
+        protected HostLimit(int initialLimit) {
+            this.limit = initialLimit;
+        }
+
+        /**
+         * Gets the current limit.
+         *
+         * @return the integer part of the current limit
+         */
+        protected synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        /**
+         * Waits until the host is not blocked and fewer downloads than the limit are in flight, then counts a new download in flight.
+         *
+         * @return the number of decreases of the limit so far
+         *
+         * @throws InterruptedException if the current thread was interrupted while waiting
+         */
+        protected synchronized long acquire() throws InterruptedException {
+            while (true) {
+                long blockedNanos = blocked ? blockedUntil - System.nanoTime() : 0;
+                if (blockedNanos > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, blockedNanos);
+                } else if (inFlight < (int) limit) {
+                    blocked = false;
+                    inFlight++;
+                    return decreases;
+                } else {
+                    wait();
+                }
+            }
+        }
+
+        /**
+         * Releases a download without changing the limit.
+         */
+        protected synchronized void release() {
+            inFlight--;
+            notifyAll();
+        }
+
+        /**
+         * Releases a successful download and adapts the limit to its latency.
+         *
+         * @param latencyNanos       the time to response headers of the download in nanoseconds
+         * @param acquiredAtDecrease the number of decreases of the limit before the download started
+         */
+        protected synchronized void onSuccess(long latencyNanos, long acquiredAtDecrease) {
+            boolean saturated = inFlight >= (int) limit;
+            fastLatency = fastLatency < 0 ? latencyNanos : fastLatency + FAST_SMOOTHING * (latencyNanos - fastLatency);
+            slowLatency = slowLatency < 0 ? latencyNanos : slowLatency + SLOW_SMOOTHING * (latencyNanos - slowLatency);
+
+            if (fastLatency > slowLatency * LATENCY_TOLERANCE) {
+                decrease(acquiredAtDecrease);
+            } else if (saturated) {
+                // Grow only if the whole limit was in use, otherwise the limit says nothing about the host's capacity
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            release();
+        }
+
+        /**
+         * Releases a download that failed because the host is overloaded and decreases the limit.
+         *
+         * @param retryAfterNanos    the delay before new downloads may start, in nanoseconds, or 0 for no delay
+         * @param acquiredAtDecrease the number of decreases of the limit before the download started
+         */
+        protected synchronized void onOverload(long retryAfterNanos, long acquiredAtDecrease) {
+            decrease(acquiredAtDecrease);
+            if (retryAfterNanos > 0) {
+                long until = System.nanoTime() + retryAfterNanos;
+                if (!blocked || until - blockedUntil > 0) {
+                    blockedUntil = until;
+                    blocked = true;
+                }
+            }
+            release();
+        }
+
+        /**
+         * Decreases the limit, unless it was already decreased since the download started.
+         *
+         * @param acquiredAtDecrease the number of decreases of the limit before the download started
+         */
+        protected void decrease(long acquiredAtDecrease) {
+            if (decreases != acquiredAtDecrease) {
+                return;
+            }
+            limit = Math.max(1, limit * BACKOFF_RATIO);
+            decreases++;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.DefaultHttpTransports;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Transport used by {@link DependencyDownloader}s to make HTTP requests. Implementations must be thread-safe, as a single transport is
+ * shared by all downloader threads.
+ */
+public interface HttpTransport {
+
+    /**
+     * Creates the default transport for the current JVM. On Java 11 and newer, this is a transport based on <code>java.net.http.HttpClient</code>
+     * which multiplexes requests to the same host over HTTP/2 connections when the server supports it. On Java 8, this is a transport based
+     * on {@link java.net.HttpURLConnection}.
+     *
+     * @return the default transport
+     */
+    static HttpTransport defaultTransport() {
+        return DefaultHttpTransports.create();
+    }
+
+    /**
+     * Prepares the transport for a new bootstrap, e.g. applies the connect and read timeouts of the specified options. Called by
+     * downloaders when they are prepared, see {@link DependencyDownloader#prepare(BootstrapOptions, java.nio.file.Path)}.
+     *
+     * @param options the bootstrap options in use
+     */
+    default void prepare(BootstrapOptions options) {
+        // Nothing to prepare by default
+    }
+
+    /**
+     * Sends an HTTP GET request to the specified URL. Redirects are followed. The returned response must always be closed.
+     *
+     * @param url     the URL to send the request to
+     * @param headers additional request headers, may be empty
+     *
+     * @return the response
+     *
+     * @throws IOException if the request could not be sent or the response could not be received
+     */
+    Response get(String url, Map<String, String> headers) throws IOException;
+
+    /**
+     * HTTP response returned by a {@link HttpTransport}. Closing the response releases the underlying connection, so it may be reused
+     * by other requests.
+     */
+    interface Response extends Closeable {
+
+        /**
+         * Gets the HTTP status code of the response.
+         *
+         * @return the status code
+         */
+        int getStatusCode();
+
+        /**
+         * Gets the HTTP status message of the response, if the transport provides one.
+         *
+         * @return the status message, may be empty
+         */
+        String getStatusMessage();
+
+        /**
+         * Gets the first value of the specified response header.
+         *
+         * @param name the header name, case-insensitive
+         *
+         * @return the header value, or null if the header is not present
+         */
+        String getHeader(String name);
+
+        /**
+         * Gets the response body. Should be called at most once.
+         *
+         * @return the response body stream
+         *
+         * @throws IOException if the body could not be opened
+         */
+        InputStream getBody() throws IOException;
+    }
+}
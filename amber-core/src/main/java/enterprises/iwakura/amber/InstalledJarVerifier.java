@@ -0,0 +1,242 @@
+package enterprises.iwakura.amber;
+
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verifies the integrity of installed jars and remembers the results. A verified jar is trusted until its size, modification time or file key
+ * (inode on Unix-like systems) changes, so each jar is hashed only once after it was installed or modified. This class is thread-safe.
+ */
+public class InstalledJarVerifier {
+
+    /**
+     * The name of the file within the state directory where verified jars are persisted.
+     */
+    public static final String FILE_NAME = "verified.properties";
+
+    /**
+     * The size of a region mapped into memory at once while hashing.
+     */
+    public static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Whether files are hashed using memory-mapped reads. Disabled on Windows, where mapped files can't be replaced until the mapping is
+     * garbage collected.
+     */
+    protected static final boolean USE_MEMORY_MAPPING = !System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+
+    /**
+     * The verified jars, keyed by their absolute path.
+     */
+    protected final Map<String, VerifiedJar> verifiedJars = new ConcurrentHashMap<>();
+
+    /**
+     * Loads verified jars from the specified state directory. Missing or unreadable state is treated as empty.
+     *
+     * @param stateDirectory the state directory
+     *
+     * @return the loaded verifier
+     */
+    public static InstalledJarVerifier load(Path stateDirectory) {
+        InstalledJarVerifier verifier = new InstalledJarVerifier();
+        Path filePath = stateDirectory.resolve(FILE_NAME);
+        if (!Files.exists(filePath)) {
+            return verifier;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            properties.load(inputStream);
+        } catch (IOException exception) {
+            return verifier;
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.endsWith(".path")) {
+                continue;
+            }
+            String prefix = name.substring(0, name.length() - 5);
+            try {
+                verifier.verifiedJars.put(properties.getProperty(name), new VerifiedJar(
+                        Long.parseLong(properties.getProperty(prefix + ".size")),
+                        Long.parseLong(properties.getProperty(prefix + ".modified")),
+                        properties.getProperty(prefix + ".key", ""),
+                        Checksum.parse(properties.getProperty(prefix + ".checksum"))
+                ));
+            } catch (RuntimeException ignored) {
+                // Skip corrupted entries
+            }
+        }
+        return verifier;
+    }
+
+    /**
+     * Saves verified jars into the specified state directory.
+     *
+     * @param stateDirectory the state directory
+     *
+     * @throws IOException if an I/O error occurs while writing the state
+     */
+    public void save(Path stateDirectory) throws IOException {
+        Properties properties = new Properties();
+        int index = 0;
+        for (Map.Entry<String, VerifiedJar> entry : verifiedJars.entrySet()) {
+            String prefix = "jar." + index++;
+            VerifiedJar jar = entry.getValue();
+            properties.setProperty(prefix + ".path", entry.getKey());
+            properties.setProperty(prefix + ".size", String.valueOf(jar.getSize()));
+            properties.setProperty(prefix + ".modified", String.valueOf(jar.getLastModified()));
+            properties.setProperty(prefix + ".key", jar.getFileKey());
+            properties.setProperty(prefix + ".checksum", jar.getChecksum().toString());
+        }
+
+        Path filePath = stateDirectory.resolve(FILE_NAME);
+        Path tempFilePath = stateDirectory.resolve(FILE_NAME + ".tmp");
+        Files.createDirectories(stateDirectory);
+        try (OutputStream outputStream = Files.newOutputStream(tempFilePath)) {
+            properties.store(outputStream, "Amber verified jars");
+        }
+        Files.move(tempFilePath, filePath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Checks whether the specified jar was verified and did not change since.
+     *
+     * @param jarPath the installed jar
+     *
+     * @return true if the jar was verified and its size, modification time and file key are the same
+     */
+    public boolean isVerified(Path jarPath) {
+        VerifiedJar verifiedJar = verifiedJars.get(getKey(jarPath));
+        if (verifiedJar == null) {
+            return false;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(jarPath, BasicFileAttributes.class);
+            return verifiedJar.getSize() == attributes.size()
+                    && verifiedJar.getLastModified() == attributes.lastModifiedTime().toMillis()
+                    && verifiedJar.getFileKey().equals(String.valueOf(attributes.fileKey()));
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the checksum the specified jar had when it was verified the last time, regardless of whether it changed since.
+     *
+     * @param jarPath the installed jar
+     *
+     * @return the recorded checksum, or null if the jar was never verified
+     */
+    public Checksum getRecordedChecksum(Path jarPath) {
+        VerifiedJar verifiedJar = verifiedJars.get(getKey(jarPath));
+        return verifiedJar != null ? verifiedJar.getChecksum() : null;
+    }
+
+    /**
+     * Records the specified jar as verified with its current size, modification time and file key.
+     *
+     * @param jarPath  the installed jar
+     * @param checksum the verified checksum of the jar
+     *
+     * @throws IOException if an I/O error occurs while reading the jar's attributes
+     */
+    public void record(Path jarPath, Checksum checksum) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(jarPath, BasicFileAttributes.class);
+        verifiedJars.put(getKey(jarPath), new VerifiedJar(
+                attributes.size(),
+                attributes.lastModifiedTime().toMillis(),
+                String.valueOf(attributes.fileKey()),
+                checksum
+        ));
+    }
+
+    /**
+     * Calculates the checksum of the specified file, using memory-mapped reads where possible.
+     *
+     * @param file         the file to hash
+     * @param checksumType the type of checksum to calculate
+     *
+     * @return the checksum as a lowercase hex string
+     *
+     * @throws IOException              if an I/O error occurs while reading the file
+     * @throws NoSuchAlgorithmException if the checksum type is not supported
+     */
+    public static String calculateChecksum(Path file, ChecksumType checksumType) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(checksumType.getAlgorithm());
+
+        if (USE_MEMORY_MAPPING) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                    digest.update(buffer);
+                }
+            }
+        } else {
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        return Checksum.toHexString(digest.digest());
+    }
+
+    /**
+     * Gets the key of the specified jar.
+     *
+     * @param jarPath the installed jar
+     *
+     * @return the absolute path of the jar
+     */
+    protected String getKey(Path jarPath) {
+        return jarPath.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * A verified jar.
+     */
+    @Data
+    public static class VerifiedJar {
+
+        /**
+         * The size of the jar in bytes when it was verified.
+         */
+        private final long size;
+
+        /**
+         * The modification time of the jar in milliseconds since the epoch when it was verified.
+         */
+        private final long lastModified;
+
+        /**
+         * The file key of the jar when it was verified (e.g. device and inode), or <code>"null"</code> if not supported.
+         */
+        private final String fileKey;
+
+        /**
+         * The verified checksum of the jar.
+         */
+        private final Checksum checksum;
+    }
+}
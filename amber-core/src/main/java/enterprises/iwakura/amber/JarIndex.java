@@ -0,0 +1,236 @@
+package enterprises.iwakura.amber;
+
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of directories (packages, e.g. <code>com/google/gson/</code>, and resource directories, e.g. <code>META-INF/services/</code>)
+ * contained in installed jars. {@link AmberClassLoader} uses the index to look up classes and resources only in jars that contain their
+ * directory, instead of probing every jar. A jar is indexed only once and then until its size or modification time changes. This class is
+ * thread-safe.
+ */
+public class JarIndex {
+
+    /**
+     * The name of the file within the state directory where the index is persisted.
+     */
+    public static final String FILE_NAME = "jar-index.properties";
+
+    /**
+     * The prefix of versioned entries in multi-release jars.
+     */
+    protected static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    /**
+     * The indexed jars, keyed by their absolute path.
+     */
+    protected final Map<String, IndexedJar> jars = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the index from the specified state directory. Missing or unreadable index is treated as empty.
+     *
+     * @param stateDirectory the state directory
+     *
+     * @return the loaded index
+     */
+    public static JarIndex load(Path stateDirectory) {
+        JarIndex index = new JarIndex();
+        Path filePath = stateDirectory.resolve(FILE_NAME);
+        if (!Files.exists(filePath)) {
+            return index;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            properties.load(inputStream);
+        } catch (IOException exception) {
+            return index;
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.endsWith(".path")) {
+                continue;
+            }
+            String prefix = name.substring(0, name.length() - 5);
+            try {
+                String directories = properties.getProperty(prefix + ".directories");
+                Set<String> directorySet = new HashSet<>();
+                for (String directory : directories.split(",", -1)) {
+                    directorySet.add(directory);
+                }
+                index.jars.put(properties.getProperty(name), new IndexedJar(
+                        Long.parseLong(properties.getProperty(prefix + ".size")),
+                        Long.parseLong(properties.getProperty(prefix + ".modified")),
+                        Collections.unmodifiableSet(directorySet)
+                ));
+            } catch (RuntimeException ignored) {
+                // Skip corrupted entries
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Saves the index into the specified state directory.
+     *
+     * @param stateDirectory the state directory
+     *
+     * @throws IOException if an I/O error occurs while writing the index
+     */
+    public void save(Path stateDirectory) throws IOException {
+        Properties properties = new Properties();
+        int index = 0;
+        for (Map.Entry<String, IndexedJar> entry : jars.entrySet()) {
+            String prefix = "jar." + index++;
+            IndexedJar jar = entry.getValue();
+            properties.setProperty(prefix + ".path", entry.getKey());
+            properties.setProperty(prefix + ".size", String.valueOf(jar.getSize()));
+            properties.setProperty(prefix + ".modified", String.valueOf(jar.getLastModified()));
+            properties.setProperty(prefix + ".directories", String.join(",", jar.getDirectories()));
+        }
+
+        Path filePath = stateDirectory.resolve(FILE_NAME);
+        Path tempFilePath = stateDirectory.resolve(FILE_NAME + ".tmp");
+        Files.createDirectories(stateDirectory);
+        try (OutputStream outputStream = Files.newOutputStream(tempFilePath)) {
+            properties.store(outputStream, "Amber jar index");
+        }
+        Files.move(tempFilePath, filePath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Gets the directories contained in the specified jar. The jar is scanned if it was not indexed yet or changed since.
+     *
+     * @param jarPath the installed jar
+     *
+     * @return the directories contained in the jar, see {@link #getDirectory(String)}
+     *
+     * @throws IOException if an I/O error occurs while scanning the jar
+     */
+    public Set<String> getDirectories(Path jarPath) throws IOException {
+        String key = getKey(jarPath);
+        BasicFileAttributes attributes = Files.readAttributes(jarPath, BasicFileAttributes.class);
+        IndexedJar indexedJar = jars.get(key);
+        if (indexedJar == null || indexedJar.getSize() != attributes.size() || indexedJar.getLastModified() != attributes.lastModifiedTime().toMillis()) {
+            indexedJar = new IndexedJar(attributes.size(), attributes.lastModifiedTime().toMillis(), Collections.unmodifiableSet(scan(jarPath)));
+            jars.put(key, indexedJar);
+        }
+        return indexedJar.getDirectories();
+    }
+
+    /**
+     * Gets the directories recorded for the specified jar, without checking or scanning the jar itself, e.g. because it's not installed yet.
+     *
+     * @param jarPath the jar
+     *
+     * @return the recorded directories, or null if the jar was not indexed
+     */
+    public Set<String> getIndexedDirectories(Path jarPath) {
+        IndexedJar indexedJar = jars.get(getKey(jarPath));
+        return indexedJar != null ? indexedJar.getDirectories() : null;
+    }
+
+    /**
+     * Removes all jars from the index except the specified ones.
+     *
+     * @param jarPaths the jars to keep
+     */
+    public void retain(Collection<Path> jarPaths) {
+        Set<String> keys = new HashSet<>();
+        for (Path jarPath : jarPaths) {
+            keys.add(getKey(jarPath));
+        }
+        jars.keySet().retainAll(keys);
+    }
+
+    /**
+     * Scans the specified jar for directories of its entries. Versioned entries of multi-release jars are indexed under their unversioned
+     * directories as well.
+     *
+     * @param jarPath the jar to scan
+     *
+     * @return the directories contained in the jar
+     *
+     * @throws IOException if an I/O error occurs while reading the jar
+     */
+    public static Set<String> scan(Path jarPath) throws IOException {
+        Set<String> directories = new LinkedHashSet<>();
+        try (ZipFile zipFile = new ZipFile(jarPath.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                directories.add(getDirectory(name));
+
+                if (name.startsWith(VERSIONS_PREFIX)) {
+                    int versionEnd = name.indexOf('/', VERSIONS_PREFIX.length());
+                    if (versionEnd != -1) {
+                        directories.add(getDirectory(name.substring(versionEnd + 1)));
+                    }
+                }
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Gets the directory of the specified entry or resource name, i.e. everything up to and including the last slash.
+     *
+     * @param name the entry or resource name, e.g. <code>com/google/gson/Gson.class</code>
+     *
+     * @return the directory, e.g. <code>com/google/gson/</code>, or an empty string for entries in the root of the jar
+     */
+    public static String getDirectory(String name) {
+        return name.substring(0, name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Gets the key of the specified jar.
+     *
+     * @param jarPath the installed jar
+     *
+     * @return the absolute path of the jar
+     */
+    protected String getKey(Path jarPath) {
+        return jarPath.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * An indexed jar.
+     */
+    @Data
+    public static class IndexedJar {
+
+        /**
+         * The size of the jar in bytes when it was indexed.
+         */
+        private final long size;
+
+        /**
+         * The modification time of the jar in milliseconds since the epoch when it was indexed.
+         */
+        private final long lastModified;
+
+        /**
+         * The directories contained in the jar.
+         */
+        private final Set<String> directories;
+    }
+}
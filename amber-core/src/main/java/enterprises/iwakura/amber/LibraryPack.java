@@ -0,0 +1,457 @@
+package enterprises.iwakura.amber;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Single uncompressed (<code>STORED</code>) archive containing the entries of all installed jars, so {@link AmberClassLoader} keeps one
+ * jar file open instead of hundreds and doesn't inflate classes while loading them. Entries are packed in the order of the installed jars
+ * and the first occurrence of each entry wins, same as with separate jars, except for <code>META-INF/services</code> files, which are
+ * merged. Signed jars are not packed, since repacking would invalidate their signatures; they are loaded separately.
+ * <p>
+ * The pack is multi-release if any packed jar is. Versioned entries (<code>META-INF/versions/N/...</code>) are then kept only from
+ * multi-release jars and only for names whose base entry came from the same jar (or no jar at all), so a later jar's versioned class never
+ * shadows an earlier jar's class.
+ * </p>
+ * <p>
+ * The pack records its source jars (with their sizes and modification times) and the source jar of every packed entry, so classes keep
+ * the code source and package attributes of their original jar. A pack is used only as long as all its source jars are unchanged.
+ * </p>
+ */
+@Getter
+@RequiredArgsConstructor
+public class LibraryPack {
+
+    /**
+     * The name of the pack file within the state directory.
+     */
+    public static final String FILE_NAME = "library-pack.jar";
+
+    /**
+     * The name of the pack entry listing the source jars.
+     */
+    public static final String PACK_ENTRY_NAME = "META-INF/amber/pack.properties";
+
+    /**
+     * The name of the pack entry mapping packed entries to the indexes of their source jars.
+     */
+    public static final String PROVENANCE_ENTRY_NAME = "META-INF/amber/provenance.properties";
+
+    /**
+     * The directory within the pack where manifests of the source jars are stored, by their index.
+     */
+    public static final String MANIFESTS_DIRECTORY = "META-INF/amber/manifests/";
+
+    /**
+     * The directory of service provider configuration files, which are merged.
+     */
+    protected static final String SERVICES_DIRECTORY = "META-INF/services/";
+
+    /**
+     * The directory of versioned entries of multi-release jars.
+     */
+    protected static final String VERSIONS_DIRECTORY = "META-INF/versions/";
+
+    /**
+     * The path of the pack file.
+     */
+    protected final Path path;
+
+    /**
+     * The source jars, in the order they were packed.
+     */
+    protected final List<SourceJar> jars;
+
+    /**
+     * Loads the pack from the specified state directory.
+     *
+     * @param stateDirectory the state directory
+     *
+     * @return the pack, or null if there's no pack or it is unreadable
+     */
+    public static LibraryPack load(Path stateDirectory) {
+        Path path = stateDirectory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (ZipFile zipFile = new ZipFile(path.toFile())) {
+            ZipEntry entry = zipFile.getEntry(PACK_ENTRY_NAME);
+            if (entry == null) {
+                return null;
+            }
+
+            Properties properties = new Properties();
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                properties.load(inputStream);
+            }
+
+            List<SourceJar> jars = new ArrayList<>();
+            int count = Integer.parseInt(properties.getProperty("jars", "0"));
+            for (int i = 0; i < count; i++) {
+                jars.add(new SourceJar(
+                        properties.getProperty("jar." + i + ".path"),
+                        Long.parseLong(properties.getProperty("jar." + i + ".size")),
+                        Long.parseLong(properties.getProperty("jar." + i + ".modified")),
+                        Boolean.parseBoolean(properties.getProperty("jar." + i + ".packed"))
+                ));
+            }
+            return new LibraryPack(path, jars);
+        } catch (IOException | RuntimeException exception) {
+            return null; // Treat unreadable packs as missing
+        }
+    }
+
+    /**
+     * Deletes the pack from the specified state directory, if there's any.
+     *
+     * @param stateDirectory the state directory
+     *
+     * @throws IOException if an I/O error occurs while deleting the pack
+     */
+    public static void delete(Path stateDirectory) throws IOException {
+        Files.deleteIfExists(stateDirectory.resolve(FILE_NAME));
+    }
+
+    /**
+     * Packs the specified installed jars into the specified state directory, replacing the previous pack.
+     *
+     * @param stateDirectory the state directory
+     * @param jarPaths       the installed jars, in the order they were returned by the bootstrap
+     *
+     * @return the pack
+     *
+     * @throws IOException if an I/O error occurs while reading the jars or writing the pack
+     */
+    public static LibraryPack build(Path stateDirectory, List<Path> jarPaths) throws IOException {
+        // Check which jars can be packed first, since the pack's manifest must be its first entry
+        List<SourceJar> jars = new ArrayList<>();
+        List<Manifest> manifests = new ArrayList<>();
+        List<Boolean> multiReleaseJars = new ArrayList<>();
+        Map<String, Integer> baseEntryJars = new HashMap<>();
+        boolean multiRelease = false;
+        for (Path jarPath : jarPaths) {
+            BasicFileAttributes attributes = Files.readAttributes(jarPath, BasicFileAttributes.class);
+            try (JarFile jarFile = new JarFile(jarPath.toFile(), false)) {
+                Manifest manifest = jarFile.getManifest();
+                boolean signed = isSigned(jarFile);
+                boolean multiReleaseJar = !signed && manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+                jars.add(new SourceJar(jarPath.toString(), attributes.size(), attributes.lastModifiedTime().toMillis(), !signed));
+                manifests.add(manifest);
+                multiReleaseJars.add(multiReleaseJar);
+                multiRelease |= multiReleaseJar;
+                if (!signed) {
+                    // The first packed jar with a base entry wins it, along with its versions
+                    Enumeration<JarEntry> entries = jarFile.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (getBaseName(name) == null) {
+                            baseEntryJars.putIfAbsent(name, jars.size() - 1);
+                        }
+                    }
+                }
+            }
+        }
+
+        Path path = stateDirectory.resolve(FILE_NAME);
+        Path tempPath = stateDirectory.resolve(FILE_NAME + ".tmp");
+        Files.createDirectories(stateDirectory);
+
+        Set<String> writtenEntries = new HashSet<>();
+        Map<String, ByteArrayOutputStream> services = new LinkedHashMap<>();
+        Properties provenance = new Properties();
+        try (ZipOutputStream outputStream = new ZipOutputStream(Files.newOutputStream(tempPath))) {
+            outputStream.setMethod(ZipOutputStream.STORED);
+
+            Manifest packManifest = new Manifest();
+            packManifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            packManifest.getMainAttributes().putValue("Created-By", "Amber " + Version.VERSION);
+            if (multiRelease) {
+                packManifest.getMainAttributes().putValue("Multi-Release", "true");
+            }
+            writeStoredEntry(outputStream, JarFile.MANIFEST_NAME, toBytes(packManifest), System.currentTimeMillis());
+
+            for (int i = 0; i < jars.size(); i++) {
+                if (!jars.get(i).isPacked()) {
+                    continue;
+                }
+
+                if (manifests.get(i) != null) {
+                    writeStoredEntry(outputStream, MANIFESTS_DIRECTORY + i + ".MF", toBytes(manifests.get(i)), System.currentTimeMillis());
+                }
+
+                try (ZipFile zipFile = new ZipFile(jarPaths.get(i).toFile())) {
+                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        String name = entry.getName();
+                        if (name.equalsIgnoreCase(JarFile.MANIFEST_NAME) || name.equalsIgnoreCase("META-INF/INDEX.LIST")) {
+                            continue;
+                        }
+
+                        if (name.startsWith(SERVICES_DIRECTORY) && !entry.isDirectory()) {
+                            ByteArrayOutputStream service = services.computeIfAbsent(name, key -> new ByteArrayOutputStream());
+                            byte[] bytes = readEntry(zipFile, entry);
+                            service.write(bytes);
+                            if (bytes.length > 0 && bytes[bytes.length - 1] != '\n') {
+                                service.write('\n');
+                            }
+                            continue;
+                        }
+
+                        String baseName = getBaseName(name);
+                        if (baseName != null && !entry.isDirectory()) {
+                            Integer baseEntryJar = baseEntryJars.get(baseName);
+                            if (!multiReleaseJars.get(i) || baseEntryJar != null && baseEntryJar != i) {
+                                continue; // Would shadow the base entry of another jar, or is not used by its own jar
+                            }
+                        }
+
+                        if (writtenEntries.add(name)) {
+                            writeStoredEntry(outputStream, name, entry.isDirectory() ? new byte[0] : readEntry(zipFile, entry), entry.getTime());
+                            provenance.setProperty(name, String.valueOf(i));
+                        }
+                    }
+                }
+            }
+
+            for (Map.Entry<String, ByteArrayOutputStream> service : services.entrySet()) {
+                writeStoredEntry(outputStream, service.getKey(), service.getValue().toByteArray(), System.currentTimeMillis());
+            }
+
+            writeStoredEntry(outputStream, PROVENANCE_ENTRY_NAME, toBytes(provenance, "Amber library pack provenance"), System.currentTimeMillis());
+
+            Properties properties = new Properties();
+            properties.setProperty("jars", String.valueOf(jars.size()));
+            for (int i = 0; i < jars.size(); i++) {
+                SourceJar jar = jars.get(i);
+                properties.setProperty("jar." + i + ".path", jar.getPath());
+                properties.setProperty("jar." + i + ".size", String.valueOf(jar.getSize()));
+                properties.setProperty("jar." + i + ".modified", String.valueOf(jar.getLastModified()));
+                properties.setProperty("jar." + i + ".packed", String.valueOf(jar.isPacked()));
+            }
+            writeStoredEntry(outputStream, PACK_ENTRY_NAME, toBytes(properties, "Amber library pack"), System.currentTimeMillis());
+        }
+
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        return new LibraryPack(path, jars);
+    }
+
+    /**
+     * Checks whether the pack was built from exactly the specified jars and none of them changed since.
+     *
+     * @param jarPaths the installed jars
+     *
+     * @return true if the pack is up to date
+     */
+    public boolean isBuiltFrom(Collection<Path> jarPaths) {
+        Set<String> paths = new HashSet<>();
+        for (Path jarPath : jarPaths) {
+            paths.add(jarPath.toString());
+        }
+        Set<String> sourcePaths = new HashSet<>();
+        for (SourceJar jar : jars) {
+            sourcePaths.add(jar.getPath());
+        }
+        return paths.equals(sourcePaths) && isUpToDate();
+    }
+
+    /**
+     * Checks whether none of the source jars changed since they were packed.
+     *
+     * @return true if all source jars have the same size and modification time
+     */
+    public boolean isUpToDate() {
+        for (SourceJar jar : jars) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(Paths.get(jar.getPath()), BasicFileAttributes.class);
+                if (attributes.size() != jar.getSize() || attributes.lastModifiedTime().toMillis() != jar.getLastModified()) {
+                    return false;
+                }
+            } catch (IOException exception) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the specified jar is signed, i.e. contains a signature file.
+     *
+     * @param jarFile the jar file
+     *
+     * @return true if the jar is signed
+     */
+    protected static boolean isSigned(JarFile jarFile) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName().toUpperCase();
+            if (name.startsWith("META-INF/") && name.indexOf('/', "META-INF/".length()) == -1
+                    && (name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the base name of the specified versioned entry, e.g. <code>a/B.class</code> for
+     * <code>META-INF/versions/11/a/B.class</code>.
+     *
+     * @param name the entry name
+     *
+     * @return the base name, or null if the entry is not versioned
+     */
+    protected static String getBaseName(String name) {
+        if (!name.startsWith(VERSIONS_DIRECTORY)) {
+            return null;
+        }
+        int versionEnd = name.indexOf('/', VERSIONS_DIRECTORY.length());
+        if (versionEnd == -1 || versionEnd == VERSIONS_DIRECTORY.length()) {
+            return null;
+        }
+        for (int i = VERSIONS_DIRECTORY.length(); i < versionEnd; i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return null;
+            }
+        }
+        return name.substring(versionEnd + 1);
+    }
+
+    /**
+     * Writes an uncompressed entry.
+     *
+     * @param outputStream the pack's output stream
+     * @param name         the entry name
+     * @param bytes        the entry content
+     * @param time         the entry's modification time
+     *
+     * @throws IOException if an I/O error occurs while writing
+     */
+    protected static void writeStoredEntry(ZipOutputStream outputStream, String name, byte[] bytes, long time) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        if (time != -1) {
+            entry.setTime(time);
+        }
+
+        outputStream.putNextEntry(entry);
+        outputStream.write(bytes);
+        outputStream.closeEntry();
+    }
+
+    /**
+     * Reads the content of the specified entry.
+     *
+     * @param zipFile the zip file
+     * @param entry   the entry
+     *
+     * @return the entry content
+     *
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected static byte[] readEntry(ZipFile zipFile, ZipEntry entry) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+        try (InputStream inputStream = zipFile.getInputStream(entry)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Serializes the specified manifest.
+     *
+     * @param manifest the manifest
+     *
+     * @return the serialized manifest
+     *
+     * @throws IOException if an I/O error occurs while serializing
+     */
+    protected static byte[] toBytes(Manifest manifest) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        manifest.write(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Serializes the specified properties.
+     *
+     * @param properties the properties
+     * @param comments   the comments
+     *
+     * @return the serialized properties
+     *
+     * @throws IOException if an I/O error occurs while serializing
+     */
+    protected static byte[] toBytes(Properties properties, String comments) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        properties.store((OutputStream) outputStream, comments);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * A source jar of the pack.
+     */
+    @Data
+    public static class SourceJar {
+
+        /**
+         * The path of the jar, as returned by the bootstrap.
+         */
+        private final String path;
+
+        /**
+         * The size of the jar in bytes when it was packed.
+         */
+        private final long size;
+
+        /**
+         * The modification time of the jar in milliseconds since the epoch when it was packed.
+         */
+        private final long lastModified;
+
+        /**
+         * Whether the jar's entries were packed. Signed jars are not packed.
+         */
+        private final boolean packed;
+    }
+}
@@ -1,18 +1,23 @@
 package enterprises.iwakura.amber;
 
 import enterprises.iwakura.amber.impl.ClassLoaderManifestLoader;
+import enterprises.iwakura.amber.impl.IndexResourceManifestLoader;
 import enterprises.iwakura.amber.impl.JarFileManifestLoader;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
 /**
- * Interface for loading Amber manifests from various sources, such as {@link ClassLoaderManifestLoader} and {@link JarFileManifestLoader}
+ * Interface for loading Amber manifests from various sources, such as {@link IndexResourceManifestLoader}, {@link ClassLoaderManifestLoader} and
+ * {@link JarFileManifestLoader}
  */
 public interface ManifestLoader {
 
@@ -21,6 +26,11 @@ public interface ManifestLoader {
      */
     String MANIFEST_FILE_PATH = "META-INF/MANIFEST.MF";
 
+    /**
+     * The path to the Amber index (see {@link AmberIndex}) within a JAR or classpath.
+     */
+    String INDEX_FILE_PATH = "META-INF/amber/index.bin";
+
     /**
      * The attribute name for the Amber directory in the manifest.
      */
@@ -36,6 +46,22 @@ public interface ManifestLoader {
      */
     String ATTRIBUTE_AMBER_MAVEN_REPOSITORIES = "Amber-Maven-Repositories";
 
+    /**
+     * The attribute name for the Amber checksums pinned at build time in the manifest.
+     */
+    String ATTRIBUTE_AMBER_CHECKSUMS = "Amber-Checksums";
+
+    /**
+     * The attribute name for the Amber dependency routes (see {@link DependencyRoute}) recorded at build time in the manifest.
+     */
+    String ATTRIBUTE_AMBER_ROUTES = "Amber-Routes";
+
+    /**
+     * The delimiter between a dependency notation and its pinned checksum in the {@link #ATTRIBUTE_AMBER_CHECKSUMS} attribute, or its route
+     * in the {@link #ATTRIBUTE_AMBER_ROUTES} attribute.
+     */
+    String CHECKSUM_SPLITTER = "=";
+
     /**
      * The delimiter used to split multiple values in manifest attributes.
      */
@@ -63,6 +89,8 @@ public interface ManifestLoader {
         String directoryAttribute = attributes.getValue(ATTRIBUTE_AMBER_DIRECTORY);
         String dependenciesAttribute = attributes.getValue(ATTRIBUTE_AMBER_DEPENDENCIES);
         String mavenRepositoriesAttribute = attributes.getValue(ATTRIBUTE_AMBER_MAVEN_REPOSITORIES);
+        String checksumsAttribute = attributes.getValue(ATTRIBUTE_AMBER_CHECKSUMS);
+        String routesAttribute = attributes.getValue(ATTRIBUTE_AMBER_ROUTES);
 
         if (directoryAttribute == null && dependenciesAttribute == null && mavenRepositoriesAttribute == null) {
             return null; // Not an Amber manifest
@@ -78,12 +106,51 @@ public interface ManifestLoader {
             }
         }
 
+        if (checksumsAttribute != null) {
+            Map<String, Checksum> checksums = new HashMap<>();
+            for (String checksum : checksumsAttribute.split(ATTRIBUTE_SPLITTER)) {
+                int splitterIndex = checksum.lastIndexOf(CHECKSUM_SPLITTER);
+                if (splitterIndex > 0) {
+                    checksums.put(checksum.substring(0, splitterIndex).trim(), Checksum.parse(checksum.substring(splitterIndex + 1)));
+                }
+            }
+            for (Dependency dependency : dependencies) {
+                dependency.setPinnedChecksum(checksums.get(dependency.getNotation()));
+            }
+        }
+
         if (mavenRepositoriesAttribute != null) {
             for (String repository : mavenRepositoriesAttribute.split(ATTRIBUTE_SPLITTER)) {
                 repositories.add(new Repository(RepositoryType.MAVEN, repository.trim()));
             }
         }
 
+        if (routesAttribute != null) {
+            Map<String, DependencyRoute> routes = new HashMap<>();
+            for (String route : routesAttribute.split(ATTRIBUTE_SPLITTER)) {
+                int splitterIndex = route.lastIndexOf(CHECKSUM_SPLITTER);
+                if (splitterIndex > 0) {
+                    routes.put(route.substring(0, splitterIndex).trim(), DependencyRoute.parse(route.substring(splitterIndex + 1), repositories));
+                }
+            }
+            for (Dependency dependency : dependencies) {
+                dependency.setRoute(routes.get(dependency.getNotation()));
+            }
+        }
+
         return new AmberManifest(directoryPath, dependencies, repositories);
     }
+
+    /**
+     * Reads an Amber index (see {@link AmberIndex}) to create an {@link AmberManifest} instance.
+     *
+     * @param inputStream The stream of the index.
+     *
+     * @return An {@link AmberManifest} instance.
+     *
+     * @throws IOException If the index could not be read or is malformed.
+     */
+    default AmberManifest parseIndex(InputStream inputStream) throws IOException {
+        return AmberIndex.read(inputStream);
+    }
 }
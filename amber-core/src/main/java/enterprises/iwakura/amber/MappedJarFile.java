@@ -0,0 +1,632 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.JarFiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Memory-mapped jar, read by {@link AmberClassLoader} without the {@link java.util.jar.JarFile} machinery. The central directory is parsed
+ * once into a compact table of entry offsets, so looking up an entry allocates nothing but the encoded name. Stored entries are returned as
+ * slices of the mapping and deflated entries are inflated using pooled inflaters and buffers (see {@link InflaterBuffers}).
+ * <p>
+ * Signatures are not verified. ZIP64 archives (e.g. library packs with more than 65,535 entries) are supported, except for entries with
+ * ZIP64 sizes or offsets, which don't occur in jars small enough to be mapped. Versioned entries of multi-release jars are resolved as by
+ * {@link java.util.jar.JarFile} opened for the current runtime. The mapping is released once the jar is garbage collected, so on Windows
+ * the jar can't be replaced until then. This class is thread-safe.
+ * </p>
+ */
+public class MappedJarFile {
+
+    /**
+     * The name of the manifest entry.
+     */
+    public static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    /**
+     * The prefix of versioned entries in multi-release jars.
+     */
+    protected static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    /**
+     * The maximum number of pooled inflaters and buffers.
+     */
+    protected static final int MAX_POOLED_BUFFERS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The maximum size of a pooled buffer. Larger buffers, grown while reading large resources, are not kept in the pool.
+     */
+    protected static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_HEADER_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int ZIP64_END_HEADER_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    /**
+     * The pooled inflaters and buffers, shared by all jars.
+     */
+    private static final Queue<InflaterBuffers> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The jar path.
+     */
+    protected final Path path;
+
+    /**
+     * The mapped jar, read only using absolute reads.
+     */
+    protected final ByteBuffer buffer;
+
+    /**
+     * The offset of the archive within the file, non-zero for archives with prepended data.
+     */
+    protected final int archiveOffset;
+
+    /**
+     * The positions of central directory headers of the entries.
+     */
+    protected final int[] headerPositions;
+
+    /**
+     * The name hashes of the entries, see {@link #hash(byte[])}.
+     */
+    protected final int[] hashes;
+
+    /**
+     * The open addressing table of entry indexes plus one, zero for empty slots.
+     */
+    protected final int[] table;
+
+    /**
+     * The versions of multi-release entries in descending order, empty if there are none.
+     */
+    protected final int[] versions;
+
+    /**
+     * Whether the jar contains signature files.
+     */
+    protected final boolean signed;
+
+    /**
+     * The parsed manifest, or null if not parsed yet.
+     */
+    private volatile Manifest manifest;
+
+    /**
+     * Whether the manifest was parsed.
+     */
+    private volatile boolean manifestParsed;
+
+    /**
+     * The versions used for looking up entries, or null if not resolved yet.
+     */
+    private volatile int[] runtimeVersions;
+
+    /**
+     * Constructs a new MappedJarFile by parsing the central directory of the mapped jar.
+     *
+     * @param path   the jar path
+     * @param buffer the mapped jar
+     *
+     * @throws IOException if the jar is malformed or has ZIP64 entries
+     */
+    protected MappedJarFile(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int endPosition = findEndHeader();
+        long entryCount = getUnsignedShort(endPosition + 10);
+        long centralDirectorySize = getUnsignedInt(endPosition + 12);
+        long centralDirectoryOffset = getUnsignedInt(endPosition + 16);
+        if (entryCount == 0xFFFF || centralDirectorySize == 0xFFFFFFFFL || centralDirectoryOffset == 0xFFFFFFFFL) {
+            // Any of these may be only in the ZIP64 record, which directly follows the central directory
+            int zip64EndPosition = findZip64EndHeader(endPosition);
+            if (zip64EndPosition == -1) {
+                throw new IOException("ZIP64 end of central directory not found: " + path);
+            }
+            entryCount = this.buffer.getLong(zip64EndPosition + 32);
+            centralDirectorySize = this.buffer.getLong(zip64EndPosition + 40);
+            centralDirectoryOffset = this.buffer.getLong(zip64EndPosition + 48);
+            endPosition = zip64EndPosition;
+            if (entryCount < 0 || entryCount > centralDirectorySize / CENTRAL_HEADER_SIZE || centralDirectoryOffset < 0) {
+                throw new IOException("Invalid ZIP64 end of central directory: " + path);
+            }
+        }
+        if (centralDirectorySize > endPosition) {
+            throw new IOException("Invalid central directory: " + path);
+        }
+        int centralDirectoryPosition = (int) (endPosition - centralDirectorySize);
+        if (centralDirectoryOffset > centralDirectoryPosition) {
+            throw new IOException("Invalid central directory offset: " + path);
+        }
+        archiveOffset = (int) (centralDirectoryPosition - centralDirectoryOffset);
+
+        headerPositions = new int[(int) entryCount];
+        hashes = new int[(int) entryCount];
+        table = new int[Integer.highestOneBit(Math.max((int) entryCount, 1) * 2) * 2];
+        List<Integer> versionList = new ArrayList<>();
+        boolean signed = false;
+
+        int position = centralDirectoryPosition;
+        for (int index = 0; index < entryCount; index++) {
+            if (position + CENTRAL_HEADER_SIZE > endPosition || this.buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid central directory header: " + path);
+            }
+            if (getUnsignedInt(position + 20) == 0xFFFFFFFFL || getUnsignedInt(position + 24) == 0xFFFFFFFFL
+                    || getUnsignedInt(position + 42) == 0xFFFFFFFFL) {
+                throw new IOException("ZIP64 entries are not supported: " + path);
+            }
+
+            int nameLength = getUnsignedShort(position + 28);
+            byte[] name = new byte[nameLength];
+            for (int offset = 0; offset < nameLength; offset++) {
+                name[offset] = this.buffer.get(position + CENTRAL_HEADER_SIZE + offset);
+            }
+
+            headerPositions[index] = position;
+            hashes[index] = hash(name);
+            int slot = hashes[index] & (table.length - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = index + 1;
+
+            String nameString = new String(name, StandardCharsets.UTF_8);
+            if (nameString.startsWith(VERSIONS_PREFIX)) {
+                int version = parseVersion(nameString);
+                if (version >= 9 && !versionList.contains(version)) {
+                    versionList.add(version);
+                }
+            } else if (nameString.startsWith("META-INF/") && nameString.indexOf('/', 9) == -1
+                    && nameString.toUpperCase().endsWith(".SF")) {
+                signed = true;
+            }
+
+            position += CENTRAL_HEADER_SIZE + nameLength + getUnsignedShort(position + 30) + getUnsignedShort(position + 32);
+        }
+
+        versionList.sort(Collections.reverseOrder());
+        versions = new int[versionList.size()];
+        for (int index = 0; index < versions.length; index++) {
+            versions[index] = versionList.get(index);
+        }
+        this.signed = signed;
+    }
+
+    /**
+     * Maps and parses the specified jar.
+     *
+     * @param path the jar path
+     *
+     * @return the mapped jar
+     *
+     * @throws IOException if an I/O error occurs while mapping the jar, or if it's malformed, larger than 2 GB or has ZIP64 entries
+     */
+    public static MappedJarFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Jars larger than 2 GB can't be mapped: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                return new MappedJarFile(path, buffer);
+            } catch (IndexOutOfBoundsException exception) {
+                throw new IOException("Malformed jar: " + path, exception);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the jar contains signature files. Signed jars should be read using {@link java.util.jar.JarFile}, which verifies them.
+     *
+     * @return true if the jar is signed
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * Finds the entry with the specified name. For multi-release jars, the entry of the highest version supported by the current runtime
+     * is preferred.
+     *
+     * @param name the entry name
+     *
+     * @return the entry, or -1 if the jar does not contain it
+     *
+     * @throws IOException if an I/O error occurs while reading the manifest
+     */
+    public int getEntry(String name) throws IOException {
+        for (int version : getRuntimeVersions()) {
+            int entry = getUnversionedEntry(VERSIONS_PREFIX + version + "/" + name);
+            if (entry != -1) {
+                return entry;
+            }
+        }
+        return getUnversionedEntry(name);
+    }
+
+    /**
+     * Finds the entry with exactly the specified name.
+     *
+     * @param name the entry name
+     *
+     * @return the entry, or -1 if the jar does not contain it
+     */
+    public int getUnversionedEntry(String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(nameBytes);
+        int slot = hash & (table.length - 1);
+        int index;
+        while ((index = table[slot]) != 0) {
+            int entry = index - 1;
+            if (hashes[entry] == hash && nameEquals(headerPositions[entry], nameBytes)) {
+                return entry;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the uncompressed size of the specified entry.
+     *
+     * @param entry the entry
+     *
+     * @return the size in bytes
+     */
+    public int getSize(int entry) {
+        return (int) getUnsignedInt(headerPositions[entry] + 24);
+    }
+
+    /**
+     * Gets the content of the specified entry as a slice of the mapping, if the entry is stored without compression.
+     *
+     * @param entry the entry
+     *
+     * @return the content, or null if the entry is compressed
+     *
+     * @throws IOException if the entry's local header is malformed
+     */
+    public ByteBuffer getStoredContent(int entry) throws IOException {
+        if (getUnsignedShort(headerPositions[entry] + 10) != STORED) {
+            return null;
+        }
+        int dataPosition = getDataPosition(entry);
+        ByteBuffer content = buffer.duplicate();
+        content.limit(dataPosition + getSize(entry));
+        content.position(dataPosition);
+        return content.slice();
+    }
+
+    /**
+     * Reads the content of the specified entry into the output buffer of the specified buffers, growing it if needed.
+     *
+     * @param entry   the entry
+     * @param buffers the pooled buffers, see {@link #acquireBuffers()}
+     *
+     * @return the number of bytes read, i.e. the size of the entry
+     *
+     * @throws IOException if the entry is malformed or uses an unsupported compression method
+     */
+    public int read(int entry, InflaterBuffers buffers) throws IOException {
+        int headerPosition = headerPositions[entry];
+        int method = getUnsignedShort(headerPosition + 10);
+        int compressedSize = (int) getUnsignedInt(headerPosition + 20);
+        int size = getSize(entry);
+        int dataPosition = getDataPosition(entry);
+        byte[] output = buffers.getOutput(size);
+
+        if (method == STORED) {
+            ByteBuffer content = buffer.duplicate();
+            content.position(dataPosition);
+            content.get(output, 0, size);
+            return size;
+        } else if (method != DEFLATED) {
+            throw new IOException("Unsupported compression method " + method + " of entry in " + path);
+        }
+
+        // Inflater without the zlib header may need an extra dummy byte at the end of the input
+        byte[] input = buffers.getInput(compressedSize + 1);
+        ByteBuffer content = buffer.duplicate();
+        content.position(dataPosition);
+        content.get(input, 0, compressedSize);
+        input[compressedSize] = 0;
+
+        Inflater inflater = buffers.inflater;
+        inflater.reset();
+        inflater.setInput(input, 0, compressedSize + 1);
+        try {
+            int read = 0;
+            while (read < size && !inflater.finished()) {
+                int inflated = inflater.inflate(output, read, size - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != size) {
+                throw new IOException("Truncated entry in " + path);
+            }
+            return read;
+        } catch (DataFormatException exception) {
+            throw new IOException("Corrupted entry in " + path, exception);
+        }
+    }
+
+    /**
+     * Reads the content of the specified entry into a new array.
+     *
+     * @param entry the entry
+     *
+     * @return the content
+     *
+     * @throws IOException if the entry is malformed or uses an unsupported compression method
+     */
+    public byte[] readAllBytes(int entry) throws IOException {
+        InflaterBuffers buffers = acquireBuffers();
+        try {
+            int size = read(entry, buffers);
+            byte[] bytes = new byte[size];
+            System.arraycopy(buffers.output, 0, bytes, 0, size);
+            return bytes;
+        } finally {
+            releaseBuffers(buffers);
+        }
+    }
+
+    /**
+     * Gets the manifest of the jar.
+     *
+     * @return the manifest, or null if the jar has no manifest
+     *
+     * @throws IOException if an I/O error occurs while reading the manifest
+     */
+    public Manifest getManifest() throws IOException {
+        if (!manifestParsed) {
+            synchronized (this) {
+                if (!manifestParsed) {
+                    int entry = getUnversionedEntry(MANIFEST_NAME);
+                    if (entry != -1) {
+                        manifest = new Manifest(new ByteArrayInputStream(readAllBytes(entry)));
+                    }
+                    manifestParsed = true;
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Gets the versions of multi-release entries used by the current runtime, in descending order.
+     *
+     * @return the versions, empty if the jar is not a multi-release jar or the runtime does not support them
+     *
+     * @throws IOException if an I/O error occurs while reading the manifest
+     */
+    protected int[] getRuntimeVersions() throws IOException {
+        int[] runtimeVersions = this.runtimeVersions;
+        if (runtimeVersions == null) {
+            runtimeVersions = new int[0];
+            int runtimeVersion = JarFiles.getJavaFeatureVersion();
+            Manifest manifest = versions.length != 0 && runtimeVersion >= 9 ? getManifest() : null;
+            if (manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"))) {
+                List<Integer> versionList = new ArrayList<>();
+                for (int version : versions) {
+                    if (version <= runtimeVersion) {
+                        versionList.add(version);
+                    }
+                }
+                runtimeVersions = new int[versionList.size()];
+                for (int index = 0; index < runtimeVersions.length; index++) {
+                    runtimeVersions[index] = versionList.get(index);
+                }
+            }
+            this.runtimeVersions = runtimeVersions;
+        }
+        return runtimeVersions;
+    }
+
+    /**
+     * Acquires inflater and buffers from the pool, creating new ones if the pool is empty.
+     *
+     * @return the buffers, which should be released using {@link #releaseBuffers(InflaterBuffers)}
+     */
+    public static InflaterBuffers acquireBuffers() {
+        InflaterBuffers buffers = BUFFER_POOL.poll();
+        return buffers != null ? buffers : new InflaterBuffers();
+    }
+
+    /**
+     * Returns the specified buffers into the pool, or ends the inflater if the pool is full.
+     *
+     * @param buffers the buffers
+     */
+    public static void releaseBuffers(InflaterBuffers buffers) {
+        if (buffers.input.length > MAX_POOLED_BUFFER_SIZE || buffers.output.length > MAX_POOLED_BUFFER_SIZE) {
+            buffers.inflater.end();
+        } else if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+            BUFFER_POOL.offer(buffers);
+        } else {
+            buffers.inflater.end();
+        }
+    }
+
+    /**
+     * Finds the end of central directory record, which is followed only by the archive comment.
+     *
+     * @return the position of the record
+     *
+     * @throws IOException if the record is not found
+     */
+    private int findEndHeader() throws IOException {
+        int lowestPosition = Math.max(0, buffer.limit() - END_HEADER_SIZE - 0xFFFF);
+        for (int position = buffer.limit() - END_HEADER_SIZE; position >= lowestPosition; position--) {
+            if (buffer.getInt(position) == END_HEADER_SIGNATURE && position + END_HEADER_SIZE + getUnsignedShort(position + 20) == buffer.limit()) {
+                return position;
+            }
+        }
+        throw new IOException("End of central directory not found: " + path);
+    }
+
+    /**
+     * Finds the ZIP64 end of central directory record through its locator, which directly precedes the end of central directory record.
+     * The record is looked for right before the locator first, so archives with prepended data are found too.
+     *
+     * @param endPosition the position of the end of central directory record
+     *
+     * @return the position of the record, or -1 if there's none
+     */
+    private int findZip64EndHeader(int endPosition) {
+        int locatorPosition = endPosition - ZIP64_LOCATOR_SIZE;
+        if (locatorPosition < 0 || buffer.getInt(locatorPosition) != ZIP64_LOCATOR_SIGNATURE) {
+            return -1;
+        }
+        int position = locatorPosition - ZIP64_END_HEADER_SIZE;
+        if (position >= 0 && buffer.getInt(position) == ZIP64_END_HEADER_SIGNATURE) {
+            return position;
+        }
+        long recordOffset = buffer.getLong(locatorPosition + 8);
+        if (recordOffset >= 0 && recordOffset <= locatorPosition - ZIP64_END_HEADER_SIZE && buffer.getInt((int) recordOffset) == ZIP64_END_HEADER_SIGNATURE) {
+            return (int) recordOffset;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the position of the content of the specified entry, following its local header.
+     *
+     * @param entry the entry
+     *
+     * @return the position of the content
+     *
+     * @throws IOException if the local header is malformed
+     */
+    private int getDataPosition(int entry) throws IOException {
+        int headerPosition = headerPositions[entry];
+        long localHeaderPosition = archiveOffset + getUnsignedInt(headerPosition + 42);
+        if (localHeaderPosition + LOCAL_HEADER_SIZE > buffer.limit() || buffer.getInt((int) localHeaderPosition) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid local header: " + path);
+        }
+        int position = (int) localHeaderPosition;
+        long dataPosition = (long) position + LOCAL_HEADER_SIZE + getUnsignedShort(position + 26) + getUnsignedShort(position + 28);
+        long compressedSize = getUnsignedInt(headerPosition + 20);
+        if (dataPosition + compressedSize > buffer.limit()) {
+            throw new IOException("Truncated entry in " + path);
+        }
+        return (int) dataPosition;
+    }
+
+    private boolean nameEquals(int headerPosition, byte[] name) {
+        if (getUnsignedShort(headerPosition + 28) != name.length) {
+            return false;
+        }
+        for (int offset = 0; offset < name.length; offset++) {
+            if (buffer.get(headerPosition + CENTRAL_HEADER_SIZE + offset) != name[offset]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getUnsignedShort(int position) {
+        return buffer.getShort(position) & 0xFFFF;
+    }
+
+    private long getUnsignedInt(int position) {
+        return buffer.getInt(position) & 0xFFFFFFFFL;
+    }
+
+    private static int hash(byte[] name) {
+        int hash = 0;
+        for (byte b : name) {
+            hash = 31 * hash + (b & 0xFF);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int parseVersion(String name) {
+        int versionEnd = name.indexOf('/', VERSIONS_PREFIX.length());
+        if (versionEnd == -1) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(VERSIONS_PREFIX.length(), versionEnd));
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * Pooled inflater along with its input and output buffers, grown to the largest entry read so far.
+     */
+    public static class InflaterBuffers {
+
+        /**
+         * The inflater for raw deflated entries.
+         */
+        protected final Inflater inflater = new Inflater(true);
+
+        /**
+         * The buffer of compressed content.
+         */
+        protected byte[] input = new byte[8192];
+
+        /**
+         * The buffer of uncompressed content.
+         */
+        protected byte[] output = new byte[8192];
+
+        /**
+         * Gets the output buffer, growing it to the specified size if needed.
+         *
+         * @param size the required size
+         *
+         * @return the output buffer
+         */
+        public byte[] getOutput(int size) {
+            if (output.length < size) {
+                output = new byte[Math.max(size, output.length * 2)];
+            }
+            return output;
+        }
+
+        /**
+         * Gets the input buffer, growing it to the specified size if needed.
+         *
+         * @param size the required size
+         *
+         * @return the input buffer
+         */
+        protected byte[] getInput(int size) {
+            if (input.length < size) {
+                input = new byte[Math.max(size, input.length * 2)];
+            }
+            return input;
+        }
+    }
+}
@@ -18,6 +18,7 @@ public class ProgressHintContext {
     public enum Type {
         EXISTING,
         START_DOWNLOAD,
-        FINISH_DOWNLOAD
+        FINISH_DOWNLOAD,
+        CACHED
     }
 }
@@ -0,0 +1,300 @@
+package enterprises.iwakura.amber;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Latency and success statistics of repositories, used to order repositories and to compute hedging delays. Latencies are the times to
+ * response headers of single requests, kept separately for successful downloads and misses (e.g. HTTP 404), so neither the transfer of
+ * large jars nor fast misses skew them. Statistics may be persisted between bootstraps, so the repository order adapts over time. This
+ * class is thread-safe.
+ */
+public class RepositoryStatistics {
+
+    /**
+     * The name of the file within the state directory where statistics are persisted.
+     */
+    public static final String FILE_NAME = "repositories.properties";
+
+    /**
+     * The number of most recent latency samples of successes and of misses kept per repository.
+     */
+    public static final int MAX_SAMPLES = 64;
+
+    /**
+     * The statistics of each repository, keyed by the repository URL.
+     */
+    protected final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Loads statistics from the specified state directory. Missing or unreadable statistics are treated as empty.
+     *
+     * @param stateDirectory the state directory to load statistics from
+     *
+     * @return the loaded statistics
+     */
+    public static RepositoryStatistics load(Path stateDirectory) {
+        RepositoryStatistics statistics = new RepositoryStatistics();
+        Path filePath = stateDirectory.resolve(FILE_NAME);
+        if (!Files.exists(filePath)) {
+            return statistics;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            properties.load(inputStream);
+        } catch (IOException exception) {
+            return statistics;
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.endsWith(".url")) {
+                continue;
+            }
+            String prefix = name.substring(0, name.length() - 4);
+            try {
+                Entry entry = new Entry();
+                entry.attempts = Long.parseLong(properties.getProperty(prefix + ".attempts", "0"));
+                entry.successes = Long.parseLong(properties.getProperty(prefix + ".successes", "0"));
+                entry.successLatencies.parse(properties.getProperty(prefix + ".latencies", ""));
+                entry.missLatencies.parse(properties.getProperty(prefix + ".missLatencies", ""));
+                statistics.entries.put(properties.getProperty(name), entry);
+            } catch (NumberFormatException ignored) {
+                // Skip corrupted entries
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Saves statistics into the specified state directory.
+     *
+     * @param stateDirectory the state directory to save statistics into
+     *
+     * @throws IOException if an I/O error occurs while writing statistics
+     */
+    public synchronized void save(Path stateDirectory) throws IOException {
+        Properties properties = new Properties();
+        int index = 0;
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            String prefix = "repository." + index++;
+            Entry entry = mapEntry.getValue();
+            properties.setProperty(prefix + ".url", mapEntry.getKey());
+            properties.setProperty(prefix + ".attempts", String.valueOf(entry.attempts));
+            properties.setProperty(prefix + ".successes", String.valueOf(entry.successes));
+            properties.setProperty(prefix + ".latencies", entry.successLatencies.toString());
+            properties.setProperty(prefix + ".missLatencies", entry.missLatencies.toString());
+        }
+
+        Path filePath = stateDirectory.resolve(FILE_NAME);
+        Path tempFilePath = stateDirectory.resolve(FILE_NAME + ".tmp");
+        Files.createDirectories(stateDirectory);
+        try (OutputStream outputStream = Files.newOutputStream(tempFilePath)) {
+            properties.store(outputStream, "Amber repository statistics");
+        }
+        Files.move(tempFilePath, filePath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Records a finished download attempt from the specified repository, including all of its retries.
+     *
+     * @param repository the repository the dependency was downloaded from
+     * @param success    whether the attempt was successful
+     */
+    public synchronized void record(Repository repository, boolean success) {
+        Entry entry = entries.computeIfAbsent(repository.getUrl(), url -> new Entry());
+        entry.attempts++;
+        if (success) {
+            entry.successes++;
+        }
+    }
+
+    /**
+     * Records the latency of a single request to the specified repository.
+     *
+     * @param repository    the repository
+     * @param latencyMillis the time from sending the request to receiving the response headers in milliseconds
+     * @param success       whether the request downloaded the dependency, false if it missed (e.g. HTTP 404) or failed
+     */
+    public synchronized void recordLatency(Repository repository, long latencyMillis, boolean success) {
+        Entry entry = entries.computeIfAbsent(repository.getUrl(), url -> new Entry());
+        (success ? entry.successLatencies : entry.missLatencies).add(latencyMillis);
+    }
+
+    /**
+     * Gets the latency percentile of successful requests to the specified repository.
+     *
+     * @param repository the repository
+     * @param percentile the percentile between 0 and 1 (e.g. 0.95)
+     *
+     * @return the latency percentile in milliseconds, or -1 if there are no samples for the repository
+     */
+    public synchronized long getLatencyPercentile(Repository repository, double percentile) {
+        Entry entry = entries.get(repository.getUrl());
+        return entry != null ? entry.successLatencies.getPercentile(percentile) : -1;
+    }
+
+    /**
+     * Orders the specified repositories by their expected cost of a successful download: the median latency of each outcome weighted by
+     * its rate, divided by the success rate. Repositories without statistics are tried first, so they get measured; ties keep the
+     * declared order.
+     *
+     * @param repositories the repositories to order
+     *
+     * @return a new list with ordered repositories
+     */
+    public synchronized List<Repository> order(List<Repository> repositories) {
+        List<Repository> orderedRepositories = new ArrayList<>(repositories);
+        Map<Repository, Double> costs = new HashMap<>();
+        for (Repository repository : repositories) {
+            Entry entry = entries.get(repository.getUrl());
+            if (entry == null || entry.attempts == 0) {
+                costs.put(repository, 0.0);
+            } else {
+                double successRate = (entry.successes + 1.0) / (entry.attempts + 1.0);
+                long successLatency = entry.successLatencies.getPercentile(0.5);
+                long missLatency = entry.missLatencies.getPercentile(0.5);
+                if (successLatency < 0) {
+                    successLatency = missLatency;
+                } else if (missLatency < 0) {
+                    missLatency = successLatency;
+                }
+                double latency = successRate * Math.max(successLatency, 1) + (1 - successRate) * Math.max(missLatency, 1);
+                costs.put(repository, latency / successRate);
+            }
+        }
+        orderedRepositories.sort((first, second) -> Double.compare(costs.get(first), costs.get(second)));
+        return orderedRepositories;
+    }
+
+    /**
+     * Statistics of a single repository.
+     */
+    protected static class Entry {
+
+        /**
+         * The number of finished download attempts.
+         */
+        protected long attempts;
+
+        /**
+         * The number of successful download attempts.
+         */
+        protected long successes;
+
+        /**
+         * The most recent latencies of successful requests.
+         */
+        protected final LatencySamples successLatencies = new LatencySamples();
+
+        /**
+         * The most recent latencies of missed or failed requests.
+         */
+        protected final LatencySamples missLatencies = new LatencySamples();
+    }
+
+    /**
+     * Ring buffer of the most recent latency samples in milliseconds.
+     */
+    protected static class LatencySamples {
+
+        /**
+         * The samples.
+         */
+        protected final long[] samples = new long[MAX_SAMPLES];
+
+        /**
+         * The number of valid samples in {@link #samples}.
+         */
+        protected int sampleCount;
+
+        /**
+         * The index the next sample is written to.
+         */
+        protected int nextSampleIndex;
+
+        /**
+         * Adds a latency sample, replacing the oldest one if the buffer is full.
+         *
+         * @param latencyMillis the latency in milliseconds
+         */
+        protected void add(long latencyMillis) {
+            samples[nextSampleIndex] = latencyMillis;
+            nextSampleIndex = (nextSampleIndex + 1) % MAX_SAMPLES;
+            sampleCount = Math.min(sampleCount + 1, MAX_SAMPLES);
+        }
+
+        /**
+         * Adds the comma-separated samples, as written by {@link #toString()}.
+         *
+         * @param latencies the comma-separated samples
+         *
+         * @throws NumberFormatException if a sample is not a number
+         */
+        protected void parse(String latencies) {
+            for (String latency : latencies.split(",")) {
+                if (!latency.isEmpty()) {
+                    add(Long.parseLong(latency));
+                }
+            }
+        }
+
+        /**
+         * Gets a copy of the valid samples, oldest first.
+         *
+         * @return the samples
+         */
+        protected long[] getSamples() {
+            long[] validSamples = new long[sampleCount];
+            for (int i = 0; i < sampleCount; i++) {
+                validSamples[i] = samples[(nextSampleIndex - sampleCount + i + MAX_SAMPLES) % MAX_SAMPLES];
+            }
+            return validSamples;
+        }
+
+        /**
+         * Gets the specified percentile of the samples.
+         *
+         * @param percentile the percentile between 0 and 1 (e.g. 0.95)
+         *
+         * @return the percentile in milliseconds, or -1 if there are no samples
+         */
+        protected long getPercentile(double percentile) {
+            if (sampleCount == 0) {
+                return -1;
+            }
+            long[] validSamples = getSamples();
+            Arrays.sort(validSamples);
+            int index = (int) Math.ceil(Math.min(Math.max(percentile, 0), 1) * validSamples.length) - 1;
+            return validSamples[Math.max(index, 0)];
+        }
+
+        /**
+         * Gets the comma-separated samples, oldest first.
+         *
+         * @return the samples
+         */
+        @Override
+        public String toString() {
+            StringBuilder latencies = new StringBuilder();
+            for (long latency : getSamples()) {
+                if (latencies.length() > 0) {
+                    latencies.append(',');
+                }
+                latencies.append(latency);
+            }
+            return latencies.toString();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package enterprises.iwakura.amber;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A dependency scheduled for bootstrapping. Identical dependency coordinates required by multiple manifests are merged into
+ * a single scheduled dependency, so they are downloaded only once and then installed into every manifest's library directory.
+ */
+@Data
+public class ScheduledDependency {
+
+    /**
+     * The dependency to bootstrap.
+     */
+    private final Dependency dependency;
+
+    /**
+     * The manifests that require this dependency, in the order they were loaded.
+     */
+    private final List<AmberManifest> manifests = new ArrayList<>();
+
+    /**
+     * Adds the specified manifest to the list of manifests requiring this dependency, unless the very same manifest instance
+     * was already added.
+     *
+     * @param manifest the manifest requiring this dependency
+     */
+    public void addManifest(AmberManifest manifest) {
+        for (AmberManifest existingManifest : manifests) {
+            if (existingManifest == manifest) {
+                return;
+            }
+        }
+        manifests.add(manifest);
+    }
+
+    /**
+     * Gets the repositories of all manifests requiring this dependency. Repositories are deduplicated and ordered as they
+     * were declared in the manifests, in the order the manifests were loaded.
+     *
+     * @return the list of repositories to download this dependency from
+     */
+    public List<Repository> getRepositories() {
+        Set<Repository> repositories = new LinkedHashSet<>();
+        for (AmberManifest manifest : manifests) {
+            repositories.addAll(manifest.getRepositories());
+        }
+        return new ArrayList<>(repositories);
+    }
+}
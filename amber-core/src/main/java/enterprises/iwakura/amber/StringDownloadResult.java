@@ -36,6 +36,22 @@ public class StringDownloadResult extends DownloadResult {
         return new StringDownloadResult(false, null, errorMessage);
     }
 
+    /**
+     * Creates a StringDownloadResult representing a download that failed with an HTTP error.
+     *
+     * @param statusCode       the HTTP status code
+     * @param statusMessage    the HTTP status message
+     * @param retryAfterMillis the delay in milliseconds the repository asked for before the next request, or -1
+     *
+     * @return a StringDownloadResult indicating failure
+     */
+    public static StringDownloadResult httpError(int statusCode, String statusMessage, long retryAfterMillis) {
+        StringDownloadResult result = error(String.format("HTTP %d: %s", statusCode, statusMessage));
+        result.setStatusCode(statusCode);
+        result.setRetryAfterMillis(retryAfterMillis);
+        return result;
+    }
+
     /**
      * Creates a StringDownloadResult representing a successful download with the provided content.
      *
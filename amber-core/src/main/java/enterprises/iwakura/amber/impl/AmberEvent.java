@@ -0,0 +1,51 @@
+package enterprises.iwakura.amber.impl;
+
+/**
+ * Base of Amber's Java Flight Recorder events. JFR is not available on this JVM, so all events are no-ops; this class and its subclasses
+ * have Java 11 variants in the multi-release section of the jar, which extend <code>jdk.jfr.Event</code> and are recorded along with the
+ * JVM's own events.
+ * <p>
+ * Events are used the same way as JFR events: created and begun when the measured work starts, then filled in and committed once it
+ * ends.
+ */
+public abstract class AmberEvent {
+
+    /**
+     * Checks whether the event is enabled, so it's worth creating and timing.
+     *
+     * @return false, as events are not recorded on this JVM
+     */
+    public boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * Starts the timing of the event.
+     */
+    public void begin() {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Ends the timing of the event.
+     */
+    public void end() {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Writes the event, ending its timing if it was not ended yet.
+     */
+    public void commit() {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Checks whether the event is enabled and exceeds its threshold, so it's worth filling in before committing.
+     *
+     * @return false, as events are not recorded on this JVM
+     */
+    public boolean shouldCommit() {
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.Checksum;
+import enterprises.iwakura.amber.ChecksumType;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Input stream that calculates checksums of all read bytes for multiple {@link ChecksumType}s at once. This allows calculating checksums
+ * while a file is being downloaded, without reading the file again afterward. Checksum types unsupported by the JVM are skipped.
+ */
+public class ChecksumCalculatingInputStream extends FilterInputStream {
+
+    /**
+     * The message digests for each supported checksum type.
+     */
+    protected final Map<ChecksumType, MessageDigest> digests = new EnumMap<>(ChecksumType.class);
+
+    /**
+     * Creates a new input stream calculating checksums of the specified types.
+     *
+     * @param inputStream   the input stream to read from
+     * @param checksumTypes the checksum types to calculate
+     */
+    public ChecksumCalculatingInputStream(InputStream inputStream, Collection<ChecksumType> checksumTypes) {
+        super(inputStream);
+        for (ChecksumType checksumType : checksumTypes) {
+            try {
+                digests.put(checksumType, MessageDigest.getInstance(checksumType.getAlgorithm()));
+            } catch (NoSuchAlgorithmException ignored) {
+                // Unsupported checksum types are validated by reading the file later, if at all
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+        if (read != -1) {
+            for (MessageDigest digest : digests.values()) {
+                digest.update((byte) read);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            for (MessageDigest digest : digests.values()) {
+                digest.update(buffer, offset, read);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would not be part of the checksums, so read them instead
+        byte[] buffer = new byte[(int) Math.min(8192, Math.max(n, 0))];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Completes the checksum calculation and returns checksums of all bytes read so far. Should be called only once, after the stream
+     * was fully read.
+     *
+     * @return the calculated checksums as hexadecimal strings, for each supported checksum type
+     */
+    public Map<ChecksumType, String> getChecksums() {
+        Map<ChecksumType, String> checksums = new EnumMap<>(ChecksumType.class);
+        digests.forEach((checksumType, digest) -> checksums.put(checksumType, Checksum.toHexString(digest.digest())));
+        return checksums;
+    }
+}
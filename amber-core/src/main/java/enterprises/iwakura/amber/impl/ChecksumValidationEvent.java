@@ -0,0 +1,43 @@
+package enterprises.iwakura.amber.impl;
+
+/**
+ * Event of validating the checksum of a file, see {@link AmberEvent}.
+ */
+public class ChecksumValidationEvent extends AmberEvent {
+
+    /**
+     * Sets the validated file.
+     *
+     * @param file the path of the file
+     */
+    public void setFile(String file) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets the type of the checksum.
+     *
+     * @param checksumType the name of the checksum type
+     */
+    public void setChecksumType(String checksumType) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets the result of the validation.
+     *
+     * @param result the name of the result
+     */
+    public void setResult(String result) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets whether the checksum was calculated during the download, so the file was not hashed again.
+     *
+     * @param calculatedDuringDownload true if the file was not hashed again
+     */
+    public void setCalculatedDuringDownload(boolean calculatedDuringDownload) {
+        // Not recorded on this JVM
+    }
+}
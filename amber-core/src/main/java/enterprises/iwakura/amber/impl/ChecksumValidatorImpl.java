@@ -1,5 +1,6 @@
 package enterprises.iwakura.amber.impl;
 
+import enterprises.iwakura.amber.Checksum;
 import enterprises.iwakura.amber.ChecksumResult;
 import enterprises.iwakura.amber.ChecksumType;
 import enterprises.iwakura.amber.ChecksumValidator;
@@ -10,23 +11,68 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Map;
 
 /**
  * Default implementation of {@link ChecksumValidator}. Uses {@link MessageDigest} to compute the checksum of a file.
  */
 public class ChecksumValidatorImpl implements ChecksumValidator {
 
+    /**
+     * {@inheritDoc} The validation is recorded as {@link ChecksumValidationEvent}.
+     */
     @Override
     public ChecksumResult validate(ChecksumType checksumType, String checksum, Path file) throws IOException {
+        ChecksumValidationEvent event = new ChecksumValidationEvent();
+        event.begin();
+        ChecksumResult result;
         try {
             String fileChecksum = calculateChecksum(checksumType, file);
             if (fileChecksum.equalsIgnoreCase(checksum)) {
-                return ChecksumResult.MATCH;
+                result = ChecksumResult.MATCH;
             } else {
-                return ChecksumResult.MISMATCH;
+                result = ChecksumResult.MISMATCH;
             }
         } catch (NoSuchAlgorithmException exception) {
-            return ChecksumResult.UNSUPPORTED;
+            result = ChecksumResult.UNSUPPORTED;
+        }
+        commitEvent(event, checksumType, file, result, false);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc} Validations using calculated checksums are recorded as {@link ChecksumValidationEvent} as well.
+     */
+    @Override
+    public ChecksumResult validate(ChecksumType checksumType, String checksum, Path file, Map<ChecksumType, String> calculatedChecksums) throws IOException {
+        String calculatedChecksum = calculatedChecksums != null ? calculatedChecksums.get(checksumType) : null;
+        if (calculatedChecksum == null) {
+            return validate(checksumType, checksum, file);
+        }
+
+        ChecksumValidationEvent event = new ChecksumValidationEvent();
+        event.begin();
+        ChecksumResult result = calculatedChecksum.equalsIgnoreCase(checksum) ? ChecksumResult.MATCH : ChecksumResult.MISMATCH;
+        commitEvent(event, checksumType, file, result, true);
+        return result;
+    }
+
+    /**
+     * Fills in and commits the event of a validation, if it's enabled.
+     *
+     * @param event                    the begun event
+     * @param checksumType             the type of the validated checksum
+     * @param file                     the validated file
+     * @param result                   the result of the validation
+     * @param calculatedDuringDownload whether the checksum was calculated during the download
+     */
+    protected void commitEvent(ChecksumValidationEvent event, ChecksumType checksumType, Path file, ChecksumResult result, boolean calculatedDuringDownload) {
+        if (event.shouldCommit()) {
+            event.setFile(file.toString());
+            event.setChecksumType(checksumType.name());
+            event.setResult(result.name());
+            event.setCalculatedDuringDownload(calculatedDuringDownload);
+            event.commit();
         }
     }
 
@@ -43,18 +89,13 @@ public class ChecksumValidatorImpl implements ChecksumValidator {
      */
     protected String calculateChecksum(ChecksumType checksumType, Path file) throws IOException, NoSuchAlgorithmException {
         try (InputStream inputStream = Files.newInputStream(file)) {
-            MessageDigest digest = MessageDigest.getInstance(checksumType.name());
+            MessageDigest digest = MessageDigest.getInstance(checksumType.getAlgorithm());
             byte[] buffer = new byte[8192];
             int bytesRead;
             while ((bytesRead = inputStream.read(buffer)) != -1) {
                 digest.update(buffer, 0, bytesRead);
             }
-            byte[] hash = digest.digest();
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                hexString.append(String.format("%02x", b));
-            }
-            return hexString.toString();
+            return Checksum.toHexString(digest.digest());
         }
     }
 }
@@ -0,0 +1,25 @@
+package enterprises.iwakura.amber.impl;
+
+/**
+ * Event of {@link enterprises.iwakura.amber.AmberClassLoader} finding and defining a class from one of its jars, see {@link AmberEvent}.
+ */
+public class ClassLoadEvent extends AmberEvent {
+
+    /**
+     * Sets the binary name of the class.
+     *
+     * @param className the binary name
+     */
+    public void setClassName(String className) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets the jar the class was defined from.
+     *
+     * @param jar the path of the jar
+     */
+    public void setJar(String jar) {
+        // Not recorded on this JVM
+    }
+}
@@ -0,0 +1,23 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.HttpTransport;
+
+/**
+ * Factory of the default {@link HttpTransport}. This class has a Java 11 variant in the multi-release section of the jar, which creates
+ * a transport based on <code>java.net.http.HttpClient</code> instead.
+ */
+public final class DefaultHttpTransports {
+
+    private DefaultHttpTransports() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Creates the default transport for the current JVM.
+     *
+     * @return the default transport
+     */
+    public static HttpTransport create() {
+        return new UrlConnectionHttpTransport();
+    }
+}
@@ -0,0 +1,34 @@
+package enterprises.iwakura.amber.impl;
+
+/**
+ * Event of installing a jar by moving, copying or linking it, see {@link AmberEvent}.
+ */
+public class FileMoveEvent extends AmberEvent {
+
+    /**
+     * Sets the source file.
+     *
+     * @param source the path of the source file
+     */
+    public void setSource(String source) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets the target file.
+     *
+     * @param target the path of the target file
+     */
+    public void setTarget(String target) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets how the file was installed.
+     *
+     * @param operation <code>move</code>, <code>copy</code> or <code>link</code>
+     */
+    public void setOperation(String operation) {
+        // Not recorded on this JVM
+    }
+}
@@ -0,0 +1,34 @@
+package enterprises.iwakura.amber.impl;
+
+/**
+ * Event of an HTTP request sent to a repository, lasting until its response is closed, see {@link AmberEvent}.
+ */
+public class HttpRequestEvent extends AmberEvent {
+
+    /**
+     * Sets the requested URL.
+     *
+     * @param url the URL
+     */
+    public void setUrl(String url) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets the HTTP status code of the response.
+     *
+     * @param statusCode the status code, or 0 if the request failed without a response
+     */
+    public void setStatusCode(int statusCode) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets the number of bytes read from the response body.
+     *
+     * @param bytes the number of bytes
+     */
+    public void setBytes(long bytes) {
+        // Not recorded on this JVM
+    }
+}
@@ -0,0 +1,82 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.AmberIndex;
+import enterprises.iwakura.amber.AmberManifest;
+import enterprises.iwakura.amber.ManifestLoader;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Manifest;
+
+/**
+ * Implementation of {@link ManifestLoader} to load Amber indexes (see {@link AmberIndex}) from a class loader's resources. Classpath roots
+ * (jars or directories) without an index (e.g. built by an older Amber Gradle plugin) have their {@link #MANIFEST_FILE_PATH} parsed
+ * instead, as by {@link ClassLoaderManifestLoader}, so only manifests of roots that have an index are spared.
+ */
+@RequiredArgsConstructor
+public class IndexResourceManifestLoader implements ManifestLoader {
+
+    /**
+     * The class loader to load indexes from.
+     */
+    private final ClassLoader classLoader;
+
+    @Override
+    public List<AmberManifest> loadManifest() throws IOException {
+        // Classpath root => Amber manifest read from its index
+        Map<String, AmberManifest> indexedManifests = new LinkedHashMap<>();
+        Enumeration<URL> indexes = classLoader.getResources(INDEX_FILE_PATH);
+        while (indexes.hasMoreElements()) {
+            URL indexUrl = indexes.nextElement();
+            try (InputStream inputStream = indexUrl.openStream()) {
+                indexedManifests.putIfAbsent(getRoot(indexUrl, INDEX_FILE_PATH), parseIndex(inputStream));
+            } catch (IOException exception) {
+                throw new IOException("Failed to read Amber index " + indexUrl, exception);
+            }
+        }
+
+        // Keep the classpath order of manifests, reading only manifests of roots without an index
+        List<AmberManifest> amberManifests = new ArrayList<>();
+        Enumeration<URL> manifests = classLoader.getResources(MANIFEST_FILE_PATH);
+        while (manifests.hasMoreElements()) {
+            URL manifestUrl = manifests.nextElement();
+            AmberManifest indexedManifest = indexedManifests.remove(getRoot(manifestUrl, MANIFEST_FILE_PATH));
+            if (indexedManifest != null) {
+                amberManifests.add(indexedManifest);
+                continue;
+            }
+
+            try (InputStream inputStream = manifestUrl.openStream()) {
+                AmberManifest amberManifest = parseManifest(new Manifest(inputStream));
+                if (amberManifest != null) {
+                    amberManifests.add(amberManifest);
+                }
+            }
+        }
+
+        // Roots with an index but no manifest
+        amberManifests.addAll(indexedManifests.values());
+        return amberManifests;
+    }
+
+    /**
+     * Gets the classpath root of the specified resource, e.g. <code>jar:file:/app.jar!/</code> for
+     * <code>jar:file:/app.jar!/META-INF/MANIFEST.MF</code>.
+     *
+     * @param resourceUrl  the URL of the resource
+     * @param resourcePath the path of the resource within the root
+     *
+     * @return the URL of the root
+     */
+    protected static String getRoot(URL resourceUrl, String resourcePath) {
+        String url = resourceUrl.toExternalForm();
+        return url.endsWith(resourcePath) ? url.substring(0, url.length() - resourcePath.length()) : url;
+    }
+}
@@ -5,14 +5,17 @@ import enterprises.iwakura.amber.ManifestLoader;
 import lombok.RequiredArgsConstructor;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
 /**
- * Implementation of {@link ManifestLoader} to load manifest from jar files.
+ * Implementation of {@link ManifestLoader} to load manifest from jar files. The Amber index (see {@link #INDEX_FILE_PATH}) of a jar file is
+ * preferred over its manifest.
  */
 @RequiredArgsConstructor
 public class JarFileManifestLoader implements ManifestLoader {
@@ -28,6 +31,14 @@ public class JarFileManifestLoader implements ManifestLoader {
 
         for (Path jarFilePath : jarFilePaths) {
             try (JarFile jarFile = new JarFile(jarFilePath.toFile())) {
+                JarEntry indexEntry = jarFile.getJarEntry(INDEX_FILE_PATH);
+                if (indexEntry != null) {
+                    try (InputStream inputStream = jarFile.getInputStream(indexEntry)) {
+                        manifests.add(parseIndex(inputStream));
+                    }
+                    continue;
+                }
+
                 Manifest manifest = jarFile.getManifest();
                 if (manifest != null) {
                     manifests.add(parseManifest(manifest));
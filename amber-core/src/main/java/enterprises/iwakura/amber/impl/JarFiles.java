@@ -0,0 +1,46 @@
+package enterprises.iwakura.amber.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarFile;
+
+/**
+ * Factory of jar files as they are opened by class loaders. Multi-release jars are not supported by this JVM; this class has a Java 11
+ * variant in the multi-release section of the jar, which opens jar files versioned by the current runtime.
+ */
+public final class JarFiles {
+
+    private JarFiles() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Opens the specified jar file for reading classes and resources, with its signatures verified.
+     *
+     * @param file the jar file
+     *
+     * @return the opened jar file
+     *
+     * @throws IOException if an I/O error occurs while opening the jar file
+     */
+    public static JarFile open(File file) throws IOException {
+        return new JarFile(file);
+    }
+
+    /**
+     * Gets the feature version of the current runtime, e.g. 8 for Java 1.8 or 21 for Java 21.
+     *
+     * @return the feature version
+     */
+    public static int getJavaFeatureVersion() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException exception) {
+            return 8;
+        }
+    }
+}
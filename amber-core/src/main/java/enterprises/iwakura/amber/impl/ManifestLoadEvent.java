@@ -0,0 +1,34 @@
+package enterprises.iwakura.amber.impl;
+
+/**
+ * Event of loading Amber manifests, see {@link AmberEvent}.
+ */
+public class ManifestLoadEvent extends AmberEvent {
+
+    /**
+     * Sets the class name of the manifest loader.
+     *
+     * @param loader the class name
+     */
+    public void setLoader(String loader) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets the number of loaded manifests.
+     *
+     * @param manifests the number of manifests
+     */
+    public void setManifests(int manifests) {
+        // Not recorded on this JVM
+    }
+
+    /**
+     * Sets the number of dependencies of all loaded manifests.
+     *
+     * @param dependencies the number of dependencies
+     */
+    public void setDependencies(int dependencies) {
+        // Not recorded on this JVM
+    }
+}
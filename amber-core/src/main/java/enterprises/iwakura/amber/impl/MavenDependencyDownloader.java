@@ -2,78 +2,404 @@ package enterprises.iwakura.amber.impl;
 
 import enterprises.iwakura.amber.*;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of {@link DependencyDownloader} that downloads dependencies from any Maven repositories. Supports version overrides via
- * <code>maven-metadata.xml</code>.
+ * <code>maven-metadata.xml</code>. Dependencies are downloaded from their routed repository (see {@link DependencyRoute}) in the version
+ * resolved at build time, without looking up <code>maven-metadata.xml</code>.
  */
 public class MavenDependencyDownloader implements DependencyDownloader {
 
+    /**
+     * The name of the directory within the state directory where <code>maven-metadata.xml</code> cache is persisted.
+     */
+    public static final String METADATA_CACHE_DIRECTORY_NAME = "maven-metadata";
+
+    /**
+     * The maximum number of bytes read from an unneeded response body to allow reusing its connection.
+     */
+    protected static final long MAX_DISCARDED_BODY_SIZE = 64 * 1024;
+
+    /**
+     * The HTTP status code of a response to a conditional request whose resource was not modified.
+     */
+    protected static final int HTTP_NOT_MODIFIED = 304;
+
+    /**
+     * The HTTP status code of a response to a range request.
+     */
+    protected static final int HTTP_PARTIAL_CONTENT = 206;
+
+    /**
+     * The HTTP status code of a response for a missing resource.
+     */
+    protected static final int HTTP_NOT_FOUND = 404;
+
+    /**
+     * The HTTP status code of a response to a range request that can't be satisfied.
+     */
+    protected static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    /**
+     * The HTTP status code of a response to a throttled request.
+     */
+    protected static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The HTTP status code of a response of an overloaded or unavailable server.
+     */
+    protected static final int HTTP_UNAVAILABLE = 503;
+
+    /**
+     * The size of the buffer used when copying downloaded files.
+     */
+    protected static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The transport used to make HTTP requests.
+     */
+    protected final HttpTransport transport;
+
+    /**
+     * The download path directories of routed dependencies whose routed version could not be found in the routed repository. Replaced on
+     * every bootstrap.
+     */
+    protected volatile Set<String> expiredRoutes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The cache of version overrides resolved from <code>maven-metadata.xml</code>. Replaced on every bootstrap.
+     */
+    protected volatile MavenMetadataCache metadataCache = new MavenMetadataCache();
+
+    /**
+     * Whether checksums should be calculated while downloading, as per the bootstrap options.
+     */
+    protected volatile boolean validateChecksums = true;
+
+    /**
+     * Creates a new Maven dependency downloader using the default transport for the current JVM.
+     *
+     * @see HttpTransport#defaultTransport()
+     */
+    public MavenDependencyDownloader() {
+        this(HttpTransport.defaultTransport());
+    }
+
+    /**
+     * Creates a new Maven dependency downloader using the specified transport.
+     *
+     * @param transport the transport used to make HTTP requests
+     */
+    public MavenDependencyDownloader(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    @Override
+    public void prepare(BootstrapOptions options, Path stateDirectory) {
+        transport.prepare(options);
+        validateChecksums = options.isValidateChecksums();
+        expiredRoutes = ConcurrentHashMap.newKeySet();
+        metadataCache = new MavenMetadataCache(options.isPersistMetadataCache() ? stateDirectory.resolve(METADATA_CACHE_DIRECTORY_NAME) : null);
+    }
+
     @Override
     public DownloadResult downloadJar(
             Dependency dependency,
             Repository repository,
             Path filePath
+    ) throws IOException {
+        return downloadJar(dependency, repository, filePath, () -> {});
+    }
+
+    @Override
+    public DownloadResult downloadJar(
+            Dependency dependency,
+            Repository repository,
+            Path filePath,
+            Runnable responseListener
     ) throws IOException {
         Files.createDirectories(filePath.getParent());
 
+        DependencyRoute route = getRoute(dependency, repository);
+        if (route != null) {
+            DownloadResult result = downloadJar(dependency, repository, filePath, route.getVersion(), route.getSize(), responseListener);
+            if (result.getStatusCode() != HTTP_NOT_FOUND || route.getVersion() == null) {
+                return result;
+            }
+            // The routed version is gone (e.g. an expired snapshot), resolve the version as usual
+            expiredRoutes.add(repository.getDownloadPathDirectory(dependency));
+        }
+
+        long metadataLookupStartTime = System.nanoTime();
         StringDownloadResult versionOverrideResult = downloadVersionOverrideFromMavenMetadata(dependency, repository);
+        long metadataLookupNanos = System.nanoTime() - metadataLookupStartTime;
         if (!versionOverrideResult.isSuccess()) {
+            versionOverrideResult.setMetadataLookupNanos(metadataLookupNanos);
             return versionOverrideResult;
         }
 
-        HttpURLConnection connection = createConnection(repository.getJarDownloadPath(dependency, versionOverrideResult.getContent() != null ? versionOverrideResult.getContent() : dependency.getVersion()));
+        DownloadResult result = downloadJar(dependency, repository, filePath, versionOverrideResult.getContent(), -1, responseListener);
+        result.setMetadataLookupNanos(metadataLookupNanos);
+        return result;
+    }
 
-        try {
-            connection.connect();
+    /**
+     * Downloads the specified version of the dependency's jar file, resuming a partial download if possible.
+     *
+     * @param dependency   the dependency to download
+     * @param repository   the repository to download from
+     * @param filePath     the path to download the jar to
+     * @param version      the exact version of the jar file, or null for the dependency's version
+     * @param expectedSize     the expected size of the jar file in bytes if the repository doesn't send its length, or -1 if unknown
+     * @param responseListener the listener to notify once the repository started sending the jar
+     *
+     * @return the download result
+     *
+     * @throws IOException if an I/O error occurs outside the download itself
+     */
+    protected DownloadResult downloadJar(
+            Dependency dependency,
+            Repository repository,
+            Path filePath,
+            String version,
+            long expectedSize,
+            Runnable responseListener
+    ) throws IOException {
+        String url = repository.getJarDownloadPath(dependency, version);
+
+        PartialDownload partialDownload = PartialDownload.load(filePath);
+        if (partialDownload != null && (!url.equals(partialDownload.getUrl()) || partialDownload.getIfRangeValidator() == null)) {
+            partialDownload = null; // Partially downloaded from elsewhere or can't be resumed safely
+        }
+
+        long existingLength = partialDownload != null ? Files.size(filePath) : 0;
+        Map<String, String> headers = new HashMap<>();
+        if (existingLength > 0) {
+            headers.put("Range", "bytes=" + existingLength + "-");
+            headers.put("If-Range", partialDownload.getIfRangeValidator());
+        }
+
+        boolean resumable = false;
+        long responseNanos = -1;
+        long requestStartTime = System.nanoTime();
+        try (HttpTransport.Response response = sendRequest(url, headers)) {
+            responseNanos = System.nanoTime() - requestStartTime;
+            if (response.getStatusCode() == HTTP_RANGE_NOT_SATISFIABLE && existingLength > 0) {
+                // Partial file is stale or already complete, start over
+                discardBody(response);
+                PartialDownload.delete(filePath);
+                Files.deleteIfExists(filePath);
+                return downloadJar(dependency, repository, filePath, version, expectedSize, responseListener);
+            }
 
             // Check for HTTP 2xx response code
-            if (connection.getResponseCode() / 100 != 2) {
-                return DownloadResult.error(String.format("HTTP %d: %s", connection.getResponseCode(), connection.getResponseMessage()));
+            if (response.getStatusCode() / 100 != 2) {
+                discardBody(response);
+                DownloadResult result = DownloadResult.httpError(response.getStatusCode(), response.getStatusMessage(), parseRetryAfter(response.getHeader("Retry-After")));
+                result.setResponseNanos(responseNanos);
+                return result;
             }
 
-            // Download to temporary file
-            try (InputStream inputStream = connection.getInputStream()) {
-                Files.copy(inputStream, filePath, StandardCopyOption.REPLACE_EXISTING);
+            boolean resuming = existingLength > 0 && response.getStatusCode() == HTTP_PARTIAL_CONTENT
+                    && existingLength == parseContentRangeStart(response.getHeader("Content-Range"));
+            if (!resuming && response.getStatusCode() == HTTP_PARTIAL_CONTENT) {
+                // A part that doesn't continue the partial file can't be written as the whole file
+                discardBody(response);
+                PartialDownload.delete(filePath);
+                Files.deleteIfExists(filePath);
+                if (existingLength > 0) {
+                    return downloadJar(dependency, repository, filePath, version, expectedSize, responseListener);
+                }
+                return DownloadResult.error(String.format("Failed to download dependency %s: unexpected partial content (%s)",
+                        dependency, response.getHeader("Content-Range")));
+            }
+            responseListener.run();
+            if (!resuming) {
+                existingLength = 0;
+                long contentLength = parseLength(response.getHeader("Content-Length"));
+                partialDownload = new PartialDownload(
+                        url,
+                        response.getHeader("ETag"),
+                        response.getHeader("Last-Modified"),
+                        contentLength >= 0 ? contentLength : expectedSize
+                );
+                partialDownload.save(filePath);
+            }
+            resumable = partialDownload.getIfRangeValidator() != null;
+
+            // Download to temporary file, calculating checksums on the fly (including the already downloaded part)
+            Map<ChecksumType, String> checksums;
+            try (InputStream existingInputStream = resuming ? Files.newInputStream(filePath) : new ByteArrayInputStream(new byte[0]);
+                 ChecksumCalculatingInputStream inputStream = new ChecksumCalculatingInputStream(new SequenceInputStream(existingInputStream, response.getBody()), getChecksumTypesToCalculate(dependency))) {
+                copy(inputStream, filePath, existingLength);
+                checksums = inputStream.getChecksums();
+            }
+
+            long expectedLength = partialDownload.getExpectedLength();
+            if (expectedLength >= 0 && Files.size(filePath) != expectedLength) {
+                throw new IOException(String.format("Downloaded %d bytes, expected %d bytes", Files.size(filePath), expectedLength));
             }
 
             // Successfully downloaded
-            return DownloadResult.success();
+            PartialDownload.delete(filePath);
+            DownloadResult result = DownloadResult.successWithChecksums(checksums);
+            result.setBytesTransferred(Files.size(filePath) - existingLength);
+            result.setResponseNanos(responseNanos);
+            return result;
         } catch (IOException exception) {
-            Files.deleteIfExists(filePath);
-            return DownloadResult.error(String.format("Failed to download dependency %s: %s", dependency, exception));
-        } finally {
-            connection.disconnect();
+            if (!resumable) {
+                PartialDownload.delete(filePath);
+                Files.deleteIfExists(filePath);
+            }
+            DownloadResult result = DownloadResult.error(String.format("Failed to download dependency %s: %s", dependency, exception));
+            result.setResponseNanos(responseNanos);
+            return result;
+        }
+    }
+
+    /**
+     * Copies the specified stream into the file, skipping the specified number of bytes that are already present in the file. The rest of
+     * the stream is appended to the file.
+     *
+     * @param inputStream   the stream to copy, starting with the bytes already present in the file
+     * @param filePath      the file to copy into
+     * @param existingBytes the number of bytes at the beginning of the stream that are already present in the file
+     *
+     * @throws IOException if an I/O error occurs or the current thread was interrupted
+     */
+    protected void copy(InputStream inputStream, Path filePath, long existingBytes) throws IOException {
+        StandardOpenOption mode = existingBytes > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try (OutputStream outputStream = Files.newOutputStream(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long position = 0;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Download was interrupted");
+                }
+                long skip = Math.max(0, Math.min(read, existingBytes - position));
+                if (skip < read) {
+                    outputStream.write(buffer, (int) skip, (int) (read - skip));
+                }
+                position += read;
+            }
+        }
+    }
+
+    /**
+     * Parses the first byte position from the <code>Content-Range</code> header, e.g. <code>bytes 100-199/200</code>.
+     *
+     * @param contentRange the header value, may be null
+     *
+     * @return the first byte position, or -1 if the header is missing or invalid
+     */
+    protected long parseContentRangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dashIndex = contentRange.indexOf('-');
+        return dashIndex != -1 ? parseLength(contentRange.substring(6, dashIndex)) : -1;
+    }
+
+    /**
+     * Parses a <code>Retry-After</code> header value, either delay in seconds or an HTTP date.
+     *
+     * @param retryAfter the header value, may be null
+     *
+     * @return the delay in milliseconds, or -1 if the value is missing or invalid
+     */
+    protected long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException ignored) {
+            // Not a delay in seconds
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a length header value.
+     *
+     * @param length the header value, may be null
+     *
+     * @return the parsed length, or -1 if the value is missing or invalid
+     */
+    protected long parseLength(String length) {
+        if (length == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException exception) {
+            return -1;
         }
     }
 
     @Override
     public StringDownloadResult downloadChecksum(Dependency dependency, Repository repository, ChecksumType checksumType) throws IOException {
-        StringDownloadResult versionOverrideResult = downloadVersionOverrideFromMavenMetadata(dependency, repository);
-        if (!versionOverrideResult.isSuccess()) {
-            return versionOverrideResult;
+        // Checksums must be of the same version as the jar, which was downloaded from the route unless it expired
+        DependencyRoute route = getRoute(dependency, repository);
+        String version;
+        if (route != null && !expiredRoutes.contains(repository.getDownloadPathDirectory(dependency))) {
+            version = route.getVersion();
+        } else {
+            StringDownloadResult versionOverrideResult = downloadVersionOverrideFromMavenMetadata(dependency, repository);
+            if (!versionOverrideResult.isSuccess()) {
+                return versionOverrideResult;
+            }
+            version = versionOverrideResult.getContent();
         }
 
-        HttpURLConnection connection = createConnection(repository.getChecksumDownloadPath(dependency, versionOverrideResult.getContent() != null ? versionOverrideResult.getContent() : dependency.getVersion(), checksumType));
+        String url = repository.getChecksumDownloadPath(dependency, version, checksumType);
 
-        try {
-            connection.connect();
+        long requestStartTime = System.nanoTime();
+        try (HttpTransport.Response response = sendRequest(url, Collections.emptyMap())) {
+            long responseNanos = System.nanoTime() - requestStartTime;
 
             // Check for HTTP 2xx response code
-            if (connection.getResponseCode() / 100 != 2) {
-                return StringDownloadResult.error(String.format("HTTP %d: %s", connection.getResponseCode(), connection.getResponseMessage()));
+            if (response.getStatusCode() / 100 != 2) {
+                discardBody(response);
+                StringDownloadResult result = StringDownloadResult.httpError(response.getStatusCode(), response.getStatusMessage(), parseRetryAfter(response.getHeader("Retry-After")));
+                result.setResponseNanos(responseNanos);
+                return result;
             }
 
             // Read checksum from response
-            try (InputStream inputStream = connection.getInputStream()) {
+            try (InputStream inputStream = response.getBody()) {
                 try (ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
                     byte[] data = new byte[8192];
                     int nRead;
@@ -81,18 +407,56 @@ public class MavenDependencyDownloader implements DependencyDownloader {
                         buffer.write(data, 0, nRead);
                     }
                     buffer.flush();
-                    return StringDownloadResult.success(buffer.toString().trim());
+                    long contentLength = parseLength(response.getHeader("Content-Length"));
+                    if (contentLength >= 0 && buffer.size() != contentLength) {
+                        // A dropped connection would otherwise read as a (mismatching) checksum
+                        throw new IOException(String.format("Downloaded %d bytes, expected %d bytes", buffer.size(), contentLength));
+                    }
+                    StringDownloadResult result = StringDownloadResult.success(buffer.toString().trim());
+                    result.setResponseNanos(responseNanos);
+                    return result;
                 }
             }
         } catch (IOException exception) {
             throw new IOException("Failed to download checksum for dependency: " + dependency, exception);
-        } finally {
-            connection.disconnect();
         }
     }
 
     /**
-     * Tries to download and parse <code>maven-metadata.xml</code> to find a version override for the given dependency.
+     * Gets the checksum types that should be calculated while downloading the specified dependency. If the dependency has a pinned
+     * checksum, only its type is calculated. If checksum validation is disabled, nothing is calculated.
+     *
+     * @param dependency the dependency being downloaded
+     *
+     * @return the checksum types to calculate
+     */
+    protected Collection<ChecksumType> getChecksumTypesToCalculate(Dependency dependency) {
+        if (!validateChecksums) {
+            return Collections.emptyList();
+        }
+        if (dependency.getPinnedChecksum() != null) {
+            return Collections.singletonList(dependency.getPinnedChecksum().getType());
+        }
+        return Arrays.asList(ChecksumType.values());
+    }
+
+    /**
+     * Gets the route of the specified dependency if it was resolved from the specified repository at build time.
+     *
+     * @param dependency the dependency to download
+     * @param repository the repository to download from
+     *
+     * @return the route, or null if the dependency has no route to the repository
+     */
+    protected DependencyRoute getRoute(Dependency dependency, Repository repository) {
+        DependencyRoute route = dependency.getRoute();
+        return route != null && route.isRoutedTo(repository) ? route : null;
+    }
+
+    /**
+     * Tries to download and parse <code>maven-metadata.xml</code> to find a version override for the given dependency. Resolved version
+     * overrides are cached in {@link #metadataCache} for the whole bootstrap, so the metadata is downloaded at most once per dependency
+     * and repository.
      *
      * @param dependency the dependency to check for version override
      * @param repository the repository to download from
@@ -100,83 +464,308 @@ public class MavenDependencyDownloader implements DependencyDownloader {
      * @return a {@link StringDownloadResult} containing the version override if found, null if not found, or an error message if failed
      */
     protected StringDownloadResult downloadVersionOverrideFromMavenMetadata(Dependency dependency, Repository repository) {
-        HttpURLConnection connection = null;
-        try {
-            connection = createConnection(repository.getDownloadPathDirectory(dependency) + "maven-metadata.xml");
-            connection.connect();
+        String cacheKey = repository.getDownloadPathDirectory(dependency);
+        StringDownloadResult cachedResult = metadataCache.get(cacheKey);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
+        StringDownloadResult result = fetchVersionOverrideFromMavenMetadata(dependency, cacheKey);
+        if (result.isSuccess()) {
+            metadataCache.put(cacheKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Downloads and parses <code>maven-metadata.xml</code> to find a version override for the given dependency. If the metadata cache has
+     * a persisted entry, the request is made conditional and the persisted version is used if the metadata was not modified.
+     *
+     * @param dependency the dependency to check for version override
+     * @param cacheKey   the dependency's download path directory in the repository
+     *
+     * @return a {@link StringDownloadResult} containing the version override if found, null if not found, or an error message if failed
+     */
+    protected StringDownloadResult fetchVersionOverrideFromMavenMetadata(Dependency dependency, String cacheKey) {
+        MavenMetadataCache.PersistedEntry persistedEntry = metadataCache.loadPersisted(cacheKey);
+        Map<String, String> headers = new HashMap<>();
+
+        if (persistedEntry != null) {
+            if (persistedEntry.getEtag() != null) {
+                headers.put("If-None-Match", persistedEntry.getEtag());
+            }
+            if (persistedEntry.getLastModified() != null) {
+                headers.put("If-Modified-Since", persistedEntry.getLastModified());
+            }
+        }
+
+        try (HttpTransport.Response response = sendRequest(cacheKey + "maven-metadata.xml", headers)) {
+            // Persisted version is still up-to-date
+            if (persistedEntry != null && response.getStatusCode() == HTTP_NOT_MODIFIED) {
+                discardBody(response);
+                return StringDownloadResult.success(persistedEntry.getVersion().isEmpty() ? null : persistedEntry.getVersion());
+            }
+
+            // Throttled, the version override is unknown
+            if (response.getStatusCode() == HTTP_TOO_MANY_REQUESTS || response.getStatusCode() == HTTP_UNAVAILABLE) {
+                discardBody(response);
+                return StringDownloadResult.httpError(response.getStatusCode(), response.getStatusMessage(), parseRetryAfter(response.getHeader("Retry-After")));
+            }
 
             // Check for HTTP 2xx response code
-            if (connection.getResponseCode() / 100 != 2) {
+            if (response.getStatusCode() / 100 != 2) {
+                discardBody(response);
                 return StringDownloadResult.success(null); // No version override found
             }
 
             // Read version from response
-            try (InputStream inputStream = connection.getInputStream()) {
-                try (ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-                    byte[] data = new byte[8192];
-                    int nRead;
-                    while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-                        buffer.write(data, 0, nRead);
-                    }
-                    buffer.flush();
-                    String metadataXml = buffer.toString().trim();
-                    String version = MavenMetadataParser.parseLatestVersion(metadataXml);
-                    if (version == null || version.isEmpty()) {
-                        return StringDownloadResult.success(null); // No version override found
-                    }
-                    return StringDownloadResult.success(version);
-                }
+            String version;
+            try (InputStream inputStream = response.getBody()) {
+                version = MavenMetadataParser.parseLatestVersion(inputStream);
+                discard(inputStream);
+            }
+
+            try {
+                metadataCache.persist(cacheKey, new MavenMetadataCache.PersistedEntry(
+                        version,
+                        response.getHeader("ETag"),
+                        response.getHeader("Last-Modified")
+                ));
+            } catch (IOException ignored) {
+                // The cache is only an optimization
+            }
+
+            if (version == null || version.isEmpty()) {
+                return StringDownloadResult.success(null); // No version override found
             }
+            return StringDownloadResult.success(version);
         } catch (IOException exception) {
             return StringDownloadResult.error("Failed to download maven-metadata.xml for dependency: " + dependency + " due to " + exception);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
 
     /**
-     * Prepares an HTTP GET connection with the default User-Agent.
+     * Sends a GET request using the transport, recorded as {@link HttpRequestEvent} if the event is enabled.
      *
-     * @param url the URL to connect to
+     * @param url     the URL to request
+     * @param headers the request headers
      *
-     * @return the prepared HttpURLConnection
+     * @return the response, which must be closed
+     *
+     * @throws IOException if the request could not be sent or the response could not be received
+     */
+    protected HttpTransport.Response sendRequest(String url, Map<String, String> headers) throws IOException {
+        HttpRequestEvent event = new HttpRequestEvent();
+        if (!event.isEnabled()) {
+            return transport.get(url, headers);
+        }
+
+        event.begin();
+        event.setUrl(url);
+        try {
+            return new RecordedResponse(transport.get(url, headers), event);
+        } catch (IOException | RuntimeException exception) {
+            event.commit();
+            throw exception;
+        }
+    }
+
+    /**
+     * Reads and discards a small response body, so the connection may be reused for other requests. Bodies larger than
+     * {@link #MAX_DISCARDED_BODY_SIZE} are left unread, and the connection is given up when the response is closed.
+     *
+     * @param response the response to discard the body of
+     */
+    protected void discardBody(HttpTransport.Response response) {
+        try (InputStream inputStream = response.getBody()) {
+            discard(inputStream);
+        } catch (IOException ignored) {
+            // The connection will be given up
+        }
+    }
+
+    /**
+     * Reads and discards the rest of the specified stream, up to {@link #MAX_DISCARDED_BODY_SIZE} bytes.
+     *
+     * @param inputStream the stream to discard
      *
      * @throws IOException if an I/O error occurs
      */
-    protected HttpURLConnection createConnection(String url) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("User-Agent", USER_AGENT);
-        connection.setInstanceFollowRedirects(true);
-        return connection;
+    protected void discard(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[8192];
+        long discarded = 0;
+        int read;
+        while (discarded < MAX_DISCARDED_BODY_SIZE && (read = inputStream.read(buffer)) != -1) {
+            discarded += read;
+        }
     }
 
     /**
-     * Simple XML "parser" to extract the latest version from <code>maven-metadata.xml</code>.
+     * Response counting the bytes read from its body, which commits its {@link HttpRequestEvent} once closed.
+     */
+    protected static class RecordedResponse implements HttpTransport.Response {
+
+        /**
+         * The response of the transport.
+         */
+        protected final HttpTransport.Response response;
+
+        /**
+         * The event of the request.
+         */
+        protected final HttpRequestEvent event;
+
+        /**
+         * The number of bytes read from the body.
+         */
+        protected long bytes;
+
+        /**
+         * Constructs a new RecordedResponse.
+         *
+         * @param response the response of the transport
+         * @param event    the begun event of the request
+         */
+        protected RecordedResponse(HttpTransport.Response response, HttpRequestEvent event) {
+            this.response = response;
+            this.event = event;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusMessage() {
+            return response.getStatusMessage();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return response.getHeader(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new FilterInputStream(response.getBody()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        bytes++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        bytes += read;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                response.close();
+            } finally {
+                event.setStatusCode(response.getStatusCode());
+                event.setBytes(bytes);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Streaming parser to extract the latest version from <code>maven-metadata.xml</code>.
      */
     private static class MavenMetadataParser {
 
         /**
-         * Finds the latest version for jar extension in the given <code>maven-metadata.xml</code> content.
+         * Factory for XML stream readers, with DTDs and external entities disabled.
+         */
+        private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+        /**
+         * Finds the latest version for jar extension in the given <code>maven-metadata.xml</code> content. Prefers the
+         * <code>snapshotVersion</code> without any classifier.
          *
-         * @param metadataXml the content of <code>maven-metadata.xml</code>
+         * @param inputStream the content of <code>maven-metadata.xml</code>
          *
          * @return the latest version if found, otherwise null
+         *
+         * @throws IOException if the content could not be read or is not a valid XML
+         */
+        public static String parseLatestVersion(InputStream inputStream) throws IOException {
+            XMLStreamReader reader = null;
+            try {
+                reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+
+                String classifiedVersion = null;
+                boolean inSnapshotVersion = false;
+                String classifier = null;
+                String extension = null;
+                String value = null;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String element = reader.getLocalName();
+                        if ("snapshotVersion".equals(element)) {
+                            inSnapshotVersion = true;
+                            classifier = null;
+                            extension = null;
+                            value = null;
+                        } else if (inSnapshotVersion && "classifier".equals(element)) {
+                            classifier = reader.getElementText().trim();
+                        } else if (inSnapshotVersion && "extension".equals(element)) {
+                            extension = reader.getElementText().trim();
+                        } else if (inSnapshotVersion && "value".equals(element)) {
+                            value = reader.getElementText().trim();
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && "snapshotVersion".equals(reader.getLocalName())) {
+                        inSnapshotVersion = false;
+                        if ("jar".equals(extension) && value != null) {
+                            if (classifier == null || classifier.isEmpty()) {
+                                return value;
+                            }
+                            if (classifiedVersion == null) {
+                                classifiedVersion = value;
+                            }
+                        }
+                    }
+                }
+
+                return classifiedVersion;
+            } catch (XMLStreamException exception) {
+                throw new IOException("Failed to parse maven-metadata.xml", exception);
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (XMLStreamException ignored) {
+                        // Nothing to do
+                    }
+                }
+            }
+        }
+
+        /**
+         * Creates an XML input factory with DTDs and external entities disabled.
+         *
+         * @return the XML input factory
          */
-        public static String parseLatestVersion(String metadataXml) {
-            // Simple extraction for <extension>jar</extension> and its <value>
-            int extIdx = metadataXml.indexOf("<extension>jar</extension>");
-            if (extIdx == -1) {
-                return null;
-            }
-            int valueStart = metadataXml.indexOf("<value>", extIdx);
-            int valueEnd = metadataXml.indexOf("</value>", valueStart);
-            if (valueStart == -1 || valueEnd == -1) {
-                return null;
-            }
-            return metadataXml.substring(valueStart + 7, valueEnd);
+        private static XMLInputFactory createXmlInputFactory() {
+            XMLInputFactory factory = XMLInputFactory.newFactory();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            return factory;
         }
     }
 }
@@ -0,0 +1,171 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.StringDownloadResult;
+import lombok.Data;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of version overrides resolved from <code>maven-metadata.xml</code> files. Entries are kept in memory for the whole
+ * bootstrap and may be optionally persisted into a directory, so the next bootstrap may revalidate them using
+ * <code>ETag</code> and <code>Last-Modified</code> headers instead of downloading and parsing the metadata again.
+ */
+public class MavenMetadataCache {
+
+    /**
+     * The resolved version overrides, keyed by the dependency's download path directory.
+     */
+    protected final Map<String, StringDownloadResult> results = new ConcurrentHashMap<>();
+
+    /**
+     * The directory to persist entries into, or null if entries should be kept only in memory.
+     */
+    @Getter
+    protected final Path directory;
+
+    /**
+     * Creates a new in-memory only cache.
+     */
+    public MavenMetadataCache() {
+        this(null);
+    }
+
+    /**
+     * Creates a new cache persisting its entries into the specified directory.
+     *
+     * @param directory the directory to persist entries into, or null to keep entries only in memory
+     */
+    public MavenMetadataCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the resolved version override for the specified key from memory.
+     *
+     * @param key the dependency's download path directory
+     *
+     * @return the resolved version override, or null if it was not resolved during this bootstrap yet
+     */
+    public StringDownloadResult get(String key) {
+        return results.get(key);
+    }
+
+    /**
+     * Stores the resolved version override for the specified key in memory.
+     *
+     * @param key    the dependency's download path directory
+     * @param result the resolved version override
+     */
+    public void put(String key, StringDownloadResult result) {
+        results.put(key, result);
+    }
+
+    /**
+     * Loads a persisted entry for the specified key.
+     *
+     * @param key the dependency's download path directory
+     *
+     * @return the persisted entry, or null if there's no entry persisted, persistence is disabled or the entry is unreadable
+     */
+    public PersistedEntry loadPersisted(String key) {
+        if (directory == null) {
+            return null;
+        }
+
+        Path entryPath = getEntryPath(key);
+        if (!Files.exists(entryPath)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(entryPath)) {
+            properties.load(inputStream);
+        } catch (IOException exception) {
+            return null; // Treat unreadable entries as missing
+        }
+
+        if (!key.equals(properties.getProperty("key"))) {
+            return null; // Hash collision
+        }
+
+        return new PersistedEntry(
+                properties.getProperty("version", ""),
+                properties.getProperty("etag"),
+                properties.getProperty("last-modified")
+        );
+    }
+
+    /**
+     * Persists an entry for the specified key. Does nothing if persistence is disabled.
+     *
+     * @param key   the dependency's download path directory
+     * @param entry the entry to persist
+     *
+     * @throws IOException if an I/O error occurs while writing the entry
+     */
+    public void persist(String key, PersistedEntry entry) throws IOException {
+        if (directory == null) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("key", key);
+        properties.setProperty("version", entry.getVersion() != null ? entry.getVersion() : "");
+        if (entry.getEtag() != null) {
+            properties.setProperty("etag", entry.getEtag());
+        }
+        if (entry.getLastModified() != null) {
+            properties.setProperty("last-modified", entry.getLastModified());
+        }
+
+        Path entryPath = getEntryPath(key);
+        Path tempEntryPath = entryPath.resolveSibling(entryPath.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        Files.createDirectories(entryPath.getParent());
+        try (OutputStream outputStream = Files.newOutputStream(tempEntryPath)) {
+            properties.store(outputStream, "Amber maven-metadata.xml cache entry");
+        }
+        Files.move(tempEntryPath, entryPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Resolves the file path of the persisted entry for the specified key.
+     *
+     * @param key the dependency's download path directory
+     *
+     * @return the file path of the persisted entry
+     */
+    protected Path getEntryPath(String key) {
+        return directory.resolve(String.format("%08x.properties", key.hashCode()));
+    }
+
+    /**
+     * A persisted version override with validators used for revalidating it.
+     */
+    @Data
+    public static class PersistedEntry {
+
+        /**
+         * The resolved version override; empty if <code>maven-metadata.xml</code> does not specify any.
+         */
+        private final String version;
+
+        /**
+         * The <code>ETag</code> header of the response the version was resolved from, may be null.
+         */
+        private final String etag;
+
+        /**
+         * The <code>Last-Modified</code> header of the response the version was resolved from, may be null.
+         */
+        private final String lastModified;
+    }
+}
@@ -0,0 +1,176 @@
+package enterprises.iwakura.amber.impl;
+
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Describes a partially downloaded file, so its download may be resumed by a later bootstrap. Stored in a sidecar file next to the
+ * partially downloaded file. The partially downloaded file may be shared by multiple processes, so it may only be written while holding
+ * its lock (see {@link #tryLock(Path)}).
+ */
+@Data
+public class PartialDownload {
+
+    /**
+     * The suffix of the sidecar file name, appended to the partially downloaded file's name.
+     */
+    public static final String SIDECAR_SUFFIX = ".properties";
+
+    /**
+     * The suffix of the lock file name, appended to the partially downloaded file's name.
+     */
+    public static final String LOCK_SUFFIX = ".lock";
+
+    /**
+     * The URL the file is being downloaded from.
+     */
+    private final String url;
+
+    /**
+     * The <code>ETag</code> header of the response the file is being downloaded from, may be null.
+     */
+    private final String etag;
+
+    /**
+     * The <code>Last-Modified</code> header of the response the file is being downloaded from, may be null.
+     */
+    private final String lastModified;
+
+    /**
+     * The expected length of the complete file, or -1 if unknown.
+     */
+    private final long expectedLength;
+
+    /**
+     * Gets the value for the <code>If-Range</code> request header, which makes the server send the whole file if it has changed since.
+     *
+     * @return the <code>If-Range</code> header value, or null if the download has no validator and thus can't be resumed safely
+     */
+    public String getIfRangeValidator() {
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag; // Weak ETags can't be used for range requests
+        }
+        return lastModified;
+    }
+
+    /**
+     * Resolves the sidecar file path of the specified partially downloaded file.
+     *
+     * @param filePath the partially downloaded file
+     *
+     * @return the sidecar file path
+     */
+    public static Path getSidecarPath(Path filePath) {
+        return filePath.resolveSibling(filePath.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Resolves the lock file path of the specified partially downloaded file.
+     *
+     * @param filePath the partially downloaded file
+     *
+     * @return the lock file path
+     */
+    public static Path getLockPath(Path filePath) {
+        return filePath.resolveSibling(filePath.getFileName() + LOCK_SUFFIX);
+    }
+
+    /**
+     * Tries to lock the specified partially downloaded file and its sidecar for this process, without waiting. The lock is held on a
+     * separate lock file, which is never deleted, as deleting it would let two processes lock different files.
+     *
+     * @param filePath the partially downloaded file
+     *
+     * @return the lock, which must be released by closing its channel, or null if the file is locked by another process or by another
+     * download in this process
+     *
+     * @throws IOException if the lock file could not be opened
+     */
+    public static FileLock tryLock(Path filePath) throws IOException {
+        FileChannel channel = FileChannel.open(getLockPath(filePath), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+        } catch (OverlappingFileLockException ignored) {
+            // Locked by another download in this process
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+        channel.close();
+        return null;
+    }
+
+    /**
+     * Loads the partial download of the specified file.
+     *
+     * @param filePath the partially downloaded file
+     *
+     * @return the partial download, or null if there's none or it is unreadable
+     */
+    public static PartialDownload load(Path filePath) {
+        Path sidecarPath = getSidecarPath(filePath);
+        if (!Files.exists(filePath) || !Files.exists(sidecarPath)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(sidecarPath)) {
+            properties.load(inputStream);
+            return new PartialDownload(
+                    properties.getProperty("url"),
+                    properties.getProperty("etag"),
+                    properties.getProperty("last-modified"),
+                    Long.parseLong(properties.getProperty("expected-length", "-1"))
+            );
+        } catch (IOException | NumberFormatException exception) {
+            return null; // Treat unreadable sidecars as missing
+        }
+    }
+
+    /**
+     * Saves this partial download next to the specified file.
+     *
+     * @param filePath the partially downloaded file
+     *
+     * @throws IOException if an I/O error occurs while writing the sidecar
+     */
+    public void save(Path filePath) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        if (etag != null) {
+            properties.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            properties.setProperty("last-modified", lastModified);
+        }
+        properties.setProperty("expected-length", String.valueOf(expectedLength));
+
+        try (OutputStream outputStream = Files.newOutputStream(getSidecarPath(filePath))) {
+            properties.store(outputStream, "Amber partial download");
+        }
+    }
+
+    /**
+     * Deletes the sidecar of the specified file, if any.
+     *
+     * @param filePath the partially downloaded file
+     *
+     * @throws IOException if an I/O error occurs while deleting the sidecar
+     */
+    public static void delete(Path filePath) throws IOException {
+        Files.deleteIfExists(getSidecarPath(filePath));
+    }
+}
@@ -0,0 +1,172 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.BootstrapOptions;
+import enterprises.iwakura.amber.DependencyDownloader;
+import enterprises.iwakura.amber.HttpTransport;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Implementation of {@link HttpTransport} based on {@link HttpURLConnection}. Connections are kept alive and reused by the JVM as long as
+ * response bodies are fully read before closing the response.
+ */
+public class UrlConnectionHttpTransport implements HttpTransport {
+
+    /**
+     * The connect timeout in milliseconds, 0 for no timeout.
+     */
+    protected volatile int connectTimeoutMillis;
+
+    /**
+     * The read timeout in milliseconds, 0 for no timeout.
+     */
+    protected volatile int readTimeoutMillis;
+
+    @Override
+    public void prepare(BootstrapOptions options) {
+        connectTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, Math.max(0, options.getConnectTimeoutMillis()));
+        readTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, Math.max(0, options.getReadTimeoutMillis()));
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        HttpURLConnection connection = createConnection(url);
+        headers.forEach(connection::setRequestProperty);
+
+        try {
+            connection.connect();
+            connection.getResponseCode();
+        } catch (IOException exception) {
+            connection.disconnect();
+            throw exception;
+        }
+
+        return new UrlConnectionResponse(connection);
+    }
+
+    /**
+     * Prepares an HTTP GET connection with the default User-Agent and the configured timeouts.
+     *
+     * @param url the URL to connect to
+     *
+     * @return the prepared HttpURLConnection
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected HttpURLConnection createConnection(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("User-Agent", DependencyDownloader.USER_AGENT);
+        connection.setInstanceFollowRedirects(true);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        return connection;
+    }
+
+    /**
+     * Response backed by a {@link HttpURLConnection}.
+     */
+    @RequiredArgsConstructor
+    protected static class UrlConnectionResponse implements Response {
+
+        /**
+         * The connection the response was received from.
+         */
+        private final HttpURLConnection connection;
+
+        /**
+         * The opened body stream, or null if the body was not opened.
+         */
+        private BodyInputStream body;
+
+        @Override
+        public int getStatusCode() {
+            try {
+                return connection.getResponseCode();
+            } catch (IOException exception) {
+                return -1; // Unreachable, the response code is read when the response is created
+            }
+        }
+
+        @Override
+        public String getStatusMessage() {
+            try {
+                String message = connection.getResponseMessage();
+                return message != null ? message : "";
+            } catch (IOException exception) {
+                return "";
+            }
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            InputStream inputStream = getStatusCode() / 100 == 2 ? connection.getInputStream() : connection.getErrorStream();
+            body = new BodyInputStream(inputStream != null ? inputStream : new ByteArrayInputStream(new byte[0]));
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body == null || !body.finished) {
+                // Draining an unread body could take long, so give the connection up instead
+                connection.disconnect();
+            }
+            if (body != null) {
+                body.close();
+            }
+        }
+    }
+
+    /**
+     * Body stream that tracks whether it was read until its end. Once it was, further reads return -1 without touching the underlying
+     * stream, which closes itself at its end.
+     */
+    protected static class BodyInputStream extends FilterInputStream {
+
+        /**
+         * Whether the stream was read until its end.
+         */
+        private boolean finished;
+
+        /**
+         * Creates a new body stream.
+         *
+         * @param inputStream the underlying body stream
+         */
+        protected BodyInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (finished) {
+                return -1;
+            }
+            int read = super.read();
+            finished |= read == -1;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, length);
+            finished |= read == -1;
+            return read;
+        }
+    }
+}
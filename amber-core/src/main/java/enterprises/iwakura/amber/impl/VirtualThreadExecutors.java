@@ -0,0 +1,32 @@
+package enterprises.iwakura.amber.impl;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Factory of executor services running each task in a new virtual thread. Virtual threads are not available on this JVM; this class has
+ * a Java 21 variant in the multi-release section of the jar, which creates such executor services.
+ */
+public final class VirtualThreadExecutors {
+
+    private VirtualThreadExecutors() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Checks whether virtual threads are supported by the current JVM.
+     *
+     * @return true if virtual threads are supported, false otherwise
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Creates an executor service that runs each task in a new virtual thread.
+     *
+     * @return the executor service, or null if virtual threads are not supported by the current JVM
+     */
+    public static ExecutorService create() {
+        return null;
+    }
+}
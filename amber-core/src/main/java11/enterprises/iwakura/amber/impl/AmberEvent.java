@@ -0,0 +1,17 @@
+package enterprises.iwakura.amber.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of Amber's Java Flight Recorder events. This is the Java 11 variant, which records events along with the JVM's own events (e.g.
+ * garbage collection, socket I/O and class loading) in the <code>Amber</code> category. Events are enabled by default and don't record
+ * stack traces.
+ * <p>
+ * Events are created and begun when the measured work starts, then filled in and committed once it ends.
+ */
+@Category("Amber")
+@StackTrace(false)
+public abstract class AmberEvent extends Event {
+}
@@ -0,0 +1,63 @@
+package enterprises.iwakura.amber.impl;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event of validating the checksum of a file. This is the Java 11 variant, which is recorded by Java Flight Recorder.
+ */
+@Name("enterprises.iwakura.amber.ChecksumValidation")
+@Label("Checksum Validation")
+@Description("Validation of the checksum of a downloaded or installed jar")
+public class ChecksumValidationEvent extends AmberEvent {
+
+    @Label("File")
+    private String file;
+
+    @Label("Checksum Type")
+    private String checksumType;
+
+    @Label("Result")
+    private String result;
+
+    @Label("Calculated During Download")
+    @Description("Whether the checksum was calculated during the download, so the file was not hashed again")
+    private boolean calculatedDuringDownload;
+
+    /**
+     * Sets the validated file.
+     *
+     * @param file the path of the file
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Sets the type of the checksum.
+     *
+     * @param checksumType the name of the checksum type
+     */
+    public void setChecksumType(String checksumType) {
+        this.checksumType = checksumType;
+    }
+
+    /**
+     * Sets the result of the validation.
+     *
+     * @param result the name of the result
+     */
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * Sets whether the checksum was calculated during the download, so the file was not hashed again.
+     *
+     * @param calculatedDuringDownload true if the file was not hashed again
+     */
+    public void setCalculatedDuringDownload(boolean calculatedDuringDownload) {
+        this.calculatedDuringDownload = calculatedDuringDownload;
+    }
+}
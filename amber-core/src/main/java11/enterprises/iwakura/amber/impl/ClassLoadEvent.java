@@ -0,0 +1,42 @@
+package enterprises.iwakura.amber.impl;
+
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event of {@link enterprises.iwakura.amber.AmberClassLoader} finding and defining a class from one of its jars. This is the Java 11
+ * variant, which is recorded by Java Flight Recorder. Disabled by default, as there's one event per class; enable it in the recording's
+ * settings, e.g. <code>enterprises.iwakura.amber.ClassLoad#enabled=true</code>.
+ */
+@Name("enterprises.iwakura.amber.ClassLoad")
+@Label("Class Load")
+@Description("Finding and defining a class from a jar of AmberClassLoader")
+@Enabled(false)
+public class ClassLoadEvent extends AmberEvent {
+
+    @Label("Class Name")
+    private String className;
+
+    @Label("Jar")
+    private String jar;
+
+    /**
+     * Sets the binary name of the class.
+     *
+     * @param className the binary name
+     */
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    /**
+     * Sets the jar the class was defined from.
+     *
+     * @param jar the path of the jar
+     */
+    public void setJar(String jar) {
+        this.jar = jar;
+    }
+}
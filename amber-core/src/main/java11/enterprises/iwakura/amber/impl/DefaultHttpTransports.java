@@ -0,0 +1,23 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.HttpTransport;
+
+/**
+ * Factory of the default {@link HttpTransport}. This is the Java 11 variant, which creates a transport based on
+ * <code>java.net.http.HttpClient</code>.
+ */
+public final class DefaultHttpTransports {
+
+    private DefaultHttpTransports() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Creates the default transport for the current JVM.
+     *
+     * @return the default transport
+     */
+    public static HttpTransport create() {
+        return new JavaHttpClientTransport();
+    }
+}
@@ -0,0 +1,51 @@
+package enterprises.iwakura.amber.impl;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event of installing a jar by moving, copying or linking it. This is the Java 11 variant, which is recorded by Java Flight Recorder.
+ */
+@Name("enterprises.iwakura.amber.FileMove")
+@Label("File Move")
+@Description("Installation of a jar by moving, copying or linking it")
+public class FileMoveEvent extends AmberEvent {
+
+    @Label("Source")
+    private String source;
+
+    @Label("Target")
+    private String target;
+
+    @Label("Operation")
+    @Description("move, copy or link")
+    private String operation;
+
+    /**
+     * Sets the source file.
+     *
+     * @param source the path of the source file
+     */
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Sets the target file.
+     *
+     * @param target the path of the target file
+     */
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    /**
+     * Sets how the file was installed.
+     *
+     * @param operation <code>move</code>, <code>copy</code> or <code>link</code>
+     */
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+}
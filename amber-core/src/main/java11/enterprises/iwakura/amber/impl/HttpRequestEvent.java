@@ -0,0 +1,55 @@
+package enterprises.iwakura.amber.impl;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event of an HTTP request sent to a repository, lasting until its response is closed. This is the Java 11 variant, which is recorded by
+ * Java Flight Recorder.
+ */
+@Name("enterprises.iwakura.amber.HttpRequest")
+@Label("HTTP Request")
+@Description("HTTP request sent to a repository, lasting until its response is closed")
+public class HttpRequestEvent extends AmberEvent {
+
+    @Label("URL")
+    private String url;
+
+    @Label("Status Code")
+    @Description("HTTP status code of the response, or 0 if the request failed without a response")
+    private int statusCode;
+
+    @Label("Bytes")
+    @Description("Bytes read from the response body")
+    @DataAmount
+    private long bytes;
+
+    /**
+     * Sets the requested URL.
+     *
+     * @param url the URL
+     */
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Sets the HTTP status code of the response.
+     *
+     * @param statusCode the status code, or 0 if the request failed without a response
+     */
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Sets the number of bytes read from the response body.
+     *
+     * @param bytes the number of bytes
+     */
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
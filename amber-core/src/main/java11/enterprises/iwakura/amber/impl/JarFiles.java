@@ -0,0 +1,39 @@
+package enterprises.iwakura.amber.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarFile;
+import java.util.zip.ZipFile;
+
+/**
+ * Factory of jar files as they are opened by class loaders. This is the Java 11 variant, which resolves entries of multi-release jars
+ * by the current runtime version, same as the JDK's class loaders do.
+ */
+public final class JarFiles {
+
+    private JarFiles() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Opens the specified jar file for reading classes and resources, with its signatures verified.
+     *
+     * @param file the jar file
+     *
+     * @return the opened jar file
+     *
+     * @throws IOException if an I/O error occurs while opening the jar file
+     */
+    public static JarFile open(File file) throws IOException {
+        return new JarFile(file, true, ZipFile.OPEN_READ, Runtime.version());
+    }
+
+    /**
+     * Gets the feature version of the current runtime, e.g. 21 for Java 21.
+     *
+     * @return the feature version
+     */
+    public static int getJavaFeatureVersion() {
+        return Runtime.version().feature();
+    }
+}
@@ -0,0 +1,331 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.BootstrapOptions;
+import enterprises.iwakura.amber.DependencyDownloader;
+import enterprises.iwakura.amber.HttpTransport;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of {@link HttpTransport} based on <code>java.net.http.HttpClient</code>. All requests share a single client, which
+ * multiplexes requests to the same host over HTTP/2 connections when the server supports it, falling back to HTTP/1.1 otherwise.
+ * <p>
+ * The read timeout bounds the wait for response headers and every read of a response body. Since the client has no read timeout of its
+ * own, bodies blocked in a read for longer are closed by a shared watchdog thread, failing the read with a {@link SocketTimeoutException}.
+ * </p>
+ */
+public class JavaHttpClientTransport implements HttpTransport {
+
+    /**
+     * The interval in milliseconds in which the watchdog checks response bodies for stalled reads.
+     */
+    protected static final long WATCHDOG_INTERVAL_MILLIS = 250;
+
+    /**
+     * The response bodies being read with a read timeout.
+     */
+    protected static final Set<TimeoutInputStream> WATCHED_BODIES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The watchdog closing stalled response bodies, started with the first watched body.
+     */
+    private static ScheduledExecutorService watchdog;
+
+    /**
+     * The client used to send all requests.
+     */
+    protected volatile HttpClient client;
+
+    /**
+     * Whether the client was created by this transport, so it may be recreated with a different connect timeout.
+     */
+    protected final boolean ownClient;
+
+    /**
+     * The connect timeout the client was created with, or null for no timeout.
+     */
+    protected volatile Duration connectTimeout;
+
+    /**
+     * The read timeout, or null for no timeout.
+     */
+    protected volatile Duration readTimeout;
+
+    /**
+     * Creates a new transport with a client preferring HTTP/2.
+     */
+    public JavaHttpClientTransport() {
+        this.client = createClient(null);
+        this.ownClient = true;
+    }
+
+    /**
+     * Creates a new transport with the specified client. The client's connect timeout is left as is.
+     *
+     * @param client the client used to send all requests
+     */
+    public JavaHttpClientTransport(HttpClient client) {
+        this.client = client;
+        this.ownClient = false;
+    }
+
+    /**
+     * Creates a client preferring HTTP/2 with the specified connect timeout.
+     *
+     * @param connectTimeout the connect timeout, or null for no timeout
+     *
+     * @return the client
+     */
+    protected HttpClient createClient(Duration connectTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (connectTimeout != null) {
+            builder.connectTimeout(connectTimeout);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void prepare(BootstrapOptions options) {
+        Duration connectTimeout = options.getConnectTimeoutMillis() > 0 ? Duration.ofMillis(options.getConnectTimeoutMillis()) : null;
+        readTimeout = options.getReadTimeoutMillis() > 0 ? Duration.ofMillis(options.getReadTimeoutMillis()) : null;
+
+        synchronized (this) {
+            if (ownClient && !Objects.equals(connectTimeout, this.connectTimeout)) {
+                // Connections of the previous client are released once it's garbage collected
+                client = createClient(connectTimeout);
+                this.connectTimeout = connectTimeout;
+            }
+        }
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        Duration readTimeout = this.readTimeout;
+        try {
+            // Building the request fails on invalid URLs (e.g. an unsupported scheme) and headers
+            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(URI.create(url))
+                    .GET()
+                    .header("User-Agent", DependencyDownloader.USER_AGENT);
+            headers.forEach(requestBuilder::header);
+            if (readTimeout != null) {
+                requestBuilder.timeout(readTimeout);
+            }
+
+            HttpResponse<InputStream> response = client.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            return new ClientResponse(response, readTimeout != null ? new TimeoutInputStream(response.body(), readTimeout.toNanos()) : response.body());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response from " + url);
+        } catch (IllegalArgumentException exception) {
+            throw new IOException("Invalid request to " + url, exception);
+        }
+    }
+
+    /**
+     * Response backed by a <code>java.net.http.HttpResponse</code>.
+     */
+    protected static class ClientResponse implements Response {
+
+        /**
+         * The received response.
+         */
+        private final HttpResponse<InputStream> response;
+
+        /**
+         * The response body.
+         */
+        private final InputStream body;
+
+        /**
+         * Creates a new response.
+         *
+         * @param response the received response
+         * @param body     the response body, possibly guarded by a read timeout
+         */
+        protected ClientResponse(HttpResponse<InputStream> response, InputStream body) {
+            this.response = response;
+            this.body = body;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String getStatusMessage() {
+            return ""; // HTTP/2 has no reason phrases
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return response.headers().firstValue(name).orElse(null);
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closing an unread body cancels the exchange, closing a read one releases the connection
+            body.close();
+        }
+    }
+
+    /**
+     * Starts the watchdog, unless it's already running.
+     */
+    protected static synchronized void startWatchdog() {
+        if (watchdog != null) {
+            return;
+        }
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Amber HTTP read timeout watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (TimeoutInputStream body : WATCHED_BODIES) {
+                body.checkTimeout(now);
+            }
+        }, WATCHDOG_INTERVAL_MILLIS, WATCHDOG_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Response body failing reads that block for longer than the read timeout. The body is watched from the first read until it's closed.
+     */
+    protected static class TimeoutInputStream extends FilterInputStream {
+
+        /**
+         * The read timeout in nanoseconds.
+         */
+        private final long timeoutNanos;
+
+        /**
+         * The time the current read started at, in nanoseconds.
+         */
+        private volatile long readStartTime;
+
+        /**
+         * Whether a read is in progress.
+         */
+        private volatile boolean reading;
+
+        /**
+         * Whether the body was closed because a read timed out.
+         */
+        private volatile boolean timedOut;
+
+        /**
+         * Creates a new body.
+         *
+         * @param inputStream  the underlying body
+         * @param timeoutNanos the read timeout in nanoseconds
+         */
+        protected TimeoutInputStream(InputStream inputStream, long timeoutNanos) {
+            super(inputStream);
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            beginRead();
+            try {
+                return super.read();
+            } catch (IOException exception) {
+                throw translate(exception);
+            } finally {
+                reading = false;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            beginRead();
+            try {
+                return super.read(buffer, offset, length);
+            } catch (IOException exception) {
+                throw translate(exception);
+            } finally {
+                reading = false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            WATCHED_BODIES.remove(this);
+            super.close();
+        }
+
+        /**
+         * Marks the start of a read, registering the body with the watchdog on the first read.
+         *
+         * @throws SocketTimeoutException if a previous read timed out
+         */
+        private void beginRead() throws SocketTimeoutException {
+            if (timedOut) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            readStartTime = System.nanoTime();
+            reading = true;
+            if (WATCHED_BODIES.add(this)) {
+                startWatchdog();
+            }
+        }
+
+        /**
+         * Translates a read failure caused by the watchdog into a timeout.
+         *
+         * @param exception the read failure
+         *
+         * @return the exception to throw
+         */
+        private IOException translate(IOException exception) {
+            if (timedOut) {
+                SocketTimeoutException timeoutException = new SocketTimeoutException("Read timed out");
+                timeoutException.initCause(exception);
+                return timeoutException;
+            }
+            return exception;
+        }
+
+        /**
+         * Closes the body if the current read blocks for longer than the read timeout.
+         *
+         * @param now the current time in nanoseconds
+         */
+        private void checkTimeout(long now) {
+            if (reading && now - readStartTime > timeoutNanos) {
+                timedOut = true;
+                WATCHED_BODIES.remove(this);
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // The blocked read fails either way
+                }
+            }
+        }
+    }
+}
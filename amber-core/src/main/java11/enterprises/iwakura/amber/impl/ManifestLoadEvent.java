@@ -0,0 +1,52 @@
+package enterprises.iwakura.amber.impl;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event of loading Amber manifests. This is the Java 11 variant, which is recorded by Java Flight Recorder.
+ */
+@Name("enterprises.iwakura.amber.ManifestLoad")
+@Label("Manifest Load")
+@Description("Loading of Amber manifests")
+public class ManifestLoadEvent extends AmberEvent {
+
+    @Label("Loader")
+    @Description("Class name of the manifest loader")
+    private String loader;
+
+    @Label("Manifests")
+    private int manifests;
+
+    @Label("Dependencies")
+    @Description("Number of dependencies of all loaded manifests")
+    private int dependencies;
+
+    /**
+     * Sets the class name of the manifest loader.
+     *
+     * @param loader the class name
+     */
+    public void setLoader(String loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Sets the number of loaded manifests.
+     *
+     * @param manifests the number of manifests
+     */
+    public void setManifests(int manifests) {
+        this.manifests = manifests;
+    }
+
+    /**
+     * Sets the number of dependencies of all loaded manifests.
+     *
+     * @param dependencies the number of dependencies
+     */
+    public void setDependencies(int dependencies) {
+        this.dependencies = dependencies;
+    }
+}
@@ -0,0 +1,32 @@
+package enterprises.iwakura.amber.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory of executor services running each task in a new virtual thread. This is the Java 21 variant, which supports virtual threads.
+ */
+public final class VirtualThreadExecutors {
+
+    private VirtualThreadExecutors() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Checks whether virtual threads are supported by the current JVM.
+     *
+     * @return true if virtual threads are supported, false otherwise
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates an executor service that runs each task in a new virtual thread.
+     *
+     * @return the executor service, or null if virtual threads are not supported by the current JVM
+     */
+    public static ExecutorService create() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -0,0 +1,204 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the Java Flight Recorder events of the Java 11 variant, recorded during a bootstrap and class loading.
+ */
+public class FlightRecorderEventsTest {
+
+    private static final String MANIFEST_LOAD = "enterprises.iwakura.amber.ManifestLoad";
+    private static final String HTTP_REQUEST = "enterprises.iwakura.amber.HttpRequest";
+    private static final String CHECKSUM_VALIDATION = "enterprises.iwakura.amber.ChecksumValidation";
+    private static final String FILE_MOVE = "enterprises.iwakura.amber.FileMove";
+    private static final String CLASS_LOAD = "enterprises.iwakura.amber.ClassLoad";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMavenRepository repository;
+    private Dependency dependency;
+    private byte[] jar;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new LocalMavenRepository();
+        jar = createJar();
+        dependency = repository.publish("com.example:greeting:1.0.0", jar);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testBootstrapEvents() throws IOException {
+        // Arrange
+        Path libraryDirectory = tempDir.resolve("libraries");
+        Path jarPath = libraryDirectory.resolve(dependency.getFileName());
+
+        // Act
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(MANIFEST_LOAD);
+            recording.enable(HTTP_REQUEST);
+            recording.enable(CHECKSUM_VALIDATION);
+            recording.enable(FILE_MOVE);
+            recording.start();
+            bootstrap(libraryDirectory);
+            events = stop(recording);
+        }
+
+        // Assert
+        RecordedEvent manifestLoad = single(events, MANIFEST_LOAD);
+        assertEquals(TestManifestLoader.class.getName(), manifestLoad.getString("loader"));
+        assertEquals(1, manifestLoad.getInt("manifests"));
+        assertEquals(1, manifestLoad.getInt("dependencies"));
+
+        List<RecordedEvent> httpRequests = filter(events, HTTP_REQUEST);
+        RecordedEvent jarRequest = httpRequests.stream()
+                .filter(event -> event.getString("url").equals(repository.getUrl() + repository.getJarPath(dependency)))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No request of the jar in " + httpRequests));
+        assertEquals(200, jarRequest.getInt("statusCode"));
+        assertEquals(jar.length, jarRequest.getLong("bytes"));
+        assertFalse(jarRequest.getDuration().isNegative());
+
+        RecordedEvent checksumValidation = filter(events, CHECKSUM_VALIDATION).get(0);
+        assertEquals("MATCH", checksumValidation.getString("result"));
+        assertTrue(checksumValidation.getBoolean("calculatedDuringDownload"));
+
+        RecordedEvent fileMove = single(events, FILE_MOVE);
+        assertEquals(jarPath.toString(), fileMove.getString("target"));
+        assertEquals("move", fileMove.getString("operation"));
+        assertTrue(Files.isRegularFile(jarPath));
+    }
+
+    @Test
+    public void testClassLoadEvent() throws Exception {
+        // Arrange
+        Path libraryDirectory = tempDir.resolve("libraries");
+        bootstrap(libraryDirectory);
+        Path jarPath = libraryDirectory.resolve(dependency.getFileName());
+
+        // Act
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording();
+             AmberClassLoader classLoader = new AmberClassLoader(Collections.singletonList(jarPath), ClassLoader.getPlatformClassLoader(),
+                     FlightRecorderEventsTest.class)) {
+            recording.enable(CLASS_LOAD);
+            recording.start();
+            classLoader.loadClass(Greeting.class.getName());
+            assertThrows(ClassNotFoundException.class, () -> classLoader.loadClass("com.example.Missing"));
+            events = stop(recording);
+        }
+
+        // Assert
+        RecordedEvent classLoad = single(events, CLASS_LOAD);
+        assertEquals(Greeting.class.getName(), classLoad.getString("className"));
+        assertEquals(jarPath.toString(), classLoad.getString("jar"));
+    }
+
+    @Test
+    public void testDefaultSettings() throws Exception {
+        // Arrange
+        Path libraryDirectory = tempDir.resolve("libraries");
+        Path jarPath = libraryDirectory.resolve(dependency.getFileName());
+
+        // Act
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.start();
+            bootstrap(libraryDirectory);
+            try (AmberClassLoader classLoader = new AmberClassLoader(Collections.singletonList(jarPath), ClassLoader.getPlatformClassLoader(),
+                    FlightRecorderEventsTest.class)) {
+                classLoader.loadClass(Greeting.class.getName());
+            }
+            events = stop(recording);
+        }
+
+        // Assert
+        assertEquals(1, filter(events, MANIFEST_LOAD).size());
+        assertFalse(filter(events, HTTP_REQUEST).isEmpty());
+        assertTrue(filter(events, CLASS_LOAD).isEmpty(), "Class load events must be disabled by default");
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().startsWith("enterprises.iwakura.amber.")) {
+                assertEquals("Amber", event.getEventType().getCategoryNames().get(0));
+                assertNull(event.getStackTrace(), "Stack traces must not be recorded");
+            }
+        }
+    }
+
+    private void bootstrap(Path libraryDirectory) throws IOException {
+        AmberManifest manifest = new AmberManifest(libraryDirectory, Collections.singletonList(dependency),
+                Collections.singletonList(repository.getRepository()));
+        Amber amber = new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                new ChecksumValidatorImpl(), new ConsoleLogger(false));
+        amber.bootstrap(BootstrapOptions.builder()
+                .tempDirectory(Files.createDirectories(tempDir.resolve("temp")))
+                .build());
+    }
+
+    private List<RecordedEvent> stop(Recording recording) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile(tempDir, "recording", ".jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> filtered = filter(events, name);
+        assertEquals(1, filtered.size(), "Events " + name);
+        return filtered.get(0);
+    }
+
+    private static byte[] createJar() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JarOutputStream jarOutputStream = new JarOutputStream(outputStream);
+             InputStream inputStream = Greeting.class.getResourceAsStream("/" + Greeting.class.getName().replace('.', '/') + ".class")) {
+            jarOutputStream.putNextEntry(new ZipEntry(Greeting.class.getName().replace('.', '/') + ".class"));
+            jarOutputStream.write(inputStream.readAllBytes());
+            jarOutputStream.closeEntry();
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * A class loaded from the bootstrapped jar.
+     */
+    public static class Greeting {
+
+        public static String greet() {
+            return "Hello";
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.MavenDependencyDownloader;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import enterprises.iwakura.amber.impl.VirtualThreadExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ExecutorStrategy#VIRTUAL_THREADS} using the Java 21 variant of {@link VirtualThreadExecutors}.
+ */
+public class VirtualThreadsTest {
+
+    private static final int DEPENDENCY_COUNT = 50;
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMavenRepository repository;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new LocalMavenRepository();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testVirtualThreadExecutors() throws Exception {
+        // Arrange
+        assertTrue(VirtualThreadExecutors.isSupported());
+        ExecutorService executorService = VirtualThreadExecutors.create();
+
+        try {
+            // Act
+            Thread first = executorService.submit(Thread::currentThread).get();
+            Thread second = executorService.submit(Thread::currentThread).get();
+
+            // Assert
+            assertTrue(first.isVirtual());
+            assertTrue(second.isVirtual());
+            assertNotSame(first, second);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateExecutorService() throws Exception {
+        // Arrange
+        Amber amber = createAmber(Collections.emptyList(), DependencyDownloader.defaultDownloaders());
+
+        // Act & Assert
+        assertTrue(runsOnVirtualThread(amber.createExecutorService(createOptions(ExecutorStrategy.VIRTUAL_THREADS))));
+        assertTrue(runsOnVirtualThread(amber.createHedgingExecutorService(createOptions(ExecutorStrategy.VIRTUAL_THREADS))));
+        assertFalse(runsOnVirtualThread(amber.createExecutorService(createOptions(ExecutorStrategy.FIXED_THREAD_POOL))));
+        assertFalse(runsOnVirtualThread(amber.createHedgingExecutorService(createOptions(ExecutorStrategy.FIXED_THREAD_POOL))));
+    }
+
+    @Test
+    public void testBootstrapOnVirtualThreads() throws IOException {
+        // Arrange
+        List<Dependency> dependencies = repository.publishSynthetic(DEPENDENCY_COUNT, 4 * 1024, 21);
+        AmberManifest manifest = new AmberManifest(tempDir.resolve("libraries"), dependencies,
+                Collections.singletonList(repository.getRepository()));
+        ThreadRecordingDownloader downloader = new ThreadRecordingDownloader();
+        Amber amber = createAmber(Collections.singletonList(manifest), Collections.singletonMap(RepositoryType.MAVEN, downloader));
+
+        // Act
+        List<Path> paths = amber.bootstrap(createOptions(ExecutorStrategy.VIRTUAL_THREADS));
+
+        // Assert
+        assertEquals(DEPENDENCY_COUNT, paths.size());
+        for (Dependency dependency : dependencies) {
+            assertTrue(Files.isRegularFile(manifest.getDirectory().resolve(dependency.getFileName())), "Missing " + dependency);
+        }
+        assertFalse(downloader.threads.isEmpty());
+        for (Thread thread : downloader.threads) {
+            assertTrue(thread.isVirtual(), "Request sent from platform thread " + thread);
+        }
+    }
+
+    private Amber createAmber(List<AmberManifest> manifests, Map<RepositoryType, DependencyDownloader> downloaders) {
+        return new Amber(new TestManifestLoader(manifests), downloaders, new ChecksumValidatorImpl(), new ConsoleLogger(false));
+    }
+
+    private BootstrapOptions createOptions(ExecutorStrategy executorStrategy) throws IOException {
+        return BootstrapOptions.builder()
+                .tempDirectory(Files.createDirectories(tempDir.resolve("temp")))
+                .executorStrategy(executorStrategy)
+                .downloaderThreadCount(2)
+                .build();
+    }
+
+    private static boolean runsOnVirtualThread(ExecutorService executorService) throws ExecutionException, InterruptedException {
+        try {
+            return executorService.submit(() -> Thread.currentThread().isVirtual()).get();
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Downloader recording the threads its requests were sent from.
+     */
+    private static class ThreadRecordingDownloader extends MavenDependencyDownloader {
+
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        protected HttpTransport.Response sendRequest(String url, Map<String, String> headers) throws IOException {
+            threads.add(Thread.currentThread());
+            return super.sendRequest(url, headers);
+        }
+    }
+}
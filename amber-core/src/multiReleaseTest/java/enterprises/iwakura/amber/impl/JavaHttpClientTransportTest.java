@@ -0,0 +1,206 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.BootstrapOptions;
+import enterprises.iwakura.amber.ChecksumType;
+import enterprises.iwakura.amber.Dependency;
+import enterprises.iwakura.amber.HttpTransport;
+import enterprises.iwakura.amber.LocalMavenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link JavaHttpClientTransport}, the default transport on Java 11 and newer, and its read timeout watchdog.
+ */
+public class JavaHttpClientTransportTest {
+
+    private static final int ARTIFACT_SIZE = 64 * 1024;
+    private static final long READ_TIMEOUT_MILLIS = 500;
+
+    private LocalMavenRepository repository;
+    private Dependency dependency;
+    private String jarUrl;
+    private byte[] jar;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new LocalMavenRepository();
+        dependency = repository.publishSynthetic(1, ARTIFACT_SIZE, 11).get(0);
+        jarUrl = repository.getUrl() + repository.getJarPath(dependency);
+        jar = repository.getFile(repository.getJarPath(dependency));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testDefaultTransport() {
+        // Act
+        HttpTransport transport = HttpTransport.defaultTransport();
+
+        // Assert
+        assertInstanceOf(JavaHttpClientTransport.class, transport);
+        assertInstanceOf(JavaHttpClientTransport.class, new MavenDependencyDownloader().transport);
+    }
+
+    @Test
+    public void testGet() throws IOException {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(READ_TIMEOUT_MILLIS);
+
+        // Act
+        try (HttpTransport.Response response = transport.get(jarUrl, Collections.emptyMap())) {
+            // Assert
+            assertEquals(200, response.getStatusCode());
+            assertEquals("\"" + LocalMavenRepository.checksum(ChecksumType.SHA1, jar).getValue() + "\"",
+                    response.getHeader("etag"));
+            assertArrayEquals(jar, readAll(response));
+        }
+        assertTrue(JavaHttpClientTransport.WATCHED_BODIES.isEmpty(), "Closed bodies must not be watched");
+    }
+
+    @Test
+    public void testGetWithHeaders() throws IOException {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(READ_TIMEOUT_MILLIS);
+        Map<String, String> headers = Collections.singletonMap("Range", "bytes=1024-");
+
+        // Act
+        try (HttpTransport.Response response = transport.get(jarUrl, headers)) {
+            // Assert
+            assertEquals(206, response.getStatusCode());
+            assertEquals("bytes 1024-" + (jar.length - 1) + "/" + jar.length, response.getHeader("Content-Range"));
+            assertEquals(jar.length - 1024, readAll(response).length);
+        }
+    }
+
+    @Test
+    public void testNotFound() throws IOException {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(READ_TIMEOUT_MILLIS);
+
+        // Act
+        try (HttpTransport.Response response = transport.get(repository.getUrl() + "missing.jar", Collections.emptyMap())) {
+            // Assert
+            assertEquals(404, response.getStatusCode());
+            assertNull(response.getHeader("ETag"));
+        }
+    }
+
+    @Test
+    public void testInvalidUrl() {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(READ_TIMEOUT_MILLIS);
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> transport.get("ftp://localhost/missing.jar", Collections.emptyMap()));
+    }
+
+    @Test
+    public void testSlowHeadersTimeOut() {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(READ_TIMEOUT_MILLIS);
+        repository.addFault(Pattern.quote(repository.getJarPath(dependency))).latency(10_000);
+        long startTime = System.nanoTime();
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> transport.get(jarUrl, Collections.emptyMap()).close());
+        assertTrue(millisSince(startTime) < 5_000, "Timed out after " + millisSince(startTime) + " ms");
+    }
+
+    @Test
+    public void testStalledBodyTimesOut() throws IOException {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(READ_TIMEOUT_MILLIS);
+        repository.addFault(Pattern.quote(repository.getJarPath(dependency))).stallAfter(ARTIFACT_SIZE / 2);
+
+        try (HttpTransport.Response response = transport.get(jarUrl, Collections.emptyMap())) {
+            long startTime = System.nanoTime();
+
+            // Act & Assert
+            assertThrows(SocketTimeoutException.class, () -> readAll(response));
+            assertTrue(millisSince(startTime) < READ_TIMEOUT_MILLIS + 5_000, "Timed out after " + millisSince(startTime) + " ms");
+            assertThrows(SocketTimeoutException.class, () -> response.getBody().read(), "Reads after a timeout must fail");
+        }
+        assertTrue(JavaHttpClientTransport.WATCHED_BODIES.isEmpty(), "Timed out bodies must not be watched");
+    }
+
+    @Test
+    public void testSlowBodyWithinReadTimeout() throws IOException {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(READ_TIMEOUT_MILLIS);
+        // Takes twice the read timeout in total, while every single read takes far less
+        repository.addFault(Pattern.quote(repository.getJarPath(dependency))).bandwidth(ARTIFACT_SIZE * 1000L / (READ_TIMEOUT_MILLIS * 2));
+
+        // Act
+        try (HttpTransport.Response response = transport.get(jarUrl, Collections.emptyMap())) {
+            // Assert
+            assertArrayEquals(jar, readAll(response));
+        }
+    }
+
+    @Test
+    public void testWithoutReadTimeout() throws IOException {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(0);
+
+        // Act
+        try (HttpTransport.Response response = transport.get(jarUrl, Collections.emptyMap())) {
+            // Assert
+            assertFalse(response.getBody() instanceof JavaHttpClientTransport.TimeoutInputStream);
+            assertArrayEquals(jar, readAll(response));
+        }
+    }
+
+    @Test
+    public void testPrepareRecreatesOwnClientOnlyForNewConnectTimeout() {
+        // Arrange
+        JavaHttpClientTransport transport = createTransport(READ_TIMEOUT_MILLIS);
+        HttpClient client = transport.client;
+
+        // Act
+        transport.prepare(createOptions(READ_TIMEOUT_MILLIS * 2));
+        HttpClient sameConnectTimeoutClient = transport.client;
+        transport.prepare(BootstrapOptions.builder().connectTimeoutMillis(1234).build());
+
+        // Assert
+        assertSame(client, sameConnectTimeoutClient);
+        assertNotSame(client, transport.client);
+        assertEquals(1234, transport.connectTimeout.toMillis());
+    }
+
+    private static JavaHttpClientTransport createTransport(long readTimeoutMillis) {
+        JavaHttpClientTransport transport = new JavaHttpClientTransport();
+        transport.prepare(createOptions(readTimeoutMillis));
+        return transport;
+    }
+
+    private static BootstrapOptions createOptions(long readTimeoutMillis) {
+        return BootstrapOptions.builder()
+                .connectTimeoutMillis(5_000)
+                .readTimeoutMillis(readTimeoutMillis)
+                .build();
+    }
+
+    private static byte[] readAll(HttpTransport.Response response) throws IOException {
+        try (InputStream inputStream = response.getBody()) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static long millisSince(long startTime) {
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+}
@@ -0,0 +1,306 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests lookups of {@link AmberClassLoader} using {@link JarIndex} and its cache of missing names, and lookups waiting for dependencies of
+ * a background bootstrap.
+ */
+public class AmberClassLoaderTest {
+
+    private static final String GREETING_RESOURCE = Greeting.class.getName().replace('.', '/') + ".class";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLoadClassFromIndexedJar() throws Exception {
+        for (boolean mapJars : new boolean[]{false, true}) {
+            // Arrange
+            Path jarPath = createJar("greeting-" + mapJars + ".jar", entries(GREETING_RESOURCE, readClass(Greeting.class)));
+
+            try (AmberClassLoader classLoader = new AmberClassLoader(Collections.singletonList(jarPath), getPlatformClassLoader(),
+                    AmberClassLoaderTest.class, mapJars)) {
+                // Act
+                Class<?> clazz = classLoader.loadClass(Greeting.class.getName());
+
+                // Assert
+                assertSame(classLoader, clazz.getClassLoader());
+                assertEquals(jarPath.toUri().toURL(), clazz.getProtectionDomain().getCodeSource().getLocation());
+                assertEquals("Hello", clazz.getMethod("greet").invoke(null));
+            }
+        }
+    }
+
+    @Test
+    public void testFindResourceOnlyInJarsOfItsDirectory() throws IOException {
+        // Arrange
+        Path first = createJar("first.jar", entries("a/resource.txt", "first".getBytes(StandardCharsets.UTF_8)));
+        Path second = createJar("second.jar", entries(
+                "a/resource.txt", "second".getBytes(StandardCharsets.UTF_8),
+                "b/resource.txt", "second".getBytes(StandardCharsets.UTF_8)));
+
+        try (AmberClassLoader classLoader = new AmberClassLoader(Arrays.asList(first, second), getPlatformClassLoader(), AmberClassLoaderTest.class)) {
+            // Act & Assert
+            assertEquals(first.toUri().toURL(), classLoader.getCandidateJars("a/x").get(0).getUrl());
+            assertEquals(second.toUri().toURL(), classLoader.getCandidateJars("a/x").get(1).getUrl());
+            assertEquals(1, classLoader.getCandidateJars("b/x").size());
+            assertTrue(classLoader.getCandidateJars("c/x").isEmpty());
+            assertEquals("first", read(classLoader, "a/resource.txt"));
+            assertEquals("second", read(classLoader, "b/resource.txt"));
+            assertEquals(2, Collections.list(classLoader.getResources("a/resource.txt")).size());
+        }
+    }
+
+    @Test
+    public void testMissingNamesCachedUntilJarAdded() throws Exception {
+        // Arrange
+        Path first = createJar("first.jar", entries("a/resource.txt", "first".getBytes(StandardCharsets.UTF_8)));
+        Path second = createJar("second.jar", entries(
+                "a/missing.txt", "second".getBytes(StandardCharsets.UTF_8),
+                GREETING_RESOURCE, readClass(Greeting.class)));
+
+        try (AmberClassLoader classLoader = new AmberClassLoader(Collections.singletonList(first), getPlatformClassLoader(), AmberClassLoaderTest.class)) {
+            // Act
+            assertNull(classLoader.findResource("a/missing.txt"));
+            assertThrows(ClassNotFoundException.class, () -> classLoader.findClass("enterprises.iwakura.amber.Missing"));
+            boolean missingResourceCached = classLoader.missingNames.contains("a/missing.txt");
+            boolean missingClassCached = classLoader.missingNames.contains("enterprises/iwakura/amber/Missing.class");
+            classLoader.addDependency(second, 1);
+
+            // Assert
+            assertTrue(missingResourceCached);
+            assertTrue(missingClassCached);
+            assertTrue(classLoader.missingNames.isEmpty());
+            assertEquals("second", read(classLoader, "a/missing.txt"));
+            assertSame(classLoader, classLoader.findClass(Greeting.class.getName()).getClassLoader());
+        }
+    }
+
+    @Test
+    public void testPersistedJarIndexUsed() throws IOException {
+        // Arrange
+        Path libraryDirectory = Files.createDirectories(tempDir.resolve("libraries"));
+        Path jarPath = createJar("libraries/a.jar", entries("a/resource.txt", "a".getBytes(StandardCharsets.UTF_8)));
+        JarIndex jarIndex = new JarIndex();
+        jarIndex.getDirectories(jarPath);
+        // A stale directory proves the persisted index is used instead of scanning the jar
+        jarIndex.jars.put(jarPath.toAbsolutePath().normalize().toString(), new JarIndex.IndexedJar(
+                Files.size(jarPath), Files.getLastModifiedTime(jarPath).toMillis(), Collections.singleton("stale/")));
+        jarIndex.save(libraryDirectory.resolve(BootstrapOptions.STATE_DIRECTORY_NAME));
+
+        try (AmberClassLoader classLoader = new AmberClassLoader(Collections.singletonList(jarPath), getPlatformClassLoader(), AmberClassLoaderTest.class)) {
+            // Act & Assert
+            assertEquals(1, classLoader.getCandidateJars("stale/x").size());
+            assertTrue(classLoader.getCandidateJars("a/x").isEmpty());
+        }
+    }
+
+    @Test
+    public void testAsyncLookupWaitsOnlyForOwningDependency() throws Exception {
+        // Arrange
+        Path libraryDirectory = Files.createDirectories(tempDir.resolve("libraries"));
+        Path first = createJar("libraries/first.jar", entries("a/resource.txt", "first".getBytes(StandardCharsets.UTF_8)));
+        Path second = createJar("libraries/second.jar", entries("b/resource.txt", "second".getBytes(StandardCharsets.UTF_8)));
+        // Indexed by a previous bootstrap, so the loader knows the pending dependency contains only b/
+        JarIndex jarIndex = new JarIndex();
+        jarIndex.getDirectories(second);
+        jarIndex.save(libraryDirectory.resolve(BootstrapOptions.STATE_DIRECTORY_NAME));
+        CompletableFuture<List<Path>> secondFuture = new CompletableFuture<>();
+        AsyncBootstrap bootstrap = createAsyncBootstrap(
+                "first", CompletableFuture.completedFuture(Collections.singletonList(first)), first,
+                "second", secondFuture, second);
+
+        try (AmberClassLoader classLoader = new AmberClassLoader(bootstrap, getPlatformClassLoader(), AmberClassLoaderTest.class)) {
+            // Act
+            String firstResource = read(classLoader, "a/resource.txt");
+            URL missingResource = classLoader.getResource("c/missing.txt");
+            CompletableFuture<String> secondResource = CompletableFuture.supplyAsync(() -> readUnchecked(classLoader, "b/resource.txt"));
+            Thread.sleep(200);
+            boolean waitedForSecond = !secondResource.isDone();
+            secondFuture.complete(Collections.singletonList(second));
+
+            // Assert
+            assertEquals("first", firstResource);
+            assertNull(missingResource);
+            assertTrue(waitedForSecond);
+            assertEquals("second", secondResource.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testAsyncLookupWaitsForUnindexedDependency() throws Exception {
+        // Arrange
+        Path jarPath = createJar("pending.jar", entries("a/resource.txt", "pending".getBytes(StandardCharsets.UTF_8)));
+        CompletableFuture<List<Path>> future = new CompletableFuture<>();
+        AsyncBootstrap bootstrap = createAsyncBootstrap("pending", future, jarPath);
+
+        try (AmberClassLoader classLoader = new AmberClassLoader(bootstrap, getPlatformClassLoader(), AmberClassLoaderTest.class)) {
+            // Act
+            // Classes of the application's own packages don't wait for dependencies that were not indexed yet
+            Class<?> ownClass = classLoader.loadClass(Greeting.class.getName());
+            CompletableFuture<URL> missingResource = CompletableFuture.supplyAsync(() -> classLoader.getResource("c/missing.txt"));
+            Thread.sleep(200);
+            boolean waitedForPending = !missingResource.isDone();
+            future.complete(Collections.singletonList(jarPath));
+
+            // Assert
+            assertSame(classLoader, ownClass.getClassLoader());
+            assertTrue(waitedForPending);
+            assertNull(missingResource.get(10, TimeUnit.SECONDS));
+            assertEquals("pending", read(classLoader, "a/resource.txt"));
+        }
+    }
+
+    @Test
+    public void testAsyncLookupKeepsDeclarationOrder() throws Exception {
+        // Arrange
+        Path first = createJar("first.jar", entries("a/resource.txt", "first".getBytes(StandardCharsets.UTF_8)));
+        Path second = createJar("second.jar", entries("a/resource.txt", "second".getBytes(StandardCharsets.UTF_8)));
+        CompletableFuture<List<Path>> firstFuture = new CompletableFuture<>();
+        AsyncBootstrap bootstrap = createAsyncBootstrap(
+                "first", firstFuture, first,
+                "second", CompletableFuture.completedFuture(Collections.singletonList(second)), second);
+
+        try (AmberClassLoader classLoader = new AmberClassLoader(bootstrap, getPlatformClassLoader(), AmberClassLoaderTest.class)) {
+            // Act
+            // The second dependency is installed first, but the first one may contain the resource as well
+            CompletableFuture<String> resource = CompletableFuture.supplyAsync(() -> readUnchecked(classLoader, "a/resource.txt"));
+            Thread.sleep(200);
+            boolean waitedForFirst = !resource.isDone();
+            firstFuture.complete(Collections.singletonList(first));
+
+            // Assert
+            assertTrue(waitedForFirst);
+            assertEquals("first", resource.get(10, TimeUnit.SECONDS));
+            List<URL> resources = Collections.list(classLoader.getResources("a/resource.txt"));
+            assertEquals(2, resources.size());
+            try (InputStream firstStream = resources.get(0).openStream(); InputStream secondStream = resources.get(1).openStream()) {
+                assertEquals("first", new String(readAll(firstStream), StandardCharsets.UTF_8));
+                assertEquals("second", new String(readAll(secondStream), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncLookupSkipsFailedDependency() throws Exception {
+        // Arrange
+        Path jarPath = createJar("failed.jar", entries("a/resource.txt", "failed".getBytes(StandardCharsets.UTF_8)));
+        CompletableFuture<List<Path>> future = new CompletableFuture<>();
+        future.completeExceptionally(new IOException("Not found"));
+        AsyncBootstrap bootstrap = createAsyncBootstrap("failed", future, jarPath);
+
+        try (AmberClassLoader classLoader = new AmberClassLoader(bootstrap, getPlatformClassLoader(), AmberClassLoaderTest.class)) {
+            // Act
+            URL resource = classLoader.getResource("a/resource.txt");
+
+            // Assert
+            assertNull(resource);
+            assertTrue(classLoader.pendingDependencies.isEmpty());
+        }
+    }
+
+    /**
+     * Creates a bootstrap running in the background from notations, futures and jar paths of its dependencies.
+     */
+    @SuppressWarnings("unchecked")
+    private static AsyncBootstrap createAsyncBootstrap(Object... notationsFuturesAndPaths) {
+        Map<String, CompletableFuture<List<Path>>> dependencyFutures = new LinkedHashMap<>();
+        Map<String, List<Path>> dependencyJarPaths = new LinkedHashMap<>();
+        for (int i = 0; i < notationsFuturesAndPaths.length; i += 3) {
+            String notation = (String) notationsFuturesAndPaths[i];
+            dependencyFutures.put(notation, (CompletableFuture<List<Path>>) notationsFuturesAndPaths[i + 1]);
+            dependencyJarPaths.put(notation, Collections.singletonList((Path) notationsFuturesAndPaths[i + 2]));
+        }
+        return new AsyncBootstrap(dependencyFutures, dependencyJarPaths, new CompletableFuture<>(), Collections.emptyList());
+    }
+
+    private Path createJar(String name, Map<String, byte[]> entries) throws IOException {
+        Path path = tempDir.resolve(name);
+        try (OutputStream fileStream = Files.newOutputStream(path); JarOutputStream outputStream = new JarOutputStream(fileStream)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                outputStream.putNextEntry(new ZipEntry(entry.getKey()));
+                outputStream.write(entry.getValue());
+                outputStream.closeEntry();
+            }
+        }
+        return path;
+    }
+
+    private static Map<String, byte[]> entries(Object... namesAndContents) {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndContents.length; i += 2) {
+            entries.put((String) namesAndContents[i], (byte[]) namesAndContents[i + 1]);
+        }
+        return entries;
+    }
+
+    private static byte[] readClass(Class<?> clazz) throws IOException {
+        try (InputStream inputStream = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class")) {
+            return readAll(inputStream);
+        }
+    }
+
+    private static String read(ClassLoader classLoader, String name) throws IOException {
+        try (InputStream inputStream = classLoader.getResourceAsStream(name)) {
+            return new String(readAll(inputStream), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String readUnchecked(ClassLoader classLoader, String name) {
+        try {
+            return read(classLoader, name);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * The parent of the application class loader, which doesn't see the test classes.
+     */
+    private static ClassLoader getPlatformClassLoader() {
+        return ClassLoader.getSystemClassLoader().getParent();
+    }
+
+    /**
+     * A class loaded from the test jars.
+     */
+    public static class Greeting {
+
+        public static String greet() {
+            return "Hello";
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link AmberIndex}.
+ */
+public class AmberIndexTest {
+
+    private static final Repository CENTRAL = new Repository(RepositoryType.MAVEN, "https://repo1.maven.org/maven2/");
+    private static final Repository SNAPSHOTS = new Repository(RepositoryType.MAVEN, "https://repo.example.com/snapshots/");
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        // Arrange
+        Dependency routed = new Dependency("com.example:routed:1.0.0");
+        routed.setPinnedChecksum(new Checksum(ChecksumType.SHA256, "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08"));
+        routed.setRoute(new DependencyRoute(CENTRAL, null, 1234));
+        Dependency snapshot = new Dependency("com.example:snapshot:1.0-SNAPSHOT");
+        snapshot.setRoute(new DependencyRoute(SNAPSHOTS, "1.0-20240101.000000-1", -1));
+        Dependency plain = new Dependency("com.example:plain:2.0.0");
+        plain.setPinnedChecksum(new Checksum(ChecksumType.MD5, "098f6bcd4621d373cade4e832627b4f6"));
+        AmberManifest manifest = new AmberManifest(Paths.get("amber-lib"), Arrays.asList(routed, snapshot, plain), Arrays.asList(CENTRAL, SNAPSHOTS));
+
+        // Act
+        AmberManifest read = AmberIndex.read(new ByteArrayInputStream(write(manifest)));
+
+        // Assert
+        assertEquals(manifest, read);
+        for (int i = 0; i < manifest.getDependencies().size(); i++) {
+            assertEquals(manifest.getDependencies().get(i).getPinnedChecksum(), read.getDependencies().get(i).getPinnedChecksum());
+            assertEquals(manifest.getDependencies().get(i).getRoute(), read.getDependencies().get(i).getRoute());
+        }
+    }
+
+    @Test
+    public void testRoundTripWithoutDirectory() throws IOException {
+        // Arrange
+        AmberManifest manifest = new AmberManifest(null, Collections.emptyList(), Collections.emptyList());
+
+        // Act
+        AmberManifest read = AmberIndex.read(new ByteArrayInputStream(write(manifest)));
+
+        // Assert
+        assertEquals(manifest, read);
+    }
+
+    @Test
+    public void testChecksumStoredAsLowercaseDigest() throws IOException {
+        // Arrange
+        Dependency dependency = new Dependency("com.example:a:1.0.0");
+        dependency.setPinnedChecksum(new Checksum(ChecksumType.SHA1, "A94A8FE5CCB19BA61C4C0873D391E987982FBBD3"));
+        AmberManifest manifest = new AmberManifest(Paths.get("amber-lib"), Collections.singletonList(dependency), Collections.singletonList(CENTRAL));
+
+        // Act
+        AmberManifest read = AmberIndex.read(new ByteArrayInputStream(write(manifest)));
+
+        // Assert
+        assertEquals(new Checksum(ChecksumType.SHA1, "a94a8fe5ccb19ba61c4c0873d391e987982fbbd3"), read.getDependencies().get(0).getPinnedChecksum());
+    }
+
+    @Test
+    public void testInvalidChecksumNotWritten() {
+        // Arrange
+        Dependency dependency = new Dependency("com.example:a:1.0.0");
+        dependency.setPinnedChecksum(new Checksum(ChecksumType.SHA1, "not hex"));
+        AmberManifest manifest = new AmberManifest(Paths.get("amber-lib"), Collections.singletonList(dependency), Collections.singletonList(CENTRAL));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> write(manifest));
+    }
+
+    @Test
+    public void testReadMalformedIndex() throws IOException {
+        // Arrange
+        Dependency dependency = new Dependency("com.example:a:1.0.0");
+        dependency.setRoute(new DependencyRoute(CENTRAL, null, -1));
+        byte[] index = write(new AmberManifest(Paths.get("amber-lib"), Collections.singletonList(dependency), Collections.singletonList(CENTRAL)));
+        byte[] badMagic = index.clone();
+        badMagic[0] = 'X';
+        byte[] badVersion = index.clone();
+        badVersion[AmberIndex.MAGIC.length] = AmberIndex.FORMAT_VERSION + 1;
+        byte[] truncated = Arrays.copyOf(index, index.length - 1);
+
+        // Act & Assert
+        List<byte[]> malformedIndexes = Arrays.asList(badMagic, badVersion, truncated, new byte[0]);
+        for (byte[] malformedIndex : malformedIndexes) {
+            assertThrows(IOException.class, () -> AmberIndex.read(new ByteArrayInputStream(malformedIndex)));
+        }
+    }
+
+    private static byte[] write(AmberManifest manifest) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AmberIndex.write(manifest, outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,186 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link AppCdsArchive}.
+ */
+public class AppCdsArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testComputeKeyIsStable() throws IOException {
+        // Arrange
+        List<Path> jarPaths = createJars("a.jar", "b.jar");
+
+        // Act
+        String key = AppCdsArchive.computeKey(jarPaths);
+        String otherKey = AppCdsArchive.computeKey(jarPaths);
+
+        // Assert
+        assertEquals(key, otherKey);
+        assertEquals(64, key.length());
+    }
+
+    @Test
+    public void testComputeKeyChanges() throws IOException {
+        // Arrange
+        List<Path> jarPaths = createJars("a.jar", "b.jar");
+        String key = AppCdsArchive.computeKey(jarPaths);
+        FileTime lastModified = Files.getLastModifiedTime(jarPaths.get(0));
+
+        // Act & Assert
+        Files.setLastModifiedTime(jarPaths.get(0), FileTime.fromMillis(lastModified.toMillis() + 10_000));
+        String touchedKey = AppCdsArchive.computeKey(jarPaths);
+        assertNotEquals(key, touchedKey, "Modified jar");
+
+        Files.write(jarPaths.get(0), "resized".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(jarPaths.get(0), lastModified);
+        assertNotEquals(key, AppCdsArchive.computeKey(jarPaths), "Resized jar");
+        assertNotEquals(touchedKey, AppCdsArchive.computeKey(jarPaths), "Resized jar");
+
+        assertNotEquals(key, AppCdsArchive.computeKey(jarPaths.subList(0, 1)), "Removed jar");
+        assertNotEquals(key, AppCdsArchive.computeKey(Arrays.asList(jarPaths.get(1), jarPaths.get(0))), "Reordered jars");
+    }
+
+    @Test
+    public void testJvmFlags() {
+        // Arrange
+        Path stateDirectory = tempDir.resolve(".amber");
+        String archivePath = stateDirectory.resolve(AppCdsArchive.DIRECTORY_NAME).resolve("key.jsa").toAbsolutePath().toString();
+
+        // Act & Assert
+        assertEquals(Collections.emptyList(), createArchive(stateDirectory, 8).getJvmFlags());
+        assertEquals(Collections.emptyList(), createArchive(stateDirectory, 12).getJvmFlags());
+        assertEquals(Collections.singletonList("-XX:ArchiveClassesAtExit=" + archivePath), createArchive(stateDirectory, 13).getJvmFlags());
+        assertEquals(Collections.singletonList("-XX:ArchiveClassesAtExit=" + archivePath), createArchive(stateDirectory, 18).getJvmFlags());
+        assertEquals(Arrays.asList("-XX:SharedArchiveFile=" + archivePath, "-XX:+AutoCreateSharedArchive"),
+                createArchive(stateDirectory, 19).getJvmFlags());
+        assertEquals(Arrays.asList("-XX:SharedArchiveFile=" + archivePath, "-XX:+AutoCreateSharedArchive"),
+                createArchive(stateDirectory, 21).getJvmFlags());
+    }
+
+    @Test
+    public void testJvmFlagsOfRecordedArchive() throws IOException {
+        // Arrange
+        Path stateDirectory = tempDir.resolve(".amber");
+        AppCdsArchive archive = createArchive(stateDirectory, 17);
+        Files.createDirectories(archive.getArchivePath().getParent());
+        Files.write(archive.getArchivePath(), new byte[]{1});
+
+        // Act
+        List<String> jvmFlags = archive.getJvmFlags();
+
+        // Assert
+        assertTrue(archive.isRecorded());
+        assertEquals(Collections.singletonList("-XX:SharedArchiveFile=" + archive.getArchivePath().toAbsolutePath()), jvmFlags);
+    }
+
+    @Test
+    public void testUpdateQuotesArgumentsFile() throws IOException {
+        // Arrange
+        Path stateDirectory = tempDir.resolve("library dir\\with backslash").resolve(".amber");
+        AppCdsArchive archive = createArchive(stateDirectory, 21);
+        String archivePath = archive.getArchivePath().toAbsolutePath().toString().replace("\\", "\\\\");
+
+        // Act
+        List<String> jvmFlags = archive.update();
+
+        // Assert
+        assertEquals(archive.getJvmFlags(), jvmFlags);
+        assertEquals(Arrays.asList("\"-XX:SharedArchiveFile=" + archivePath + "\"", "\"-XX:+AutoCreateSharedArchive\""),
+                Files.readAllLines(archive.getArgumentsFilePath(), StandardCharsets.UTF_8));
+        assertTrue(Files.isDirectory(archive.getArchivePath().getParent()));
+    }
+
+    @Test
+    public void testUpdateUnsupportedJvm() throws IOException {
+        // Arrange
+        AppCdsArchive archive = createArchive(tempDir.resolve(".amber"), 11);
+
+        // Act
+        List<String> jvmFlags = archive.update();
+
+        // Assert
+        assertEquals(Collections.emptyList(), jvmFlags);
+        assertEquals(Collections.emptyList(), Files.readAllLines(archive.getArgumentsFilePath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUpdateKeepsUnchangedArgumentsFile() throws IOException {
+        // Arrange
+        AppCdsArchive archive = createArchive(tempDir.resolve(".amber"), 21);
+        archive.update();
+        FileTime lastModified = FileTime.fromMillis(Files.getLastModifiedTime(archive.getArgumentsFilePath()).toMillis() - 10_000);
+        Files.setLastModifiedTime(archive.getArgumentsFilePath(), lastModified);
+
+        // Act
+        archive.update();
+
+        // Assert
+        assertEquals(lastModified, Files.getLastModifiedTime(archive.getArgumentsFilePath()));
+    }
+
+    @Test
+    public void testDeleteStaleArchives() throws IOException {
+        // Arrange
+        Path stateDirectory = tempDir.resolve(".amber");
+        AppCdsArchive archive = createArchive(stateDirectory, 21);
+        Path archiveDirectory = Files.createDirectories(archive.getArchivePath().getParent());
+        Path currentArchive = Files.write(archive.getArchivePath(), new byte[]{1});
+        Path staleArchive = Files.write(archiveDirectory.resolve("stale" + AppCdsArchive.ARCHIVE_FILE_SUFFIX), new byte[]{2});
+        Path otherFile = Files.write(archiveDirectory.resolve("other.txt"), new byte[]{3});
+
+        // Act
+        archive.deleteStaleArchives();
+
+        // Assert
+        assertTrue(Files.exists(currentArchive));
+        assertFalse(Files.exists(staleArchive));
+        assertTrue(Files.exists(otherFile));
+    }
+
+    @Test
+    public void testDeleteStaleArchivesWithoutDirectory() {
+        // Arrange
+        AppCdsArchive archive = createArchive(tempDir.resolve(".amber"), 21);
+
+        // Act
+        archive.deleteStaleArchives();
+
+        // Assert
+        assertFalse(Files.exists(archive.getArchivePath().getParent()));
+    }
+
+    private static AppCdsArchive createArchive(Path stateDirectory, int javaVersion) {
+        return new AppCdsArchive(stateDirectory, "key") {
+            @Override
+            protected int getJavaVersion() {
+                return javaVersion;
+            }
+        };
+    }
+
+    private List<Path> createJars(String... names) throws IOException {
+        Path directory = Files.createDirectories(tempDir.resolve("libraries"));
+        Path[] jarPaths = new Path[names.length];
+        for (int i = 0; i < names.length; i++) {
+            jarPaths[i] = Files.write(directory.resolve(names[i]), names[i].getBytes(StandardCharsets.UTF_8));
+        }
+        return Arrays.asList(jarPaths);
+    }
+}
@@ -0,0 +1,286 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the {@link ArtifactCache} shared between applications, see {@link BootstrapOptions#getSharedCacheDirectory()}.
+ */
+public class ArtifactCacheTest {
+
+    private static final int ARTIFACT_SIZE = 16 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        // Arrange
+        ArtifactCache cache = new ArtifactCache(tempDir.resolve("cache"));
+        Dependency dependency = new Dependency("com.example:cached:1.0.0");
+        byte[] jar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(1));
+        Path jarPath = Files.write(tempDir.resolve("download.jar"), jar);
+        String sha256 = LocalMavenRepository.checksum(ChecksumType.SHA256, jar).getValue();
+
+        // Act
+        Path blobPath = cache.put(dependency, jarPath, sha256);
+        Path cachedPath = new ArtifactCache(tempDir.resolve("cache")).get(dependency);
+
+        // Assert
+        assertFalse(Files.exists(jarPath));
+        assertEquals(blobPath, cachedPath);
+        assertEquals(sha256, cache.getHash(cachedPath));
+        assertArrayEquals(jar, Files.readAllBytes(cachedPath));
+    }
+
+    @Test
+    public void testPutExistingArtifact() throws IOException {
+        // Arrange
+        ArtifactCache cache = new ArtifactCache(tempDir.resolve("cache"));
+        byte[] jar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(1));
+        Path firstBlobPath = cache.put(new Dependency("com.example:first:1.0.0"), Files.write(tempDir.resolve("first.jar"), jar), null);
+        Path secondJarPath = Files.write(tempDir.resolve("second.jar"), jar);
+
+        // Act
+        Path secondBlobPath = cache.put(new Dependency("com.example:second:1.0.0"), secondJarPath, null);
+
+        // Assert
+        assertEquals(firstBlobPath, secondBlobPath);
+        assertFalse(Files.exists(secondJarPath));
+        assertArrayEquals(jar, Files.readAllBytes(secondBlobPath));
+    }
+
+    @Test
+    public void testGetMissing() {
+        // Arrange
+        ArtifactCache cache = new ArtifactCache(tempDir.resolve("cache"));
+
+        // Act
+        Path cachedPath = cache.get(new Dependency("com.example:missing:1.0.0"));
+
+        // Assert
+        assertNull(cachedPath);
+    }
+
+    @Test
+    public void testSnapshotNotCacheable() {
+        // Arrange
+        ArtifactCache cache = new ArtifactCache(tempDir.resolve("cache"));
+
+        // Act
+        boolean releaseCacheable = cache.isCacheable(new Dependency("com.example:cached:1.0.0"));
+        boolean snapshotCacheable = cache.isCacheable(new Dependency("com.example:cached:1.0.0-SNAPSHOT"));
+
+        // Assert
+        assertTrue(releaseCacheable);
+        assertFalse(snapshotCacheable);
+    }
+
+    @Test
+    public void testTamperedBlobRejected() throws IOException {
+        // Arrange
+        Dependency dependency = new Dependency("com.example:cached:1.0.0");
+        byte[] jar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(1));
+        Path blobPath = new ArtifactCache(tempDir.resolve("cache")).put(dependency, Files.write(tempDir.resolve("download.jar"), jar), null);
+        byte[] tampered = jar.clone();
+        tampered[tampered.length / 2] ^= 1;
+        Files.write(blobPath, tampered);
+
+        // Act
+        Path cachedPath = new ArtifactCache(tempDir.resolve("cache")).get(dependency);
+
+        // Assert
+        assertNull(cachedPath);
+        assertFalse(Files.exists(blobPath));
+    }
+
+    @Test
+    public void testTruncatedBlobRejected() throws IOException {
+        // Arrange
+        Dependency dependency = new Dependency("com.example:cached:1.0.0");
+        byte[] jar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(1));
+        Path blobPath = new ArtifactCache(tempDir.resolve("cache")).put(dependency, Files.write(tempDir.resolve("download.jar"), jar), null);
+        Files.write(blobPath, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+
+        // Act
+        Path cachedPath = new ArtifactCache(tempDir.resolve("cache")).get(dependency);
+
+        // Assert
+        assertNull(cachedPath);
+    }
+
+    @Test
+    public void testTamperedBlobReplacedByPut() throws IOException {
+        // Arrange
+        Dependency dependency = new Dependency("com.example:cached:1.0.0");
+        byte[] jar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(1));
+        Path blobPath = new ArtifactCache(tempDir.resolve("cache")).put(dependency, Files.write(tempDir.resolve("first.jar"), jar), null);
+        Files.write(blobPath, new byte[]{1, 2, 3});
+
+        // Act
+        new ArtifactCache(tempDir.resolve("cache")).put(dependency, Files.write(tempDir.resolve("second.jar"), jar), null);
+
+        // Assert
+        assertArrayEquals(jar, Files.readAllBytes(blobPath));
+    }
+
+    @Test
+    public void testPinnedChecksumMismatch() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(1));
+        byte[] otherJar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(2));
+        Dependency dependency = new Dependency("com.example:cached:1.0.0");
+        new ArtifactCache(tempDir.resolve("cache")).put(dependency, Files.write(tempDir.resolve("download.jar"), jar), null);
+        Dependency matching = new Dependency(dependency.getNotation());
+        matching.setPinnedChecksum(LocalMavenRepository.checksum(ChecksumType.SHA1, jar));
+        Dependency mismatching = new Dependency(dependency.getNotation());
+        mismatching.setPinnedChecksum(LocalMavenRepository.checksum(ChecksumType.SHA1, otherJar));
+        ArtifactCache cache = new ArtifactCache(tempDir.resolve("cache"));
+
+        // Act
+        Path matchingPath = cache.get(matching);
+        Path mismatchingPath = cache.get(mismatching);
+
+        // Assert
+        assertNotNull(matchingPath);
+        assertNull(mismatchingPath);
+        // The blob itself is intact, so it's kept
+        assertTrue(Files.exists(matchingPath));
+    }
+
+    @Test
+    public void testInstallLinked() throws IOException {
+        // Arrange
+        ArtifactCache cache = new ArtifactCache(tempDir.resolve("cache"));
+        byte[] jar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(1));
+        Path blobPath = cache.put(new Dependency("com.example:cached:1.0.0"), Files.write(tempDir.resolve("download.jar"), jar), null);
+        Path jarPath = tempDir.resolve("libraries").resolve("cached-1.0.0.jar");
+
+        // Act
+        boolean linked = cache.install(blobPath, jarPath);
+
+        // Assert
+        assertTrue(linked);
+        assertTrue(Files.isSameFile(blobPath, jarPath));
+    }
+
+    @Test
+    public void testInstallCopiedWhenLinkFails() throws IOException {
+        // Arrange
+        ArtifactCache cache = new ArtifactCache(tempDir.resolve("cache")) {
+            @Override
+            protected void createLink(Path jarPath, Path blobPath) throws IOException {
+                throw new IOException("Invalid cross-device link");
+            }
+        };
+        byte[] jar = LocalMavenRepository.createJar("com.example.cached", ARTIFACT_SIZE, new Random(1));
+        Path blobPath = cache.put(new Dependency("com.example:cached:1.0.0"), Files.write(tempDir.resolve("download.jar"), jar), null);
+        Path jarPath = tempDir.resolve("libraries").resolve("cached-1.0.0.jar");
+
+        // Act
+        boolean linked = cache.install(blobPath, jarPath);
+
+        // Assert
+        assertFalse(linked);
+        assertFalse(Files.isSameFile(blobPath, jarPath));
+        assertArrayEquals(jar, Files.readAllBytes(jarPath));
+    }
+
+    @Test
+    public void testBootstrapSharedCache() throws IOException {
+        try (LocalMavenRepository repository = new LocalMavenRepository()) {
+            // Arrange
+            Dependency dependency = repository.publishSynthetic(1, ARTIFACT_SIZE, 3).get(0);
+            AmberManifest firstManifest = new AmberManifest(tempDir.resolve("first"), Collections.singletonList(dependency),
+                    Collections.singletonList(repository.getRepository()));
+            AmberManifest secondManifest = new AmberManifest(tempDir.resolve("second"), Collections.singletonList(dependency),
+                    Collections.singletonList(repository.getRepository()));
+            BootstrapOptions options = BootstrapOptions.builder()
+                    .sharedCacheDirectory(tempDir.resolve("cache"))
+                    .build();
+
+            // Act
+            Amber firstAmber = createAmber(firstManifest);
+            List<Path> firstPaths = firstAmber.bootstrap(options);
+            Amber secondAmber = createAmber(secondManifest);
+            List<Path> secondPaths = secondAmber.bootstrap(options);
+
+            // Assert
+            assertEquals(1, repository.getRequestCount(repository.getJarPath(dependency)));
+            assertEquals(DependencyReport.Outcome.DOWNLOADED, firstAmber.getLastBootstrapReport().getDependencies().get(0).getOutcome());
+            assertEquals(DependencyReport.Outcome.CACHED, secondAmber.getLastBootstrapReport().getDependencies().get(0).getOutcome());
+            assertTrue(Files.isSameFile(firstPaths.get(0), secondPaths.get(0)));
+            assertArrayEquals(repository.getFile(repository.getJarPath(dependency)), Files.readAllBytes(secondPaths.get(0)));
+        }
+    }
+
+    @Test
+    public void testBootstrapSnapshotNotCached() throws IOException {
+        try (LocalMavenRepository repository = new LocalMavenRepository()) {
+            // Arrange
+            byte[] jar = LocalMavenRepository.createJar("com.example.snapshot", ARTIFACT_SIZE, new Random(4));
+            Dependency dependency = repository.publish("com.example:snapshot:1.0.0-SNAPSHOT", jar);
+            BootstrapOptions options = BootstrapOptions.builder()
+                    .sharedCacheDirectory(tempDir.resolve("cache"))
+                    .build();
+
+            // Act
+            createAmber(new AmberManifest(tempDir.resolve("first"), Collections.singletonList(dependency),
+                    Collections.singletonList(repository.getRepository()))).bootstrap(options);
+            createAmber(new AmberManifest(tempDir.resolve("second"), Collections.singletonList(dependency),
+                    Collections.singletonList(repository.getRepository()))).bootstrap(options);
+
+            // Assert
+            assertEquals(2, repository.getRequestCount(repository.getJarPath(dependency)));
+            assertFalse(Files.exists(tempDir.resolve("cache").resolve(ArtifactCache.BLOBS_DIRECTORY_NAME)));
+        }
+    }
+
+    @Test
+    public void testBootstrapTamperedBlobDownloaded() throws IOException {
+        try (LocalMavenRepository repository = new LocalMavenRepository()) {
+            // Arrange
+            Dependency dependency = repository.publishSynthetic(1, ARTIFACT_SIZE, 5).get(0);
+            byte[] jar = repository.getFile(repository.getJarPath(dependency));
+            BootstrapOptions options = BootstrapOptions.builder()
+                    .sharedCacheDirectory(tempDir.resolve("cache"))
+                    .build();
+            List<Path> firstPaths = createAmber(new AmberManifest(tempDir.resolve("first"), Collections.singletonList(dependency),
+                    Collections.singletonList(repository.getRepository()))).bootstrap(options);
+            // Replacing the file breaks the hard link, so the first application keeps its valid jar
+            Path blobPath = new ArtifactCache(tempDir.resolve("cache")).getBlobPath(LocalMavenRepository.checksum(ChecksumType.SHA256, jar).getValue());
+            Files.delete(blobPath);
+            Files.write(blobPath, LocalMavenRepository.createJar("com.example.evil", ARTIFACT_SIZE, new Random(6)));
+
+            // Act
+            Amber amber = createAmber(new AmberManifest(tempDir.resolve("second"), Collections.singletonList(dependency),
+                    Collections.singletonList(repository.getRepository())));
+            List<Path> secondPaths = amber.bootstrap(options);
+
+            // Assert
+            assertEquals(DependencyReport.Outcome.DOWNLOADED, amber.getLastBootstrapReport().getDependencies().get(0).getOutcome());
+            assertEquals(2, repository.getRequestCount(repository.getJarPath(dependency)));
+            assertArrayEquals(jar, Files.readAllBytes(firstPaths.get(0)));
+            assertArrayEquals(jar, Files.readAllBytes(secondPaths.get(0)));
+            assertArrayEquals(jar, Files.readAllBytes(blobPath));
+        }
+    }
+
+    private Amber createAmber(AmberManifest manifest) {
+        return new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                new ChecksumValidatorImpl(), new ConsoleLogger(false));
+    }
+}
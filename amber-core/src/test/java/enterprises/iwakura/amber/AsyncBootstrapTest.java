@@ -0,0 +1,155 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Amber#bootstrapAsync(BootstrapOptions)}, {@link AsyncBootstrap} and {@link AmberClassLoader} serving its dependencies.
+ */
+public class AsyncBootstrapTest {
+
+    private static final int ARTIFACT_SIZE = 16 * 1024;
+    private static final long SLOW_LATENCY_MILLIS = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMavenRepository repository;
+    private List<Dependency> dependencies;
+    private AmberManifest manifest;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new LocalMavenRepository();
+        dependencies = repository.publishSynthetic(3, ARTIFACT_SIZE, 11);
+        manifest = new AmberManifest(tempDir.resolve("libraries"), dependencies, Collections.singletonList(repository.getRepository()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testBootstrapAsync() throws Exception {
+        // Arrange
+        Amber amber = createAmber();
+
+        // Act
+        AsyncBootstrap bootstrap = amber.bootstrapAsync(BootstrapOptions.builder().build());
+        List<Path> paths = bootstrap.await();
+
+        // Assert
+        assertTrue(bootstrap.isDone());
+        assertEquals(dependencies.size(), paths.size());
+        for (Dependency dependency : dependencies) {
+            Path jarPath = manifest.getDirectory().resolve(dependency.getFileName());
+            assertEquals(Collections.singletonList(jarPath), bootstrap.getDependencyFuture(dependency.getNotation()).get());
+            assertEquals(Collections.singletonList(jarPath), bootstrap.getDependencyJarPaths().get(dependency.getNotation()));
+            assertTrue(Files.isRegularFile(jarPath));
+        }
+        assertNull(bootstrap.getDependencyFuture("com.example:missing:1.0.0"));
+    }
+
+    @Test
+    public void testClassLoaderServesInstalledDependencies() throws Exception {
+        // Arrange
+        repository.addFault(Pattern.quote(repository.getJarPath(dependencies.get(2)))).latency(SLOW_LATENCY_MILLIS);
+        Amber amber = createAmber();
+        AsyncBootstrap bootstrap = amber.bootstrapAsync(BootstrapOptions.builder().build());
+
+        try (AmberClassLoader classLoader = new AmberClassLoader(bootstrap, ClassLoader.getSystemClassLoader().getParent(), AsyncBootstrapTest.class)) {
+            // Act
+            long startTime = System.nanoTime();
+            boolean firstFound = classLoader.getResource("artifact_0/data.bin") != null;
+            boolean secondFound = classLoader.getResource("artifact_1/data.bin") != null;
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            boolean doneWhileLoading = bootstrap.isDone();
+            bootstrap.cancel();
+
+            // Assert
+            // Dependencies declared before the slow one don't wait for it
+            assertTrue(firstFound);
+            assertTrue(secondFound);
+            assertTrue(durationMillis < SLOW_LATENCY_MILLIS, "Lookups took " + durationMillis + " ms");
+            assertFalse(doneWhileLoading);
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        // Arrange
+        repository.addFault(Pattern.quote(repository.getJarPath(dependencies.get(1)))).latency(SLOW_LATENCY_MILLIS);
+        Amber amber = createAmber();
+        AsyncBootstrap bootstrap = amber.bootstrapAsync(BootstrapOptions.builder().build());
+        CompletableFuture<List<Path>> slowFuture = bootstrap.getDependencyFuture(dependencies.get(1).getNotation());
+        long startTime = System.nanoTime();
+
+        // Act
+        bootstrap.cancel();
+        IOException exception = assertThrows(IOException.class, bootstrap::await);
+
+        // Assert
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        assertTrue(durationMillis < SLOW_LATENCY_MILLIS, "Cancelling took " + durationMillis + " ms");
+        assertNotNull(exception.getMessage());
+        assertTrue(slowFuture.isDone());
+        assertTrue(slowFuture.isCompletedExceptionally());
+        assertFalse(Files.exists(manifest.getDirectory().resolve(dependencies.get(1).getFileName())));
+    }
+
+    @Test
+    public void testAwaitFailure() throws Exception {
+        // Arrange
+        repository.addFault(Pattern.quote(repository.getJarPath(dependencies.get(0)))).status(500);
+        Amber amber = createAmber();
+
+        // Act
+        AsyncBootstrap bootstrap = amber.bootstrapAsync(BootstrapOptions.builder().maxRetries(0).build());
+        IOException exception = assertThrows(IOException.class, bootstrap::await);
+
+        // Assert
+        assertNotNull(exception);
+        assertTrue(bootstrap.getDependencyFuture(dependencies.get(0).getNotation()).isCompletedExceptionally());
+        assertFalse(amber.getLastBootstrapReport().isSuccess());
+    }
+
+    @Test
+    public void testAwaitInterrupted() throws Exception {
+        // Arrange
+        repository.addFault(Pattern.quote(repository.getJarPath(dependencies.get(0)))).latency(SLOW_LATENCY_MILLIS);
+        Amber amber = createAmber();
+        AsyncBootstrap bootstrap = amber.bootstrapAsync(BootstrapOptions.builder().build());
+
+        // Act
+        Thread.currentThread().interrupt();
+        IOException exception = assertThrows(IOException.class, bootstrap::await);
+        boolean interrupted = Thread.interrupted();
+
+        // Assert
+        assertTrue(exception instanceof java.io.InterruptedIOException);
+        assertTrue(interrupted);
+        assertTrue(bootstrap.getDependencyFuture(dependencies.get(0).getNotation()).isCancelled());
+    }
+
+    private Amber createAmber() {
+        return new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                new ChecksumValidatorImpl(), new ConsoleLogger(false));
+    }
+}
@@ -0,0 +1,224 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link BootstrapFingerprint} and warm starts using it.
+ */
+public class BootstrapFingerprintTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testHashManifestsIsStable() {
+        // Arrange
+        BootstrapOptions options = BootstrapOptions.builder().build();
+
+        // Act
+        String hash = BootstrapFingerprint.hashManifests(Collections.singletonList(createManifest()), options);
+        String otherHash = BootstrapFingerprint.hashManifests(Collections.singletonList(createManifest()), options);
+
+        // Assert
+        assertEquals(hash, otherHash);
+        assertEquals(64, hash.length());
+    }
+
+    @Test
+    public void testHashManifestsChanges() {
+        // Arrange
+        BootstrapOptions options = BootstrapOptions.builder().build();
+        String hash = BootstrapFingerprint.hashManifests(Collections.singletonList(createManifest()), options);
+
+        AmberManifest changedDirectory = new AmberManifest(tempDir.resolve("other"), createManifest().getDependencies(), createManifest().getRepositories());
+        AmberManifest changedDependency = new AmberManifest(tempDir.resolve("libraries"),
+                Arrays.asList(new Dependency("com.example:a:1.0.0"), new Dependency("com.example:b:2.0.1")), createManifest().getRepositories());
+        AmberManifest pinnedChecksum = createManifest();
+        pinnedChecksum.getDependencies().get(0).setPinnedChecksum(new Checksum(ChecksumType.SHA256, "9f86d081"));
+        AmberManifest changedRepository = new AmberManifest(tempDir.resolve("libraries"), createManifest().getDependencies(),
+                Collections.singletonList(new Repository(RepositoryType.MAVEN, "https://repo.example.com/")));
+        AmberManifest reorderedDependencies = new AmberManifest(tempDir.resolve("libraries"),
+                Arrays.asList(new Dependency("com.example:b:2.0.0"), new Dependency("com.example:a:1.0.0")), createManifest().getRepositories());
+
+        // Act & Assert
+        for (AmberManifest manifest : Arrays.asList(changedDirectory, changedDependency, pinnedChecksum, changedRepository, reorderedDependencies)) {
+            assertNotEquals(hash, BootstrapFingerprint.hashManifests(Collections.singletonList(manifest), options));
+        }
+        assertNotEquals(hash, BootstrapFingerprint.hashManifests(Arrays.asList(createManifest(), createManifest()), options));
+        assertNotEquals(hash, BootstrapFingerprint.hashManifests(Collections.singletonList(createManifest()),
+                BootstrapOptions.builder().verifyExisting(true).build()));
+        assertNotEquals(hash, BootstrapFingerprint.hashManifests(Collections.singletonList(createManifest()),
+                BootstrapOptions.builder().libraryPack(true).build()));
+        assertNotEquals(hash, BootstrapFingerprint.hashManifests(Collections.singletonList(createManifest()),
+                BootstrapOptions.builder().libraryDirectoryOverride(tempDir.resolve("override")).build()));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        // Arrange
+        List<Path> jarPaths = createJars("a.jar", "b.jar");
+        BootstrapFingerprint fingerprint = BootstrapFingerprint.capture("hash", jarPaths);
+
+        // Act
+        fingerprint.save(tempDir.resolve("state"));
+        BootstrapFingerprint loaded = BootstrapFingerprint.load(tempDir.resolve("state"));
+
+        // Assert
+        assertEquals(fingerprint, loaded);
+        assertEquals(jarPaths, loaded.verify());
+    }
+
+    @Test
+    public void testLoadMissingOrMalformed() throws IOException {
+        // Arrange
+        Path stateDirectory = Files.createDirectories(tempDir.resolve("state"));
+        Path malformedStateDirectory = Files.createDirectories(tempDir.resolve("malformed"));
+        Files.write(malformedStateDirectory.resolve(BootstrapFingerprint.FILE_NAME),
+                "manifests=hash\njars=1\njar.0.path=a.jar\njar.0.size=ten\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        // Act & Assert
+        assertNull(BootstrapFingerprint.load(stateDirectory));
+        assertNull(BootstrapFingerprint.load(malformedStateDirectory));
+    }
+
+    @Test
+    public void testVerifyDetectsChangedJars() throws IOException {
+        // Arrange
+        List<Path> jarPaths = createJars("a.jar", "b.jar", "c.jar");
+        BootstrapFingerprint fingerprint = BootstrapFingerprint.capture("hash", jarPaths);
+        Path otherDirectoryJar = Files.write(Files.createDirectories(tempDir.resolve("other")).resolve("d.jar"), new byte[4]);
+        List<Path> otherJarPaths = new ArrayList<>(jarPaths);
+        otherJarPaths.add(otherDirectoryJar);
+        BootstrapFingerprint otherFingerprint = BootstrapFingerprint.capture("hash", otherJarPaths);
+
+        // Act & Assert
+        assertEquals(jarPaths, fingerprint.verify());
+        assertEquals(otherJarPaths, otherFingerprint.verify());
+
+        Files.delete(otherDirectoryJar);
+        assertNull(otherFingerprint.verify(), "Deleted jar");
+        Files.delete(otherDirectoryJar.getParent());
+        assertNull(otherFingerprint.verify(), "Deleted directory");
+
+        Files.setLastModifiedTime(jarPaths.get(1), FileTime.fromMillis(Files.getLastModifiedTime(jarPaths.get(1)).toMillis() - 10_000));
+        assertNull(fingerprint.verify(), "Modified jar");
+
+        fingerprint = BootstrapFingerprint.capture("hash", jarPaths);
+        FileTime lastModified = Files.getLastModifiedTime(jarPaths.get(2));
+        Files.write(jarPaths.get(2), new byte[50]);
+        Files.setLastModifiedTime(jarPaths.get(2), lastModified);
+        assertNull(fingerprint.verify(), "Resized jar");
+    }
+
+    @Test
+    public void testWarmStart() throws IOException {
+        try (LocalMavenRepository repository = new LocalMavenRepository()) {
+            // Arrange
+            List<Dependency> dependencies = repository.publishSynthetic(3, 1024, 9);
+            AmberManifest manifest = new AmberManifest(tempDir.resolve("libraries"), dependencies,
+                    Collections.singletonList(repository.getRepository()));
+            Amber amber = new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                    new ChecksumValidatorImpl(), new ConsoleLogger(false));
+            BootstrapOptions options = BootstrapOptions.builder()
+                    .tempDirectory(Files.createDirectories(tempDir.resolve("temp")))
+                    .warmStart(true)
+                    .build();
+            List<Path> paths = amber.bootstrap(options);
+            repository.resetRequestCount();
+
+            // Act
+            List<Path> warmPaths = amber.bootstrap(options);
+            boolean warmStart = amber.getLastBootstrapReport().isWarmStart();
+            Files.delete(paths.get(1));
+            List<Path> coldPaths = amber.bootstrap(options);
+            boolean coldStart = !amber.getLastBootstrapReport().isWarmStart();
+
+            // Assert
+            assertTrue(warmStart);
+            assertEquals(paths, warmPaths);
+            assertTrue(coldStart);
+            assertEquals(paths, coldPaths);
+            assertEquals(1, repository.getRequestCount(repository.getJarPath(dependencies.get(1))));
+            assertEquals(0, repository.getRequestCount(repository.getJarPath(dependencies.get(0))));
+        }
+    }
+
+    @Test
+    public void testWarmStartDisabledByDefault() throws IOException {
+        try (LocalMavenRepository repository = new LocalMavenRepository()) {
+            // Arrange
+            List<Dependency> dependencies = repository.publishSynthetic(2, 1024, 9);
+            AmberManifest manifest = new AmberManifest(tempDir.resolve("libraries"), dependencies,
+                    Collections.singletonList(repository.getRepository()));
+            Amber amber = new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                    new ChecksumValidatorImpl(), new ConsoleLogger(false));
+            BootstrapOptions options = BootstrapOptions.builder().build();
+            amber.bootstrap(options);
+
+            // Act
+            amber.bootstrap(options);
+
+            // Assert
+            assertFalse(amber.getLastBootstrapReport().isWarmStart());
+            assertNull(BootstrapFingerprint.load(options.getPreferredStateDirectory(manifest)));
+        }
+    }
+
+    @Test
+    public void testWarmStartSkippedWhenVerifyingExisting() throws IOException {
+        try (LocalMavenRepository repository = new LocalMavenRepository()) {
+            // Arrange
+            List<Dependency> dependencies = repository.publishSynthetic(2, 1024, 9);
+            AmberManifest manifest = new AmberManifest(tempDir.resolve("libraries"), dependencies,
+                    Collections.singletonList(repository.getRepository()));
+            Amber amber = new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                    new ChecksumValidatorImpl(), new ConsoleLogger(false));
+            List<Path> paths = amber.bootstrap(BootstrapOptions.builder().warmStart(true).build());
+            // Corrupt a jar while keeping the size and modification time the fingerprint compares
+            FileTime lastModified = Files.getLastModifiedTime(paths.get(0));
+            byte[] corrupted = Files.readAllBytes(paths.get(0));
+            corrupted[corrupted.length / 2] ^= 1;
+            Files.write(paths.get(0), corrupted);
+            Files.setLastModifiedTime(paths.get(0), lastModified);
+            repository.resetRequestCount();
+
+            // Act
+            amber.bootstrap(BootstrapOptions.builder().warmStart(true).verifyExisting(true).build());
+
+            // Assert
+            assertFalse(amber.getLastBootstrapReport().isWarmStart());
+            assertArrayEquals(repository.getFile(repository.getJarPath(dependencies.get(0))), Files.readAllBytes(paths.get(0)));
+        }
+    }
+
+    private AmberManifest createManifest() {
+        return new AmberManifest(tempDir.resolve("libraries"),
+                Arrays.asList(new Dependency("com.example:a:1.0.0"), new Dependency("com.example:b:2.0.0")),
+                Collections.singletonList(new Repository(RepositoryType.MAVEN, "https://repo1.maven.org/maven2/")));
+    }
+
+    private List<Path> createJars(String... names) throws IOException {
+        Path directory = Files.createDirectories(tempDir.resolve("libraries"));
+        List<Path> jarPaths = new ArrayList<>();
+        for (String name : names) {
+            jarPaths.add(Files.write(directory.resolve(name), name.getBytes(StandardCharsets.UTF_8)));
+        }
+        return jarPaths;
+    }
+}
@@ -0,0 +1,194 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link BootstrapReport}'s aggregates and its JSON and Prometheus output against golden output.
+ */
+public class BootstrapReportTest {
+
+    private static final String REPOSITORY_URL = "https://repo.example.com/\"releases\"\\maven\n";
+
+    @Test
+    public void testAggregates() {
+        // Arrange
+        BootstrapReport report = createReport();
+
+        // Act & Assert
+        assertFalse(report.isSuccess());
+        assertEquals(1_000_000, report.getBytesTransferred());
+        assertEquals(500_000.0, report.getThroughputBytesPerSecond());
+        assertEquals(1, report.getRetries());
+        assertEquals(1, report.getCacheHits());
+        assertEquals(1, report.getCount(DependencyReport.Outcome.FAILED));
+        assertEquals(0, report.getCount(DependencyReport.Outcome.PENDING));
+        assertEquals(1_002_000, report.getPhaseNanos(DependencyReport.Phase.MOVE));
+        assertEquals(Collections.singletonMap(REPOSITORY_URL, 1_000_000L), report.getBytesTransferredByRepository());
+    }
+
+    @Test
+    public void testToJson() {
+        // Arrange
+        BootstrapReport report = createReport();
+
+        // Act
+        String json = report.toJson();
+
+        // Assert
+        String repository = "\"https://repo.example.com/\\\"releases\\\"\\\\maven\\u000a\"";
+        assertEquals("{\"startTime\":\"2026-01-02T03:04:05Z\",\"durationMillis\":2000.0,\"warmStart\":false,\"success\":false,"
+                + "\"error\":\"Failed to download \\\"com.example:b:2.0\\\"\\u000a\",\"bytesTransferred\":1000000,"
+                + "\"throughputBytesPerSecond\":500000.0,\"retries\":1,\"cacheHits\":1,"
+                + "\"outcomes\":{\"pending\":0,\"existing\":0,\"cached\":1,\"downloaded\":1,\"missing\":0,\"failed\":1},"
+                + "\"phasesMillis\":{\"metadataLookup\":0.25,\"transfer\":500.0,\"checksumFetch\":3.0,\"hashing\":1.5,\"move\":1.002},"
+                + "\"repositories\":[{\"url\":" + repository + ",\"bytesTransferred\":1000000}],"
+                + "\"dependencies\":["
+                + "{\"notation\":\"com.example:a:1.0\",\"outcome\":\"downloaded\",\"repository\":" + repository + ",\"durationMillis\":600.0,"
+                + "\"bytesTransferred\":1000000,\"throughputBytesPerSecond\":2000000.0,\"attempts\":2,\"retries\":1,"
+                + "\"phasesMillis\":{\"metadataLookup\":0.25,\"transfer\":500.0,\"checksumFetch\":0.0,\"hashing\":1.5,\"move\":0.002}},"
+                + "{\"notation\":\"com.example:b:2.0\",\"outcome\":\"failed\",\"repository\":null,\"durationMillis\":50.0,"
+                + "\"bytesTransferred\":0,\"throughputBytesPerSecond\":0.0,\"attempts\":0,\"retries\":0,"
+                + "\"phasesMillis\":{\"metadataLookup\":0.0,\"transfer\":0.0,\"checksumFetch\":3.0,\"hashing\":0.0,\"move\":0.0}},"
+                + "{\"notation\":\"com.example:c:3.0\",\"outcome\":\"cached\",\"repository\":null,\"durationMillis\":1.0,"
+                + "\"bytesTransferred\":0,\"throughputBytesPerSecond\":0.0,\"attempts\":0,\"retries\":0,"
+                + "\"phasesMillis\":{\"metadataLookup\":0.0,\"transfer\":0.0,\"checksumFetch\":0.0,\"hashing\":0.0,\"move\":1.0}}"
+                + "]}", json);
+    }
+
+    @Test
+    public void testToPrometheus() {
+        // Arrange
+        BootstrapReport report = createReport();
+
+        // Act
+        String metrics = report.toPrometheus();
+
+        // Assert
+        String repository = "repository=\"https://repo.example.com/\\\"releases\\\"\\\\maven\\n\"";
+        assertEquals(String.join("\n",
+                "# HELP amber_bootstrap_duration_seconds Duration of the bootstrap.",
+                "# TYPE amber_bootstrap_duration_seconds gauge",
+                "amber_bootstrap_duration_seconds 2",
+                "# HELP amber_bootstrap_success Whether the bootstrap succeeded.",
+                "# TYPE amber_bootstrap_success gauge",
+                "amber_bootstrap_success 0",
+                "# HELP amber_bootstrap_warm_start Whether the bootstrap was skipped by a warm start.",
+                "# TYPE amber_bootstrap_warm_start gauge",
+                "amber_bootstrap_warm_start 0",
+                "# HELP amber_bootstrap_bytes_transferred Bytes transferred from repositories.",
+                "# TYPE amber_bootstrap_bytes_transferred gauge",
+                "amber_bootstrap_bytes_transferred 1000000",
+                "# HELP amber_bootstrap_throughput_bytes_per_second Bytes transferred per second of the bootstrap.",
+                "# TYPE amber_bootstrap_throughput_bytes_per_second gauge",
+                "amber_bootstrap_throughput_bytes_per_second 500000",
+                "# HELP amber_bootstrap_retries Retried requests.",
+                "# TYPE amber_bootstrap_retries gauge",
+                "amber_bootstrap_retries 1",
+                "# HELP amber_bootstrap_cache_hits Dependencies installed from the shared cache.",
+                "# TYPE amber_bootstrap_cache_hits gauge",
+                "amber_bootstrap_cache_hits 1",
+                "# HELP amber_bootstrap_dependencies Dependencies by outcome.",
+                "# TYPE amber_bootstrap_dependencies gauge",
+                "amber_bootstrap_dependencies{outcome=\"pending\"} 0",
+                "amber_bootstrap_dependencies{outcome=\"existing\"} 0",
+                "amber_bootstrap_dependencies{outcome=\"cached\"} 1",
+                "amber_bootstrap_dependencies{outcome=\"downloaded\"} 1",
+                "amber_bootstrap_dependencies{outcome=\"missing\"} 0",
+                "amber_bootstrap_dependencies{outcome=\"failed\"} 1",
+                "# HELP amber_bootstrap_phase_seconds Time spent in each phase by all dependencies.",
+                "# TYPE amber_bootstrap_phase_seconds gauge",
+                "amber_bootstrap_phase_seconds{phase=\"metadata_lookup\"} 2.5E-4",
+                "amber_bootstrap_phase_seconds{phase=\"transfer\"} 0.5",
+                "amber_bootstrap_phase_seconds{phase=\"checksum_fetch\"} 0.003",
+                "amber_bootstrap_phase_seconds{phase=\"hashing\"} 0.0015",
+                "amber_bootstrap_phase_seconds{phase=\"move\"} 0.001002",
+                "# HELP amber_bootstrap_repository_bytes_transferred Bytes transferred by dependencies downloaded from each repository.",
+                "# TYPE amber_bootstrap_repository_bytes_transferred gauge",
+                "amber_bootstrap_repository_bytes_transferred{" + repository + "} 1000000",
+                "# HELP amber_bootstrap_dependency_duration_seconds Duration of each dependency's bootstrap.",
+                "# TYPE amber_bootstrap_dependency_duration_seconds gauge",
+                "amber_bootstrap_dependency_duration_seconds{dependency=\"com.example:a:1.0\",outcome=\"downloaded\"} 0.6",
+                "amber_bootstrap_dependency_duration_seconds{dependency=\"com.example:b:2.0\",outcome=\"failed\"} 0.05",
+                "amber_bootstrap_dependency_duration_seconds{dependency=\"com.example:c:3.0\",outcome=\"cached\"} 0.001",
+                "# HELP amber_bootstrap_dependency_phase_seconds Time spent in each phase by each dependency.",
+                "# TYPE amber_bootstrap_dependency_phase_seconds gauge",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:a:1.0\",phase=\"metadata_lookup\"} 2.5E-4",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:a:1.0\",phase=\"transfer\"} 0.5",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:a:1.0\",phase=\"checksum_fetch\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:a:1.0\",phase=\"hashing\"} 0.0015",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:a:1.0\",phase=\"move\"} 2.0E-6",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:b:2.0\",phase=\"metadata_lookup\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:b:2.0\",phase=\"transfer\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:b:2.0\",phase=\"checksum_fetch\"} 0.003",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:b:2.0\",phase=\"hashing\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:b:2.0\",phase=\"move\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:c:3.0\",phase=\"metadata_lookup\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:c:3.0\",phase=\"transfer\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:c:3.0\",phase=\"checksum_fetch\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:c:3.0\",phase=\"hashing\"} 0",
+                "amber_bootstrap_dependency_phase_seconds{dependency=\"com.example:c:3.0\",phase=\"move\"} 0.001",
+                "# HELP amber_bootstrap_dependency_bytes_transferred Bytes transferred by each dependency.",
+                "# TYPE amber_bootstrap_dependency_bytes_transferred gauge",
+                "amber_bootstrap_dependency_bytes_transferred{dependency=\"com.example:a:1.0\"," + repository + "} 1000000",
+                "amber_bootstrap_dependency_bytes_transferred{dependency=\"com.example:b:2.0\",repository=\"\"} 0",
+                "amber_bootstrap_dependency_bytes_transferred{dependency=\"com.example:c:3.0\",repository=\"\"} 0",
+                "# HELP amber_bootstrap_dependency_retries Retried requests of each dependency.",
+                "# TYPE amber_bootstrap_dependency_retries gauge",
+                "amber_bootstrap_dependency_retries{dependency=\"com.example:a:1.0\"} 1",
+                "amber_bootstrap_dependency_retries{dependency=\"com.example:b:2.0\"} 0",
+                "amber_bootstrap_dependency_retries{dependency=\"com.example:c:3.0\"} 0",
+                ""), metrics);
+    }
+
+    @Test
+    public void testToJsonOfWarmStart() {
+        // Arrange
+        BootstrapReport report = new BootstrapReport(Instant.parse("2026-01-02T03:04:05Z"), 1_234, true, null, Collections.emptyList());
+
+        // Act
+        String json = report.toJson();
+
+        // Assert
+        assertEquals("{\"startTime\":\"2026-01-02T03:04:05Z\",\"durationMillis\":0.001,\"warmStart\":true,\"success\":true,\"error\":null,"
+                + "\"bytesTransferred\":0,\"throughputBytesPerSecond\":0.0,\"retries\":0,\"cacheHits\":0,"
+                + "\"outcomes\":{\"pending\":0,\"existing\":0,\"cached\":0,\"downloaded\":0,\"missing\":0,\"failed\":0},"
+                + "\"phasesMillis\":{\"metadataLookup\":0.0,\"transfer\":0.0,\"checksumFetch\":0.0,\"hashing\":0.0,\"move\":0.0},"
+                + "\"repositories\":[],\"dependencies\":[]}", json);
+    }
+
+    /**
+     * Creates a report of a failed bootstrap of a downloaded, a failed and a cached dependency, with fixed timings.
+     */
+    private static BootstrapReport createReport() {
+        DependencyReport downloaded = new DependencyReport("com.example:a:1.0");
+        downloaded.recordAttempt(DownloadResult.error("Read timed out"), 100_000_000);
+        downloaded.recordRetry();
+        DownloadResult result = DownloadResult.success();
+        result.setBytesTransferred(1_000_000);
+        result.setMetadataLookupNanos(250_000);
+        downloaded.recordAttempt(result, 400_250_000);
+        downloaded.recordPhase(DependencyReport.Phase.HASHING, 1_500_000);
+        downloaded.recordPhase(DependencyReport.Phase.MOVE, 2_000);
+        downloaded.recordOutcome(DependencyReport.Outcome.DOWNLOADED, REPOSITORY_URL);
+        downloaded.recordDuration(600_000_000);
+
+        DependencyReport failed = new DependencyReport("com.example:b:2.0");
+        failed.recordPhase(DependencyReport.Phase.CHECKSUM_FETCH, 3_000_000);
+        failed.recordOutcome(DependencyReport.Outcome.FAILED, null);
+        failed.recordDuration(50_000_000);
+
+        DependencyReport cached = new DependencyReport("com.example:c:3.0");
+        cached.recordPhase(DependencyReport.Phase.MOVE, 1_000_000);
+        cached.recordOutcome(DependencyReport.Outcome.CACHED, null);
+        cached.recordDuration(1_000_000);
+
+        return new BootstrapReport(Instant.parse("2026-01-02T03:04:05Z"), 2_000_000_000L, false,
+                "Failed to download \"com.example:b:2.0\"\n", Arrays.asList(downloaded, failed, cached));
+    }
+}
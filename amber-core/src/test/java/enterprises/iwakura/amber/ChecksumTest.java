@@ -0,0 +1,60 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Checksum}.
+ */
+public class ChecksumTest {
+
+    @Test
+    public void testParse() {
+        // Act
+        Checksum checksum = Checksum.parse("SHA256:9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08");
+
+        // Assert
+        assertEquals(ChecksumType.SHA256, checksum.getType());
+        assertEquals("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08", checksum.getValue());
+    }
+
+    @Test
+    public void testParseIgnoresCaseOfTypeAndWhitespace() {
+        // Act
+        Checksum checksum = Checksum.parse(" sha1 : a94a8fe5ccb19ba61c4c0873d391e987982fbbd3 ");
+
+        // Assert
+        assertEquals(new Checksum(ChecksumType.SHA1, "a94a8fe5ccb19ba61c4c0873d391e987982fbbd3"), checksum);
+    }
+
+    @Test
+    public void testToStringRoundTrip() {
+        // Arrange
+        Checksum checksum = new Checksum(ChecksumType.SHA512, "ee26b0dd4af7e749aa1a8ee3c10ae9923f618980772e473f8819a5d4940e0db2");
+
+        // Act
+        Checksum parsed = Checksum.parse(checksum.toString());
+
+        // Assert
+        assertEquals("SHA512:ee26b0dd4af7e749aa1a8ee3c10ae9923f618980772e473f8819a5d4940e0db2", checksum.toString());
+        assertEquals(checksum, parsed);
+    }
+
+    @Test
+    public void testParseInvalidNotation() {
+        assertThrows(IllegalArgumentException.class, () -> Checksum.parse("SHA256"));
+        assertThrows(IllegalArgumentException.class, () -> Checksum.parse("SHA256:"));
+        assertThrows(IllegalArgumentException.class, () -> Checksum.parse(":9f86d081"));
+        assertThrows(IllegalArgumentException.class, () -> Checksum.parse("CRC32:9f86d081"));
+    }
+
+    @Test
+    public void testToHexString() {
+        // Act
+        String hex = Checksum.toHexString(new byte[]{0x00, 0x0f, (byte) 0xa0, (byte) 0xff});
+
+        // Assert
+        assertEquals("000fa0ff", hex);
+    }
+}
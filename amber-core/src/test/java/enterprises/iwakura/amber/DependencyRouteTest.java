@@ -0,0 +1,60 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link DependencyRoute}.
+ */
+public class DependencyRouteTest {
+
+    private static final Repository CENTRAL = new Repository(RepositoryType.MAVEN, "https://repo1.maven.org/maven2/");
+    private static final Repository SNAPSHOTS = new Repository(RepositoryType.MAVEN, "https://repo.example.com/snapshots/");
+    private static final List<Repository> REPOSITORIES = Arrays.asList(CENTRAL, SNAPSHOTS);
+
+    @Test
+    public void testParse() {
+        // Act
+        DependencyRoute route = DependencyRoute.parse("1;1.0-20240101.120000-3;48213", REPOSITORIES);
+
+        // Assert
+        assertEquals(new DependencyRoute(SNAPSHOTS, "1.0-20240101.120000-3", 48213), route);
+    }
+
+    @Test
+    public void testParseWithoutVersionAndSize() {
+        assertEquals(new DependencyRoute(CENTRAL, null, 48213), DependencyRoute.parse("0;;48213", REPOSITORIES));
+        assertEquals(new DependencyRoute(CENTRAL, "1.0.0", -1), DependencyRoute.parse("0;1.0.0;", REPOSITORIES));
+        assertEquals(new DependencyRoute(SNAPSHOTS, null, -1), DependencyRoute.parse(" 1 ; ; ", REPOSITORIES));
+    }
+
+    @Test
+    public void testParseInvalidNotation() {
+        assertThrows(IllegalArgumentException.class, () -> DependencyRoute.parse("0", REPOSITORIES));
+        assertThrows(IllegalArgumentException.class, () -> DependencyRoute.parse("0;1.0.0", REPOSITORIES));
+        assertThrows(IllegalArgumentException.class, () -> DependencyRoute.parse("0;1.0.0;1;2", REPOSITORIES));
+        assertThrows(IllegalArgumentException.class, () -> DependencyRoute.parse(";1.0.0;1", REPOSITORIES));
+        assertThrows(IllegalArgumentException.class, () -> DependencyRoute.parse("central;1.0.0;1", REPOSITORIES));
+        assertThrows(IllegalArgumentException.class, () -> DependencyRoute.parse("0;1.0.0;large", REPOSITORIES));
+    }
+
+    @Test
+    public void testParseUnknownRepository() {
+        assertThrows(IllegalArgumentException.class, () -> DependencyRoute.parse("2;;1", REPOSITORIES));
+        assertThrows(IllegalArgumentException.class, () -> DependencyRoute.parse("-1;;1", REPOSITORIES));
+    }
+
+    @Test
+    public void testIsRoutedTo() {
+        // Arrange
+        DependencyRoute route = DependencyRoute.parse("1;;", REPOSITORIES);
+
+        // Act & Assert
+        assertTrue(route.isRoutedTo(new Repository(RepositoryType.MAVEN, "https://repo.example.com/snapshots/")));
+        assertFalse(route.isRoutedTo(CENTRAL));
+    }
+}
@@ -0,0 +1,485 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bootstraps hundreds of synthetic dependencies from a {@link LocalMavenRepository} with injected faults, asserting that the bootstrap
+ * recovers (or fails) as expected, within wall-clock bounds and without leaking threads, open files or heap.
+ */
+public class FaultInjectionTest {
+
+    private static final int DEPENDENCY_COUNT = 300;
+    private static final int ARTIFACT_SIZE = 16 * 1024;
+    private static final long SEED = 25;
+    private static final int DOWNLOADER_THREAD_COUNT = 8;
+
+    private static final long MAX_BOOTSTRAP_MILLIS = 30_000;
+    private static final int MAX_EXTRA_THREADS = DOWNLOADER_THREAD_COUNT + 4;
+    private static final long MAX_EXTRA_OPEN_FILES = DOWNLOADER_THREAD_COUNT * 4 + 32;
+    private static final long MAX_RETAINED_HEAP_BYTES = 64 * 1024 * 1024;
+
+    private static final long DEADLINE_MILLIS = 500;
+    private static final long STALLED_READ_TIMEOUT_MILLIS = 3_000;
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMavenRepository repository;
+    private List<Dependency> dependencies;
+    private Amber amber;
+    private ResourceUsage baseline;
+    private ResourceMonitor monitor;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new LocalMavenRepository(32);
+        repository.setLatencyMillis(2);
+        dependencies = repository.publishSynthetic(DEPENDENCY_COUNT, ARTIFACT_SIZE, SEED);
+        amber = createAmber(dependencies);
+        baseline = ResourceUsage.measure();
+        monitor = new ResourceMonitor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        monitor.close();
+        repository.close();
+    }
+
+    @Test
+    public void testHealthyRepository() throws IOException {
+        // Act
+        long duration = bootstrap(createOptions().build());
+
+        // Assert
+        assertInstalled(dependencies);
+        assertTrue(duration < MAX_BOOTSTRAP_MILLIS, "Bootstrap took " + duration + " ms");
+        assertTrue(repository.getMaxConcurrentRequests() <= DOWNLOADER_THREAD_COUNT,
+                "Concurrent requests: " + repository.getMaxConcurrentRequests());
+        assertEquals(0, amber.getLastBootstrapReport().getRetries());
+        assertResourceUsage();
+    }
+
+    @Test
+    public void testSlowResponses() throws IOException {
+        // Arrange
+        for (int i = 0; i < DEPENDENCY_COUNT; i += 10) {
+            repository.addFault(Pattern.quote(repository.getJarPath(dependencies.get(i)))).latency(5_000).times(1);
+        }
+        repository.addFault(".*\\.jar").bandwidth(512 * 1024);
+
+        // Act
+        long duration = bootstrap(createOptions().readTimeoutMillis(500).build());
+
+        // Assert
+        assertInstalled(dependencies);
+        assertTrue(duration < MAX_BOOTSTRAP_MILLIS, "Bootstrap took " + duration + " ms");
+        assertTrue(amber.getLastBootstrapReport().getRetries() >= DEPENDENCY_COUNT / 10);
+        assertResourceUsage();
+    }
+
+    @Test
+    public void testDroppedConnections() throws IOException {
+        // Arrange
+        long totalSize = 0;
+        for (int i = 0; i < DEPENDENCY_COUNT; i++) {
+            String jarPath = repository.getJarPath(dependencies.get(i));
+            totalSize += repository.getFile(jarPath).length;
+            if (i % 10 == 0) {
+                repository.addFault(Pattern.quote(jarPath)).dropAfter(ARTIFACT_SIZE / 2).times(1);
+            }
+        }
+
+        // Act
+        long duration = bootstrap(createOptions().build());
+
+        // Assert
+        assertInstalled(dependencies);
+        assertTrue(duration < MAX_BOOTSTRAP_MILLIS, "Bootstrap took " + duration + " ms");
+        for (int i = 0; i < DEPENDENCY_COUNT; i += 10) {
+            assertEquals(2, repository.getRequestCount(repository.getJarPath(dependencies.get(i))));
+        }
+        // Dropped downloads are resumed, not started over (bytes of failed attempts are not counted)
+        assertEquals(totalSize - DEPENDENCY_COUNT / 10 * (ARTIFACT_SIZE / 2), amber.getLastBootstrapReport().getBytesTransferred());
+        assertResourceUsage();
+    }
+
+    @Test
+    public void testThrottling() throws IOException {
+        // Arrange
+        for (int i = 0; i < DEPENDENCY_COUNT; i += 5) {
+            String jarPath = repository.getJarPath(dependencies.get(i));
+            repository.addFault(Pattern.quote(jarPath)).status(429).retryAfter(1).times(1);
+            repository.addFault(Pattern.quote(jarPath + "." + ChecksumType.SHA512.getFileExtension())).status(503).times(2);
+        }
+
+        // Act
+        long duration = bootstrap(createOptions().build());
+
+        // Assert
+        assertInstalled(dependencies);
+        assertTrue(duration < MAX_BOOTSTRAP_MILLIS, "Bootstrap took " + duration + " ms");
+        assertEquals(DEPENDENCY_COUNT / 5 * 3, amber.getLastBootstrapReport().getRetries());
+        assertResourceUsage();
+    }
+
+    @Test
+    public void testUnreachableChecksumsOfInstalledJars() throws IOException {
+        // Arrange
+        bootstrap(createOptions().build());
+        Files.deleteIfExists(tempDir.resolve("libraries").resolve(BootstrapOptions.STATE_DIRECTORY_NAME).resolve(InstalledJarVerifier.FILE_NAME));
+        for (int i = 0; i < DEPENDENCY_COUNT; i += 10) {
+            String checksumPaths = Pattern.quote(repository.getJarPath(dependencies.get(i)) + ".") + ".*";
+            if (i % 20 == 0) {
+                repository.addFault(checksumPaths).dropAfter(0);
+            } else {
+                repository.addFault(checksumPaths).status(503);
+            }
+        }
+
+        // Act
+        long duration = bootstrap(createOptions().warmStart(false).verifyExisting(true).build());
+
+        // Assert
+        assertInstalled(dependencies);
+        assertTrue(duration < MAX_BOOTSTRAP_MILLIS, "Bootstrap took " + duration + " ms");
+        int maxRetries = createOptions().build().getMaxRetries();
+        for (int i = 0; i < DEPENDENCY_COUNT; i += 10) {
+            // Installed jars are trusted once their repository turned out unreachable, without trying other checksum types
+            String jarPath = repository.getJarPath(dependencies.get(i));
+            assertEquals(1, repository.getRequestCount(jarPath));
+            assertEquals(1 + 1 + maxRetries, repository.getRequestCount(jarPath + "." + ChecksumType.SHA512.getFileExtension()));
+            assertEquals(0, repository.getRequestCount(jarPath + "." + ChecksumType.SHA256.getFileExtension()));
+        }
+        assertResourceUsage();
+    }
+
+    @Test
+    public void testTruncatedJar() throws IOException {
+        // Arrange
+        Dependency truncated = dependencies.get(DEPENDENCY_COUNT / 2);
+        repository.addFault(Pattern.quote(repository.getJarPath(truncated))).truncate(ARTIFACT_SIZE / 2);
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> bootstrap(createOptions().build()));
+        assertFalse(Files.exists(tempDir.resolve("libraries").resolve(truncated.getFileName())));
+        assertEquals(DependencyReport.Outcome.FAILED, amber.getDependencyReport(truncated).getOutcome());
+        assertResourceUsage();
+    }
+
+    @Test
+    public void testBadChecksum() throws IOException {
+        // Arrange
+        Dependency corrupted = dependencies.get(DEPENDENCY_COUNT / 2);
+        repository.addFault(Pattern.quote(repository.getJarPath(corrupted) + "." + ChecksumType.SHA512.getFileExtension())).corrupt();
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> bootstrap(createOptions().build()));
+        assertFalse(Files.exists(tempDir.resolve("libraries").resolve(corrupted.getFileName())));
+        assertEquals(DependencyReport.Outcome.FAILED, amber.getDependencyReport(corrupted).getOutcome());
+        assertResourceUsage();
+    }
+
+    @Test
+    public void testMissingMavenMetadata() throws IOException {
+        // Arrange
+        Dependency snapshot = repository.publish(LocalMavenRepository.SYNTHETIC_GROUP_ID + ":snapshot:1.0.0-SNAPSHOT",
+                LocalMavenRepository.createJar("snapshot", ARTIFACT_SIZE, new Random(SEED)));
+        String metadataPath = repository.getJarPath(snapshot).replaceAll("[^/]+$", "maven-metadata.xml");
+        amber = createAmber(Collections.singletonList(snapshot));
+        bootstrap(createOptions().build());
+        assertInstalled(Collections.singletonList(snapshot));
+        repository.addFault(Pattern.quote(metadataPath)).status(404);
+        Files.delete(tempDir.resolve("libraries").resolve(snapshot.getFileName()));
+
+        // Act
+        bootstrap(createOptions().warmStart(false).failOnMissingDependency(false).build());
+
+        // Assert
+        assertEquals(DependencyReport.Outcome.MISSING, amber.getDependencyReport(snapshot).getOutcome());
+        assertResourceUsage();
+    }
+
+    @Test
+    public void testStalledBodyExceedsDependencyDeadline() throws IOException {
+        // Arrange
+        Dependency stalled = dependencies.get(0);
+        String jarPath = repository.getJarPath(stalled);
+        repository.addFault(Pattern.quote(jarPath)).stallAfter(ARTIFACT_SIZE / 2);
+        BootstrapOptions options = createOptions().dependencyTimeoutMillis(DEADLINE_MILLIS).readTimeoutMillis(STALLED_READ_TIMEOUT_MILLIS).build();
+
+        // Act
+        long startTime = System.nanoTime();
+        IOException exception = assertThrows(IOException.class, () -> bootstrap(options));
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        // Assert
+        // Fails on the deadline, not on the read timeout of the stalled body
+        assertTrue(duration < STALLED_READ_TIMEOUT_MILLIS, "Bootstrap took " + duration + " ms");
+        assertCausedBy(exception, "did not complete within " + DEADLINE_MILLIS + " ms");
+        assertEquals(DependencyReport.Outcome.FAILED, amber.getDependencyReport(stalled).getOutcome());
+        assertFalse(Files.exists(tempDir.resolve("libraries").resolve(stalled.getFileName())));
+        assertResourceUsage();
+        // The interrupted download is not retried once its read times out
+        assertEquals(1, repository.getRequestCount(jarPath));
+    }
+
+    @Test
+    public void testSlowTransfersExceedBootstrapDeadline() throws IOException {
+        // Arrange
+        repository.addFault(".*\\.jar").bandwidth(ARTIFACT_SIZE * 4);
+        BootstrapOptions options = createOptions().bootstrapTimeoutMillis(DEADLINE_MILLIS).build();
+
+        // Act
+        long startTime = System.nanoTime();
+        IOException exception = assertThrows(IOException.class, () -> bootstrap(options));
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        // Assert
+        assertTrue(duration < DEADLINE_MILLIS * 4, "Bootstrap took " + duration + " ms");
+        assertCausedBy(exception, "Bootstrapping did not complete within " + DEADLINE_MILLIS + " ms");
+        assertResourceUsage();
+        // In-flight transfers were interrupted and the remaining dependencies were never requested
+        Dependency last = dependencies.get(DEPENDENCY_COUNT - 1);
+        assertEquals(0, repository.getRequestCount(repository.getJarPath(last)));
+        assertFalse(Files.exists(tempDir.resolve("libraries").resolve(last.getFileName())));
+    }
+
+    @Test
+    public void testFailureInterruptsOtherTransfers() throws IOException {
+        // Arrange
+        List<Dependency> stalled = dependencies.subList(0, DOWNLOADER_THREAD_COUNT / 2);
+        for (Dependency dependency : stalled) {
+            repository.addFault(Pattern.quote(repository.getJarPath(dependency))).stallAfter(ARTIFACT_SIZE / 2);
+        }
+        Dependency corrupted = dependencies.get(stalled.size());
+        repository.addFault(Pattern.quote(repository.getJarPath(corrupted) + "." + ChecksumType.SHA512.getFileExtension())).corrupt();
+        BootstrapOptions options = createOptions().readTimeoutMillis(STALLED_READ_TIMEOUT_MILLIS).build();
+
+        // Act
+        long startTime = System.nanoTime();
+        assertThrows(IOException.class, () -> bootstrap(options));
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        // Assert
+        // Fails right away, without waiting for the stalled transfers
+        assertTrue(duration < STALLED_READ_TIMEOUT_MILLIS, "Bootstrap took " + duration + " ms");
+        assertEquals(DependencyReport.Outcome.FAILED, amber.getDependencyReport(corrupted).getOutcome());
+        assertResourceUsage();
+        for (Dependency dependency : stalled) {
+            // Interrupted by the failure, so not retried once their reads time out
+            assertEquals(1, repository.getRequestCount(repository.getJarPath(dependency)));
+            assertFalse(Files.exists(tempDir.resolve("libraries").resolve(dependency.getFileName())));
+        }
+        assertEquals(0, repository.getRequestCount(repository.getJarPath(dependencies.get(DEPENDENCY_COUNT - 1))));
+    }
+
+    private Amber createAmber(List<Dependency> dependencies) {
+        AmberManifest manifest = new AmberManifest(tempDir.resolve("libraries"), dependencies,
+                Collections.singletonList(repository.getRepository()));
+        return new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                new ChecksumValidatorImpl(), new ConsoleLogger(false));
+    }
+
+    private BootstrapOptions.BootstrapOptionsBuilder createOptions() {
+        return BootstrapOptions.builder()
+                .tempDirectory(tempDir.resolve("temp"))
+                .downloaderThreadCount(DOWNLOADER_THREAD_COUNT)
+                .retryBackoffMillis(10);
+    }
+
+    /**
+     * Bootstraps the dependencies while monitoring resource usage.
+     *
+     * @return the duration in milliseconds
+     */
+    private long bootstrap(BootstrapOptions options) throws IOException {
+        Files.createDirectories(options.getTempDirectory());
+        monitor.start();
+        long startTime = System.nanoTime();
+        try {
+            amber.bootstrap(options);
+        } finally {
+            monitor.stop();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    private static void assertCausedBy(Throwable throwable, String message) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(message)) {
+                return;
+            }
+        }
+        fail("Not caused by '" + message + "': " + throwable);
+    }
+
+    private void assertInstalled(List<Dependency> dependencies) {
+        for (Dependency dependency : dependencies) {
+            assertTrue(Files.isRegularFile(tempDir.resolve("libraries").resolve(dependency.getFileName())), "Not installed: " + dependency);
+        }
+    }
+
+    /**
+     * Asserts the peak resource usage during the bootstrap and that the resources were released after it. Threads of the repository are
+     * not counted.
+     */
+    private void assertResourceUsage() {
+        assertTrue(monitor.peakThreads - baseline.threads <= MAX_EXTRA_THREADS,
+                "Peak threads: " + monitor.peakThreads + ", baseline: " + baseline.threads);
+        if (baseline.openFiles >= 0) {
+            assertTrue(monitor.peakOpenFiles - baseline.openFiles <= MAX_EXTRA_OPEN_FILES,
+                    "Peak open files: " + monitor.peakOpenFiles + ", baseline: " + baseline.openFiles);
+        }
+
+        // Executors shut down asynchronously
+        ResourceUsage usage = ResourceUsage.measure();
+        for (int i = 0; i < 50 && usage.threads > baseline.threads; i++) {
+            sleep(100);
+            usage = ResourceUsage.measure();
+        }
+        assertTrue(usage.threads <= baseline.threads, "Leaked threads: " + (usage.threads - baseline.threads));
+        if (baseline.openFiles >= 0) {
+            // Idle keep-alive connections may stay open on both ends
+            assertTrue(usage.openFiles - baseline.openFiles <= MAX_EXTRA_OPEN_FILES,
+                    "Open files: " + usage.openFiles + ", baseline: " + baseline.openFiles);
+        }
+        assertTrue(usage.heapBytes - baseline.heapBytes <= MAX_RETAINED_HEAP_BYTES,
+                "Retained heap: " + (usage.heapBytes - baseline.heapBytes) + " bytes");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A snapshot of the JVM's resource usage.
+     */
+    private static class ResourceUsage {
+
+        private final int threads;
+        private final long openFiles;
+        private final long heapBytes;
+
+        private ResourceUsage(int threads, long openFiles, long heapBytes) {
+            this.threads = threads;
+            this.openFiles = openFiles;
+            this.heapBytes = heapBytes;
+        }
+
+        private static ResourceUsage measure() {
+            return new ResourceUsage(countThreads(), countOpenFiles(), measureHeap());
+        }
+
+        /**
+         * Measures the used heap after garbage collection. {@link System#gc()} is only a request and may leave garbage of the last
+         * bootstrap behind, so it's repeated until the used heap stops shrinking.
+         */
+        private static long measureHeap() {
+            MemoryMXBean bean = ManagementFactory.getMemoryMXBean();
+            long heapBytes = Long.MAX_VALUE;
+            for (int i = 0; i < 10; i++) {
+                System.gc();
+                long usedBytes = bean.getHeapMemoryUsage().getUsed();
+                if (usedBytes >= heapBytes) {
+                    break;
+                }
+                heapBytes = usedBytes;
+            }
+            return heapBytes;
+        }
+
+        /**
+         * Counts live threads, except the repository's and the JDK's HTTP keep-alive threads, which are started once and stay.
+         */
+        private static int countThreads() {
+            return (int) Thread.getAllStackTraces().keySet().stream()
+                    .filter(Thread::isAlive)
+                    .filter(thread -> !thread.getName().equals("LocalMavenRepository"))
+                    .filter(thread -> !thread.getName().startsWith("Keep-Alive-"))
+                    .count();
+        }
+
+        /**
+         * Counts open file descriptors, or returns -1 if they can't be counted on this platform.
+         */
+        private static long countOpenFiles() {
+            OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+            if (bean instanceof com.sun.management.UnixOperatingSystemMXBean) {
+                return ((com.sun.management.UnixOperatingSystemMXBean) bean).getOpenFileDescriptorCount();
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Samples thread and open file counts in the background, keeping their peaks.
+     */
+    private static class ResourceMonitor {
+
+        private volatile Thread thread;
+        private volatile int peakThreads;
+        private volatile long peakOpenFiles;
+
+        private void start() {
+            stop();
+            thread = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    sample();
+                    sleep(5);
+                }
+            }, "ResourceMonitor");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void stop() {
+            Thread thread = this.thread;
+            if (thread != null) {
+                thread.interrupt();
+                try {
+                    thread.join();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                this.thread = null;
+                sample();
+            }
+        }
+
+        private void sample() {
+            // The monitor's own thread is not counted
+            int threads = ResourceUsage.countThreads() - (thread != null && thread.isAlive() ? 1 : 0);
+            peakThreads = Math.max(peakThreads, threads);
+            peakOpenFiles = Math.max(peakOpenFiles, ResourceUsage.countOpenFiles());
+        }
+
+        private void close() {
+            stop();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests downloads hedged across two {@link LocalMavenRepository repositories}, see {@link BootstrapOptions#isHedgeRepositories()}.
+ */
+public class HedgedDownloadTest {
+
+    private static final int ARTIFACT_SIZE = 64 * 1024;
+    private static final long HEDGING_DELAY_MILLIS = 100;
+    private static final long SLOW_LATENCY_MILLIS = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMavenRepository firstRepository;
+    private LocalMavenRepository secondRepository;
+    private Dependency dependency;
+    private AmberManifest manifest;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        firstRepository = new LocalMavenRepository();
+        secondRepository = new LocalMavenRepository();
+        dependency = firstRepository.publishSynthetic(1, ARTIFACT_SIZE, 7).get(0);
+        secondRepository.publishSynthetic(1, ARTIFACT_SIZE, 7);
+        manifest = new AmberManifest(tempDir.resolve("libraries"), Collections.singletonList(dependency),
+                Arrays.asList(firstRepository.getRepository(), secondRepository.getRepository()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        firstRepository.close();
+        secondRepository.close();
+    }
+
+    @Test
+    public void testSlowRepositoryHedged() throws IOException {
+        // Arrange
+        firstRepository.addFault(Pattern.quote(firstRepository.getJarPath(dependency))).latency(SLOW_LATENCY_MILLIS);
+        Amber amber = createAmber();
+        long startTime = System.nanoTime();
+
+        // Act
+        List<Path> paths = amber.bootstrap(createOptions());
+
+        // Assert
+        long durationMillis = (System.nanoTime() - startTime) / 1_000_000;
+        assertTrue(durationMillis < SLOW_LATENCY_MILLIS, "Bootstrap took " + durationMillis + " ms");
+        assertEquals(Collections.singletonList(manifest.getDirectory().resolve(dependency.getFileName())), paths);
+        assertArrayEquals(secondRepository.getFile(secondRepository.getJarPath(dependency)), Files.readAllBytes(paths.get(0)));
+        DependencyReport report = amber.getLastBootstrapReport().getDependencies().get(0);
+        assertEquals(DependencyReport.Outcome.DOWNLOADED, report.getOutcome());
+        assertEquals(secondRepository.getRepository().getUrl(), report.getRepository());
+        assertEquals(1, secondRepository.getRequestCount(secondRepository.getJarPath(dependency)));
+        assertEquals(Collections.emptyList(), getHedgedParts());
+    }
+
+    @Test
+    public void testLosingHedgedDownloadDeleted() throws Exception {
+        // Arrange
+        // The first repository responds after the hedging delay, but finishes long before the slowly transferring second one
+        firstRepository.addFault(Pattern.quote(firstRepository.getJarPath(dependency))).latency(HEDGING_DELAY_MILLIS * 5);
+        secondRepository.addFault(Pattern.quote(secondRepository.getJarPath(dependency))).bandwidth(ARTIFACT_SIZE / 4);
+        Amber amber = createAmber();
+
+        // Act
+        amber.bootstrap(createOptions());
+
+        // Assert
+        DependencyReport report = amber.getLastBootstrapReport().getDependencies().get(0);
+        assertEquals(firstRepository.getRepository().getUrl(), report.getRepository());
+        assertEquals(1, secondRepository.getRequestCount(secondRepository.getJarPath(dependency)));
+        // The losing download is cancelled, or deleted once it finishes on its own
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!getHedgedParts().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(Collections.emptyList(), getHedgedParts());
+    }
+
+    @Test
+    public void testFailedRepositoryHedgedWithoutDelay() throws IOException {
+        // Arrange
+        firstRepository.addFault(Pattern.quote(firstRepository.getJarPath(dependency))).status(404);
+        Amber amber = createAmber();
+
+        // Act
+        amber.bootstrap(createOptions());
+
+        // Assert
+        DependencyReport report = amber.getLastBootstrapReport().getDependencies().get(0);
+        assertEquals(secondRepository.getRepository().getUrl(), report.getRepository());
+        assertTrue(Files.isRegularFile(manifest.getDirectory().resolve(dependency.getFileName())));
+        assertEquals(Collections.emptyList(), getHedgedParts());
+    }
+
+    private Amber createAmber() {
+        return new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                new ChecksumValidatorImpl(), new ConsoleLogger(false));
+    }
+
+    private BootstrapOptions createOptions() throws IOException {
+        return BootstrapOptions.builder()
+                .tempDirectory(Files.createDirectories(tempDir.resolve("temp")))
+                .hedgeRepositories(true)
+                .hedgingDelayMillis(HEDGING_DELAY_MILLIS)
+                .retryBackoffMillis(10)
+                .build();
+    }
+
+    /**
+     * Gets the temporary jars of hedged downloads, named after the shared temporary jar with the index of their repository appended.
+     */
+    private List<Path> getHedgedParts() throws IOException {
+        try (Stream<Path> paths = Files.walk(tempDir.resolve("temp"))) {
+            return paths.filter(path -> path.getFileName().toString().matches(".*\\.part\\.\\d+")).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the AIMD maths of {@link HostConcurrencyLimiter}.
+ */
+public class HostConcurrencyLimiterTest {
+
+    private static final String URL = "https://repo.example.com/maven2/";
+
+    @Test
+    public void testAdditiveIncrease() throws InterruptedException {
+        // Arrange
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1, 3);
+
+        // Act & Assert
+        releaseAll(acquire(limiter, 1), success(1));
+        assertEquals(2, limiter.getLimit(URL));
+        // Only releases of a saturated limit grow it, by one over the whole limit
+        for (int i = 0; i < 2; i++) {
+            releaseAll(acquire(limiter, 2), success(1));
+        }
+        assertEquals(2, limiter.getLimit(URL));
+        for (int i = 0; i < 2; i++) {
+            releaseAll(acquire(limiter, 2), success(1));
+        }
+        assertEquals(3, limiter.getLimit(URL));
+        for (int i = 0; i < 10; i++) {
+            releaseAll(acquire(limiter, 3), success(1));
+        }
+        assertEquals(3, limiter.getLimit(URL));
+    }
+
+    @Test
+    public void testOneDecreasePerInFlightDownloads() throws InterruptedException {
+        // Arrange
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(8, 8);
+        List<HostConcurrencyLimiter.Permit> permits = acquire(limiter, 8);
+
+        // Act & Assert
+        releaseAll(permits, DownloadResult.httpError(503, "Service Unavailable", 0));
+        assertEquals(4, limiter.getLimit(URL));
+        // Downloads started after the decrease decrease it again
+        limiter.acquire(URL).release(null);
+        assertEquals(2, limiter.getLimit(URL));
+        limiter.acquire(URL).release(DownloadResult.httpError(500, "Internal Server Error", -1));
+        limiter.acquire(URL).release(DownloadResult.httpError(500, "Internal Server Error", -1));
+        assertEquals(1, limiter.getLimit(URL));
+        // Client errors don't change the limit
+        limiter.acquire(URL).release(DownloadResult.httpError(404, "Not Found", -1));
+        assertEquals(1, limiter.getLimit(URL));
+    }
+
+    @Test
+    public void testLatencyIsTimeToResponseHeaders() throws InterruptedException {
+        // Arrange
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(4, 4);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(URL).release(success(1));
+        }
+
+        // Act & Assert
+        // A large jar transferring for long after fast response headers is not a sign of overload
+        HostConcurrencyLimiter.Permit permit = limiter.acquire(URL);
+        Thread.sleep(50);
+        permit.release(success(1));
+        assertEquals(4, limiter.getLimit(URL));
+        // Slow response headers are
+        limiter.acquire(URL).release(success(100));
+        assertEquals(2, limiter.getLimit(URL));
+    }
+
+    @Test
+    public void testRetryAfterBlocksHost() throws InterruptedException {
+        // Arrange
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(2, 2);
+        limiter.acquire(URL).release(DownloadResult.httpError(429, "Too Many Requests", 200));
+        assertEquals(1, limiter.getLimit(URL));
+
+        // Act
+        long startTime = System.nanoTime();
+        limiter.acquire("https://repo.example.com/other/").release(success(1));
+        long blockedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        // Assert
+        assertTrue(blockedMillis >= 150, "Blocked for " + blockedMillis + " ms");
+        // Other hosts are not blocked
+        startTime = System.nanoTime();
+        limiter.acquire("https://other.example.com/").release(success(1));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < 150);
+    }
+
+    private static List<HostConcurrencyLimiter.Permit> acquire(HostConcurrencyLimiter limiter, int count) throws InterruptedException {
+        List<HostConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiter.acquire(URL));
+        }
+        return permits;
+    }
+
+    private static void releaseAll(List<HostConcurrencyLimiter.Permit> permits, DownloadResult result) {
+        for (HostConcurrencyLimiter.Permit permit : permits) {
+            permit.release(result);
+        }
+    }
+
+    private static DownloadResult success(long responseMillis) {
+        DownloadResult result = DownloadResult.success();
+        result.setResponseNanos(TimeUnit.MILLISECONDS.toNanos(responseMillis));
+        return result;
+    }
+}
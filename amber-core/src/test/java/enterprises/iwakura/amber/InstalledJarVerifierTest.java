@@ -0,0 +1,193 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link InstalledJarVerifier} and verification of installed jars using it.
+ */
+public class InstalledJarVerifierTest {
+
+    private static final Checksum CHECKSUM = new Checksum(ChecksumType.SHA256, "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRecordAndVerify() throws IOException {
+        // Arrange
+        Path jarPath = createJar("a.jar", 10);
+        InstalledJarVerifier verifier = new InstalledJarVerifier();
+
+        // Act
+        boolean verifiedBefore = verifier.isVerified(jarPath);
+        verifier.record(jarPath, CHECKSUM);
+
+        // Assert
+        assertFalse(verifiedBefore);
+        assertTrue(verifier.isVerified(jarPath));
+        assertTrue(verifier.isVerified(tempDir.resolve("libraries").resolve(".").resolve("a.jar")));
+        assertTrue(verifier.isVerified(tempDir.resolve("libraries").resolve("..").resolve("libraries").resolve("a.jar")));
+        assertEquals(CHECKSUM, verifier.getRecordedChecksum(jarPath));
+        assertFalse(verifier.isVerified(createJar("b.jar", 10)));
+        assertNull(verifier.getRecordedChecksum(tempDir.resolve("libraries").resolve("b.jar")));
+    }
+
+    @Test
+    public void testChangedJarIsNotVerified() throws IOException {
+        // Arrange
+        Path modifiedJar = createJar("modified.jar", 10);
+        Path resizedJar = createJar("resized.jar", 10);
+        Path replacedJar = createJar("replaced.jar", 10);
+        Path deletedJar = createJar("deleted.jar", 10);
+        InstalledJarVerifier verifier = new InstalledJarVerifier();
+        for (Path jarPath : new Path[]{modifiedJar, resizedJar, replacedJar, deletedJar}) {
+            verifier.record(jarPath, CHECKSUM);
+        }
+
+        // Act
+        Files.setLastModifiedTime(modifiedJar, FileTime.fromMillis(Files.getLastModifiedTime(modifiedJar).toMillis() - 10_000));
+
+        FileTime lastModified = Files.getLastModifiedTime(resizedJar);
+        Files.write(resizedJar, new byte[11]);
+        Files.setLastModifiedTime(resizedJar, lastModified);
+
+        // A different file with the same size and modification time
+        Path replacement = Files.write(tempDir.resolve("replacement.jar"), new byte[10]);
+        Files.setLastModifiedTime(replacement, Files.getLastModifiedTime(replacedJar));
+        Files.move(replacement, replacedJar, StandardCopyOption.REPLACE_EXISTING);
+
+        Files.delete(deletedJar);
+
+        // Assert
+        assertFalse(verifier.isVerified(modifiedJar), "Modified jar");
+        assertFalse(verifier.isVerified(resizedJar), "Resized jar");
+        if (!"null".equals(String.valueOf(Files.readAttributes(replacedJar, BasicFileAttributes.class).fileKey()))) {
+            assertFalse(verifier.isVerified(replacedJar), "Replaced jar");
+        }
+        assertFalse(verifier.isVerified(deletedJar), "Deleted jar");
+        assertEquals(CHECKSUM, verifier.getRecordedChecksum(modifiedJar));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        // Arrange
+        Path jarPath = createJar("a.jar", 10);
+        Path otherJarPath = createJar("b.jar", 20);
+        InstalledJarVerifier verifier = new InstalledJarVerifier();
+        verifier.record(jarPath, CHECKSUM);
+        verifier.record(otherJarPath, new Checksum(ChecksumType.SHA1, "a94a8fe5ccb19ba61c4c0873d391e987982fbbd3"));
+
+        // Act
+        verifier.save(tempDir.resolve("state"));
+        InstalledJarVerifier loaded = InstalledJarVerifier.load(tempDir.resolve("state"));
+
+        // Assert
+        assertTrue(loaded.isVerified(jarPath));
+        assertTrue(loaded.isVerified(otherJarPath));
+        assertEquals(CHECKSUM, loaded.getRecordedChecksum(jarPath));
+        assertEquals(new Checksum(ChecksumType.SHA1, "a94a8fe5ccb19ba61c4c0873d391e987982fbbd3"), loaded.getRecordedChecksum(otherJarPath));
+    }
+
+    @Test
+    public void testLoadSkipsCorruptedEntries() throws IOException {
+        // Arrange
+        Path jarPath = createJar("a.jar", 10);
+        Path stateDirectory = Files.createDirectories(tempDir.resolve("state"));
+        String properties = ""
+                + "jar.0.path=" + escape(jarPath) + "\n"
+                + "jar.0.size=ten\n"
+                + "jar.0.modified=0\n"
+                + "jar.0.checksum=" + CHECKSUM + "\n"
+                + "jar.1.path=" + escape(tempDir.resolve("b.jar")) + "\n"
+                + "jar.1.size=10\n"
+                + "jar.1.modified=0\n"
+                + "jar.1.key=null\n"
+                + "jar.1.checksum=" + CHECKSUM + "\n";
+        Files.write(stateDirectory.resolve(InstalledJarVerifier.FILE_NAME), properties.getBytes(StandardCharsets.ISO_8859_1));
+
+        // Act
+        InstalledJarVerifier loaded = InstalledJarVerifier.load(stateDirectory);
+        InstalledJarVerifier empty = InstalledJarVerifier.load(tempDir.resolve("missing"));
+
+        // Assert
+        assertNull(loaded.getRecordedChecksum(jarPath));
+        assertEquals(CHECKSUM, loaded.getRecordedChecksum(tempDir.resolve("b.jar")));
+        assertNull(empty.getRecordedChecksum(jarPath));
+    }
+
+    @Test
+    public void testCalculateChecksum() throws IOException, NoSuchAlgorithmException {
+        // Arrange
+        byte[] content = new byte[1_000_000];
+        new Random(10).nextBytes(content);
+        Path file = Files.write(tempDir.resolve("a.jar"), content);
+        Path emptyFile = Files.write(tempDir.resolve("empty.jar"), new byte[0]);
+
+        // Act & Assert
+        for (ChecksumType checksumType : ChecksumType.values()) {
+            assertEquals(LocalMavenRepository.checksum(checksumType, content).getValue(), InstalledJarVerifier.calculateChecksum(file, checksumType));
+            assertEquals(LocalMavenRepository.checksum(checksumType, new byte[0]).getValue(), InstalledJarVerifier.calculateChecksum(emptyFile, checksumType));
+        }
+    }
+
+    @Test
+    public void testTamperedJarIsRedownloaded() throws IOException {
+        try (LocalMavenRepository repository = new LocalMavenRepository()) {
+            // Arrange
+            List<Dependency> dependencies = repository.publishSynthetic(2, 1024, 10);
+            AmberManifest manifest = new AmberManifest(tempDir.resolve("libraries"), dependencies,
+                    Collections.singletonList(repository.getRepository()));
+            Amber amber = new Amber(new TestManifestLoader(Collections.singletonList(manifest)), DependencyDownloader.defaultDownloaders(),
+                    new ChecksumValidatorImpl(), new ConsoleLogger(false));
+            BootstrapOptions options = BootstrapOptions.builder()
+                    .tempDirectory(Files.createDirectories(tempDir.resolve("temp")))
+                    .warmStart(false)
+                    .verifyExisting(true)
+                    .build();
+            List<Path> paths = amber.bootstrap(options);
+            byte[] jar = Files.readAllBytes(paths.get(0));
+            byte[] tamperedJar = jar.clone();
+            tamperedJar[tamperedJar.length / 2] ^= 1;
+            Files.write(paths.get(0), tamperedJar);
+            repository.resetRequestCount();
+
+            // Act
+            amber.bootstrap(options);
+
+            // Assert
+            assertArrayEquals(jar, Files.readAllBytes(paths.get(0)));
+            assertEquals(1, repository.getRequestCount(repository.getJarPath(dependencies.get(0))));
+            for (ChecksumType checksumType : ChecksumType.values()) {
+                String checksumPath = repository.getJarPath(dependencies.get(1)) + "." + checksumType.getFileExtension();
+                assertEquals(0, repository.getRequestCount(checksumPath), "Verified jar was checked again");
+            }
+            assertEquals(0, repository.getRequestCount(repository.getJarPath(dependencies.get(1))));
+        }
+    }
+
+    private Path createJar(String name, int size) throws IOException {
+        return Files.write(Files.createDirectories(tempDir.resolve("libraries")).resolve(name), new byte[size]);
+    }
+
+    private static String escape(Path path) {
+        return path.toAbsolutePath().toString().replace("\\", "\\\\").replace(":", "\\:");
+    }
+}
@@ -0,0 +1,139 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link JarIndex}.
+ */
+public class JarIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testGetDirectory() {
+        assertEquals("com/google/gson/", JarIndex.getDirectory("com/google/gson/Gson.class"));
+        assertEquals("META-INF/services/", JarIndex.getDirectory("META-INF/services/java.sql.Driver"));
+        assertEquals("a/", JarIndex.getDirectory("a/"));
+        assertEquals("", JarIndex.getDirectory("Root.class"));
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        // Arrange
+        Path jarPath = createJar("a.jar", "Root.class", "a/", "a/A.class", "a/b/B.class", "META-INF/versions/11/a/c/C.class",
+                "META-INF/versions/");
+
+        // Act
+        Set<String> directories = JarIndex.scan(jarPath);
+
+        // Assert
+        assertEquals(new HashSet<>(Arrays.asList("", "a/", "a/b/", "META-INF/versions/11/a/c/", "a/c/", "META-INF/versions/")), directories);
+    }
+
+    @Test
+    public void testJarIndexedUntilChanged() throws IOException {
+        // Arrange
+        Path jarPath = createJar("a.jar", "a/A.class");
+        JarIndex index = new JarIndex();
+        Set<String> directories = index.getDirectories(jarPath);
+        FileTime lastModified = Files.getLastModifiedTime(jarPath);
+
+        // Act
+        // Same size and modification time, so the jar is not scanned again
+        createJar("a.jar", "b/B.class");
+        Files.setLastModifiedTime(jarPath, lastModified);
+        Set<String> unchangedDirectories = index.getDirectories(jarPath);
+        Files.setLastModifiedTime(jarPath, FileTime.fromMillis(lastModified.toMillis() + 10_000));
+        Set<String> changedDirectories = index.getDirectories(jarPath);
+
+        // Assert
+        assertEquals(Collections.singleton("a/"), directories);
+        assertEquals(Collections.singleton("a/"), unchangedDirectories);
+        assertEquals(Collections.singleton("b/"), changedDirectories);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        // Arrange
+        Path jarPath = createJar("a.jar", "Root.class", "a/A.class");
+        Path otherJarPath = createJar("b.jar", "b/B.class");
+        JarIndex index = new JarIndex();
+        index.getDirectories(jarPath);
+        index.getDirectories(otherJarPath);
+
+        // Act
+        index.save(tempDir.resolve("state"));
+        JarIndex loaded = JarIndex.load(tempDir.resolve("state"));
+
+        // Assert
+        assertEquals(index.jars, loaded.jars);
+        assertEquals(new HashSet<>(Arrays.asList("", "a/")), loaded.getDirectories(jarPath));
+    }
+
+    @Test
+    public void testLoadSkipsCorruptedEntries() throws IOException {
+        // Arrange
+        Path stateDirectory = Files.createDirectories(tempDir.resolve("state"));
+        String properties = ""
+                + "jar.0.path=a.jar\n"
+                + "jar.0.size=ten\n"
+                + "jar.0.modified=0\n"
+                + "jar.0.directories=a/\n"
+                + "jar.1.path=b.jar\n"
+                + "jar.1.size=10\n"
+                + "jar.1.modified=0\n";
+        Files.write(stateDirectory.resolve(JarIndex.FILE_NAME), properties.getBytes(StandardCharsets.ISO_8859_1));
+
+        // Act
+        JarIndex loaded = JarIndex.load(stateDirectory);
+        JarIndex empty = JarIndex.load(tempDir.resolve("missing"));
+
+        // Assert
+        assertTrue(loaded.jars.isEmpty());
+        assertTrue(empty.jars.isEmpty());
+    }
+
+    @Test
+    public void testRetain() throws IOException {
+        // Arrange
+        Path jarPath = createJar("a.jar", "a/A.class");
+        Path removedJarPath = createJar("b.jar", "b/B.class");
+        JarIndex index = new JarIndex();
+        index.getDirectories(jarPath);
+        index.getDirectories(removedJarPath);
+
+        // Act
+        index.retain(Collections.singletonList(tempDir.resolve(".").resolve("a.jar")));
+
+        // Assert
+        assertEquals(Collections.singleton(jarPath.toAbsolutePath().normalize().toString()), index.jars.keySet());
+    }
+
+    private Path createJar(String name, String... entries) throws IOException {
+        Path path = tempDir.resolve(name);
+        try (OutputStream fileStream = Files.newOutputStream(path); JarOutputStream outputStream = new JarOutputStream(fileStream)) {
+            for (String entry : entries) {
+                outputStream.putNextEntry(new ZipEntry(entry));
+                outputStream.closeEntry();
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,132 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Amber#launch(String, String[])} with a main class from a dependency served by a {@link LocalMavenRepository}.
+ */
+public class LaunchTest {
+
+    private static final String CLASS_LOADER_PROPERTY = "amber.test.launch.classLoader";
+    private static final String ARGUMENTS_PROPERTY = "amber.test.launch.arguments";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMavenRepository repository;
+    private ClassLoader contextClassLoader;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new LocalMavenRepository();
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        Dependency dependency = repository.publish("com.example:launched:1.0.0", createJar(RecordingMain.class, ThrowingMain.class));
+
+        // Amber.launch loads the manifests from the context class loader
+        AmberManifest manifest = new AmberManifest(tempDir.resolve("libraries"), new ArrayList<>(Collections.singletonList(dependency)),
+                Collections.singletonList(repository.getRepository()));
+        Path indexPath = tempDir.resolve("classpath").resolve(ManifestLoader.INDEX_FILE_PATH);
+        Files.createDirectories(indexPath.getParent());
+        try (OutputStream outputStream = Files.newOutputStream(indexPath)) {
+            AmberIndex.write(manifest, outputStream);
+        }
+        URLClassLoader manifestClassLoader = new URLClassLoader(new URL[]{tempDir.resolve("classpath").toUri().toURL()}, contextClassLoader);
+        Thread.currentThread().setContextClassLoader(manifestClassLoader);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+        System.clearProperty(CLASS_LOADER_PROPERTY);
+        System.clearProperty(ARGUMENTS_PROPERTY);
+        repository.close();
+    }
+
+    @Test
+    public void testLaunch() throws Exception {
+        // Act
+        Amber.launch(RecordingMain.class.getName(), new String[]{"first", "second"});
+
+        // Assert
+        assertEquals(AmberClassLoader.class.getName(), System.getProperty(CLASS_LOADER_PROPERTY));
+        assertEquals("first,second", System.getProperty(ARGUMENTS_PROPERTY));
+        assertTrue(Files.isRegularFile(tempDir.resolve("libraries").resolve("launched-1.0.0.jar")));
+        assertTrue(Thread.currentThread().getContextClassLoader() instanceof AmberClassLoader);
+    }
+
+    @Test
+    public void testLaunchPropagatesExceptionUnwrapped() {
+        // Act
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> Amber.launch(ThrowingMain.class.getName(), new String[0]));
+
+        // Assert
+        assertEquals("Thrown by main", exception.getMessage());
+        assertEquals(AmberClassLoader.class.getName(), System.getProperty(CLASS_LOADER_PROPERTY));
+    }
+
+    @Test
+    public void testLaunchMissingMainClass() {
+        // Act & Assert
+        assertThrows(ClassNotFoundException.class, () -> Amber.launch("com.example.Missing", new String[0]));
+    }
+
+    private static byte[] createJar(Class<?>... classes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JarOutputStream outputStream = new JarOutputStream(buffer)) {
+            for (Class<?> clazz : classes) {
+                String name = clazz.getName().replace('.', '/') + ".class";
+                outputStream.putNextEntry(new ZipEntry(name));
+                try (InputStream inputStream = clazz.getResourceAsStream("/" + name)) {
+                    byte[] chunk = new byte[8192];
+                    int read;
+                    while ((read = inputStream.read(chunk)) != -1) {
+                        outputStream.write(chunk, 0, read);
+                    }
+                }
+                outputStream.closeEntry();
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * A main class recording the class loader it runs in and its arguments.
+     */
+    public static class RecordingMain {
+
+        public static void main(String[] args) {
+            System.setProperty(CLASS_LOADER_PROPERTY, RecordingMain.class.getClassLoader().getClass().getName());
+            System.setProperty(ARGUMENTS_PROPERTY, String.join(",", args));
+        }
+    }
+
+    /**
+     * A main class throwing an exception.
+     */
+    public static class ThrowingMain {
+
+        public static void main(String[] args) {
+            System.setProperty(CLASS_LOADER_PROPERTY, ThrowingMain.class.getClassLoader().getClass().getName());
+            throw new IllegalStateException("Thrown by main");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link LibraryPack}.
+ */
+public class LibraryPackTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testFirstEntryWinsAndServicesMerge() throws IOException {
+        // Arrange
+        Path first = createJar("first.jar", false, entries(
+                "a/A.class", "first",
+                "META-INF/services/a.Service", "a.First"));
+        Path second = createJar("second.jar", false, entries(
+                "a/A.class", "second",
+                "b/B.class", "second",
+                "META-INF/services/a.Service", "a.Second\n"));
+
+        // Act
+        LibraryPack pack = LibraryPack.build(tempDir.resolve("state"), Arrays.asList(first, second));
+
+        // Assert
+        assertTrue(pack.isBuiltFrom(Arrays.asList(second, first)));
+        try (ZipFile zipFile = new ZipFile(pack.getPath().toFile())) {
+            assertEquals("first", read(zipFile, "a/A.class"));
+            assertEquals("second", read(zipFile, "b/B.class"));
+            assertEquals("a.First\na.Second\n", read(zipFile, "META-INF/services/a.Service"));
+            Properties provenance = readProperties(zipFile, LibraryPack.PROVENANCE_ENTRY_NAME);
+            assertEquals("0", provenance.getProperty("a/A.class"));
+            assertEquals("1", provenance.getProperty("b/B.class"));
+            assertNotNull(zipFile.getEntry(LibraryPack.MANIFESTS_DIRECTORY + "0.MF"));
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("a/A.class").getMethod());
+        }
+    }
+
+    @Test
+    public void testVersionedEntriesDontShadowOtherJars() throws IOException {
+        // Arrange
+        Path plain = createJar("plain.jar", false, entries(
+                "a/A.class", "plain",
+                "META-INF/versions/11/c/C.class", "ignored by its own jar"));
+        Path multiRelease = createJar("multi-release.jar", true, entries(
+                "a/A.class", "multi-release",
+                "META-INF/versions/11/a/A.class", "multi-release 11",
+                "b/B.class", "multi-release",
+                "META-INF/versions/11/b/B.class", "multi-release 11",
+                "META-INF/versions/17/d/D.class", "multi-release 17"));
+
+        // Act
+        LibraryPack pack = LibraryPack.build(tempDir.resolve("state"), Arrays.asList(plain, multiRelease));
+
+        // Assert
+        try (JarFile jarFile = new JarFile(pack.getPath().toFile())) {
+            assertEquals("true", jarFile.getManifest().getMainAttributes().getValue("Multi-Release"));
+            assertEquals("plain", read(jarFile, "a/A.class"));
+            assertNull(jarFile.getEntry("META-INF/versions/11/a/A.class"));
+            assertEquals("multi-release 11", read(jarFile, "META-INF/versions/11/b/B.class"));
+            assertEquals("multi-release 17", read(jarFile, "META-INF/versions/17/d/D.class"));
+            assertNull(jarFile.getEntry("META-INF/versions/11/c/C.class"));
+        }
+    }
+
+    @Test
+    public void testSignedJarsAreNotPacked() throws IOException {
+        // Arrange
+        Path signed = createJar("signed.jar", true, entries(
+                "a/A.class", "signed",
+                "META-INF/SIGNER.SF", "",
+                "META-INF/SIGNER.RSA", ""));
+        Path plain = createJar("plain.jar", false, entries("a/A.class", "plain"));
+
+        // Act
+        LibraryPack pack = LibraryPack.build(tempDir.resolve("state"), Arrays.asList(signed, plain));
+
+        // Assert
+        assertFalse(pack.getJars().get(0).isPacked());
+        assertTrue(pack.getJars().get(1).isPacked());
+        try (JarFile jarFile = new JarFile(pack.getPath().toFile())) {
+            assertEquals("plain", read(jarFile, "a/A.class"));
+            assertNull(jarFile.getManifest().getMainAttributes().getValue("Multi-Release"));
+        }
+        assertEquals(pack.getJars(), LibraryPack.load(tempDir.resolve("state")).getJars());
+    }
+
+    private static Map<String, String> entries(String... namesAndContents) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndContents.length; i += 2) {
+            entries.put(namesAndContents[i], namesAndContents[i + 1]);
+        }
+        return entries;
+    }
+
+    private Path createJar(String name, boolean multiRelease, Map<String, String> entries) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (multiRelease) {
+            manifest.getMainAttributes().putValue("Multi-Release", "true");
+        }
+        Path path = tempDir.resolve(name);
+        try (OutputStream fileStream = Files.newOutputStream(path); JarOutputStream outputStream = new JarOutputStream(fileStream, manifest)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                outputStream.putNextEntry(new ZipEntry(entry.getKey()));
+                outputStream.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                outputStream.closeEntry();
+            }
+        }
+        return path;
+    }
+
+    private static String read(ZipFile zipFile, String name) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        assertNotNull(entry, "Missing entry " + name);
+        return new String(LibraryPack.readEntry(zipFile, entry), StandardCharsets.UTF_8);
+    }
+
+    private static Properties readProperties(ZipFile zipFile, String name) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = zipFile.getInputStream(zipFile.getEntry(name))) {
+            properties.load(inputStream);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,108 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ManifestLoader#parseManifest(Manifest)}.
+ */
+public class ManifestLoaderTest {
+
+    private final ManifestLoader manifestLoader = Collections::emptyList;
+
+    @Test
+    public void testPinnedChecksums() {
+        // Arrange
+        Manifest manifest = createManifest("com.example:a:1.0.0, com.example:b:1.0.0, com.example:c:1.0.0");
+        manifest.getMainAttributes().putValue(ManifestLoader.ATTRIBUTE_AMBER_CHECKSUMS,
+                "com.example:a:1.0.0=SHA256:9f86d081, com.example:c:1.0.0=sha1:a94a8fe5, com.example:unknown:1.0.0=MD5:098f6bcd");
+
+        // Act
+        AmberManifest amberManifest = manifestLoader.parseManifest(manifest);
+
+        // Assert
+        assertEquals(3, amberManifest.getDependencies().size());
+        assertEquals(new Checksum(ChecksumType.SHA256, "9f86d081"), amberManifest.getDependencies().get(0).getPinnedChecksum());
+        assertNull(amberManifest.getDependencies().get(1).getPinnedChecksum());
+        assertEquals(new Checksum(ChecksumType.SHA1, "a94a8fe5"), amberManifest.getDependencies().get(2).getPinnedChecksum());
+    }
+
+    @Test
+    public void testEmptyPinnedChecksums() {
+        // Arrange
+        Manifest manifest = createManifest("com.example:a:1.0.0");
+        manifest.getMainAttributes().putValue(ManifestLoader.ATTRIBUTE_AMBER_CHECKSUMS, "");
+
+        // Act
+        AmberManifest amberManifest = manifestLoader.parseManifest(manifest);
+
+        // Assert
+        assertNull(amberManifest.getDependencies().get(0).getPinnedChecksum());
+    }
+
+    @Test
+    public void testInvalidPinnedChecksum() {
+        // Arrange
+        Manifest manifest = createManifest("com.example:a:1.0.0");
+        manifest.getMainAttributes().putValue(ManifestLoader.ATTRIBUTE_AMBER_CHECKSUMS, "com.example:a:1.0.0=CRC32:9f86d081");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> manifestLoader.parseManifest(manifest));
+    }
+
+    @Test
+    public void testRoutes() {
+        // Arrange
+        Manifest manifest = createManifest("com.example:a:1.0.0, com.example:b:1.0-SNAPSHOT, com.example:c:1.0.0");
+        manifest.getMainAttributes().putValue(ManifestLoader.ATTRIBUTE_AMBER_ROUTES,
+                "com.example:a:1.0.0=0;;1234, com.example:b:1.0-SNAPSHOT=1;1.0-20240101.000000-1;, com.example:unknown:1.0.0=0;;1");
+
+        // Act
+        AmberManifest amberManifest = manifestLoader.parseManifest(manifest);
+
+        // Assert
+        Repository central = amberManifest.getRepositories().get(0);
+        Repository snapshots = amberManifest.getRepositories().get(1);
+        assertEquals(new DependencyRoute(central, null, 1234), amberManifest.getDependencies().get(0).getRoute());
+        assertEquals(new DependencyRoute(snapshots, "1.0-20240101.000000-1", -1), amberManifest.getDependencies().get(1).getRoute());
+        assertNull(amberManifest.getDependencies().get(2).getRoute());
+    }
+
+    @Test
+    public void testRouteToUnknownRepository() {
+        // Arrange
+        Manifest manifest = createManifest("com.example:a:1.0.0");
+        manifest.getMainAttributes().putValue(ManifestLoader.ATTRIBUTE_AMBER_ROUTES, "com.example:a:1.0.0=2;;1234");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> manifestLoader.parseManifest(manifest));
+    }
+
+    @Test
+    public void testNotAmberManifest() {
+        // Arrange
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        // Act
+        AmberManifest amberManifest = manifestLoader.parseManifest(manifest);
+
+        // Assert
+        assertNull(amberManifest);
+    }
+
+    private static Manifest createManifest(String dependencies) {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue(ManifestLoader.ATTRIBUTE_AMBER_DIRECTORY, "libraries");
+        attributes.putValue(ManifestLoader.ATTRIBUTE_AMBER_DEPENDENCIES, dependencies);
+        attributes.putValue(ManifestLoader.ATTRIBUTE_AMBER_MAVEN_REPOSITORIES, "https://repo1.maven.org/maven2/, https://repo.example.com/");
+        return manifest;
+    }
+}
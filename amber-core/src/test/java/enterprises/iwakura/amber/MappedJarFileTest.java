@@ -0,0 +1,158 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.JarFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests parsing and reading of {@link MappedJarFile}.
+ */
+public class MappedJarFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadStoredAndDeflatedEntries() throws IOException {
+        // Arrange
+        byte[] compressible = new byte[100_000];
+        byte[] random = new byte[10_000];
+        new Random(17).nextBytes(random);
+        Path jarPath = tempDir.resolve("entries.jar");
+        try (OutputStream fileStream = Files.newOutputStream(jarPath); JarOutputStream outputStream = new JarOutputStream(fileStream, manifest(false))) {
+            writeEntry(outputStream, "a/Deflated.class", compressible, false);
+            writeEntry(outputStream, "a/Stored.class", random, true);
+        }
+
+        // Act
+        MappedJarFile jarFile = MappedJarFile.open(jarPath);
+
+        // Assert
+        int deflated = jarFile.getEntry("a/Deflated.class");
+        int stored = jarFile.getEntry("a/Stored.class");
+        assertEquals(-1, jarFile.getEntry("a/Missing.class"));
+        assertEquals(compressible.length, jarFile.getSize(deflated));
+        assertArrayEquals(compressible, jarFile.readAllBytes(deflated));
+        assertNull(jarFile.getStoredContent(deflated));
+        assertArrayEquals(random, jarFile.readAllBytes(stored));
+        ByteBuffer content = jarFile.getStoredContent(stored);
+        byte[] contentBytes = new byte[content.remaining()];
+        content.get(contentBytes);
+        assertArrayEquals(random, contentBytes);
+        assertEquals("1.0", jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.MANIFEST_VERSION));
+        assertFalse(jarFile.isSigned());
+    }
+
+    @Test
+    public void testPrependedData() throws IOException {
+        // Arrange
+        Path jarPath = tempDir.resolve("prepended.jar");
+        try (OutputStream fileStream = Files.newOutputStream(jarPath)) {
+            fileStream.write("#!/bin/sh\nexec java -jar \"$0\"\n".getBytes(StandardCharsets.US_ASCII));
+            try (JarOutputStream outputStream = new JarOutputStream(fileStream, manifest(false))) {
+                writeEntry(outputStream, "a/A.class", bytes("A"), false);
+            }
+        }
+
+        // Act
+        MappedJarFile jarFile = MappedJarFile.open(jarPath);
+
+        // Assert
+        assertArrayEquals(bytes("A"), jarFile.readAllBytes(jarFile.getEntry("a/A.class")));
+    }
+
+    @Test
+    public void testZip64EndOfCentralDirectory() throws IOException {
+        // Arrange
+        int entryCount = 0xFFFF + 100;
+        Path jarPath = tempDir.resolve("zip64.jar");
+        try (ZipOutputStream outputStream = new ZipOutputStream(Files.newOutputStream(jarPath))) {
+            for (int i = 0; i < entryCount; i++) {
+                writeEntry(outputStream, "a/Entry" + i + ".class", bytes(String.valueOf(i)), true);
+            }
+        }
+
+        // Act
+        MappedJarFile jarFile = MappedJarFile.open(jarPath);
+
+        // Assert
+        assertEquals(entryCount, jarFile.headerPositions.length);
+        for (int i = 0; i < entryCount; i += 997) {
+            assertArrayEquals(bytes(String.valueOf(i)), jarFile.readAllBytes(jarFile.getEntry("a/Entry" + i + ".class")));
+        }
+        assertArrayEquals(bytes(String.valueOf(entryCount - 1)), jarFile.readAllBytes(jarFile.getEntry("a/Entry" + (entryCount - 1) + ".class")));
+    }
+
+    @Test
+    public void testMultiReleaseEntries() throws IOException {
+        // Arrange
+        Path jarPath = tempDir.resolve("multi-release.jar");
+        try (OutputStream fileStream = Files.newOutputStream(jarPath); JarOutputStream outputStream = new JarOutputStream(fileStream, manifest(true))) {
+            writeEntry(outputStream, "a/A.class", bytes("8"), false);
+            writeEntry(outputStream, "META-INF/versions/9/a/A.class", bytes("9"), false);
+            writeEntry(outputStream, "META-INF/versions/1000/a/A.class", bytes("1000"), false);
+        }
+
+        // Act
+        MappedJarFile jarFile = MappedJarFile.open(jarPath);
+
+        // Assert
+        String expected = JarFiles.getJavaFeatureVersion() >= 9 ? "9" : "8";
+        assertArrayEquals(bytes(expected), jarFile.readAllBytes(jarFile.getEntry("a/A.class")));
+        assertArrayEquals(bytes("8"), jarFile.readAllBytes(jarFile.getUnversionedEntry("a/A.class")));
+    }
+
+    @Test
+    public void testMalformedJar() throws IOException {
+        // Arrange
+        Path jarPath = tempDir.resolve("malformed.jar");
+        Files.write(jarPath, bytes("not a jar"));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> MappedJarFile.open(jarPath));
+    }
+
+    private static Manifest manifest(boolean multiRelease) {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (multiRelease) {
+            manifest.getMainAttributes().putValue("Multi-Release", "true");
+        }
+        return manifest;
+    }
+
+    private static void writeEntry(ZipOutputStream outputStream, String name, byte[] content, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        outputStream.putNextEntry(entry);
+        outputStream.write(content);
+        outputStream.closeEntry();
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+package enterprises.iwakura.amber;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link RepositoryStatistics}.
+ */
+public class RepositoryStatisticsTest {
+
+    private static final Repository FAST = new Repository(RepositoryType.MAVEN, "https://fast.example.com/");
+    private static final Repository SLOW = new Repository(RepositoryType.MAVEN, "https://slow.example.com/");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testMissesDontSkewLatency() {
+        // Arrange
+        RepositoryStatistics statistics = new RepositoryStatistics();
+
+        // Act
+        for (int i = 1; i <= 10; i++) {
+            statistics.recordLatency(FAST, i * 10, true);
+            statistics.recordLatency(FAST, 1, false);
+        }
+
+        // Assert
+        assertEquals(50, statistics.getLatencyPercentile(FAST, 0.5));
+        assertEquals(100, statistics.getLatencyPercentile(FAST, 0.95));
+        assertEquals(-1, statistics.getLatencyPercentile(SLOW, 0.5));
+    }
+
+    @Test
+    public void testOrder() {
+        // Arrange
+        RepositoryStatistics statistics = new RepositoryStatistics();
+        for (int i = 0; i < 10; i++) {
+            statistics.record(SLOW, true);
+            statistics.recordLatency(SLOW, 100, true);
+            // Responds fast, but rarely has the dependency
+            statistics.record(FAST, i == 0);
+            statistics.recordLatency(FAST, i == 0 ? 50 : 30, i == 0);
+        }
+
+        // Act & Assert
+        assertEquals(Arrays.asList(SLOW, FAST), statistics.order(Arrays.asList(FAST, SLOW)));
+        Repository unmeasured = new Repository(RepositoryType.MAVEN, "https://new.example.com/");
+        assertEquals(Arrays.asList(unmeasured, SLOW, FAST), statistics.order(Arrays.asList(FAST, SLOW, unmeasured)));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        // Arrange
+        RepositoryStatistics statistics = new RepositoryStatistics();
+        for (int i = 0; i < RepositoryStatistics.MAX_SAMPLES + 10; i++) {
+            statistics.record(FAST, i % 2 == 0);
+            statistics.recordLatency(FAST, i, i % 2 == 0);
+        }
+
+        // Act
+        statistics.save(tempDir);
+        RepositoryStatistics loaded = RepositoryStatistics.load(tempDir);
+
+        // Assert
+        assertEquals(statistics.getLatencyPercentile(FAST, 0.5), loaded.getLatencyPercentile(FAST, 0.5));
+        assertEquals(statistics.order(Arrays.asList(SLOW, FAST)), loaded.order(Arrays.asList(SLOW, FAST)));
+        RepositoryStatistics.Entry entry = loaded.entries.get(FAST.getUrl());
+        assertEquals(RepositoryStatistics.MAX_SAMPLES + 10, entry.attempts);
+        assertEquals(statistics.entries.get(FAST.getUrl()).missLatencies.toString(), entry.missLatencies.toString());
+    }
+}
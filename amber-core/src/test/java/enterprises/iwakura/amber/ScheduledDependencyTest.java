@@ -0,0 +1,197 @@
+package enterprises.iwakura.amber;
+
+import enterprises.iwakura.amber.impl.ChecksumValidatorImpl;
+import enterprises.iwakura.amber.impl.ConsoleLogger;
+import enterprises.iwakura.amber.impl.TestManifestLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests merging of dependencies required by multiple manifests into {@link ScheduledDependency scheduled dependencies}.
+ */
+public class ScheduledDependencyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMavenRepository repository;
+    private LocalMavenRepository otherRepository;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new LocalMavenRepository();
+        otherRepository = new LocalMavenRepository();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+        otherRepository.close();
+    }
+
+    @Test
+    public void testScheduleDependencies() {
+        // Arrange
+        Dependency first = new Dependency("com.example:first:1.0.0");
+        Dependency second = new Dependency("com.example:second:1.0.0");
+        Dependency third = new Dependency("com.example:third:1.0.0");
+        AmberManifest firstManifest = new AmberManifest(tempDir.resolve("first"), Arrays.asList(first, second, first),
+                Collections.singletonList(repository.getRepository()));
+        AmberManifest secondManifest = new AmberManifest(tempDir.resolve("second"), Arrays.asList(third, new Dependency(second.getNotation())),
+                Arrays.asList(otherRepository.getRepository(), repository.getRepository()));
+        Amber amber = createAmber(Arrays.asList(firstManifest, secondManifest));
+
+        // Act
+        Collection<ScheduledDependency> scheduledDependencies = amber.scheduleDependencies(Arrays.asList(firstManifest, secondManifest));
+
+        // Assert
+        assertEquals(3, scheduledDependencies.size());
+        ScheduledDependency[] scheduled = scheduledDependencies.toArray(new ScheduledDependency[0]);
+        assertEquals(first, scheduled[0].getDependency());
+        assertEquals(second, scheduled[1].getDependency());
+        assertEquals(third, scheduled[2].getDependency());
+        assertEquals(Collections.singletonList(firstManifest), scheduled[0].getManifests());
+        assertEquals(2, scheduled[1].getManifests().size());
+        assertSame(firstManifest, scheduled[1].getManifests().get(0));
+        assertSame(secondManifest, scheduled[1].getManifests().get(1));
+        assertEquals(Arrays.asList(repository.getRepository(), otherRepository.getRepository()), scheduled[1].getRepositories());
+    }
+
+    @Test
+    public void testPinnedDeclarationPreferred() {
+        // Arrange
+        Dependency unpinned = new Dependency("com.example:pinned:1.0.0");
+        Dependency pinned = new Dependency("com.example:pinned:1.0.0");
+        pinned.setPinnedChecksum(new Checksum(ChecksumType.SHA256, "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08"));
+        Dependency other = new Dependency("com.example:other:1.0.0");
+        AmberManifest firstManifest = new AmberManifest(tempDir.resolve("first"), Arrays.asList(unpinned, other),
+                Collections.singletonList(repository.getRepository()));
+        AmberManifest secondManifest = new AmberManifest(tempDir.resolve("second"), Collections.singletonList(pinned),
+                Collections.singletonList(otherRepository.getRepository()));
+        Amber amber = createAmber(Arrays.asList(firstManifest, secondManifest));
+
+        // Act
+        ScheduledDependency[] scheduled = amber.scheduleDependencies(Arrays.asList(firstManifest, secondManifest)).toArray(new ScheduledDependency[0]);
+
+        // Assert
+        assertEquals(2, scheduled.length);
+        assertSame(pinned, scheduled[0].getDependency());
+        assertEquals(Arrays.asList(firstManifest, secondManifest), scheduled[0].getManifests());
+        assertEquals(Arrays.asList(repository.getRepository(), otherRepository.getRepository()), scheduled[0].getRepositories());
+        assertSame(other, scheduled[1].getDependency());
+    }
+
+    @Test
+    public void testConflictingPinnedChecksumsLogged() {
+        // Arrange
+        Dependency first = new Dependency("com.example:pinned:1.0.0");
+        first.setPinnedChecksum(new Checksum(ChecksumType.SHA256, "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08"));
+        Dependency sameChecksum = new Dependency("com.example:pinned:1.0.0");
+        sameChecksum.setPinnedChecksum(new Checksum(ChecksumType.SHA256, "9F86D081884C7D659A2FEAA0C55AD015A3BF4F1B2B0B822CD15D6C15B0F00A08"));
+        Dependency conflicting = new Dependency("com.example:pinned:1.0.0");
+        conflicting.setPinnedChecksum(new Checksum(ChecksumType.SHA1, "a94a8fe5ccb19ba61c4c0873d391e987982fbbd3"));
+        List<AmberManifest> manifests = Arrays.asList(
+                new AmberManifest(tempDir.resolve("first"), Collections.singletonList(first), Collections.singletonList(repository.getRepository())),
+                new AmberManifest(tempDir.resolve("second"), Collections.singletonList(sameChecksum), Collections.singletonList(repository.getRepository())),
+                new AmberManifest(tempDir.resolve("third"), Collections.singletonList(conflicting), Collections.singletonList(repository.getRepository())));
+        List<String> errors = new ArrayList<>();
+        Amber amber = new Amber(new TestManifestLoader(manifests), DependencyDownloader.defaultDownloaders(), new ChecksumValidatorImpl(), new Logger() {
+            @Override
+            public void info(String message) {
+            }
+
+            @Override
+            public void debug(String message) {
+            }
+
+            @Override
+            public void error(String message, Throwable throwable) {
+                errors.add(message);
+            }
+        });
+
+        // Act
+        Collection<ScheduledDependency> scheduledDependencies = amber.scheduleDependencies(manifests);
+
+        // Assert
+        assertEquals(1, scheduledDependencies.size());
+        ScheduledDependency scheduled = scheduledDependencies.iterator().next();
+        assertSame(first, scheduled.getDependency());
+        assertEquals(manifests, scheduled.getManifests());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains(conflicting.getPinnedChecksum().toString()), errors.get(0));
+    }
+
+    @Test
+    public void testSharedDependencyDownloadedOnce() throws IOException {
+        // Arrange
+        List<Dependency> dependencies = repository.publishSynthetic(3, 1024, 1);
+        AmberManifest firstManifest = new AmberManifest(tempDir.resolve("first"), Arrays.asList(dependencies.get(0), dependencies.get(1)),
+                Collections.singletonList(repository.getRepository()));
+        AmberManifest secondManifest = new AmberManifest(tempDir.resolve("second"), Arrays.asList(dependencies.get(1), dependencies.get(2)),
+                Collections.singletonList(repository.getRepository()));
+        AmberManifest sharedDirectoryManifest = new AmberManifest(tempDir.resolve("first"), Collections.singletonList(dependencies.get(1)),
+                Collections.singletonList(repository.getRepository()));
+        Amber amber = createAmber(Arrays.asList(firstManifest, secondManifest, sharedDirectoryManifest));
+
+        // Act
+        List<Path> paths = amber.bootstrap(createOptions());
+
+        // Assert
+        for (Dependency dependency : dependencies) {
+            assertEquals(1, repository.getRequestCount(repository.getJarPath(dependency)), "Requests of " + dependency);
+        }
+        assertEquals(4, paths.size());
+        assertEquals(4, new HashSet<>(paths).size());
+        assertTrue(paths.contains(tempDir.resolve("first").resolve(dependencies.get(1).getFileName())));
+        assertTrue(paths.contains(tempDir.resolve("second").resolve(dependencies.get(1).getFileName())));
+        assertTrue(Files.isRegularFile(tempDir.resolve("first").resolve(dependencies.get(1).getFileName())));
+        assertTrue(Files.isRegularFile(tempDir.resolve("second").resolve(dependencies.get(1).getFileName())));
+        assertEquals(3, amber.getLastBootstrapReport().getDependencies().size());
+    }
+
+    @Test
+    public void testSharedDependencyUsesRepositoriesOfAllManifests() throws IOException {
+        // Arrange
+        Dependency dependency = otherRepository.publishSynthetic(1, 1024, 2).get(0);
+        AmberManifest firstManifest = new AmberManifest(tempDir.resolve("first"), Collections.singletonList(dependency),
+                Collections.singletonList(repository.getRepository()));
+        AmberManifest secondManifest = new AmberManifest(tempDir.resolve("second"), Collections.singletonList(dependency),
+                Collections.singletonList(otherRepository.getRepository()));
+        Amber amber = createAmber(Arrays.asList(firstManifest, secondManifest));
+
+        // Act
+        amber.bootstrap(createOptions());
+
+        // Assert
+        assertEquals(1, otherRepository.getRequestCount(otherRepository.getJarPath(dependency)));
+        assertTrue(Files.isRegularFile(tempDir.resolve("first").resolve(dependency.getFileName())));
+        assertTrue(Files.isRegularFile(tempDir.resolve("second").resolve(dependency.getFileName())));
+    }
+
+    private Amber createAmber(List<AmberManifest> manifests) {
+        return new Amber(new TestManifestLoader(manifests), DependencyDownloader.defaultDownloaders(),
+                new ChecksumValidatorImpl(), new ConsoleLogger(false));
+    }
+
+    private BootstrapOptions createOptions() throws IOException {
+        return BootstrapOptions.builder()
+                .tempDirectory(Files.createDirectories(tempDir.resolve("temp")))
+                .retryBackoffMillis(10)
+                .build();
+    }
+}
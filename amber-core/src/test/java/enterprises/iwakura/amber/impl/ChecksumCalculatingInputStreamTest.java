@@ -0,0 +1,126 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.ChecksumResult;
+import enterprises.iwakura.amber.ChecksumType;
+import enterprises.iwakura.amber.LocalMavenRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ChecksumCalculatingInputStream} and validation of the checksums it calculated by {@link ChecksumValidatorImpl}.
+ */
+public class ChecksumCalculatingInputStreamTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testAllChecksumTypes() throws IOException {
+        // Arrange
+        byte[] content = new byte[100_000];
+        new Random(4).nextBytes(content);
+
+        // Act
+        Map<ChecksumType, String> checksums;
+        try (ChecksumCalculatingInputStream inputStream = new ChecksumCalculatingInputStream(new ByteArrayInputStream(content),
+                Arrays.asList(ChecksumType.values()))) {
+            // Mixes all ways of reading the stream
+            inputStream.read();
+            inputStream.read(new byte[1000], 10, 900);
+            inputStream.skip(5000);
+            byte[] buffer = new byte[8192];
+            while (inputStream.read(buffer) != -1) {
+                // Read until the end
+            }
+            checksums = inputStream.getChecksums();
+        }
+
+        // Assert
+        assertEquals(ChecksumType.values().length, checksums.size());
+        for (ChecksumType checksumType : ChecksumType.values()) {
+            assertEquals(LocalMavenRepository.checksum(checksumType, content).getValue(), checksums.get(checksumType), checksumType.name());
+        }
+    }
+
+    @Test
+    public void testOnlyRequestedChecksumTypes() throws IOException {
+        // Arrange
+        byte[] content = "amber".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        Map<ChecksumType, String> checksums;
+        try (ChecksumCalculatingInputStream inputStream = new ChecksumCalculatingInputStream(new ByteArrayInputStream(content),
+                Collections.singletonList(ChecksumType.SHA256))) {
+            while (inputStream.read() != -1) {
+                // Read until the end
+            }
+            checksums = inputStream.getChecksums();
+        }
+
+        // Assert
+        assertEquals(Collections.singleton(ChecksumType.SHA256), checksums.keySet());
+        assertEquals(LocalMavenRepository.checksum(ChecksumType.SHA256, content).getValue(), checksums.get(ChecksumType.SHA256));
+    }
+
+    @Test
+    public void testNoChecksumTypes() throws IOException {
+        // Act
+        Map<ChecksumType, String> checksums;
+        try (ChecksumCalculatingInputStream inputStream = new ChecksumCalculatingInputStream(new ByteArrayInputStream(new byte[10]),
+                Collections.emptyList())) {
+            inputStream.skip(10);
+            checksums = inputStream.getChecksums();
+        }
+
+        // Assert
+        assertTrue(checksums.isEmpty());
+    }
+
+    @Test
+    public void testValidateCalculatedChecksums() throws IOException {
+        // Arrange
+        byte[] content = "amber".getBytes(StandardCharsets.UTF_8);
+        Path missingFile = tempDir.resolve("missing.jar");
+        Map<ChecksumType, String> checksums = new EnumMap<>(ChecksumType.class);
+        checksums.put(ChecksumType.SHA1, LocalMavenRepository.checksum(ChecksumType.SHA1, content).getValue());
+        ChecksumValidatorImpl validator = new ChecksumValidatorImpl();
+
+        // Act
+        ChecksumResult match = validator.validate(ChecksumType.SHA1, checksums.get(ChecksumType.SHA1).toUpperCase(), missingFile, checksums);
+        ChecksumResult mismatch = validator.validate(ChecksumType.SHA1, LocalMavenRepository.checksum(ChecksumType.SHA1, new byte[0]).getValue(),
+                missingFile, checksums);
+
+        // Assert
+        assertEquals(ChecksumResult.MATCH, match);
+        assertEquals(ChecksumResult.MISMATCH, mismatch);
+    }
+
+    @Test
+    public void testValidateFallsBackToReadingFile() throws IOException {
+        // Arrange
+        byte[] content = "amber".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(tempDir.resolve("file.jar"), content);
+        Map<ChecksumType, String> checksums = new EnumMap<>(ChecksumType.class);
+        checksums.put(ChecksumType.SHA1, LocalMavenRepository.checksum(ChecksumType.SHA1, content).getValue());
+
+        // Act
+        ChecksumResult result = new ChecksumValidatorImpl().validate(ChecksumType.MD5,
+                LocalMavenRepository.checksum(ChecksumType.MD5, content).getValue(), file, checksums);
+
+        // Assert
+        assertEquals(ChecksumResult.MATCH, result);
+    }
+}
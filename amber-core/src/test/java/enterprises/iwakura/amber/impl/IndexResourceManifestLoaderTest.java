@@ -0,0 +1,95 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.AmberIndex;
+import enterprises.iwakura.amber.AmberManifest;
+import enterprises.iwakura.amber.Dependency;
+import enterprises.iwakura.amber.ManifestLoader;
+import enterprises.iwakura.amber.Repository;
+import enterprises.iwakura.amber.RepositoryType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link IndexResourceManifestLoader} on classpaths mixing roots with and without an Amber index.
+ */
+public class IndexResourceManifestLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void fallsBackToManifestPerRoot() throws IOException {
+        AmberManifest indexed = manifest("indexed", "com.example:indexed:1.0.0");
+        AmberManifest legacy = manifest("legacy", "com.example:legacy:1.0.0");
+        AmberManifest indexOnly = manifest("index-only", "com.example:index-only:1.0.0");
+
+        // The index wins over its own root's manifest
+        Path indexedRoot = root("indexed", indexed, manifest("stale", "com.example:stale:1.0.0"));
+        Path legacyRoot = root("legacy", null, legacy);
+        Path indexOnlyRoot = root("index-only", indexOnly, null);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{
+                indexedRoot.toUri().toURL(), legacyRoot.toUri().toURL(), indexOnlyRoot.toUri().toURL()}, null)) {
+            List<AmberManifest> manifests = new IndexResourceManifestLoader(classLoader).loadManifest();
+            assertEquals(Arrays.asList(indexed, legacy, indexOnly), manifests);
+        }
+    }
+
+    @Test
+    public void readsManifestsWithoutAnyIndex() throws IOException {
+        AmberManifest legacy = manifest("legacy", "com.example:legacy:1.0.0");
+        Path legacyRoot = root("legacy", null, legacy);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{legacyRoot.toUri().toURL()}, null)) {
+            assertEquals(Collections.singletonList(legacy), new IndexResourceManifestLoader(classLoader).loadManifest());
+        }
+    }
+
+    private static AmberManifest manifest(String directory, String dependency) {
+        return new AmberManifest(Paths.get(directory), Collections.singletonList(new Dependency(dependency)),
+                Collections.singletonList(new Repository(RepositoryType.MAVEN, "https://repo.example.com/" + directory + "/")));
+    }
+
+    /**
+     * Creates a classpath root directory with the specified index and manifest, each written only if not null.
+     */
+    private Path root(String name, AmberManifest index, AmberManifest manifest) throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve(name));
+        if (index != null) {
+            Path indexPath = root.resolve(ManifestLoader.INDEX_FILE_PATH);
+            Files.createDirectories(indexPath.getParent());
+            try (OutputStream outputStream = Files.newOutputStream(indexPath)) {
+                AmberIndex.write(index, outputStream);
+            }
+        }
+        if (manifest != null) {
+            Manifest jarManifest = new Manifest();
+            Attributes attributes = jarManifest.getMainAttributes();
+            attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            attributes.putValue(ManifestLoader.ATTRIBUTE_AMBER_DIRECTORY, manifest.getDirectory().toString());
+            attributes.putValue(ManifestLoader.ATTRIBUTE_AMBER_DEPENDENCIES, manifest.getDependencies().get(0).getNotation());
+            attributes.putValue(ManifestLoader.ATTRIBUTE_AMBER_MAVEN_REPOSITORIES, manifest.getRepositories().get(0).getUrl());
+            Path manifestPath = root.resolve(ManifestLoader.MANIFEST_FILE_PATH);
+            Files.createDirectories(manifestPath.getParent());
+            try (OutputStream outputStream = Files.newOutputStream(manifestPath)) {
+                jarManifest.write(outputStream);
+            }
+        }
+        return root;
+    }
+}
@@ -0,0 +1,518 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.BootstrapOptions;
+import enterprises.iwakura.amber.ChecksumType;
+import enterprises.iwakura.amber.Dependency;
+import enterprises.iwakura.amber.DependencyRoute;
+import enterprises.iwakura.amber.DownloadResult;
+import enterprises.iwakura.amber.HttpTransport;
+import enterprises.iwakura.amber.LocalMavenRepository;
+import enterprises.iwakura.amber.Repository;
+import enterprises.iwakura.amber.RepositoryType;
+import enterprises.iwakura.amber.StringDownloadResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link MavenDependencyDownloader} against a {@link LocalMavenRepository}.
+ */
+public class MavenDependencyDownloaderTest {
+
+    private static final String SNAPSHOT = "com.example:snapshot:1.0.0-SNAPSHOT";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMavenRepository repository;
+    private RecordingDownloader downloader;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new LocalMavenRepository();
+        downloader = createDownloader(BootstrapOptions.builder().build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testSnapshotVersionResolvedOncePerBootstrap() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("snapshot", 1024, new Random(1));
+        Dependency dependency = repository.publish(SNAPSHOT, jar);
+
+        // Act
+        DownloadResult first = downloader.downloadJar(dependency, repository.getRepository(), tempDir.resolve("first.jar"));
+        DownloadResult second = downloader.downloadJar(dependency, repository.getRepository(), tempDir.resolve("second.jar"));
+
+        // Assert
+        assertTrue(first.isSuccess(), first.getErrorMessage());
+        assertTrue(second.isSuccess(), second.getErrorMessage());
+        assertArrayEquals(jar, Files.readAllBytes(tempDir.resolve("first.jar")));
+        assertArrayEquals(jar, Files.readAllBytes(tempDir.resolve("second.jar")));
+        assertEquals(1, repository.getRequestCount(getMetadataPath(dependency)));
+        assertEquals(2, repository.getRequestCount(repository.getJarPath(dependency)));
+    }
+
+    @Test
+    public void testMetadataPrefersUnclassifiedJar() {
+        // Arrange
+        Dependency dependency = new Dependency(SNAPSHOT);
+        putMetadata(dependency, ""
+                + "<metadata>\n"
+                + "  <versioning>\n"
+                + "    <snapshotVersions>\n"
+                + "      <snapshotVersion>\n"
+                + "        <classifier>sources</classifier>\n"
+                + "        <extension>jar</extension>\n"
+                + "        <value>1.0.0-20240101.000000-1</value>\n"
+                + "      </snapshotVersion>\n"
+                + "      <snapshotVersion>\n"
+                + "        <extension>pom</extension>\n"
+                + "        <value>1.0.0-20240101.000000-2</value>\n"
+                + "      </snapshotVersion>\n"
+                + "      <snapshotVersion>\n"
+                + "        <classifier></classifier>\n"
+                + "        <extension> jar </extension>\n"
+                + "        <value> 1.0.0-20240101.000000-3 </value>\n"
+                + "      </snapshotVersion>\n"
+                + "    </snapshotVersions>\n"
+                + "  </versioning>\n"
+                + "</metadata>\n");
+
+        // Act
+        StringDownloadResult result = downloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertEquals("1.0.0-20240101.000000-3", result.getContent());
+    }
+
+    @Test
+    public void testMetadataFallsBackToClassifiedJar() {
+        // Arrange
+        Dependency dependency = new Dependency(SNAPSHOT);
+        putMetadata(dependency, ""
+                + "<metadata>\n"
+                + "  <versioning>\n"
+                + "    <snapshotVersions>\n"
+                + "      <snapshotVersion>\n"
+                + "        <classifier>tests</classifier>\n"
+                + "        <extension>jar</extension>\n"
+                + "        <value>1.0.0-20240101.000000-1</value>\n"
+                + "      </snapshotVersion>\n"
+                + "      <snapshotVersion>\n"
+                + "        <classifier>sources</classifier>\n"
+                + "        <extension>jar</extension>\n"
+                + "        <value>1.0.0-20240101.000000-2</value>\n"
+                + "      </snapshotVersion>\n"
+                + "    </snapshotVersions>\n"
+                + "  </versioning>\n"
+                + "</metadata>\n");
+
+        // Act
+        StringDownloadResult result = downloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Assert
+        assertEquals("1.0.0-20240101.000000-1", result.getContent());
+    }
+
+    @Test
+    public void testMetadataWithoutSnapshotVersions() {
+        // Arrange
+        Dependency dependency = new Dependency("com.example:release:1.0.0");
+        putMetadata(dependency, "<metadata><versioning><latest>1.0.0</latest></versioning></metadata>");
+
+        // Act
+        StringDownloadResult result = downloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertNull(result.getContent());
+    }
+
+    @Test
+    public void testMissingMetadata() {
+        // Arrange
+        Dependency dependency = new Dependency("com.example:release:1.0.0");
+
+        // Act
+        StringDownloadResult result = downloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertNull(result.getContent());
+    }
+
+    @Test
+    public void testMalformedMetadataIsNotCached() {
+        // Arrange
+        Dependency dependency = new Dependency(SNAPSHOT);
+        putMetadata(dependency, "<metadata><versioning>");
+
+        // Act
+        StringDownloadResult first = downloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+        StringDownloadResult second = downloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Assert
+        assertFalse(first.isSuccess());
+        assertFalse(second.isSuccess());
+        assertEquals(2, repository.getRequestCount(getMetadataPath(dependency)));
+    }
+
+    @Test
+    public void testMetadataExternalEntitiesAreNotResolved() throws IOException {
+        // Arrange
+        Path secret = Files.write(tempDir.resolve("secret.txt"), "1.0.0-secret".getBytes(StandardCharsets.UTF_8));
+        Dependency dependency = new Dependency(SNAPSHOT);
+        putMetadata(dependency, ""
+                + "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE metadata [<!ENTITY secret SYSTEM \"" + secret.toUri() + "\">]>\n"
+                + "<metadata><versioning><snapshotVersions><snapshotVersion>\n"
+                + "  <extension>jar</extension>\n"
+                + "  <value>&secret;</value>\n"
+                + "</snapshotVersion></snapshotVersions></versioning></metadata>\n");
+
+        // Act
+        StringDownloadResult result = downloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Assert
+        assertFalse(result.isSuccess() && "1.0.0-secret".equals(result.getContent()), "External entity was resolved");
+    }
+
+    @Test
+    public void testPersistedMetadataRevalidated() throws IOException {
+        // Arrange
+        Dependency dependency = repository.publish(SNAPSHOT, LocalMavenRepository.createJar("snapshot", 1024, new Random(1)));
+        BootstrapOptions options = BootstrapOptions.builder().persistMetadataCache(true).build();
+        RecordingDownloader firstDownloader = createDownloader(options);
+        StringDownloadResult first = firstDownloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Act
+        RecordingDownloader secondDownloader = createDownloader(options);
+        StringDownloadResult second = secondDownloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Assert
+        assertEquals("1.0.0-" + LocalMavenRepository.SNAPSHOT_TIMESTAMP + "-1", first.getContent());
+        assertEquals(first.getContent(), second.getContent());
+        assertEquals(200, (int) firstDownloader.statusCodes.get(0));
+        assertEquals(304, (int) secondDownloader.statusCodes.get(0));
+    }
+
+    @Test
+    public void testPersistedMetadataOfChangedSnapshot() throws IOException {
+        // Arrange
+        Dependency dependency = repository.publish(SNAPSHOT, LocalMavenRepository.createJar("snapshot", 1024, new Random(1)));
+        BootstrapOptions options = BootstrapOptions.builder().persistMetadataCache(true).build();
+        createDownloader(options).downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+        putMetadata(dependency, "<metadata><versioning><snapshotVersions><snapshotVersion>"
+                + "<extension>jar</extension><value>1.0.0-20240202.000000-2</value>"
+                + "</snapshotVersion></snapshotVersions></versioning></metadata>");
+
+        // Act
+        RecordingDownloader downloader = createDownloader(options);
+        StringDownloadResult result = downloader.downloadVersionOverrideFromMavenMetadata(dependency, repository.getRepository());
+
+        // Assert
+        assertEquals("1.0.0-20240202.000000-2", result.getContent());
+        assertEquals(200, (int) downloader.statusCodes.get(0));
+    }
+
+    @Test
+    public void testDownloadCalculatesChecksums() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("release", 100_000, new Random(4));
+        Dependency dependency = repository.publish("com.example:release:1.0.0", jar);
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), tempDir.resolve("release.jar"));
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertEquals(ChecksumType.values().length, result.getChecksums().size());
+        for (ChecksumType checksumType : ChecksumType.values()) {
+            assertEquals(LocalMavenRepository.checksum(checksumType, jar).getValue(), result.getChecksums().get(checksumType));
+        }
+        assertEquals(jar.length, result.getBytesTransferred());
+    }
+
+    @Test
+    public void testDownloadCalculatesOnlyPinnedChecksum() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("release", 1024, new Random(4));
+        Dependency dependency = repository.publish("com.example:release:1.0.0", jar);
+        dependency.setPinnedChecksum(LocalMavenRepository.checksum(ChecksumType.SHA512, jar));
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), tempDir.resolve("release.jar"));
+
+        // Assert
+        assertEquals(Collections.singleton(ChecksumType.SHA512), result.getChecksums().keySet());
+        assertEquals(dependency.getPinnedChecksum().getValue(), result.getChecksums().get(ChecksumType.SHA512));
+    }
+
+    @Test
+    public void testDownloadWithoutChecksumValidation() throws IOException {
+        // Arrange
+        Dependency dependency = repository.publish("com.example:release:1.0.0", LocalMavenRepository.createJar("release", 1024, new Random(4)));
+        RecordingDownloader downloader = createDownloader(BootstrapOptions.builder().validateChecksums(false).build());
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), tempDir.resolve("release.jar"));
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertTrue(result.getChecksums().isEmpty());
+    }
+
+    @Test
+    public void testResumeDroppedDownload() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("release", 100_000, new Random(6));
+        Dependency dependency = repository.publish("com.example:release:1.0.0", jar);
+        Path filePath = tempDir.resolve("release.jar");
+        repository.addFault(Pattern.quote(repository.getJarPath(dependency))).dropAfter(jar.length / 2).times(1);
+        DownloadResult dropped = downloader.downloadJar(dependency, repository.getRepository(), filePath);
+        long partialLength = Files.size(filePath);
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), filePath);
+
+        // Assert
+        assertFalse(dropped.isSuccess());
+        assertTrue(partialLength > 0 && partialLength < jar.length, "Partial length: " + partialLength);
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertEquals("bytes=" + partialLength + "-", downloader.jarRequestHeaders.get(1).get("Range"));
+        assertNotNull(downloader.jarRequestHeaders.get(1).get("If-Range"));
+        assertEquals(206, (int) downloader.jarStatusCodes.get(1));
+        assertEquals(jar.length - partialLength, result.getBytesTransferred());
+        assertArrayEquals(jar, Files.readAllBytes(filePath));
+        assertEquals(LocalMavenRepository.checksum(ChecksumType.SHA256, jar).getValue(), result.getChecksums().get(ChecksumType.SHA256));
+        assertNull(PartialDownload.load(filePath));
+    }
+
+    @Test
+    public void testRestartChangedDownload() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("release", 10_000, new Random(6));
+        Dependency dependency = repository.publish("com.example:release:1.0.0", jar);
+        Path filePath = Files.write(tempDir.resolve("release.jar"), new byte[1000]);
+        new PartialDownload(repository.getRepository().getJarDownloadPath(dependency, null), "\"changed\"", null, jar.length).save(filePath);
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), filePath);
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertEquals("\"changed\"", downloader.jarRequestHeaders.get(0).get("If-Range"));
+        assertEquals(200, (int) downloader.jarStatusCodes.get(0));
+        assertEquals(jar.length, result.getBytesTransferred());
+        assertArrayEquals(jar, Files.readAllBytes(filePath));
+        assertEquals(LocalMavenRepository.checksum(ChecksumType.SHA256, jar).getValue(), result.getChecksums().get(ChecksumType.SHA256));
+    }
+
+    @Test
+    public void testRestartUnsatisfiableRange() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("release", 10_000, new Random(6));
+        Dependency dependency = repository.publish("com.example:release:1.0.0", jar);
+        Path filePath = Files.write(tempDir.resolve("release.jar"), new byte[jar.length + 10]);
+        String etag = "\"" + LocalMavenRepository.checksum(ChecksumType.SHA1, jar).getValue() + "\"";
+        new PartialDownload(repository.getRepository().getJarDownloadPath(dependency, null), etag, null, jar.length).save(filePath);
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), filePath);
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertEquals(416, (int) downloader.jarStatusCodes.get(0));
+        assertNull(downloader.jarRequestHeaders.get(1).get("Range"));
+        assertArrayEquals(jar, Files.readAllBytes(filePath));
+    }
+
+    @Test
+    public void testPartialDownloadFromElsewhereIgnored() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("release", 10_000, new Random(6));
+        Dependency dependency = repository.publish("com.example:release:1.0.0", jar);
+        Path filePath = Files.write(tempDir.resolve("release.jar"), new byte[1000]);
+        new PartialDownload("https://repo.example.com/release.jar", "\"etag\"", null, jar.length).save(filePath);
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), filePath);
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertNull(downloader.jarRequestHeaders.get(0).get("Range"));
+        assertArrayEquals(jar, Files.readAllBytes(filePath));
+    }
+
+    @Test
+    public void testFailedDownloadWithoutValidatorIsDiscarded() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("release", 10_000, new Random(6));
+        Dependency dependency = repository.publish("com.example:release:1.0.0", jar);
+        Path filePath = tempDir.resolve("release.jar");
+        repository.addFault(Pattern.quote(repository.getJarPath(dependency))).dropAfter(jar.length / 2);
+        MavenDependencyDownloader downloader = new MavenDependencyDownloader(new HeaderRemovingTransport(HttpTransport.defaultTransport(), "ETag"));
+        downloader.prepare(BootstrapOptions.builder().build(), tempDir.resolve("state"));
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), filePath);
+
+        // Assert
+        assertFalse(result.isSuccess());
+        assertFalse(Files.exists(filePath));
+        assertFalse(Files.exists(PartialDownload.getSidecarPath(filePath)));
+    }
+
+    @Test
+    public void testRoutedDownloadSkipsMetadata() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("snapshot", 1024, new Random(20));
+        Dependency dependency = repository.publish(SNAPSHOT, jar);
+        String exactVersion = "1.0.0-" + LocalMavenRepository.SNAPSHOT_TIMESTAMP + "-1";
+        dependency.setRoute(new DependencyRoute(repository.getRepository(), exactVersion, jar.length));
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), tempDir.resolve("snapshot.jar"));
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertArrayEquals(jar, Files.readAllBytes(tempDir.resolve("snapshot.jar")));
+        assertEquals(0, repository.getRequestCount(getMetadataPath(dependency)));
+        assertEquals(1, repository.getRequestCount());
+    }
+
+    @Test
+    public void testRouteToOtherRepositoryIgnored() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("snapshot", 1024, new Random(20));
+        Dependency dependency = repository.publish(SNAPSHOT, jar);
+        dependency.setRoute(new DependencyRoute(new Repository(RepositoryType.MAVEN, "https://repo.example.com/"), "1.0.0-expired-1", -1));
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), tempDir.resolve("snapshot.jar"));
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertEquals(1, repository.getRequestCount(getMetadataPath(dependency)));
+    }
+
+    @Test
+    public void testExpiredRouteFallsBackToMetadata() throws IOException {
+        // Arrange
+        byte[] jar = LocalMavenRepository.createJar("snapshot", 1024, new Random(20));
+        Dependency dependency = repository.publish(SNAPSHOT, jar);
+        dependency.setRoute(new DependencyRoute(repository.getRepository(), "1.0.0-20230101.000000-1", jar.length));
+
+        // Act
+        DownloadResult result = downloader.downloadJar(dependency, repository.getRepository(), tempDir.resolve("snapshot.jar"));
+
+        // Assert
+        assertTrue(result.isSuccess(), result.getErrorMessage());
+        assertArrayEquals(jar, Files.readAllBytes(tempDir.resolve("snapshot.jar")));
+        assertEquals(Arrays.asList(404, 200), downloader.jarStatusCodes);
+        assertEquals(1, repository.getRequestCount(getMetadataPath(dependency)));
+    }
+
+    private RecordingDownloader createDownloader(BootstrapOptions options) {
+        RecordingDownloader downloader = new RecordingDownloader();
+        downloader.prepare(options, tempDir.resolve("state"));
+        return downloader;
+    }
+
+    private String getMetadataPath(Dependency dependency) {
+        return repository.getRepository().getDownloadPathDirectory(dependency).substring(repository.getUrl().length()) + "maven-metadata.xml";
+    }
+
+    private void putMetadata(Dependency dependency, String metadata) {
+        repository.putFile(getMetadataPath(dependency), metadata.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Records status codes of all responses, and headers and status codes of jar requests.
+     */
+    private static class RecordingDownloader extends MavenDependencyDownloader {
+
+        private final List<Integer> statusCodes = new CopyOnWriteArrayList<>();
+        private final List<Map<String, String>> jarRequestHeaders = new CopyOnWriteArrayList<>();
+        private final List<Integer> jarStatusCodes = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected HttpTransport.Response sendRequest(String url, Map<String, String> headers) throws IOException {
+            HttpTransport.Response response = super.sendRequest(url, headers);
+            statusCodes.add(response.getStatusCode());
+            if (url.endsWith(".jar")) {
+                jarRequestHeaders.add(new HashMap<>(headers));
+                jarStatusCodes.add(response.getStatusCode());
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Hides the specified response header, as if the repository didn't send it.
+     */
+    private static class HeaderRemovingTransport implements HttpTransport {
+
+        private final HttpTransport transport;
+        private final String removedHeader;
+
+        private HeaderRemovingTransport(HttpTransport transport, String removedHeader) {
+            this.transport = transport;
+            this.removedHeader = removedHeader;
+        }
+
+        @Override
+        public Response get(String url, Map<String, String> headers) throws IOException {
+            Response response = transport.get(url, headers);
+            return new Response() {
+                @Override
+                public int getStatusCode() {
+                    return response.getStatusCode();
+                }
+
+                @Override
+                public String getStatusMessage() {
+                    return response.getStatusMessage();
+                }
+
+                @Override
+                public String getHeader(String name) {
+                    return removedHeader.equalsIgnoreCase(name) ? null : response.getHeader(name);
+                }
+
+                @Override
+                public InputStream getBody() throws IOException {
+                    return response.getBody();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    response.close();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package enterprises.iwakura.amber.impl;
+
+import enterprises.iwakura.amber.StringDownloadResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link MavenMetadataCache}.
+ */
+public class MavenMetadataCacheTest {
+
+    private static final String KEY = "https://repo.example.com/com/example/Aa/1.0.0-SNAPSHOT/";
+    private static final String COLLIDING_KEY = "https://repo.example.com/com/example/BB/1.0.0-SNAPSHOT/";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testPersistedEntryRoundTrip() throws IOException {
+        // Arrange
+        MavenMetadataCache cache = new MavenMetadataCache(tempDir);
+
+        // Act
+        cache.persist(KEY, new MavenMetadataCache.PersistedEntry("1.0.0-20240101.000000-1", "\"etag\"", "Mon, 01 Jan 2024 00:00:00 GMT"));
+        MavenMetadataCache.PersistedEntry entry = new MavenMetadataCache(tempDir).loadPersisted(KEY);
+
+        // Assert
+        assertEquals(new MavenMetadataCache.PersistedEntry("1.0.0-20240101.000000-1", "\"etag\"", "Mon, 01 Jan 2024 00:00:00 GMT"), entry);
+    }
+
+    @Test
+    public void testPersistedEntryWithoutVersionOrValidators() throws IOException {
+        // Arrange
+        MavenMetadataCache cache = new MavenMetadataCache(tempDir);
+
+        // Act
+        cache.persist(KEY, new MavenMetadataCache.PersistedEntry(null, null, null));
+        MavenMetadataCache.PersistedEntry entry = cache.loadPersisted(KEY);
+
+        // Assert
+        assertEquals(new MavenMetadataCache.PersistedEntry("", null, null), entry);
+    }
+
+    @Test
+    public void testHashCollision() throws IOException {
+        // Arrange
+        assertEquals(KEY.hashCode(), COLLIDING_KEY.hashCode());
+        MavenMetadataCache cache = new MavenMetadataCache(tempDir);
+        cache.persist(KEY, new MavenMetadataCache.PersistedEntry("1.0.0-20240101.000000-1", null, null));
+
+        // Act
+        cache.persist(COLLIDING_KEY, new MavenMetadataCache.PersistedEntry("1.0.0-20240202.000000-2", null, null));
+
+        // Assert
+        assertNull(cache.loadPersisted(KEY), "Entry of another key must not be used");
+        assertEquals("1.0.0-20240202.000000-2", cache.loadPersisted(COLLIDING_KEY).getVersion());
+    }
+
+    @Test
+    public void testUnreadableEntry() throws IOException {
+        // Arrange
+        MavenMetadataCache cache = new MavenMetadataCache(tempDir);
+        Files.createDirectories(cache.getEntryPath(KEY));
+
+        // Act
+        MavenMetadataCache.PersistedEntry entry = cache.loadPersisted(KEY);
+
+        // Assert
+        assertNull(entry);
+    }
+
+    @Test
+    public void testInMemoryOnly() throws IOException {
+        // Arrange
+        MavenMetadataCache cache = new MavenMetadataCache();
+
+        // Act
+        cache.persist(KEY, new MavenMetadataCache.PersistedEntry("1.0.0-20240101.000000-1", null, null));
+        cache.put(KEY, StringDownloadResult.success("1.0.0-20240101.000000-1"));
+
+        // Assert
+        assertNull(cache.loadPersisted(KEY));
+        assertEquals("1.0.0-20240101.000000-1", cache.get(KEY).getContent());
+        assertNull(cache.get(COLLIDING_KEY));
+    }
+}
@@ -0,0 +1,119 @@
+package enterprises.iwakura.amber.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link PartialDownload}.
+ */
+public class PartialDownloadTest {
+
+    private static final String URL = "https://repo.example.com/com/example/a/1.0.0/a-1.0.0.jar";
+    private static final String LAST_MODIFIED = "Mon, 01 Jan 2024 00:00:00 GMT";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testIfRangeValidator() {
+        assertEquals("\"strong\"", new PartialDownload(URL, "\"strong\"", LAST_MODIFIED, 10).getIfRangeValidator());
+        assertEquals(LAST_MODIFIED, new PartialDownload(URL, "W/\"weak\"", LAST_MODIFIED, 10).getIfRangeValidator());
+        assertEquals(LAST_MODIFIED, new PartialDownload(URL, null, LAST_MODIFIED, 10).getIfRangeValidator());
+        assertNull(new PartialDownload(URL, "W/\"weak\"", null, 10).getIfRangeValidator());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        // Arrange
+        Path filePath = Files.write(tempDir.resolve("a.jar"), new byte[5]);
+        PartialDownload partialDownload = new PartialDownload(URL, "\"strong\"", LAST_MODIFIED, 10);
+
+        // Act
+        partialDownload.save(filePath);
+        PartialDownload loaded = PartialDownload.load(filePath);
+
+        // Assert
+        assertEquals(partialDownload, loaded);
+        assertTrue(Files.exists(PartialDownload.getSidecarPath(filePath)));
+    }
+
+    @Test
+    public void testSaveAndLoadWithoutValidators() throws IOException {
+        // Arrange
+        Path filePath = Files.write(tempDir.resolve("a.jar"), new byte[5]);
+
+        // Act
+        new PartialDownload(URL, null, null, -1).save(filePath);
+        PartialDownload loaded = PartialDownload.load(filePath);
+
+        // Assert
+        assertEquals(new PartialDownload(URL, null, null, -1), loaded);
+        assertNull(loaded.getIfRangeValidator());
+    }
+
+    @Test
+    public void testLoadWithoutFileOrSidecar() throws IOException {
+        // Arrange
+        Path filePath = tempDir.resolve("a.jar");
+        new PartialDownload(URL, "\"strong\"", null, 10).save(filePath);
+        Path otherFilePath = Files.write(tempDir.resolve("b.jar"), new byte[5]);
+
+        // Act & Assert
+        assertNull(PartialDownload.load(filePath));
+        assertNull(PartialDownload.load(otherFilePath));
+    }
+
+    @Test
+    public void testLoadMalformedSidecar() throws IOException {
+        // Arrange
+        Path filePath = Files.write(tempDir.resolve("a.jar"), new byte[5]);
+        Files.write(PartialDownload.getSidecarPath(filePath), "url=x\nexpected-length=ten\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        // Act
+        PartialDownload loaded = PartialDownload.load(filePath);
+
+        // Assert
+        assertNull(loaded);
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        // Arrange
+        Path filePath = Files.write(tempDir.resolve("a.jar"), new byte[5]);
+        new PartialDownload(URL, "\"strong\"", null, 10).save(filePath);
+
+        // Act
+        PartialDownload.delete(filePath);
+
+        // Assert
+        assertNull(PartialDownload.load(filePath));
+        assertTrue(Files.exists(filePath));
+    }
+
+    @Test
+    public void testTryLock() throws IOException {
+        // Arrange
+        Path filePath = tempDir.resolve("a.jar");
+
+        // Act
+        FileLock lock = PartialDownload.tryLock(filePath);
+        FileLock concurrentLock = PartialDownload.tryLock(filePath);
+        lock.channel().close();
+        FileLock laterLock = PartialDownload.tryLock(filePath);
+
+        // Assert
+        assertNotNull(lock);
+        assertNull(concurrentLock);
+        assertNotNull(laterLock);
+        laterLock.channel().close();
+        assertTrue(Files.exists(PartialDownload.getLockPath(filePath)));
+    }
+}
@@ -0,0 +1,757 @@
+package enterprises.iwakura.amber;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * In-process stand-in for a remote Maven repository, serving files from memory over HTTP on the loopback interface (see
+ * {@link com.sun.net.httpserver.HttpServer}). Published artifacts get their jar, all checksum files of {@link ChecksumType} and, for
+ * snapshots, a version-level <code>maven-metadata.xml</code>, laid out like on Maven Central. Releases have no version-level
+ * <code>maven-metadata.xml</code>, so requests for it are answered with 404 just like Maven Central does.
+ * <p>
+ * Meant for tests and benchmarks that need a repository without network access and with repeatable content: synthetic artifacts are
+ * generated from a seed, so the same seed always produces the same bytes. Responses may be scripted per path with {@link Fault}s, e.g. to
+ * slow them down, cap their bandwidth, answer with 429 or 503, stall or drop the connection in the middle of the body, truncate or corrupt
+ * them.
+ * Files are served with an <code>ETag</code>, answer <code>If-None-Match</code> with 304 and support resuming with <code>Range</code> and
+ * <code>If-Range</code>.
+ */
+public class LocalMavenRepository implements Closeable {
+
+    /**
+     * The group ID of synthetic artifacts, see {@link #publishSynthetic(int, int, long)}.
+     */
+    public static final String SYNTHETIC_GROUP_ID = "enterprises.iwakura.synthetic";
+
+    /**
+     * The timestamp of published snapshots, as in <code>1.0.0-20240101.000000-1</code>.
+     */
+    public static final String SNAPSHOT_TIMESTAMP = "20240101.000000";
+
+    /**
+     * The default number of threads handling requests.
+     */
+    public static final int DEFAULT_THREAD_COUNT = 64;
+
+    /**
+     * The longest time in milliseconds a {@link Fault#stallAfter(long) stalled} response holds the connection open.
+     */
+    public static final long MAX_STALL_MILLIS = 60_000;
+
+    static {
+        // Without TCP_NODELAY, every response is delayed by delayed ACKs on the loopback (read once, by the first server created)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    protected final HttpServer server;
+    protected final ExecutorService executorService;
+    protected final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    protected final List<Fault> faults = new CopyOnWriteArrayList<>();
+    protected final Map<String, AtomicInteger> pathRequestCounts = new ConcurrentHashMap<>();
+    protected final AtomicInteger requestCount = new AtomicInteger();
+    protected final AtomicInteger concurrentRequests = new AtomicInteger();
+    protected final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+    protected volatile long latencyMillis;
+
+    /**
+     * Creates and starts a new LocalMavenRepository with {@link #DEFAULT_THREAD_COUNT} threads handling requests.
+     *
+     * @throws IOException if the server could not be started
+     */
+    public LocalMavenRepository() throws IOException {
+        this(DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * Creates and starts a new LocalMavenRepository on a free port.
+     *
+     * @param threadCount the number of threads handling requests; requests exceeding it are queued, including their latency
+     *
+     * @throws IOException if the server could not be started
+     */
+    public LocalMavenRepository(int threadCount) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        executorService = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "LocalMavenRepository");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executorService);
+        server.createContext("/", exchange -> {
+            try {
+                handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Gets the URL of the repository.
+     *
+     * @return the URL, ending with a slash
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Creates a {@link Repository} pointing to this repository.
+     *
+     * @return the repository
+     */
+    public Repository getRepository() {
+        return new Repository(RepositoryType.MAVEN, getUrl());
+    }
+
+    /**
+     * Gets the latency added to every response.
+     *
+     * @return the latency in milliseconds
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Sets the latency added to every response, i.e. the time before the response headers are sent.
+     *
+     * @param latencyMillis the latency in milliseconds
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Gets the number of requests received so far.
+     *
+     * @return the number of requests
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Gets the number of requests of the specified path received so far.
+     *
+     * @param path the path relative to the repository's URL
+     *
+     * @return the number of requests
+     */
+    public int getRequestCount(String path) {
+        AtomicInteger count = pathRequestCounts.get(normalizePath(path));
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Gets the highest number of requests handled at the same time so far.
+     *
+     * @return the number of requests
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests.get();
+    }
+
+    /**
+     * Resets the number of requests received so far, including the per-path and concurrent ones.
+     */
+    public void resetRequestCount() {
+        requestCount.set(0);
+        pathRequestCounts.clear();
+        maxConcurrentRequests.set(0);
+    }
+
+    /**
+     * Adds a fault applied to requests of paths fully matching the specified regular expression. Configure the returned fault, e.g.
+     * <code>addFault(".*\\.jar").status(503).times(2)</code>. Faults are tried in the order they were added and a request gets the first
+     * matching fault with remaining uses; other faults are not combined with it.
+     *
+     * @param pathRegex the regular expression of paths relative to the repository's URL, e.g. <code>.*\\.jar</code>; use
+     *                  {@link Pattern#quote(String)} for a single path
+     *
+     * @return the added fault, applied to every matching request until configured otherwise
+     */
+    public Fault addFault(String pathRegex) {
+        Fault fault = new Fault(Pattern.compile(pathRegex));
+        faults.add(fault);
+        return fault;
+    }
+
+    /**
+     * Removes all faults.
+     */
+    public void clearFaults() {
+        faults.clear();
+    }
+
+    /**
+     * Puts a file into the repository, replacing any existing file.
+     *
+     * @param path    the path of the file relative to the repository's URL, e.g. <code>com/example/a/1.0/a-1.0.jar</code>
+     * @param content the content of the file
+     */
+    public void putFile(String path, byte[] content) {
+        files.put(normalizePath(path), content);
+    }
+
+    /**
+     * Removes a file from the repository.
+     *
+     * @param path the path of the file relative to the repository's URL
+     */
+    public void removeFile(String path) {
+        files.remove(normalizePath(path));
+    }
+
+    /**
+     * Gets a file from the repository.
+     *
+     * @param path the path of the file relative to the repository's URL
+     *
+     * @return the content of the file, or null if there's no such file
+     */
+    public byte[] getFile(String path) {
+        return files.get(normalizePath(path));
+    }
+
+    /**
+     * Gets the path of the specified dependency's jar, relative to the repository's URL. Snapshots point to their timestamped jar.
+     *
+     * @param dependency the dependency
+     *
+     * @return the path of the jar
+     */
+    public String getJarPath(Dependency dependency) {
+        return getJarDownloadPath(dependency).substring(getUrl().length());
+    }
+
+    /**
+     * Publishes the specified jar as the specified dependency, along with all of its checksum files and, for snapshots, the version-level
+     * <code>maven-metadata.xml</code>.
+     *
+     * @param notation the dependency's notation, e.g. <code>com.example:a:1.0.0</code>
+     * @param jar      the content of the jar
+     *
+     * @return the published dependency, without any pinned checksum
+     */
+    public Dependency publish(String notation, byte[] jar) {
+        Dependency dependency = new Dependency(notation);
+        Repository repository = getRepository();
+        String version = getExactVersion(dependency);
+        String directory = repository.getDownloadPathDirectory(dependency).substring(getUrl().length());
+
+        putFile(directory + dependency.getName() + "-" + version + ".jar", jar);
+        for (ChecksumType checksumType : ChecksumType.values()) {
+            putFile(directory + dependency.getName() + "-" + version + ".jar." + checksumType.getFileExtension(),
+                    checksum(checksumType, jar).getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        if (isSnapshot(dependency)) {
+            putFile(directory + "maven-metadata.xml", createSnapshotMetadata(dependency, version).getBytes(StandardCharsets.UTF_8));
+        }
+        return dependency;
+    }
+
+    /**
+     * Publishes synthetic artifacts <code>enterprises.iwakura.synthetic:artifact-N:1.0.0</code>, each a valid jar with a single stored
+     * entry of random bytes.
+     *
+     * @param count the number of artifacts
+     * @param size  the size of each artifact's entry in bytes; the jar is slightly larger
+     * @param seed  the seed of the random content
+     *
+     * @return the published dependencies, in order
+     */
+    public List<Dependency> publishSynthetic(int count, int size, long seed) {
+        Random random = new Random(seed);
+        List<Dependency> dependencies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "artifact-" + i;
+            dependencies.add(publish(SYNTHETIC_GROUP_ID + ":" + name + ":1.0.0", createJar(name.replace('-', '_'), size, random)));
+        }
+        return dependencies;
+    }
+
+    /**
+     * Stops the server, aborting requests in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Handles a request. Only <code>GET</code> and <code>HEAD</code> are supported, anything else is answered with 405.
+     *
+     * @param exchange the exchange; closed by the caller
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        int concurrent = concurrentRequests.incrementAndGet();
+        maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+        try {
+            String path = normalizePath(exchange.getRequestURI().getPath());
+            pathRequestCounts.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            serve(exchange, path, takeFault(path));
+        } finally {
+            concurrentRequests.decrementAndGet();
+        }
+    }
+
+    /**
+     * Serves the specified path, applying the specified fault.
+     *
+     * @param exchange the exchange; closed by the caller
+     * @param path     the normalized path
+     * @param fault    the fault to apply, or null
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected void serve(HttpExchange exchange, String path, Fault fault) throws IOException {
+        sleep(latencyMillis + (fault != null ? fault.latencyMillis : 0));
+
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        if (fault != null && fault.statusCode != 0) {
+            if (fault.retryAfterSeconds >= 0) {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(fault.retryAfterSeconds));
+            }
+            exchange.sendResponseHeaders(fault.statusCode, -1);
+            return;
+        }
+
+        byte[] content = files.get(path);
+        if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        String etag = "\"" + checksum(ChecksumType.SHA1, content).getValue() + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        if (fault != null && fault.corrupt && content.length > 0) {
+            content = content.clone();
+            content[content.length - 1] ^= (byte) 0xFF;
+        }
+
+        // Resume from the requested position, unless the file changed since
+        int statusCode = 200;
+        int start = 0;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && range.startsWith("bytes=") && range.endsWith("-") && (ifRange == null || ifRange.equals(etag))) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            if (start >= content.length) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            statusCode = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+        }
+
+        int length = content.length - start;
+        if (fault != null && fault.truncatedLength >= 0) {
+            length = (int) Math.min(length, fault.truncatedLength);
+        }
+        int writtenLength = fault != null && fault.dropAfterBytes >= 0 ? (int) Math.min(length, fault.dropAfterBytes) : length;
+        boolean stalled = fault != null && fault.stallAfterBytes >= 0 && fault.stallAfterBytes < writtenLength;
+        if (stalled) {
+            writtenLength = (int) fault.stallAfterBytes;
+        }
+
+        if ("HEAD".equals(method) || length == 0) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(statusCode, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(statusCode, length);
+        OutputStream outputStream = exchange.getResponseBody();
+        write(outputStream, content, start, writtenLength, fault != null ? fault.bytesPerSecond : 0);
+        if (stalled) {
+            // Sends nothing more until the repository is closed (interrupting the sleep), then drops the connection
+            outputStream.flush();
+            sleep(MAX_STALL_MILLIS);
+            return;
+        }
+        if (writtenLength < length) {
+            // Closing the exchange before the whole body was written drops the connection
+            outputStream.flush();
+            return;
+        }
+        outputStream.close();
+    }
+
+    /**
+     * Writes the specified part of the content, at most at the specified rate.
+     *
+     * @param outputStream   the stream to write into
+     * @param content        the content
+     * @param offset         the offset of the part
+     * @param length         the length of the part
+     * @param bytesPerSecond the maximum rate in bytes per second, or 0 for no limit
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected static void write(OutputStream outputStream, byte[] content, int offset, int length, long bytesPerSecond) throws IOException {
+        if (bytesPerSecond <= 0) {
+            outputStream.write(content, offset, length);
+            return;
+        }
+
+        // Write in chunks of about 50 ms each, sleeping whenever ahead of the rate
+        int chunkSize = (int) Math.max(1, Math.min(64 * 1024, bytesPerSecond / 20));
+        long startTime = System.nanoTime();
+        int written = 0;
+        while (written < length) {
+            int chunk = Math.min(chunkSize, length - written);
+            outputStream.write(content, offset + written, chunk);
+            outputStream.flush();
+            written += chunk;
+            long aheadNanos = written * 1_000_000_000L / bytesPerSecond - (System.nanoTime() - startTime);
+            sleep(TimeUnit.NANOSECONDS.toMillis(aheadNanos));
+        }
+    }
+
+    /**
+     * Takes the first fault matching the specified path with remaining uses.
+     *
+     * @param path the normalized path
+     *
+     * @return the fault, or null if there's none
+     */
+    protected Fault takeFault(String path) {
+        for (Fault fault : faults) {
+            if (fault.pathPattern.matcher(path).matches() && fault.take()) {
+                return fault;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sleeps for the specified time, keeping the interrupted status.
+     *
+     * @param millis the time in milliseconds
+     */
+    protected static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates a valid jar with a single stored (uncompressed) entry <code>packageName/data.bin</code> of random bytes.
+     *
+     * @param packageName the package of the entry
+     * @param size        the size of the entry in bytes
+     * @param random      the source of the entry's content
+     *
+     * @return the content of the jar
+     */
+    public static byte[] createJar(String packageName, int size, Random random) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        JarEntry entry = new JarEntry(packageName + "/data.bin");
+        entry.setMethod(JarEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc.getValue());
+        entry.setTime(0);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(size + 1024);
+        try (JarOutputStream outputStream = new JarOutputStream(buffer)) {
+            outputStream.putNextEntry(entry);
+            outputStream.write(data);
+            outputStream.closeEntry();
+        } catch (IOException exception) {
+            throw new IllegalStateException("Failed to create jar", exception);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Calculates the checksum of the specified content.
+     *
+     * @param checksumType the checksum type
+     * @param content      the content
+     *
+     * @return the checksum
+     */
+    public static Checksum checksum(ChecksumType checksumType, byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance(checksumType.getAlgorithm()).digest(content);
+            return new Checksum(checksumType, Checksum.toHexString(digest));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("Checksum algorithm not available: " + checksumType, exception);
+        }
+    }
+
+    /**
+     * Gets the full URL of the specified dependency's jar.
+     *
+     * @param dependency the dependency
+     *
+     * @return the URL of the jar
+     */
+    protected String getJarDownloadPath(Dependency dependency) {
+        return getRepository().getJarDownloadPath(dependency, getExactVersion(dependency));
+    }
+
+    /**
+     * Gets the version of the specified dependency's files, i.e. the timestamped version of snapshots.
+     *
+     * @param dependency the dependency
+     *
+     * @return the exact version
+     */
+    protected static String getExactVersion(Dependency dependency) {
+        if (!isSnapshot(dependency)) {
+            return dependency.getVersion();
+        }
+        return dependency.getVersion().substring(0, dependency.getVersion().length() - "SNAPSHOT".length()) + SNAPSHOT_TIMESTAMP + "-1";
+    }
+
+    /**
+     * Checks if the specified dependency is a snapshot.
+     *
+     * @param dependency the dependency
+     *
+     * @return true if its version ends with <code>-SNAPSHOT</code>
+     */
+    protected static boolean isSnapshot(Dependency dependency) {
+        return dependency.getVersion().endsWith("-SNAPSHOT");
+    }
+
+    /**
+     * Creates the version-level <code>maven-metadata.xml</code> of a snapshot.
+     *
+     * @param dependency   the snapshot dependency
+     * @param exactVersion the timestamped version
+     *
+     * @return the metadata
+     */
+    protected static String createSnapshotMetadata(Dependency dependency, String exactVersion) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<metadata modelVersion=\"1.1.0\">\n"
+                + "  <groupId>" + dependency.getGroupId() + "</groupId>\n"
+                + "  <artifactId>" + dependency.getName() + "</artifactId>\n"
+                + "  <version>" + dependency.getVersion() + "</version>\n"
+                + "  <versioning>\n"
+                + "    <snapshot>\n"
+                + "      <timestamp>" + SNAPSHOT_TIMESTAMP + "</timestamp>\n"
+                + "      <buildNumber>1</buildNumber>\n"
+                + "    </snapshot>\n"
+                + "    <snapshotVersions>\n"
+                + "      <snapshotVersion>\n"
+                + "        <extension>jar</extension>\n"
+                + "        <value>" + exactVersion + "</value>\n"
+                + "      </snapshotVersion>\n"
+                + "    </snapshotVersions>\n"
+                + "  </versioning>\n"
+                + "</metadata>\n";
+    }
+
+    /**
+     * Normalizes the specified path by removing its leading slashes.
+     *
+     * @param path the path
+     *
+     * @return the normalized path
+     */
+    protected static String normalizePath(String path) {
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        return path.substring(start);
+    }
+
+    /**
+     * Scripted behavior of responses to matching paths, see {@link #addFault(String)}. All methods return this fault for chaining.
+     */
+    public static class Fault {
+
+        protected final Pattern pathPattern;
+        protected final AtomicInteger remainingUses = new AtomicInteger(Integer.MAX_VALUE);
+        protected volatile long latencyMillis;
+        protected volatile long bytesPerSecond;
+        protected volatile int statusCode;
+        protected volatile long retryAfterSeconds = -1;
+        protected volatile long dropAfterBytes = -1;
+        protected volatile long stallAfterBytes = -1;
+        protected volatile long truncatedLength = -1;
+        protected volatile boolean corrupt;
+
+        /**
+         * Creates a new Fault, doing nothing until configured.
+         *
+         * @param pathPattern the pattern of paths the fault applies to
+         */
+        protected Fault(Pattern pathPattern) {
+            this.pathPattern = pathPattern;
+        }
+
+        /**
+         * Delays the response, in addition to {@link LocalMavenRepository#setLatencyMillis(long)}.
+         *
+         * @param latencyMillis the delay in milliseconds before the response headers are sent
+         *
+         * @return this fault
+         */
+        public Fault latency(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+            return this;
+        }
+
+        /**
+         * Caps the bandwidth of the response body.
+         *
+         * @param bytesPerSecond the maximum rate in bytes per second
+         *
+         * @return this fault
+         */
+        public Fault bandwidth(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Answers with the specified status code and an empty body instead of the file, e.g. 429, 503 or 404 (a missing file).
+         *
+         * @param statusCode the HTTP status code
+         *
+         * @return this fault
+         */
+        public Fault status(int statusCode) {
+            this.statusCode = statusCode;
+            return this;
+        }
+
+        /**
+         * Sends the <code>Retry-After</code> header with the {@link #status(int)}.
+         *
+         * @param retryAfterSeconds the delay in seconds
+         *
+         * @return this fault
+         */
+        public Fault retryAfter(long retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        /**
+         * Drops the connection after the specified number of body bytes, while the <code>Content-Length</code> announces the whole body.
+         *
+         * @param bytes the number of bytes sent before dropping the connection
+         *
+         * @return this fault
+         */
+        public Fault dropAfter(long bytes) {
+            this.dropAfterBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Stalls the response body after the specified number of bytes, holding the connection open without sending anything more, e.g. to
+         * trigger read timeouts. The connection is dropped once the repository is closed or after {@link #MAX_STALL_MILLIS}.
+         *
+         * @param bytes the number of bytes sent before stalling
+         *
+         * @return this fault
+         */
+        public Fault stallAfter(long bytes) {
+            this.stallAfterBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Truncates the file to the specified length, announced by the <code>Content-Length</code>, so the response looks complete.
+         *
+         * @param length the length in bytes
+         *
+         * @return this fault
+         */
+        public Fault truncate(long length) {
+            this.truncatedLength = length;
+            return this;
+        }
+
+        /**
+         * Flips the bits of the file's last byte, so it no longer matches its checksums. Applied to a checksum file, it makes the
+         * checksum invalid instead.
+         *
+         * @return this fault
+         */
+        public Fault corrupt() {
+            this.corrupt = true;
+            return this;
+        }
+
+        /**
+         * Applies the fault to the specified number of matching requests only, e.g. to let retries succeed.
+         *
+         * @param count the number of requests
+         *
+         * @return this fault
+         */
+        public Fault times(int count) {
+            remainingUses.set(count);
+            return this;
+        }
+
+        /**
+         * Takes a use of the fault.
+         *
+         * @return true if the fault had a remaining use
+         */
+        protected boolean take() {
+            return remainingUses.getAndUpdate(uses -> uses == Integer.MAX_VALUE ? uses : Math.max(uses - 1, 0)) > 0;
+        }
+    }
+}
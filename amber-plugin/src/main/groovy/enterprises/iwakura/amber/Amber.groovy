@@ -7,6 +7,7 @@ import org.gradle.api.artifacts.ResolvedDependency
 import org.gradle.api.artifacts.repositories.MavenArtifactRepository
 import org.gradle.api.tasks.Input
 import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputDirectory
 import org.gradle.api.tasks.OutputFile
 import org.gradle.api.tasks.TaskAction
 import org.gradle.api.tasks.bundling.Jar
@@ -23,6 +24,34 @@ class AmberExtension {
      * Default: <code>amber-lib</code>
      */
     String libraryDir = 'amber-lib'
+
+    /**
+     * Whether to pin a checksum of every non-snapshot dependency into the manifest.
+     * Amber then validates downloaded dependencies against these checksums
+     * instead of downloading checksum files from the repositories.
+     * <p></p>
+     * Default: <code>true</code>
+     */
+    boolean pinChecksums = true
+
+    /**
+     * Whether to record the repository every dependency was resolved from,
+     * along with its exact (e.g. timestamped snapshot) version and size.
+     * Amber then downloads each dependency from its repository first
+     * instead of trying all repositories in order.
+     * <p></p>
+     * Default: <code>true</code>
+     */
+    boolean routeDependencies = true
+
+    /**
+     * Whether to write a compact binary Amber index (<code>META-INF/amber/index.bin</code>)
+     * into the jar. Amber reads the index instead of scanning every MANIFEST.MF
+     * on the classpath. The MANIFEST.MF attributes are written regardless.
+     * <p></p>
+     * Default: <code>true</code>
+     */
+    boolean generateIndex = true
 }
 
 /**
@@ -44,14 +73,32 @@ class AmberManifestTask extends DefaultTask {
         return new File(getProject().buildDir, "tmp/amber/${targetJarTaskNameInternal}Manifest.properties")
     }
 
+    @OutputDirectory
+    File getOutputIndexDirectory() {
+        return new File(getProject().buildDir, "tmp/amber/${targetJarTaskNameInternal}Index")
+    }
+
+    private Map<String, String> manifestAttributesCache
+
     @Input
     Map<String, String> getManifestAttributes() {
+        // Computing checksums reads every artifact, so compute the attributes only once
+        if (manifestAttributesCache == null) {
+            manifestAttributesCache = computeManifestAttributes()
+        }
+        return manifestAttributesCache
+    }
+
+    protected Map<String, String> computeManifestAttributes() {
         Jar jarTask = getProject().tasks.getByName(targetJarTaskNameInternal) as Jar
 
         // Directly get all resolved artifacts (including transitive dependencies)
         def allDependencies = project.configurations.amber.resolvedConfiguration.resolvedArtifacts.collect { artifact ->
             def id = artifact.moduleVersion.id
-            [group: id.group, name: id.name, version: id.version]
+            def componentId = artifact.id.componentIdentifier
+            // Unique snapshots are resolved to a timestamped version
+            def exactVersion = componentId.hasProperty('timestampedVersion') ? componentId.timestampedVersion : null
+            [group: id.group, name: id.name, version: id.version, exactVersion: exactVersion, file: artifact.file]
         }
 
         // Dependency => notation
@@ -59,6 +106,16 @@ class AmberManifestTask extends DefaultTask {
             "${dep.group}:${dep.name}:${dep.version}"
         }.join(',')
 
+        // Dependency => pinned checksum; snapshots may change after the build, so they're not pinned
+        def amberChecksums = ''
+        if (amberExtensionInternal.pinChecksums) {
+            amberChecksums = allDependencies.findAll { dep ->
+                !dep.version.endsWith('-SNAPSHOT') && dep.file?.isFile()
+            }.collect { dep ->
+                "${dep.group}:${dep.name}:${dep.version}=SHA256:${sha256(dep.file)}"
+            }.join(',')
+        }
+
         // Collect amber Class-Path entries
         def originalClassPath = [:]
         def amberClassPath = allDependencies.collect { dep ->
@@ -92,18 +149,135 @@ class AmberManifestTask extends DefaultTask {
         }
 
         // Collect maven repositories
-        def mavenRepos = getProject().repositories.findAll { it instanceof MavenArtifactRepository }
+        def mavenRepositories = getProject().repositories.findAll { it instanceof MavenArtifactRepository }
+        def mavenRepos = mavenRepositories
                 .collect { MavenArtifactRepository repo -> repo.url.toString() }
                 .join(',')
 
+        // Dependency => index of the repository it was resolved from, exact version and size
+        def amberRoutes = ''
+        if (amberExtensionInternal.routeDependencies) {
+            def repositoryNames = resolveRepositoryNames()
+            amberRoutes = allDependencies.findResults { dep ->
+                def repositoryIndex = mavenRepositories.findIndexOf { it.name == repositoryNames["${dep.group}:${dep.name}:${dep.version}".toString()] }
+                if (repositoryIndex < 0) {
+                    return null // Resolved elsewhere (e.g. flatDir) or unknown, Amber tries all repositories
+                }
+                def size = dep.file?.isFile() ? dep.file.length() : ''
+                "${dep.group}:${dep.name}:${dep.version}=${repositoryIndex};${dep.exactVersion ?: ''};${size}"
+            }.join(',')
+        }
+
         return [
                 'Amber-Directory': amberExtensionInternal.libraryDir ?: 'amber-lib',
                 'Amber-Dependencies': amberDependencies ?: '',
                 'Amber-Maven-Repositories': mavenRepos ?: '',
+                'Amber-Checksums': amberChecksums ?: '',
+                'Amber-Routes': amberRoutes ?: '',
                 'Class-Path': combinedClassPath ?: ''
         ]
     }
 
+    // Helper method to find the name of the repository each resolved module came from. Gradle exposes it only
+    // on its internal component results, so modules are left unrouted if it's not available.
+    protected Map<String, String> resolveRepositoryNames() {
+        def repositoryNames = [:]
+        project.configurations.amber.incoming.resolutionResult.allComponents.each { component ->
+            def id = component.moduleVersion
+            if (id != null && component.hasProperty('repositoryName') && component.repositoryName != null) {
+                repositoryNames["${id.group}:${id.name}:${id.version}".toString()] = component.repositoryName
+            }
+        }
+        return repositoryNames
+    }
+
+    // Helper method to write the Amber index, see AmberIndex in amber-core for the format
+    protected static void writeIndex(Map<String, String> attributes, File file) {
+        def split = { String value -> value ? value.split(',').collect { it.trim() }.findAll { it } : [] }
+        def splitEntries = { String value ->
+            split(value).collectEntries { entry ->
+                int splitterIndex = entry.lastIndexOf('=')
+                [(entry.substring(0, splitterIndex)): entry.substring(splitterIndex + 1)]
+            }
+        }
+        def directory = attributes['Amber-Directory']
+        def repositories = split(attributes['Amber-Maven-Repositories'])
+        def dependencies = split(attributes['Amber-Dependencies']).collect { it.split(':') }
+        def checksums = splitEntries(attributes['Amber-Checksums'])
+        def routes = splitEntries(attributes['Amber-Routes'])
+
+        Map<String, Integer> strings = new LinkedHashMap<>()
+        def intern = { String string -> strings.putIfAbsent(string, strings.size()) }
+        if (directory) {
+            intern(directory)
+        }
+        repositories.each { intern(it) }
+        dependencies.each { coordinates ->
+            coordinates.each { intern(it) }
+            def checksum = checksums[coordinates.join(':')]
+            if (checksum) {
+                intern(checksum.substring(0, checksum.indexOf(':')))
+            }
+            def route = routes[coordinates.join(':')]?.split(';', -1)
+            if (route && route[1]) {
+                intern(route[1])
+            }
+        }
+
+        file.parentFile.mkdirs()
+        file.withDataOutputStream { output ->
+            def writeVarLong = { long value ->
+                while ((value & ~0x7FL) != 0) {
+                    output.writeByte((int) (value & 0x7F) | 0x80)
+                    value >>>= 7
+                }
+                output.writeByte((int) value)
+            }
+
+            output.write('AMBI'.getBytes('US-ASCII'))
+            output.writeByte(1) // Format version
+            writeVarLong(strings.size())
+            strings.keySet().each { output.writeUTF(it) }
+
+            writeVarLong(directory ? strings[directory] + 1 : 0)
+            writeVarLong(repositories.size())
+            repositories.each { writeVarLong(strings[it]) }
+
+            writeVarLong(dependencies.size())
+            dependencies.each { coordinates ->
+                coordinates.each { writeVarLong(strings[it]) }
+                def checksum = checksums[coordinates.join(':')]
+                def route = routes[coordinates.join(':')]?.split(';', -1)
+                output.writeByte((checksum ? 1 : 0) | (route ? 2 : 0))
+                if (checksum) {
+                    def type = checksum.substring(0, checksum.indexOf(':'))
+                    byte[] digest = checksum.substring(checksum.indexOf(':') + 1).decodeHex()
+                    writeVarLong(strings[type])
+                    writeVarLong(digest.length)
+                    output.write(digest)
+                }
+                if (route) {
+                    writeVarLong(route[0] as long)
+                    writeVarLong(route[1] ? strings[route[1]] + 1 : 0)
+                    writeVarLong(route[2] ? (route[2] as long) + 1 : 0)
+                }
+            }
+        }
+    }
+
+    // Helper method to compute SHA-256 checksum of a file as a hex string
+    protected static String sha256(File file) {
+        def digest = java.security.MessageDigest.getInstance('SHA-256')
+        file.withInputStream { inputStream ->
+            byte[] buffer = new byte[8192]
+            int read
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read)
+            }
+        }
+        return digest.digest().encodeHex().toString()
+    }
+
     // Helper method to recursively collect runtime dependencies
     private void collectRuntimeDependencies(ResolvedDependency dependency, Set<ResolvedDependency> result) {
         dependency.children.each { child ->
@@ -126,6 +300,8 @@ class AmberManifestTask extends DefaultTask {
         logger.lifecycle("[+] Amber-Dependencies: ${amberAttributes['Amber-Dependencies']}")
         logger.lifecycle("[+] Amber-Maven-Repositories: ${amberAttributes['Amber-Maven-Repositories']}")
         logger.lifecycle("[+] Class-Path: ${amberAttributes['Class-Path']}")
+        logger.lifecycle("[+] Amber-Checksums: ${amberAttributes['Amber-Checksums'] ? amberAttributes['Amber-Checksums'].split(',').size() : 0} pinned")
+        logger.lifecycle("[+] Amber-Routes: ${amberAttributes['Amber-Routes'] ? amberAttributes['Amber-Routes'].split(',').size() : 0} routed")
 
         // Create output file, so this task can be UP-TO-DATE if no changes occur
         outputFile.parentFile.mkdirs()
@@ -135,6 +311,14 @@ class AmberManifestTask extends DefaultTask {
             props.store(outputStream, "Amber manifest properties for ${targetJarTaskNameInternal}")
         }
 
+        // Write the Amber index, which is added into the jar by the jar task
+        def indexDirectory = getOutputIndexDirectory()
+        project.delete(indexDirectory)
+        if (amberExtensionInternal.generateIndex) {
+            writeIndex(amberAttributes, new File(indexDirectory, 'META-INF/amber/index.bin'))
+            logger.lifecycle("[+] Amber index: META-INF/amber/index.bin")
+        }
+
         // Merge attributes into the jar task's manifest
         jarTask.manifest {
             attributes(amberAttributes)
@@ -183,6 +367,7 @@ class Amber implements Plugin<Project> {
                 }
                 jarTask.dependsOn(manifestTask)
                 jarTask.inputs.file(manifestTask.outputManifestFile)
+                jarTask.from(manifestTask.outputIndexDirectory)
 
                 // Apply the amber manifest attributes. This is needed
                 // in case of UP-TO-DATE skip of the amber manifest task.
@@ -0,0 +1,57 @@
+package enterprises.iwakura.amber
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+import java.util.jar.Attributes
+import java.util.jar.Manifest
+
+import static org.junit.jupiter.api.Assertions.assertEquals
+
+/**
+ * Checks the index written by {@link AmberManifestTask#writeIndex(Map, File)} against {@link AmberIndex#read(InputStream)} in amber-core,
+ * which are two copies of one format: the index must read back as the manifest parsed from the same attributes.
+ */
+class AmberIndexRoundTripTest {
+
+    @TempDir
+    File tempDir
+
+    @Test
+    void indexMatchesManifest() {
+        def attributes = [
+                'Amber-Directory': 'amber-lib',
+                'Amber-Dependencies': 'com.example:routed:1.0.0,com.example:snapshot:1.0-SNAPSHOT,com.example:plain:2.0.0',
+                'Amber-Maven-Repositories': 'https://repo.maven.apache.org/maven2/,https://repo.example.com/snapshots/',
+                'Amber-Checksums': 'com.example:routed:1.0.0=SHA256:' + ('0123456789abcdef' * 4) + ',com.example:plain:2.0.0=SHA1:' + ('89abcdef01' * 4),
+                'Amber-Routes': 'com.example:routed:1.0.0=0;;1234,com.example:snapshot:1.0-SNAPSHOT=1;1.0-20240101.000000-1;',
+        ]
+
+        assertRoundTrip(attributes)
+    }
+
+    @Test
+    void indexWithoutOptionalAttributesMatchesManifest() {
+        def attributes = [
+                'Amber-Directory': 'amber-lib',
+                'Amber-Dependencies': 'com.example:plain:2.0.0',
+                'Amber-Maven-Repositories': 'https://repo.maven.apache.org/maven2/',
+        ]
+
+        assertRoundTrip(attributes)
+    }
+
+    private void assertRoundTrip(Map<String, String> attributes) {
+        def indexFile = new File(tempDir, 'META-INF/amber/index.bin')
+        AmberManifestTask.writeIndex(attributes, indexFile)
+
+        def manifest = new Manifest()
+        manifest.mainAttributes[Attributes.Name.MANIFEST_VERSION] = '1.0'
+        attributes.each { name, value -> manifest.mainAttributes.putValue(name, value) }
+        def loader = { -> [] } as ManifestLoader
+
+        def expected = loader.parseManifest(manifest)
+        def actual = indexFile.withInputStream { AmberIndex.read(it) }
+        assertEquals(expected, actual)
+    }
+}